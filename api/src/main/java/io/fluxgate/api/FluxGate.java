@@ -1,12 +1,20 @@
 package io.fluxgate.api;
 
 import io.fluxgate.core.FluxGateLimiter;
+import io.fluxgate.core.adaptive.ConcurrencyLimiter;
+import io.fluxgate.core.policy.AttributeSource;
 import io.fluxgate.core.policy.CompiledPolicySet;
 import io.fluxgate.core.policy.KeyBuilder;
 import io.fluxgate.core.policy.LimitPolicy;
+import io.fluxgate.core.policy.MatchResult;
+import io.fluxgate.core.policy.MatcherBackend;
+import io.fluxgate.core.policy.PolicyArtifact;
 import io.fluxgate.core.policy.PolicyCompiler;
 import io.fluxgate.core.policy.PolicyContext;
+import io.fluxgate.core.policy.PolicyDecisionCache;
 import io.fluxgate.core.policy.PolicyDecision;
+import io.fluxgate.core.policy.PolicyFileWatcher;
+import io.fluxgate.core.policy.PolicySetDiff;
 
 import java.io.InputStream;
 import java.nio.file.Path;
@@ -15,21 +23,34 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 
-public final class FluxGate {
+public final class FluxGate implements AutoCloseable {
+
+    // Policy evaluation reads the request through a per-thread flyweight rather than a copy.
+    private static final ThreadLocal<PolicyContext> CONTEXTS = ThreadLocal.withInitial(PolicyContext::reusable);
 
     private final FluxGateLimiter limiter;
-    private final CompiledPolicySet policySet;
+    private volatile CompiledPolicySet policySet;
     private final String secret;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final PolicyFileWatcher watcher;
+    private final PolicyDecisionCache decisionCache;
 
     private FluxGate(Builder builder) {
         this.secret = builder.secret;
+        this.concurrencyLimiter = builder.concurrencyLimiter;
+        this.decisionCache = builder.decisionCacheCapacity > 0
+                ? new PolicyDecisionCache(builder.decisionCacheCapacity)
+                : null;
         CompiledPolicySet compiled = builder.policySet;
         if (compiled == null) {
-            if (builder.policyPath != null) {
-                compiled = PolicyCompiler.fromYaml(Path.of(builder.policyPath));
+            if (builder.artifactPath != null) {
+                compiled = PolicyArtifact.load(builder.artifactPath, builder.matcherBackend);
+            } else if (builder.policyPath != null) {
+                compiled = PolicyCompiler.fromYaml(Path.of(builder.policyPath), builder.matcherBackend);
             } else if (builder.policyStream != null) {
-                compiled = PolicyCompiler.fromYaml(builder.policyStream);
+                compiled = PolicyCompiler.fromYaml(builder.policyStream, builder.matcherBackend);
             } else {
                 compiled = PolicyCompiler.defaults();
             }
@@ -42,17 +63,33 @@ public final class FluxGate {
                 .withSketch(builder.sketchDepth, builder.sketchWidth)
                 .withRotationPeriod(builder.rotationPeriod)
                 .build();
+        if (builder.watchConfig) {
+            if (builder.policyPath == null) {
+                throw new IllegalStateException("withConfigWatching requires withConfig(Path)");
+            }
+            // Reloads keep the backend the running set was compiled with.
+            this.watcher = new PolicyFileWatcher(Path.of(builder.policyPath), compiled.backend(), this::reload,
+                    builder.reloadErrorHandler);
+            watcher.start();
+        } else {
+            this.watcher = null;
+        }
     }
 
     public RateLimitResult check(RequestContext ctx) {
-        Map<String, String> attributes = ctx.attributes();
-        PolicyContext context = new PolicyContext(ctx.ip(), ctx.route(), attributes);
-        LimitPolicy policy = policySet.firstMatch(context).orElse(null);
-        long keyHash = KeyBuilder.of()
-                .ip(ctx.ip())
-                .route(ctx.route())
-                .attributes(attributes)
-                .buildHash(secret);
+        PolicyContext context = CONTEXTS.get().reset(ctx.ip(), ctx.route(), ctx);
+        CompiledPolicySet current = policySet;
+        LimitPolicy policy = decisionCache != null
+                ? decisionCache.firstMatch(current, context)
+                : current.firstMatch(context).orElse(null);
+        // The key is derived after policy selection, from the fields the policy keys by.
+        long keyHash = policy != null && policy.keyBy() != null
+                ? policy.keyBy().hash(policy, context, secret)
+                : KeyBuilder.of()
+                        .ip(ctx.ip())
+                        .route(ctx.route())
+                        .attributes(ctx.attributes())
+                        .buildHash(secret);
         FluxGateLimiter.RateLimitOutcome outcome = limiter.check(keyHash, ignored -> policy, System.nanoTime());
         if (outcome.allowed()) {
             return RateLimitResult.allowed();
@@ -60,38 +97,121 @@ public final class FluxGate {
         return RateLimitResult.blocked(RetryAfter.ofNanos(outcome.retryAfterNanos()));
     }
 
+    /**
+     * Claims a concurrency slot when a {@link ConcurrencyLimiter} is configured. Callers that
+     * get {@code true} must report the request's latency through {@link #release(long)}.
+     * Without a configured limiter every call succeeds.
+     */
+    public boolean acquire() {
+        return concurrencyLimiter == null || concurrencyLimiter.acquire();
+    }
+
+    /**
+     * Returns a slot claimed by {@link #acquire()} and feeds the observed latency to the
+     * concurrency limit.
+     */
+    public void release(long latencyNanos) {
+        if (concurrencyLimiter != null) {
+            concurrencyLimiter.release(latencyNanos);
+        }
+    }
+
     public List<PolicyDecision> evaluatePolicies(RequestContext ctx) {
-        PolicyContext context = new PolicyContext(ctx.ip(), ctx.route(), ctx.attributes());
+        PolicyContext context = CONTEXTS.get().reset(ctx.ip(), ctx.route(), ctx);
         return policySet.evaluate(context);
     }
 
+    /**
+     * Evaluates every policy against {@code ctx} into a caller-owned {@link MatchResult},
+     * without allocating once the result has grown to the policy set.
+     */
+    public MatchResult evaluatePolicies(RequestContext ctx, MatchResult result) {
+        PolicyContext context = CONTEXTS.get().reset(ctx.ip(), ctx.route(), ctx);
+        return policySet.evaluate(context, result);
+    }
+
     public FluxGateLimiter limiter() {
         return limiter;
     }
 
+    public CompiledPolicySet policySet() {
+        return policySet;
+    }
+
+    /**
+     * Returns the hit rate and saved matcher time of the decision cache; all zero unless
+     * {@link Builder#withDecisionCache(int)} is set.
+     */
+    public PolicyDecisionCache.Stats decisionCacheStats() {
+        return decisionCache != null ? decisionCache.stats() : new PolicyDecisionCache.Stats(0L, 0L, 0L);
+    }
+
+    /**
+     * Switches to {@code next} without rebuilding the limiter. The limiter learns the new
+     * policies first and then the set is published with a single volatile write, so requests
+     * never wait on a reload; a request that started before the swap finishes with the
+     * previous set. See {@link FluxGateLimiter#updatePolicies} for how limiter state is kept.
+     */
+    public synchronized PolicySetDiff reload(CompiledPolicySet next) {
+        Objects.requireNonNull(next, "next");
+        PolicySetDiff diff = limiter.updatePolicies(next.policies());
+        policySet = next;
+        return diff;
+    }
+
+    /**
+     * Stops watching the policy file, if configured, and closes the limiter.
+     */
+    @Override
+    public void close() {
+        if (watcher != null) {
+            watcher.close();
+        }
+        limiter.close();
+    }
+
     public static Builder builder() {
         return new Builder();
     }
 
-    public interface RequestContext {
+    /**
+     * Request fields that policies match on. Policies read attributes one by one through
+     * {@link #attribute(String)}; override it to serve them straight from the request, e.g.
+     * from its headers, without building a map. Serve headers under their lower-cased names:
+     * a {@code keyBy} field {@code header:X-Api-Key} and a match on attribute
+     * {@code x-api-key} both read {@code attribute("x-api-key")}.
+     */
+    public interface RequestContext extends AttributeSource {
         String ip();
 
         String route();
 
+        @Override
         default Map<String, String> attributes() {
             return Map.of();
         }
+
+        @Override
+        default String attribute(String name) {
+            return attributes().get(name);
+        }
     }
 
     public static final class Builder {
         private CompiledPolicySet policySet;
         private String policyPath;
+        private Path artifactPath;
         private InputStream policyStream;
+        private MatcherBackend matcherBackend = MatcherBackend.CLOSURES;
         private String secret = "fluxgate";
         private int shardCapacity = 65_536;
         private int sketchDepth = 4;
         private int sketchWidth = 1 << 16;
         private Duration rotationPeriod = Duration.ofSeconds(1);
+        private ConcurrencyLimiter concurrencyLimiter;
+        private boolean watchConfig;
+        private int decisionCacheCapacity;
+        private Consumer<Exception> reloadErrorHandler = ignored -> { };
 
         public Builder withPolicies(Collection<LimitPolicy> policies) {
             this.policySet = CompiledPolicySet.of(policies);
@@ -113,6 +233,53 @@ public final class FluxGate {
             return this;
         }
 
+        /**
+         * Loads policies from an artifact written by {@link PolicyArtifact}, which skips YAML
+         * parsing and matcher compilation at startup.
+         */
+        public Builder withPolicyArtifact(Path path) {
+            this.artifactPath = Objects.requireNonNull(path, "path");
+            return this;
+        }
+
+        /**
+         * Selects how policy matchers loaded through {@link #withConfig} or
+         * {@link #withPolicyArtifact} are compiled, including on reloads; defaults to
+         * {@link MatcherBackend#CLOSURES}. A {@link #withPolicySet} set keeps its own backend.
+         */
+        public Builder withMatcherBackend(MatcherBackend matcherBackend) {
+            this.matcherBackend = Objects.requireNonNull(matcherBackend, "matcherBackend");
+            return this;
+        }
+
+        /**
+         * Recompiles the {@link #withConfig(Path)} file on a background thread whenever it
+         * changes and {@link FluxGate#reload reloads} the result. A file that fails to compile
+         * is passed to {@link #withReloadErrorHandler} and the running policies stay in place.
+         */
+        public Builder withConfigWatching(boolean watchConfig) {
+            this.watchConfig = watchConfig;
+            return this;
+        }
+
+        public Builder withReloadErrorHandler(Consumer<Exception> reloadErrorHandler) {
+            this.reloadErrorHandler = Objects.requireNonNull(reloadErrorHandler, "reloadErrorHandler");
+            return this;
+        }
+
+        /**
+         * Caches the matched policy per IP, route and referenced attribute values in
+         * {@code capacity} slots, so repeat requests skip policy matching. Entries of a
+         * reloaded set are never reused.
+         */
+        public Builder withDecisionCache(int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("capacity must be positive");
+            }
+            this.decisionCacheCapacity = capacity;
+            return this;
+        }
+
         public Builder withSecret(String secret) {
             this.secret = Objects.requireNonNull(secret, "secret");
             return this;
@@ -134,6 +301,11 @@ public final class FluxGate {
             return this;
         }
 
+        public Builder withConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+            this.concurrencyLimiter = Objects.requireNonNull(concurrencyLimiter, "concurrencyLimiter");
+            return this;
+        }
+
         public FluxGate build() {
             return new FluxGate(this);
         }
@@ -1,9 +1,19 @@
 package io.fluxgate.api;
 
+import io.fluxgate.core.adaptive.ConcurrencyLimiter;
+import io.fluxgate.core.policy.CompiledPolicySet;
 import io.fluxgate.core.policy.LimitPolicy;
+import io.fluxgate.core.policy.MatcherBackend;
+import io.fluxgate.core.policy.PolicyArtifact;
+import io.fluxgate.core.policy.PolicySetDiff;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -44,6 +54,176 @@ class FluxGateTest {
         assertThat(blocked.retryAfter().duration().isZero()).isFalse();
     }
 
+    @Test
+    void acquireIsBoundedByConfiguredConcurrencyLimiter() {
+        // Arrange
+        FluxGate gate = FluxGate.builder()
+                .withConcurrencyLimiter(ConcurrencyLimiter.builder()
+                        .withInitialLimit(1)
+                        .withLimitRange(1, 1)
+                        .build())
+                .build();
+
+        // Act
+        boolean first = gate.acquire();
+        boolean second = gate.acquire();
+        gate.release(1_000_000L);
+        boolean afterRelease = gate.acquire();
+
+        // Assert
+        assertThat(first).isTrue();
+        assertThat(second).isFalse();
+        assertThat(afterRelease).isTrue();
+    }
+
+    @Test
+    void acquireAlwaysSucceedsWithoutConcurrencyLimiter() {
+        // Arrange
+        FluxGate gate = FluxGate.builder().build();
+
+        // Act
+        boolean acquired = gate.acquire() && gate.acquire();
+        gate.release(1_000_000L);
+
+        // Assert
+        assertThat(acquired).isTrue();
+    }
+
+    @Test
+    void reloadSwapsPoliciesWithoutResettingLimiterState() {
+        // Arrange
+        FluxGate gate = FluxGate.builder()
+                .withPolicies(List.of(new LimitPolicy("test", 1d, 1d, 60)))
+                .withSecret("secret")
+                .build();
+        FluxGate.RequestContext context = new SimpleContext("127.0.0.1", "/health");
+        gate.check(context);
+        CompiledPolicySet next = CompiledPolicySet.of(List.of(new LimitPolicy("test", 1d, 1d, 60),
+                new LimitPolicy("extra", 5d, 5d, 60)));
+
+        // Act
+        PolicySetDiff diff = gate.reload(next);
+        RateLimitResult afterReload = gate.check(context);
+
+        // Assert
+        assertThat(gate.policySet()).isSameAs(next);
+        assertThat(diff.added()).containsExactly("extra");
+        assertThat(diff.unchanged()).containsExactly("test");
+        assertThat(afterReload.isAllowed()).isFalse();
+    }
+
+    @Test
+    void decisionCacheServesRepeatedRequests() {
+        // Arrange
+        FluxGate gate = FluxGate.builder()
+                .withPolicies(List.of(new LimitPolicy("test", 100d, 100d, 60)))
+                .withDecisionCache(16)
+                .build();
+        FluxGate.RequestContext context = new SimpleContext("127.0.0.1", "/health");
+
+        // Act
+        gate.check(context);
+        gate.check(context);
+        gate.check(context);
+
+        // Assert
+        assertThat(gate.decisionCacheStats().misses()).isEqualTo(1L);
+        assertThat(gate.decisionCacheStats().hits()).isEqualTo(2L);
+    }
+
+    @Test
+    void loadsPoliciesFromArtifact() throws Exception {
+        // Arrange
+        Path artifact = Files.createTempFile("fluxgate-policies", ".fgp");
+        PolicyArtifact.write(CompiledPolicySet.of(List.of(new LimitPolicy("artifact", 1d, 1d, 60))), artifact);
+        FluxGate gate = FluxGate.builder()
+                .withPolicyArtifact(artifact)
+                .build();
+        FluxGate.RequestContext context = new SimpleContext("127.0.0.1", "/health");
+
+        // Act
+        RateLimitResult first = gate.check(context);
+        RateLimitResult second = gate.check(context);
+
+        // Assert
+        assertThat(gate.policySet().policies().get(0).id()).isEqualTo("artifact");
+        assertThat(first.isAllowed()).isTrue();
+        assertThat(second.isAllowed()).isFalse();
+        Files.deleteIfExists(artifact);
+    }
+
+    @Test
+    void routeTemplatePoliciesAreKeyedByCapturedParameters() {
+        // Arrange
+        String yaml = "policies:\n  - id: per-tenant\n    limitPerSecond: 1\n    burst: 1\n"
+                + "    match:\n      route: /t/{tenantId}/orders/**\n";
+        FluxGate gate = FluxGate.builder()
+                .withConfig(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)))
+                .build();
+
+        // Act
+        RateLimitResult first = gate.check(new SimpleContext("10.0.0.1", "/t/acme/orders/1"));
+        RateLimitResult sameTenant = gate.check(new SimpleContext("10.0.0.2", "/t/acme/orders/2"));
+        RateLimitResult otherTenant = gate.check(new SimpleContext("10.0.0.1", "/t/beta/orders/1"));
+
+        // Assert
+        assertThat(first.isAllowed()).isTrue();
+        assertThat(sameTenant.isAllowed()).isFalse();
+        assertThat(otherTenant.isAllowed()).isTrue();
+    }
+
+    @Test
+    void keyByPoliciesAreKeyedByListedFieldsOnly() {
+        // Arrange
+        String yaml = "policies:\n  - id: per-key\n    limitPerSecond: 1\n    burst: 1\n"
+                + "    keyBy: [header:x-api-key]\n";
+        FluxGate gate = FluxGate.builder()
+                .withConfig(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)))
+                .build();
+
+        // Act
+        RateLimitResult first = gate.check(new HeaderContext("10.0.0.1", "/a", "k-1"));
+        RateLimitResult sameKey = gate.check(new HeaderContext("10.0.0.2", "/b", "k-1"));
+        RateLimitResult otherKey = gate.check(new HeaderContext("10.0.0.1", "/a", "k-2"));
+
+        // Assert
+        assertThat(first.isAllowed()).isTrue();
+        assertThat(sameKey.isAllowed()).isFalse();
+        assertThat(otherKey.isAllowed()).isTrue();
+    }
+
+    @Test
+    void watchedReloadsKeepTheConfiguredMatcherBackend() throws Exception {
+        // Arrange
+        Path file = Files.createTempFile("fluxgate-policies", ".yml");
+        Files.writeString(file, "policies:\n  - id: first\n    limitPerSecond: 5\n");
+        FluxGate gate = FluxGate.builder()
+                .withConfig(file)
+                .withMatcherBackend(MatcherBackend.HIDDEN_CLASSES)
+                .withConfigWatching(true)
+                .build();
+
+        // Act
+        Files.writeString(file, "policies:\n  - id: second\n    limitPerSecond: 7\n");
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (gate.policySet().policies().get(0).id().equals("first") && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        gate.close();
+
+        // Assert
+        assertThat(gate.policySet().policies().get(0).id()).isEqualTo("second");
+        assertThat(gate.policySet().backend()).isEqualTo(MatcherBackend.HIDDEN_CLASSES);
+        Files.deleteIfExists(file);
+    }
+
     private record SimpleContext(String ip, String route) implements FluxGate.RequestContext {
     }
+
+    private record HeaderContext(String ip, String route, String apiKey) implements FluxGate.RequestContext {
+        @Override
+        public Map<String, String> attributes() {
+            return Map.of("x-api-key", apiKey);
+        }
+    }
 }
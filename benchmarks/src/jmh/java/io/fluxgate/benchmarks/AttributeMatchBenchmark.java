@@ -0,0 +1,65 @@
+package io.fluxgate.benchmarks;
+
+import io.fluxgate.core.policy.PolicyCompiler;
+import io.fluxgate.core.policy.PolicyContext;
+import io.fluxgate.core.policy.PolicyMatcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares compiled {@code anyOf} attribute matchers, which choose a value set structure by
+ * size, with {@code listContains}, the {@code List.contains} scan they replaced. Half the
+ * requests carry a listed tenant and half an unlisted one.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AttributeMatchBenchmark {
+
+    @Param({"1", "8", "64", "1024", "10000"})
+    private int values;
+
+    private PolicyMatcher matcher;
+    private List<String> allowList;
+    private PolicyContext[] requests;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        allowList = new ArrayList<>(values);
+        StringBuilder yaml = new StringBuilder("policies:\n  - id: tenants\n    limitPerSecond: 100\n"
+                + "    match:\n      attributes:\n        tenant:\n          anyOf:\n");
+        for (int i = 0; i < values; i++) {
+            allowList.add("tenant-" + i);
+            yaml.append("            - tenant-").append(i).append('\n');
+        }
+        matcher = PolicyCompiler.fromYaml(new ByteArrayInputStream(yaml.toString().getBytes(StandardCharsets.UTF_8)))
+                .policies().get(0).matcher();
+        Random random = new Random(123456L);
+        requests = new PolicyContext[1024];
+        for (int i = 0; i < requests.length; i++) {
+            String tenant = i % 2 == 0 ? "tenant-" + random.nextInt(values) : "guest-" + i;
+            requests[i] = new PolicyContext("10.0.0.1", "/", Map.of("tenant", tenant));
+        }
+    }
+
+    @Benchmark
+    public boolean compiledMatch() {
+        return matcher.matches(requests[cursor++ & (requests.length - 1)]);
+    }
+
+    @Benchmark
+    public boolean listContains() {
+        return allowList.contains(requests[cursor++ & (requests.length - 1)].attribute("tenant"));
+    }
+}
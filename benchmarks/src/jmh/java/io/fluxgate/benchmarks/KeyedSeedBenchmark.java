@@ -0,0 +1,87 @@
+package io.fluxgate.benchmarks;
+
+import io.fluxgate.core.tierB.CountMinLogSketch;
+import io.fluxgate.core.tierB.RowIndexer;
+import io.fluxgate.core.tierB.SketchSeeds;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that keyed row mixing with per-instance secret seeds costs no throughput compared to
+ * the former fixed-seed, single-key finalizer. {@code legacyIndex} reproduces the old index
+ * function inline as the baseline for {@code keyedIndex}; {@code sketchIncrement} covers the
+ * full Tier-B update path.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KeyedSeedBenchmark {
+
+    @Param({"4"})
+    private int depth;
+
+    @Param({"65536"})
+    private int width;
+
+    private long[] legacySeeds;
+    private RowIndexer keyed;
+    private CountMinLogSketch sketch;
+    private long[] keys;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random legacy = new Random(42L);
+        legacySeeds = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            legacySeeds[i] = legacy.nextLong();
+        }
+        long[] seeds = SketchSeeds.random(depth);
+        keyed = RowIndexer.scalar(seeds, width);
+        sketch = new CountMinLogSketch(depth, width, Duration.ofSeconds(10), seeds);
+        Random random = new Random(123456L);
+        keys = new long[1024];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+        }
+    }
+
+    @Benchmark
+    public long legacyIndex() {
+        long key = keys[cursor++ & (keys.length - 1)];
+        long sum = 0L;
+        for (int row = 0; row < depth; row++) {
+            long hash = key ^ legacySeeds[row];
+            hash ^= (hash >>> 33);
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= (hash >>> 33);
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= (hash >>> 33);
+            sum += (int) hash & (width - 1);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long keyedIndex() {
+        long key = keys[cursor++ & (keys.length - 1)];
+        long sum = 0L;
+        for (int row = 0; row < depth; row++) {
+            sum += keyed.index(key, row);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long sketchIncrement() {
+        long key = keys[cursor++ & (keys.length - 1)];
+        sketch.increment(key, 0L);
+        return sketch.estimate(key);
+    }
+}
@@ -0,0 +1,94 @@
+package io.fluxgate.benchmarks;
+
+import io.fluxgate.core.policy.CompiledPolicySet;
+import io.fluxgate.core.policy.MatcherBackend;
+import io.fluxgate.core.policy.PolicyCompiler;
+import io.fluxgate.core.policy.PolicyContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the closure and hidden-class matcher backends on policies whose matchers nest
+ * {@code any}, {@code all} and {@code not} {@code depth} levels deep. The nesting hides every
+ * constraint from the policy index, so each lookup evaluates the matchers of all policies up
+ * to the first match and the cost is dominated by walking the trees.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MatcherBackendBenchmark {
+
+    private static final int POLICIES = 64;
+    private static final String[] TIERS = {"gold", "silver", "bronze", "tin"};
+
+    @Param({"2", "4", "8"})
+    private int depth;
+
+    @Param({"CLOSURES", "HIDDEN_CLASSES"})
+    private MatcherBackend backend;
+
+    private CompiledPolicySet set;
+    private PolicyContext[] requests;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder yaml = new StringBuilder("policies:\n");
+        for (int i = 0; i < POLICIES; i++) {
+            yaml.append("  - id: p").append(i).append('\n')
+                    .append("    limitPerSecond: 100\n")
+                    .append("    match: ");
+            node(yaml, depth, i);
+            yaml.append('\n');
+        }
+        set = PolicyCompiler.fromYaml(new ByteArrayInputStream(yaml.toString().getBytes(StandardCharsets.UTF_8)),
+                backend);
+        Random random = new Random(42L);
+        requests = new PolicyContext[1024];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = new PolicyContext("10.0.0.1", "/svc" + random.nextInt(POLICIES * 2) + "/orders",
+                    Map.of("tier", TIERS[random.nextInt(TIERS.length)]));
+        }
+    }
+
+    /**
+     * Appends a flow-style matcher: levels cycle through {@code any}, {@code all} and
+     * {@code not}, and every {@code any}/{@code all} pairs the deeper node with a leaf.
+     */
+    private static void node(StringBuilder yaml, int depth, int policy) {
+        if (depth == 0) {
+            yaml.append("{route: /svc").append(policy).append("/*}");
+            return;
+        }
+        switch (depth % 3) {
+            case 0 -> {
+                yaml.append("{any: [");
+                node(yaml, depth - 1, policy);
+                yaml.append(", {attributes: {tier: ").append(TIERS[policy % TIERS.length]).append("}}]}");
+            }
+            case 1 -> {
+                yaml.append("{all: [");
+                node(yaml, depth - 1, policy);
+                yaml.append(", {attribute: {name: tier, noneOf: [tin]}}]}");
+            }
+            default -> {
+                yaml.append("{not: {not: ");
+                node(yaml, depth - 1, policy);
+                yaml.append("}}");
+            }
+        }
+    }
+
+    @Benchmark
+    public Object firstMatch() {
+        return set.firstMatch(requests[cursor++ & (requests.length - 1)]);
+    }
+}
@@ -0,0 +1,99 @@
+package io.fluxgate.benchmarks;
+
+import io.fluxgate.core.policy.CompiledPolicySet;
+import io.fluxgate.core.policy.PolicyArtifact;
+import io.fluxgate.core.policy.PolicyCompiler;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares cold-start loading of a policy set from YAML with loading its precompiled
+ * {@link PolicyArtifact}. Each fork measures a single load, so the figures include class
+ * loading and interpreted execution as a freshly scaled instance would see them. The setup
+ * compiles the artifact in a separate JVM, so neither benchmark finds the policy classes
+ * loaded or warmed by its own fork.
+ */
+@State(Scope.Benchmark)
+@Fork(10)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PolicyArtifactBenchmark {
+
+    private static final String[] TIERS = {"gold", "silver", "bronze"};
+
+    @Param({"100", "1000", "10000"})
+    private int policies;
+
+    private Path yaml;
+    private Path artifact;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkParams params) throws IOException, InterruptedException {
+        StringBuilder text = new StringBuilder("policies:\n");
+        for (int i = 0; i < policies; i++) {
+            text.append("  - id: svc-").append(i).append('\n')
+                    .append("    limitPerSecond: 100\n")
+                    .append("    match:\n")
+                    .append("      route: [/svc").append(i).append("/v1/*, /svc").append(i).append("/v2/**]\n");
+            if (i % 3 == 0) {
+                text.append("      ip: [10.").append(i % 256).append(".0.0/16, \"2001:db8:").append(i % 4096)
+                        .append("::/48\"]\n");
+            }
+            if (i % 2 == 0) {
+                text.append("      attributes:\n        tier: ").append(TIERS[i % TIERS.length]).append('\n');
+            }
+            if (i % 5 == 0) {
+                text.append("      attribute: {name: tenant, noneOf: [t").append(i).append(", t").append(i + 1)
+                        .append("]}\n");
+            }
+        }
+        yaml = Files.createTempFile("fluxgate-policies", ".yml");
+        Files.writeString(yaml, text);
+        if (!params.getBenchmark().endsWith("parseYaml")) {
+            artifact = Files.createTempFile("fluxgate-policies", ".fgp");
+            compileArtifact(yaml, artifact);
+        }
+    }
+
+    /**
+     * Runs the {@link PolicyArtifact} command line in a child JVM. The class is named by
+     * string so that not even a class literal loads it here.
+     */
+    private static void compileArtifact(Path yaml, Path artifact) throws IOException, InterruptedException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "io.fluxgate.core.policy.PolicyArtifact", yaml.toString(), artifact.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        int status = process.waitFor();
+        if (status != 0) {
+            throw new IllegalStateException("Artifact compiler exited with status " + status);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(yaml);
+        if (artifact != null) {
+            Files.deleteIfExists(artifact);
+        }
+    }
+
+    @Benchmark
+    public CompiledPolicySet parseYaml() {
+        return PolicyCompiler.fromYaml(yaml);
+    }
+
+    @Benchmark
+    public CompiledPolicySet loadArtifact() {
+        return PolicyArtifact.load(artifact);
+    }
+}
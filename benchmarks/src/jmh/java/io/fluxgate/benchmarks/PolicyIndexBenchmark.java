@@ -0,0 +1,105 @@
+package io.fluxgate.benchmarks;
+
+import io.fluxgate.core.policy.CompiledPolicySet;
+import io.fluxgate.core.policy.LimitPolicy;
+import io.fluxgate.core.policy.MatchResult;
+import io.fluxgate.core.policy.PolicyCompiler;
+import io.fluxgate.core.policy.PolicyContext;
+import io.fluxgate.core.policy.PolicyDecision;
+import io.fluxgate.core.policy.PolicyDecisionCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compiled policy index against the former linear scan over every matcher as the
+ * policy count grows. Each policy pins one service route and mixes in CIDR and attribute
+ * constraints; requests target random services, so the linear scan visits half the policies
+ * on average while the index cost should stay flat. {@code cachedFirstMatch} serves the same
+ * requests from a warm {@link PolicyDecisionCache}. {@code evaluateDecisions} and
+ * {@code evaluateInto} evaluate every policy, as audit logging does, through the list API and
+ * a reused {@link MatchResult}.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PolicyIndexBenchmark {
+
+    private static final String[] TIERS = {"gold", "silver", "bronze"};
+
+    @Param({"10", "100", "1000", "10000"})
+    private int policies;
+
+    private CompiledPolicySet set;
+    private PolicyDecisionCache cache;
+    private List<LimitPolicy> ordered;
+    private final MatchResult result = new MatchResult();
+    private PolicyContext[] requests;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder yaml = new StringBuilder("policies:\n");
+        for (int i = 0; i < policies; i++) {
+            yaml.append("  - id: svc-").append(i).append('\n')
+                    .append("    limitPerSecond: 100\n")
+                    .append("    match:\n")
+                    .append("      route: /svc").append(i).append("/v1/*\n");
+            if (i % 3 == 0) {
+                yaml.append("      ip: 10.").append(i % 256).append(".0.0/16\n");
+            }
+            if (i % 2 == 0) {
+                yaml.append("      attributes:\n        tier: ").append(TIERS[i % TIERS.length]).append('\n');
+            }
+        }
+        set = PolicyCompiler.fromYaml(new ByteArrayInputStream(yaml.toString().getBytes(StandardCharsets.UTF_8)));
+        ordered = set.policies();
+        cache = new PolicyDecisionCache(4096);
+        Random random = new Random(123456L);
+        requests = new PolicyContext[1024];
+        for (int i = 0; i < requests.length; i++) {
+            int service = random.nextInt(policies);
+            requests[i] = new PolicyContext("10." + (service % 256) + ".1.1", "/svc" + service + "/v1/items",
+                    Map.of("tier", TIERS[random.nextInt(TIERS.length)]));
+        }
+    }
+
+    @Benchmark
+    public LimitPolicy indexedFirstMatch() {
+        return set.firstMatch(requests[cursor++ & (requests.length - 1)]).orElse(null);
+    }
+
+    @Benchmark
+    public LimitPolicy cachedFirstMatch() {
+        return cache.firstMatch(set, requests[cursor++ & (requests.length - 1)]);
+    }
+
+    @Benchmark
+    public LimitPolicy linearFirstMatch() {
+        PolicyContext context = requests[cursor++ & (requests.length - 1)];
+        for (LimitPolicy policy : ordered) {
+            if (policy.matcher().matches(context)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public List<PolicyDecision> evaluateDecisions() {
+        return set.evaluate(requests[cursor++ & (requests.length - 1)]);
+    }
+
+    @Benchmark
+    public int evaluateInto() {
+        return set.evaluate(requests[cursor++ & (requests.length - 1)], result).count();
+    }
+}
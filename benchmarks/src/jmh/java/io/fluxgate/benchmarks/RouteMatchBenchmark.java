@@ -0,0 +1,144 @@
+package io.fluxgate.benchmarks;
+
+import io.fluxgate.core.policy.PolicyCompiler;
+import io.fluxgate.core.policy.PolicyContext;
+import io.fluxgate.core.policy.PolicyMatcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the flattened, allocation-free route trie behind compiled {@code route} matchers
+ * with {@code legacyMatch}, a copy of the former trie that splits the route into a String
+ * array and recurses through wildcards. Patterns mix literal and '*' segments at every level
+ * so lookups have to backtrack; requests hit, and narrowly miss, routes {@code depth}
+ * segments deep.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RouteMatchBenchmark {
+
+    private static final int PATTERNS = 64;
+
+    @Param({"4", "8", "16"})
+    private int depth;
+
+    private PolicyMatcher matcher;
+    private LegacyRouteTrie legacy;
+    private PolicyContext[] requests;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(123456L);
+        List<String> patterns = new ArrayList<>();
+        StringBuilder yaml = new StringBuilder("policies:\n  - id: routes\n    limitPerSecond: 100\n"
+                + "    match:\n      route:\n");
+        legacy = new LegacyRouteTrie();
+        for (int p = 0; p < PATTERNS; p++) {
+            StringBuilder pattern = new StringBuilder();
+            for (int segment = 0; segment < depth; segment++) {
+                pattern.append('/').append(segment % 3 == 2 ? "*" : "seg" + random.nextInt(8));
+            }
+            patterns.add(pattern.toString());
+            legacy.insert(pattern.toString());
+            yaml.append("        - \"").append(pattern).append("\"\n");
+        }
+        matcher = PolicyCompiler.fromYaml(new ByteArrayInputStream(yaml.toString().getBytes(StandardCharsets.UTF_8)))
+                .policies().get(0).matcher();
+        requests = new PolicyContext[1024];
+        for (int i = 0; i < requests.length; i++) {
+            String route = patterns.get(random.nextInt(PATTERNS)).replace("*", "id" + random.nextInt(1000));
+            if (i % 2 == 1) {
+                // Miss on the last segment so every candidate branch is explored.
+                route = route.substring(0, route.lastIndexOf('/')) + "/missing";
+            }
+            requests[i] = new PolicyContext("10.0.0.1", route, Map.of());
+        }
+    }
+
+    @Benchmark
+    public boolean flattenedMatch() {
+        return matcher.matches(requests[cursor++ & (requests.length - 1)]);
+    }
+
+    @Benchmark
+    public boolean legacyMatch() {
+        return legacy.matches(requests[cursor++ & (requests.length - 1)].route());
+    }
+
+    /**
+     * The route trie as it was before flattening.
+     */
+    private static final class LegacyRouteTrie {
+        private final Node root = new Node();
+
+        void insert(String pattern) {
+            String normalized = normalize(pattern);
+            String[] segments = normalized.isEmpty() ? new String[0] : normalized.split("/");
+            Node node = root;
+            for (String segment : segments) {
+                if (segment.equals("**")) {
+                    node.multiWildcard = true;
+                    node.matchHere = true;
+                    return;
+                }
+                if (segment.equals("*")) {
+                    if (node.singleWildcard == null) {
+                        node.singleWildcard = new Node();
+                    }
+                    node = node.singleWildcard;
+                    continue;
+                }
+                node = node.children.computeIfAbsent(segment, ignored -> new Node());
+            }
+            node.matchHere = true;
+        }
+
+        boolean matches(String route) {
+            String normalized = normalize(route);
+            String[] segments = normalized.isEmpty() ? new String[0] : normalized.split("/");
+            return matches(root, segments, 0);
+        }
+
+        private boolean matches(Node node, String[] segments, int index) {
+            if (node == null) {
+                return false;
+            }
+            if (node.multiWildcard) {
+                return true;
+            }
+            if (index == segments.length) {
+                return node.matchHere;
+            }
+            return matches(node.children.get(segments[index]), segments, index + 1)
+                    || matches(node.singleWildcard, segments, index + 1);
+        }
+
+        private static String normalize(String route) {
+            if (route == null || route.isEmpty() || route.equals("/")) {
+                return "";
+            }
+            String normalized = route.startsWith("/") ? route.substring(1) : route;
+            return normalized.endsWith("/") ? normalized.substring(0, normalized.length() - 1) : normalized;
+        }
+
+        private static final class Node {
+            private final Map<String, Node> children = new HashMap<>();
+            private Node singleWildcard;
+            private boolean multiWildcard;
+            private boolean matchHere;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.fluxgate.benchmarks;
+
+import io.fluxgate.core.tierB.RowIndexer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar per-row hashing loop with the Vector API single-pass index computation
+ * used by the Tier-B sketches. Run with {@code -p impl=scalar,vector -p depth=2,3,4,5,6,7,8}.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RowIndexerBenchmark {
+
+    @Param({"2", "3", "4", "5", "6", "7", "8"})
+    private int depth;
+
+    @Param({"scalar", "vector"})
+    private String impl;
+
+    @Param({"65536"})
+    private int width;
+
+    private RowIndexer indexer;
+    private long[] keys;
+    private long[] out;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(123456L);
+        long[] seeds = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            seeds[i] = random.nextLong();
+        }
+        indexer = "vector".equals(impl) ? RowIndexer.vector(seeds, width) : RowIndexer.scalar(seeds, width);
+        keys = new long[1024];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+        }
+        out = new long[depth];
+    }
+
+    @Benchmark
+    public void allRows(Blackhole blackhole) {
+        long key = keys[cursor++ & (keys.length - 1)];
+        indexer.indexes(key, out);
+        blackhole.consume(out);
+    }
+
+    @Benchmark
+    public long perRowLoop() {
+        long key = keys[cursor++ & (keys.length - 1)];
+        long sum = 0L;
+        for (int row = 0; row < depth; row++) {
+            sum += indexer.index(key, row);
+        }
+        return sum;
+    }
+}
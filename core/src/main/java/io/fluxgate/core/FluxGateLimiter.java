@@ -1,53 +1,96 @@
 package io.fluxgate.core;
 
+import io.fluxgate.core.adaptive.EstimatorSampler;
 import io.fluxgate.core.adaptive.EwmaTrafficEstimator;
 import io.fluxgate.core.adaptive.LimitScaler;
+import io.fluxgate.core.adaptive.PolicyEstimators;
+import io.fluxgate.core.adaptive.TrafficEstimator;
 import io.fluxgate.core.observability.FluxGateMetrics;
 import io.fluxgate.core.observability.FluxGateStats;
 import io.fluxgate.core.policy.CompiledPolicySet;
 import io.fluxgate.core.policy.LimitPolicy;
 import io.fluxgate.core.policy.PolicyCompiler;
+import io.fluxgate.core.policy.PolicySetDiff;
 import io.fluxgate.core.tierA.GcraLimiter;
 import io.fluxgate.core.tierA.HybridHotKeyCache;
 import io.fluxgate.core.tierB.CountMinLogSketch;
-import io.fluxgate.core.tierB.HeavyKeeper;
+import io.fluxgate.core.tierB.CountingSketch;
+import io.fluxgate.core.tierB.SharedCountMinSketch;
+import io.fluxgate.core.tierB.SketchSeeds;
 import io.fluxgate.core.tierB.SliceRotator;
+import io.fluxgate.core.tierB.WindowedHeavyHitters;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * FluxGateLimiter orchestrates Tier A and Tier B flow control. It is intentionally
  * lightweight and exposes a minimal surface that the API module can wrap with richer
  * ergonomics.
  */
-public final class FluxGateLimiter {
+public final class FluxGateLimiter implements AutoCloseable {
 
-    private final HybridHotKeyCache<Long, GcraLimiter> hotCache;
-    private final CountMinLogSketch sketch;
-    private final HeavyKeeper heavyKeeper;
+    private final HybridHotKeyCache<Long, KeyLimiter> hotCache;
+    private final CountingSketch sketch;
+    private final WindowedHeavyHitters heavyHitters;
     private final FluxGateMetrics metrics;
     private final FluxGateStats stats;
-    private final EwmaTrafficEstimator estimator;
+    private final TrafficEstimator estimator;
     private final LimitScaler limitScaler;
     private final Map<String, LimitPolicy> policies;
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private final PolicyEstimators policyEstimators;
     private final SliceRotator rotator;
+    private final EstimatorSampler sampler;
 
     public FluxGateLimiter(Builder builder) {
         this.hotCache = new HybridHotKeyCache<>(builder.shardCapacity);
-        this.sketch = new CountMinLogSketch(builder.sketchDepth, builder.sketchWidth, builder.sliceWindow);
-        this.heavyKeeper = new HeavyKeeper(builder.heavyKeeperCapacity, builder.heavyKeeperDecay);
+        long[] seeds = builder.sketchSecret == null
+                ? SketchSeeds.random(builder.sketchDepth)
+                : SketchSeeds.derive(builder.sketchSecret, builder.sketchDepth);
+        if (builder.sharedSketchFile != null) {
+            // Shared counters age through wall-clock slice epochs; resetting them from every
+            // process on its own schedule would wipe the counts of its neighbours.
+            this.sketch = SharedCountMinSketch.open(builder.sharedSketchFile, builder.sketchDepth,
+                    builder.sketchWidth, builder.sliceWindow, seeds, () -> System.currentTimeMillis() * 1_000_000L);
+            this.rotator = null;
+        } else {
+            this.sketch = new CountMinLogSketch(builder.sketchDepth, builder.sketchWidth, builder.sliceWindow, seeds);
+            this.rotator = new SliceRotator(sketch, builder.rotationPeriod);
+        }
+        this.heavyHitters = new WindowedHeavyHitters(builder.heavyKeeperCapacity, builder.heavyKeeperDecay,
+                builder.heavyHitterSlot, builder.heavyHitterSlots);
         this.metrics = builder.metrics;
         this.stats = builder.stats;
-        this.estimator = builder.estimator;
+        boolean backgroundSampled = builder.samplingInterval != null;
+        Supplier<? extends TrafficEstimator> factory = builder.estimatorFactory != null
+                ? builder.estimatorFactory
+                : backgroundSampled ? EwmaTrafficEstimator::backgroundSampled : EwmaTrafficEstimator::new;
+        Supplier<TrafficEstimator> checked = () -> requireSamplingMode(factory.get(), backgroundSampled);
+        this.estimator = requireSamplingMode(builder.estimator != null ? builder.estimator : factory.get(),
+                backgroundSampled);
         this.limitScaler = builder.limitScaler;
         this.policies = new ConcurrentHashMap<>();
-        builder.policies.forEach(policy -> policies.put(policy.id(), policy));
-        this.rotator = new SliceRotator(sketch, builder.rotationPeriod);
+        this.policyEstimators = new PolicyEstimators(0, checked);
+        builder.policies.forEach(this::registerPolicy);
+        if (backgroundSampled) {
+            this.sampler = new EstimatorSampler(estimator, policyEstimators, builder.samplingInterval, state -> {
+                publishAdaptiveState(state);
+                publishPolicyStates(state.updatedAtNanos());
+            });
+            sampler.start();
+        } else {
+            this.sampler = null;
+        }
     }
 
     public RateLimitOutcome check(long keyHash, Function<Long, LimitPolicy> policySupplier, long nowNanos) {
@@ -57,33 +100,84 @@ public final class FluxGateLimiter {
             return RateLimitOutcome.allow();
         }
 
+        int ordinal = ordinalOf(policy.id());
         EwmaTrafficEstimator.AdaptiveState adaptiveState = estimator.observe(nowNanos);
-        double scaledLimit = limitScaler.scale(policy.limitPerSecond(), adaptiveState);
-        GcraLimiter limiter = hotCache.getOrCompute(keyHash,
-                () -> new GcraLimiter(Duration.ofSeconds(1).toNanos(), scaledLimit, policy.burstTokens()));
-
-        GcraLimiter.Outcome outcome = limiter.tryAcquire(nowNanos);
+        EwmaTrafficEstimator.AdaptiveState policyState = policyEstimators.observe(ordinal, nowNanos);
+        double scaledLimit = limitScaler.scale(policy.limitPerSecond(),
+                scalingState(ordinal, policyState, adaptiveState));
+        KeyLimiter limiter = hotCache.getOrCompute(keyHash, () -> new KeyLimiter(policy,
+                new GcraLimiter(Duration.ofSeconds(1).toNanos(), scaledLimit, policy.burstTokens())));
+        limiter.bind(policy, scaledLimit, nowNanos);
+
+        GcraLimiter.Outcome outcome = limiter.gcra.tryAcquire(nowNanos, limitScaler.pressureFactor(policy));
         if (outcome.allowed()) {
             metrics.recordAllowed();
             stats.onAllowed();
             EwmaTrafficEstimator.AdaptiveState updatedState = estimator.recordLocalPermits(1L, nowNanos);
-            publishAdaptiveState(updatedState);
+            EwmaTrafficEstimator.AdaptiveState updatedPolicyState =
+                    policyEstimators.recordLocalPermits(ordinal, 1L, nowNanos);
+            if (sampler == null) {
+                publishAdaptiveState(updatedState);
+                publishPolicyState(policy, updatedPolicyState);
+            }
             sketch.increment(keyHash, nowNanos);
-            heavyKeeper.offer(keyHash);
-            rotator.rotateIfNeeded(nowNanos);
+            heavyHitters.offer(keyHash, nowNanos);
+            if (rotator != null) {
+                rotator.rotateIfNeeded(nowNanos);
+            }
             return RateLimitOutcome.allow();
         }
 
         metrics.recordBlocked();
         stats.onBlocked();
-        publishAdaptiveState(adaptiveState);
+        if (sampler == null) {
+            publishAdaptiveState(adaptiveState);
+            publishPolicyState(policy, policyState);
+        }
         return RateLimitOutcome.blocked(outcome.retryAfterNanos());
     }
 
     public void registerPolicy(LimitPolicy policy) {
+        ordinalOf(policy.id());
         policies.put(policy.id(), policy);
     }
 
+    /**
+     * Replaces the registered policies with {@code next}, e.g. after a policy file reload,
+     * and returns what changed. Nothing is reset: Tier B, the heavy hitters and the
+     * estimators of retained policies keep their counts. Ordinals are renumbered to the order
+     * of {@code next}, as a node freshly started on the same set would number them, and each
+     * estimator moves with its policy; removed and ad-hoc policies follow after them.
+     * Cached limiters are migrated lazily, on the next request for their key: a limiter whose
+     * policy kept its limits is reused as is, and one whose limits changed is reconfigured
+     * with its consumed permits carried over, so a reload never hands out a fresh burst.
+     */
+    public synchronized PolicySetDiff updatePolicies(Collection<LimitPolicy> next) {
+        PolicySetDiff diff = PolicySetDiff.between(List.copyOf(policies.values()), next);
+        renumber(next);
+        next.forEach(this::registerPolicy);
+        diff.removed().forEach(policies::remove);
+        return diff;
+    }
+
+    /**
+     * Returns the ordinal of the policy id, assigning the next free one on first use.
+     * Policies passed to the builder or to {@link #updatePolicies} are numbered in their
+     * compiled order, so every node running the same policy set agrees on the ordinals
+     * exchanged through gossip, whether it was started on the set or reloaded into it.
+     */
+    public int policyOrdinal(String policyId) {
+        return ordinalOf(policyId);
+    }
+
+    /**
+     * Returns the per-policy estimators, indexed by {@link #policyOrdinal(String)}, for use
+     * with {@link io.fluxgate.core.gossip.GossipNode.Builder#withPolicyEstimators}.
+     */
+    public PolicyEstimators policyEstimators() {
+        return policyEstimators;
+    }
+
     public Collection<LimitPolicy> policies() {
         return policies.values();
     }
@@ -96,6 +190,19 @@ public final class FluxGateLimiter {
         return stats;
     }
 
+    /**
+     * Returns the windowed heavy-hitter tracker fed by allowed requests, for use with
+     * {@link io.fluxgate.core.observability.HeatmapReporter}.
+     */
+    public WindowedHeavyHitters heavyHitters() {
+        return heavyHitters;
+    }
+
+    /**
+     * Ingests the instance-wide cluster QPS. It scales the limits of every policy that has
+     * not received a per-policy rate through {@link #ingestClusterQps(String, double, long)}
+     * or a {@link io.fluxgate.core.gossip.GossipNode} built with {@code withPolicyEstimators}.
+     */
     public void ingestClusterQps(double clusterQps, long nowNanos) {
         EwmaTrafficEstimator.AdaptiveState state = estimator.ingestClusterEstimate(clusterQps, nowNanos);
         publishAdaptiveState(state);
@@ -105,9 +212,130 @@ public final class FluxGateLimiter {
         return estimator.observe(nowNanos);
     }
 
+    /**
+     * Ingests the cluster-wide QPS of a single policy; only that policy's share is affected.
+     */
+    public EwmaTrafficEstimator.AdaptiveState ingestClusterQps(String policyId, double clusterQps, long nowNanos) {
+        EwmaTrafficEstimator.AdaptiveState state =
+                policyEstimators.ingestClusterEstimate(ordinalOf(policyId), clusterQps, nowNanos);
+        LimitPolicy policy = policies.get(policyId);
+        if (policy != null) {
+            publishPolicyState(policy, state);
+        }
+        return state;
+    }
+
+    /**
+     * Returns the adaptive state that scales the limit of the given policy: its own once it
+     * has received a cluster rate, the instance-wide state until then.
+     */
+    public EwmaTrafficEstimator.AdaptiveState adaptiveState(String policyId, long nowNanos) {
+        int ordinal = ordinalOf(policyId);
+        EwmaTrafficEstimator.AdaptiveState policyState = policyEstimators.observe(ordinal, nowNanos);
+        return policyEstimators.hasClusterInput(ordinal) ? policyState : estimator.observe(nowNanos);
+    }
+
+    /**
+     * Runs one sampling pass of the background-sampled estimators on the calling thread, in
+     * addition to the scheduled ones. Without {@link Builder#withBackgroundSampling(Duration)}
+     * this only returns the current state.
+     */
+    public EwmaTrafficEstimator.AdaptiveState sampleAdaptiveState(long nowNanos) {
+        return sampler != null ? sampler.sample(nowNanos) : estimator.observe(nowNanos);
+    }
+
+    /**
+     * Stops the background sampler and closes the shared sketch, if either was configured.
+     */
+    @Override
+    public void close() {
+        if (sampler != null) {
+            sampler.close();
+        }
+        if (sketch instanceof SharedCountMinSketch shared) {
+            try {
+                shared.close();
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to close shared sketch", e);
+            }
+        }
+    }
+
+    // A policy without per-policy cluster rates would otherwise scale as if this node were
+    // alone, so it keeps using the instance-wide share fed by ingestClusterQps or gossip.
+    private EwmaTrafficEstimator.AdaptiveState scalingState(int ordinal, EwmaTrafficEstimator.AdaptiveState policy,
+                                                            EwmaTrafficEstimator.AdaptiveState instance) {
+        return policyEstimators.hasClusterInput(ordinal) ? policy : instance;
+    }
+
+    private int ordinalOf(String policyId) {
+        Integer ordinal = ordinals.get(policyId);
+        return ordinal != null ? ordinal : assignOrdinal(policyId);
+    }
+
+    private void renumber(Collection<LimitPolicy> next) {
+        Map<String, Integer> renumbered = new LinkedHashMap<>();
+        for (LimitPolicy policy : next) {
+            renumbered.putIfAbsent(policy.id(), renumbered.size());
+        }
+        ordinals.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .forEach(entry -> renumbered.putIfAbsent(entry.getKey(), renumbered.size()));
+        int[] previous = new int[renumbered.size()];
+        int ordinal = 0;
+        for (String policyId : renumbered.keySet()) {
+            previous[ordinal++] = ordinals.getOrDefault(policyId, -1);
+        }
+        // A request racing the reload may pair an old ordinal with the moved estimators and
+        // scale one limit from another policy's state, which the next request corrects.
+        policyEstimators.reorder(previous);
+        ordinals.putAll(renumbered);
+    }
+
+    private synchronized int assignOrdinal(String policyId) {
+        Integer existing = ordinals.get(policyId);
+        if (existing != null) {
+            return existing;
+        }
+        int ordinal = ordinals.size();
+        policyEstimators.ensureCapacity(ordinal + 1);
+        ordinals.put(policyId, ordinal);
+        return ordinal;
+    }
+
+    private static TrafficEstimator requireSamplingMode(TrafficEstimator estimator, boolean backgroundSampled) {
+        Objects.requireNonNull(estimator, "estimator");
+        if (estimator.isBackgroundSampled() != backgroundSampled) {
+            throw new IllegalArgumentException(backgroundSampled
+                    ? "withBackgroundSampling requires a background-sampled estimator"
+                    : "Background-sampled estimators require withBackgroundSampling");
+        }
+        return estimator;
+    }
+
     private void publishAdaptiveState(EwmaTrafficEstimator.AdaptiveState state) {
-        metrics.recordAdaptiveState(state);
-        stats.onAdaptiveUpdate(state);
+        EwmaTrafficEstimator.AdaptiveState published = state.withPressureFactor(limitScaler.pressureFactor());
+        metrics.recordAdaptiveState(published);
+        stats.onAdaptiveUpdate(published);
+    }
+
+    private void publishPolicyState(LimitPolicy policy, EwmaTrafficEstimator.AdaptiveState state) {
+        EwmaTrafficEstimator.AdaptiveState published = state.withPressureFactor(limitScaler.pressureFactor(policy));
+        metrics.recordPolicyAdaptiveState(policy.id(), published);
+        stats.onPolicyAdaptiveUpdate(policy.id(), published);
+    }
+
+    /**
+     * Publishes the state of every registered policy, which picks up per-policy cluster rates
+     * that gossip fed straight into the estimators.
+     */
+    private void publishPolicyStates(long nowNanos) {
+        for (LimitPolicy policy : policies.values()) {
+            Integer ordinal = ordinals.get(policy.id());
+            if (ordinal != null) {
+                publishPolicyState(policy, policyEstimators.observe(ordinal, nowNanos));
+            }
+        }
     }
 
     /**
@@ -126,6 +354,43 @@ public final class FluxGateLimiter {
         return sketch.estimate(keyHash);
     }
 
+    /**
+     * Encodes the Tier-B sketch for exchange with peers. The payload can be rebuilt with
+     * {@link CountMinLogSketch#fromSnapshot(byte[])} and merged into a cluster-wide view.
+     */
+    public byte[] sketchSnapshot(long nowNanos) {
+        return sketch.snapshot(nowNanos);
+    }
+
+    /**
+     * Tier A limiter of one key, together with the policy it currently enforces.
+     */
+    private static final class KeyLimiter {
+
+        private final GcraLimiter gcra;
+        private volatile LimitPolicy policy;
+
+        KeyLimiter(LimitPolicy policy, GcraLimiter gcra) {
+            this.policy = policy;
+            this.gcra = gcra;
+        }
+
+        /**
+         * Moves the limiter to {@code next} if the key's policy was reloaded or the key now
+         * matches a different policy, keeping its state unless the limits differ.
+         */
+        void bind(LimitPolicy next, double scaledLimit, long nowNanos) {
+            LimitPolicy current = policy;
+            if (current == next) {
+                return;
+            }
+            if (!PolicySetDiff.sameLimits(current, next)) {
+                gcra.reconfigure(scaledLimit, next.burstTokens(), nowNanos);
+            }
+            policy = next;
+        }
+    }
+
     public record RateLimitOutcome(boolean allowed, long retryAfterNanos) {
         public static RateLimitOutcome allow() {
             return new RateLimitOutcome(true, 0);
@@ -146,11 +411,17 @@ public final class FluxGateLimiter {
         private int sketchWidth = 1 << 16;
         private Duration rotationPeriod = Duration.ofSeconds(1);
         private Duration sliceWindow = Duration.ofSeconds(10);
+        private Path sharedSketchFile;
+        private Long sketchSecret;
         private int heavyKeeperCapacity = 1024;
         private double heavyKeeperDecay = 0.9d;
+        private Duration heavyHitterSlot = Duration.ofSeconds(10);
+        private int heavyHitterSlots = 30;
         private FluxGateMetrics metrics = FluxGateMetrics.noop();
         private FluxGateStats stats = new FluxGateStats();
-        private EwmaTrafficEstimator estimator = new EwmaTrafficEstimator();
+        private TrafficEstimator estimator;
+        private Supplier<? extends TrafficEstimator> estimatorFactory;
+        private Duration samplingInterval;
         private LimitScaler limitScaler = new LimitScaler();
         private Collection<LimitPolicy> policies = PolicyCompiler.defaults().policies();
 
@@ -175,6 +446,34 @@ public final class FluxGateLimiter {
             return this;
         }
 
+        /**
+         * Derives the Tier-B row seeds from a cluster secret instead of drawing them at random,
+         * so that nodes configured with the same secret can merge each other's
+         * {@link FluxGateLimiter#sketchSnapshot(long)} payloads. Keep the secret private: it
+         * determines which keys collide.
+         */
+        public Builder withSketchSecret(long secret) {
+            this.sketchSecret = secret;
+            return this;
+        }
+
+        /**
+         * Backs Tier B with a memory-mapped sketch shared by every process that opens the same
+         * file, e.g. {@link SharedCountMinSketch#defaultPath(String)}. Counts then age with the
+         * slice window only; the rotation period no longer applies to Tier B.
+         */
+        public Builder withSharedSketch(Path file) {
+            this.sharedSketchFile = Objects.requireNonNull(file, "file");
+            return this;
+        }
+
+        public Builder withHeavyHitters(int capacity, Duration slotPeriod, int slots) {
+            this.heavyKeeperCapacity = capacity;
+            this.heavyHitterSlot = slotPeriod;
+            this.heavyHitterSlots = slots;
+            return this;
+        }
+
         public Builder withPolicies(Collection<LimitPolicy> policies) {
             this.policies = policies;
             return this;
@@ -195,11 +494,42 @@ public final class FluxGateLimiter {
             return this;
         }
 
-        public Builder withEstimator(EwmaTrafficEstimator estimator) {
+        /**
+         * Estimator of the instance-wide adaptive state, which is published to the metrics and
+         * stats. Policy limits are scaled by per-policy estimators; choose their type with
+         * {@link #withEstimatorFactory(Supplier)}.
+         */
+        public Builder withEstimator(TrafficEstimator estimator) {
             this.estimator = estimator;
             return this;
         }
 
+        /**
+         * Creates the estimator that scales each policy's limit, and the instance-wide one
+         * unless {@link #withEstimator(TrafficEstimator)} is set. Every call must return a new
+         * instance. Defaults to {@link EwmaTrafficEstimator}.
+         */
+        public Builder withEstimatorFactory(Supplier<? extends TrafficEstimator> estimatorFactory) {
+            this.estimatorFactory = Objects.requireNonNull(estimatorFactory, "estimatorFactory");
+            return this;
+        }
+
+        /**
+         * Folds traffic samples and publishes the adaptive state from a maintenance thread every
+         * {@code interval} instead of on the request path. Allowed requests then only
+         * increment a counter, and the state they read can lag by one interval. Close the
+         * limiter to stop the thread.
+         */
+        public Builder withBackgroundSampling(Duration interval) {
+            this.samplingInterval = Objects.requireNonNull(interval, "interval");
+            return this;
+        }
+
+        /**
+         * Scaler applied to every policy. Construct it with a {@link
+         * io.fluxgate.core.adaptive.JvmPressureMonitor} to shed load while the JVM is under
+         * pressure; the factor is then published with the adaptive state.
+         */
         public Builder withLimitScaler(LimitScaler limitScaler) {
             this.limitScaler = limitScaler;
             return this;
@@ -0,0 +1,38 @@
+package io.fluxgate.core.adaptive;
+
+final class AimdLimitAlgorithm implements LimitAlgorithm {
+
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private double samplesSinceBackoff = Double.MAX_VALUE;
+
+    AimdLimitAlgorithm(long latencyThresholdNanos, double backoffRatio) {
+        if (latencyThresholdNanos <= 0) {
+            throw new IllegalArgumentException("latencyThreshold must be positive");
+        }
+        if (!(backoffRatio > 0d && backoffRatio < 1d)) {
+            throw new IllegalArgumentException("backoffRatio must be between 0 and 1 (exclusive)");
+        }
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.backoffRatio = backoffRatio;
+    }
+
+    @Override
+    public double update(double limit, long rttNanos, int inFlight, boolean dropped) {
+        samplesSinceBackoff++;
+        if (dropped || rttNanos > latencyThresholdNanos) {
+            // A full window of requests completes per round trip; back off once per window
+            // rather than once per slow response in it.
+            if (samplesSinceBackoff < limit) {
+                return limit;
+            }
+            samplesSinceBackoff = 0;
+            return limit * backoffRatio;
+        }
+        // Grow by one per window, and only while the limit is actually constraining traffic.
+        if (inFlight * 2 >= limit) {
+            return limit + 1d / limit;
+        }
+        return limit;
+    }
+}
@@ -0,0 +1,141 @@
+package io.fluxgate.core.adaptive;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency-driven limit on concurrent requests. Rate limits cap arrivals, but when a backend
+ * slows down at constant QPS the number of requests waiting on it still grows; this limiter
+ * bounds that number and adapts the bound from observed round-trip times through a
+ * {@link LimitAlgorithm}.
+ *
+ * <p>The in-flight counter is a CAS loop against the current limit, so {@link #acquire()} never
+ * blocks. Limit updates are claimed with a single flag: a sample that arrives while another
+ * thread is updating is dropped rather than queued, which keeps {@link #release(long)}
+ * wait-free apart from the counter and allocation-free.
+ */
+public final class ConcurrencyLimiter {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean updating = new AtomicBoolean();
+    private final LimitAlgorithm algorithm;
+    private final int minLimit;
+    private final int maxLimit;
+    private double estimatedLimit;
+    private volatile int limit;
+
+    private ConcurrencyLimiter(Builder builder) {
+        if (builder.minLimit < 1 || builder.maxLimit < builder.minLimit) {
+            throw new IllegalArgumentException("limits must satisfy 1 <= minLimit <= maxLimit");
+        }
+        this.algorithm = Objects.requireNonNull(builder.algorithm, "algorithm");
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.estimatedLimit = clamp(builder.initialLimit);
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * Claims a slot for one request.
+     *
+     * @return {@code false} if the limit is reached; the caller should shed the request and
+     *         must not call {@link #release(long)}
+     */
+    public boolean acquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of a successful request and feeds its latency to the algorithm.
+     */
+    public void release(long latencyNanos) {
+        release(latencyNanos, false);
+    }
+
+    /**
+     * Returns the slot of a request that failed or timed out, which the algorithm treats as
+     * a congestion signal.
+     */
+    public void releaseDropped(long latencyNanos) {
+        release(latencyNanos, true);
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private void release(long latencyNanos, boolean dropped) {
+        int observed = inFlight.getAndDecrement();
+        if (!updating.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            estimatedLimit = clamp(algorithm.update(estimatedLimit, latencyNanos, observed, dropped));
+            limit = (int) estimatedLimit;
+        } finally {
+            updating.set(false);
+        }
+    }
+
+    private double clamp(double value) {
+        if (Double.isNaN(value)) {
+            return minLimit;
+        }
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 1_000;
+        private LimitAlgorithm algorithm;
+
+        public Builder withInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        public Builder withLimitRange(int minLimit, int maxLimit) {
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        public Builder withAlgorithm(LimitAlgorithm algorithm) {
+            this.algorithm = algorithm;
+            return this;
+        }
+
+        public ConcurrencyLimiter build() {
+            if (algorithm == null) {
+                algorithm = LimitAlgorithm.gradient(1.5d, 0.2d, 30);
+            }
+            return new ConcurrencyLimiter(this);
+        }
+    }
+
+    /**
+     * AIMD limiter that backs off once a request is slower than {@code latencyThreshold}.
+     */
+    public static ConcurrencyLimiter aimd(Duration latencyThreshold) {
+        return builder().withAlgorithm(LimitAlgorithm.aimd(latencyThreshold, 0.9d)).build();
+    }
+}
@@ -0,0 +1,65 @@
+package io.fluxgate.core.adaptive;
+
+import java.util.Objects;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Discrete-step simulation of a backend behind a {@link ConcurrencyLimiter}. Each step, clients
+ * with unbounded demand acquire as many slots as the limiter grants, and every granted request
+ * completes with the latency the synthetic curve assigns to that level of concurrency. Use it
+ * to see where a {@link LimitAlgorithm} and limit range settle before rolling them out.
+ */
+public final class ConcurrencyLimiterSimulation {
+
+    private final ConcurrencyLimiter limiter;
+    private final int demand;
+
+    /**
+     * @param demand the most requests clients try to start per step
+     */
+    public ConcurrencyLimiterSimulation(ConcurrencyLimiter limiter, int demand) {
+        if (demand <= 0) {
+            throw new IllegalArgumentException("demand must be positive");
+        }
+        this.limiter = Objects.requireNonNull(limiter, "limiter");
+        this.demand = demand;
+    }
+
+    /**
+     * Latency curve of a server that handles {@code capacity} requests in parallel at
+     * {@code baseNanos} and queues the rest.
+     */
+    public static IntToLongFunction queueing(int capacity, long baseNanos) {
+        if (capacity <= 0 || baseNanos <= 0) {
+            throw new IllegalArgumentException("capacity and baseNanos must be positive");
+        }
+        return inFlight -> inFlight <= capacity ? baseNanos : baseNanos * inFlight / capacity;
+    }
+
+    /**
+     * Runs {@code steps} rounds against the latency curve and returns the average limit over
+     * the last quarter of the run.
+     */
+    public double run(int steps, IntToLongFunction latencyCurve) {
+        if (steps < 4) {
+            throw new IllegalArgumentException("steps must be at least 4");
+        }
+        double tail = 0d;
+        int tailSteps = 0;
+        for (int step = 0; step < steps; step++) {
+            int granted = 0;
+            while (granted < demand && limiter.acquire()) {
+                granted++;
+            }
+            long latency = latencyCurve.applyAsLong(granted);
+            for (int i = 0; i < granted; i++) {
+                limiter.release(latency);
+            }
+            if (step >= steps - steps / 4) {
+                tail += limiter.limit();
+                tailSteps++;
+            }
+        }
+        return tail / tailSteps;
+    }
+}
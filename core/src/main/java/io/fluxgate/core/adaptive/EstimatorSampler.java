@@ -0,0 +1,74 @@
+package io.fluxgate.core.adaptive;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Maintenance thread that samples background-sampled estimators at a fixed interval and
+ * publishes the resulting snapshot. Moving the EWMA fold, the snapshot allocation and the
+ * metrics publication here leaves the request path with a counter increment and a volatile
+ * read, at the cost of the state lagging by up to one interval.
+ */
+public final class EstimatorSampler implements AutoCloseable {
+
+    private final TrafficEstimator estimator;
+    private final PolicyEstimators policyEstimators;
+    private final long intervalNanos;
+    private final Consumer<EwmaTrafficEstimator.AdaptiveState> publisher;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param policyEstimators per-policy estimators to sample alongside {@code estimator}, or
+     *                         {@code null}
+     * @param publisher receives the global state after every sample
+     */
+    public EstimatorSampler(TrafficEstimator estimator, PolicyEstimators policyEstimators, Duration interval,
+                            Consumer<EwmaTrafficEstimator.AdaptiveState> publisher) {
+        this.estimator = Objects.requireNonNull(estimator, "estimator");
+        this.policyEstimators = policyEstimators;
+        this.intervalNanos = Objects.requireNonNull(interval, "interval").toNanos();
+        if (intervalNanos <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        this.publisher = Objects.requireNonNull(publisher, "publisher");
+    }
+
+    /**
+     * Runs one sampling pass on the calling thread.
+     */
+    public EwmaTrafficEstimator.AdaptiveState sample(long nowNanos) {
+        EwmaTrafficEstimator.AdaptiveState state = estimator.sample(nowNanos);
+        if (policyEstimators != null) {
+            policyEstimators.sample(nowNanos);
+        }
+        publisher.accept(state);
+        return state;
+    }
+
+    /**
+     * Starts sampling every interval on a daemon thread.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            throw new IllegalStateException("Estimator sampler already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fluxgate-estimator-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> sample(System.nanoTime()), intervalNanos, intervalNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -4,31 +4,61 @@ import java.time.Duration;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.UnaryOperator;
 
 /**
  * Maintains an exponentially weighted moving average of local QPS and a cluster-wide
  * estimate built from optional gossip samples. The estimator is lock-free and safe for
  * concurrent use by the limiter hot-path.
+ *
+ * <p>By default the request path folds samples itself once the sampling interval elapses. An
+ * estimator created with {@link #backgroundSampled()} leaves that to {@link #sample(long)},
+ * typically driven by an {@link EstimatorSampler}: recording permits is then a single
+ * {@link LongAdder} increment and reading the state a single volatile read.
  */
-public final class EwmaTrafficEstimator {
+public final class EwmaTrafficEstimator implements TrafficEstimator {
 
     private static final double ALPHA = 0.2d;
     private static final double MIN_QPS = 1d;
     private static final long SAMPLE_INTERVAL_NANOS = Duration.ofSeconds(1).toNanos();
 
-    private final DoubleAdder pendingPermits = new DoubleAdder();
+    private final LongAdder pendingPermits = new LongAdder();
     private final AtomicLong lastSampleNanos = new AtomicLong();
     private final AtomicReference<AdaptiveState> state =
             new AtomicReference<>(new AdaptiveState(MIN_QPS, MIN_QPS, 0L));
+    private final boolean backgroundSampled;
+
+    public EwmaTrafficEstimator() {
+        this(false);
+    }
+
+    private EwmaTrafficEstimator(boolean backgroundSampled) {
+        this.backgroundSampled = backgroundSampled;
+    }
+
+    /**
+     * Creates an estimator whose samples are only folded by {@link #sample(long)}. The EWMA
+     * weight applies per sample, so sample it at a fixed interval.
+     */
+    public static EwmaTrafficEstimator backgroundSampled() {
+        return new EwmaTrafficEstimator(true);
+    }
+
+    @Override
+    public boolean isBackgroundSampled() {
+        return backgroundSampled;
+    }
 
     /**
      * Returns the current adaptive state after flushing any pending local samples for the
-     * provided timestamp.
+     * provided timestamp. Background-sampled estimators return the last published snapshot.
      */
+    @Override
     public AdaptiveState observe(long nowNanos) {
-        flushSamples(nowNanos);
+        if (!backgroundSampled) {
+            flushSamples(nowNanos, SAMPLE_INTERVAL_NANOS);
+        }
         return state.get();
     }
 
@@ -37,11 +67,24 @@ public final class EwmaTrafficEstimator {
      * EWMA once the sampling window elapses. The updated adaptive state is returned for
      * observability purposes.
      */
+    @Override
     public AdaptiveState recordLocalPermits(long permits, long nowNanos) {
         if (permits > 0) {
             pendingPermits.add(permits);
         }
-        flushSamples(nowNanos);
+        if (!backgroundSampled) {
+            flushSamples(nowNanos, SAMPLE_INTERVAL_NANOS);
+        }
+        return state.get();
+    }
+
+    /**
+     * Folds the permits recorded since the previous sample into the EWMA and publishes the
+     * new snapshot, however little time has passed. Meant for a single maintenance thread.
+     */
+    @Override
+    public AdaptiveState sample(long nowNanos) {
+        flushSamples(nowNanos, 1L);
         return state.get();
     }
 
@@ -49,6 +92,7 @@ public final class EwmaTrafficEstimator {
      * Ingests a gossip supplied cluster-wide QPS estimate. This method is non-blocking and
      * optional – callers that do not participate in gossip can simply avoid invoking it.
      */
+    @Override
     public AdaptiveState ingestClusterEstimate(double clusterQps, long nowNanos) {
         double sanitized = Math.max(MIN_QPS, clusterQps);
         updateState(current -> {
@@ -59,10 +103,10 @@ public final class EwmaTrafficEstimator {
         return state.get();
     }
 
-    private void flushSamples(long nowNanos) {
+    private void flushSamples(long nowNanos, long minIntervalNanos) {
         long last = lastSampleNanos.get();
         long elapsed = nowNanos - last;
-        if (elapsed < SAMPLE_INTERVAL_NANOS) {
+        if (elapsed < minIntervalNanos) {
             return;
         }
         if (!lastSampleNanos.compareAndSet(last, nowNanos)) {
@@ -70,7 +114,7 @@ public final class EwmaTrafficEstimator {
         }
 
         double intervalSeconds = elapsed <= 0 ? 1d : elapsed / 1_000_000_000d;
-        double permits = pendingPermits.sumThenReset();
+        long permits = pendingPermits.sumThenReset();
         double sampledQps = permits / intervalSeconds;
         if (Double.isNaN(sampledQps) || Double.isInfinite(sampledQps)) {
             sampledQps = MIN_QPS;
@@ -110,9 +154,24 @@ public final class EwmaTrafficEstimator {
 
     /**
      * Immutable snapshot of the adaptive state. The share represents the fraction of the
-     * global limit this instance should enforce.
+     * global limit this instance should enforce; the pressure factor is the additional
+     * multiplier applied while the JVM is under pressure, or {@code 1}.
      */
-    public record AdaptiveState(double localQps, double clusterQps, long updatedAtNanos) {
+    public record AdaptiveState(double localQps, double clusterQps, long updatedAtNanos, double pressureFactor) {
+
+        public AdaptiveState(double localQps, double clusterQps, long updatedAtNanos) {
+            this(localQps, clusterQps, updatedAtNanos, 1d);
+        }
+
+        /**
+         * Returns this state with the given pressure factor, or this instance if unchanged.
+         */
+        public AdaptiveState withPressureFactor(double factor) {
+            if (factor == pressureFactor) {
+                return this;
+            }
+            return new AdaptiveState(localQps, clusterQps, updatedAtNanos, factor);
+        }
 
         public double share() {
             double denominator = Math.max(MIN_QPS, clusterQps);
@@ -130,7 +189,8 @@ public final class EwmaTrafficEstimator {
             return Map.of(
                     "localQps", localQps,
                     "clusterQps", clusterQps,
-                    "share", share()
+                    "share", share(),
+                    "pressureFactor", pressureFactor
             );
         }
     }
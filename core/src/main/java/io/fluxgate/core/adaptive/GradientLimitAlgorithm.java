@@ -0,0 +1,97 @@
+package io.fluxgate.core.adaptive;
+
+final class GradientLimitAlgorithm implements LimitAlgorithm {
+
+    private static final double MIN_GRADIENT = 0.5d;
+
+    private final double tolerance;
+    private final double smoothing;
+    private final int probeMultiplier;
+    private long minRttNanos;
+    private int windowsSinceProbe;
+    private boolean discardWindow;
+    private double limitBeforeProbe;
+
+    private long windowRttSum;
+    private long windowMinRtt = Long.MAX_VALUE;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+
+    GradientLimitAlgorithm(double tolerance, double smoothing, int probeMultiplier) {
+        if (!(tolerance >= 1d)) {
+            throw new IllegalArgumentException("tolerance must be at least 1");
+        }
+        if (!(smoothing > 0d && smoothing <= 1d)) {
+            throw new IllegalArgumentException("smoothing must be in (0, 1]");
+        }
+        if (probeMultiplier <= 0) {
+            throw new IllegalArgumentException("probeMultiplier must be positive");
+        }
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.probeMultiplier = probeMultiplier;
+    }
+
+    @Override
+    public double update(double limit, long rttNanos, int inFlight, boolean dropped) {
+        if (rttNanos <= 0) {
+            return limit;
+        }
+        // Aggregate roughly one round trip worth of samples, i.e. one per slot of the limit,
+        // so the limit moves once per RTT instead of once per response.
+        windowRttSum += rttNanos;
+        windowMinRtt = Math.min(windowMinRtt, rttNanos);
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        windowDropped |= dropped;
+        if (++windowSamples < (int) limit) {
+            return limit;
+        }
+        double averageRtt = (double) windowRttSum / windowSamples;
+        long minInWindow = windowMinRtt;
+        int maxInFlight = windowMaxInFlight;
+        boolean droppedInWindow = windowDropped;
+        resetWindow();
+
+        if (discardWindow) {
+            // Responses to requests admitted before the probe still carry its queueing delay.
+            discardWindow = false;
+            return limit;
+        }
+        double current = limit;
+        if (minRttNanos == 0 && limitBeforeProbe > 0d) {
+            // The drained window just relearned the baseline; resume from the pre-probe limit.
+            current = limitBeforeProbe;
+            limitBeforeProbe = 0d;
+        }
+        minRttNanos = minRttNanos == 0 ? minInWindow : Math.min(minRttNanos, minInWindow);
+        if (++windowsSinceProbe >= probeMultiplier) {
+            // Under sustained load every sample includes queueing delay, so the minimum would
+            // only ever ratchet up. Briefly halve the limit to drain the queue and relearn the
+            // no-load RTT.
+            windowsSinceProbe = 0;
+            minRttNanos = 0;
+            discardWindow = true;
+            limitBeforeProbe = current;
+            return current * MIN_GRADIENT;
+        }
+        if (droppedInWindow) {
+            return current * (1d - smoothing * MIN_GRADIENT);
+        }
+        if (maxInFlight * 2 < limit) {
+            // Application-limited: latency says nothing about the headroom above inFlight.
+            return current;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1d, tolerance * minRttNanos / averageRtt));
+        double target = current * gradient + Math.sqrt(current);
+        return current * (1d - smoothing) + target * smoothing;
+    }
+
+    private void resetWindow() {
+        windowRttSum = 0L;
+        windowMinRtt = Long.MAX_VALUE;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+        windowDropped = false;
+    }
+}
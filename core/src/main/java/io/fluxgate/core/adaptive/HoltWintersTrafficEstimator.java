@@ -0,0 +1,242 @@
+package io.fluxgate.core.adaptive;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Forecasting alternative to {@link EwmaTrafficEstimator}. Local QPS is smoothed with additive
+ * Holt-Winters (level, trend and one seasonal component), and the published
+ * {@code localQps} is the highest forecast over the next {@code horizon} intervals. An
+ * instance therefore claims its larger share as a recurring peak begins, instead of one
+ * EWMA time constant after it.
+ *
+ * <p>The seasonal component is a circular buffer with one float per sampling interval of the
+ * season; during the first season the same buffer holds the raw samples used to initialise
+ * it. Each interval costs O(horizon) and the request path only increments a
+ * {@link LongAdder} and reads a volatile snapshot. Folding happens on the first call after an
+ * interval elapses, under the estimator's monitor.
+ */
+public final class HoltWintersTrafficEstimator implements TrafficEstimator {
+
+    private static final double MIN_QPS = 1d;
+    private static final double CLUSTER_ALPHA = 0.2d;
+    private static final int MAX_SEASON_LENGTH = 1 << 20;
+
+    private final long intervalNanos;
+    private final double intervalSeconds;
+    private final int seasonLength;
+    private final double alpha;
+    private final double beta;
+    private final double gamma;
+    private final int horizon;
+    private final float[] seasonal;
+    private final LongAdder pendingPermits = new LongAdder();
+
+    private volatile long lastSampleNanos;
+    private volatile EwmaTrafficEstimator.AdaptiveState state =
+            new EwmaTrafficEstimator.AdaptiveState(MIN_QPS, MIN_QPS, 0L);
+    private volatile boolean started;
+    private long intervals;
+    private double level;
+    private double trend;
+    private double clusterQps = MIN_QPS;
+
+    private HoltWintersTrafficEstimator(Builder builder) {
+        this.intervalNanos = builder.interval.toNanos();
+        if (intervalNanos <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        long length = builder.seasonPeriod.toNanos() / intervalNanos;
+        if (length < 2 || length > MAX_SEASON_LENGTH) {
+            throw new IllegalArgumentException("season period must span between 2 and " + MAX_SEASON_LENGTH
+                    + " intervals");
+        }
+        requireUnitInterval(builder.alpha, "alpha");
+        requireUnitInterval(builder.beta, "beta");
+        requireUnitInterval(builder.gamma, "gamma");
+        if (builder.horizon < 1 || builder.horizon > length) {
+            throw new IllegalArgumentException("horizon must be between 1 and the season length");
+        }
+        this.intervalSeconds = intervalNanos / 1_000_000_000d;
+        this.seasonLength = (int) length;
+        this.alpha = builder.alpha;
+        this.beta = builder.beta;
+        this.gamma = builder.gamma;
+        this.horizon = builder.horizon;
+        this.seasonal = new float[seasonLength];
+    }
+
+    @Override
+    public EwmaTrafficEstimator.AdaptiveState observe(long nowNanos) {
+        // System.nanoTime() may start below zero, so the first call anchors the grid whatever
+        // its distance from the initial lastSampleNanos.
+        if (!started || nowNanos - lastSampleNanos >= intervalNanos) {
+            fold(nowNanos);
+        }
+        return state;
+    }
+
+    @Override
+    public EwmaTrafficEstimator.AdaptiveState recordLocalPermits(long permits, long nowNanos) {
+        if (permits > 0) {
+            pendingPermits.add(permits);
+        }
+        return observe(nowNanos);
+    }
+
+    @Override
+    public synchronized EwmaTrafficEstimator.AdaptiveState ingestClusterEstimate(double clusterQps,
+                                                                                 long nowNanos) {
+        double sanitized = Double.isNaN(clusterQps) ? MIN_QPS : Math.max(MIN_QPS, clusterQps);
+        this.clusterQps = CLUSTER_ALPHA * sanitized + (1 - CLUSTER_ALPHA) * this.clusterQps;
+        publish(state.localQps(), nowNanos);
+        return state;
+    }
+
+    /**
+     * Forecast of the per-second rate {@code steps} intervals after the last folded one.
+     */
+    public synchronized double forecast(int steps) {
+        if (steps < 1) {
+            throw new IllegalArgumentException("steps must be positive");
+        }
+        double seasonalTerm = intervals >= seasonLength
+                ? seasonal[(int) ((intervals + steps - 1) % seasonLength)]
+                : 0d;
+        return level + steps * trend + seasonalTerm;
+    }
+
+    public int seasonLength() {
+        return seasonLength;
+    }
+
+    private synchronized void fold(long nowNanos) {
+        if (!started) {
+            // Anchor the interval grid at the first observation instead of at time zero.
+            started = true;
+            lastSampleNanos = nowNanos;
+            return;
+        }
+        long elapsed = nowNanos - lastSampleNanos;
+        if (elapsed < intervalNanos) {
+            return;
+        }
+        long steps = elapsed / intervalNanos;
+        lastSampleNanos += steps * intervalNanos;
+        double qps = pendingPermits.sumThenReset() / (steps * intervalSeconds);
+        // Replaying more than a season of identical samples after an idle gap adds nothing,
+        // but the interval count still advances so the seasonal phase stays aligned.
+        long replay = Math.min(steps, seasonLength);
+        intervals += steps - replay;
+        for (long i = 0; i < replay; i++) {
+            update(qps);
+        }
+        double local = MIN_QPS;
+        for (int h = 1; h <= horizon; h++) {
+            local = Math.max(local, forecast(h));
+        }
+        publish(Double.isNaN(local) || Double.isInfinite(local) ? MIN_QPS : local, nowNanos);
+    }
+
+    private void update(double sample) {
+        int slot = (int) (intervals % seasonLength);
+        if (intervals < seasonLength) {
+            // Warm-up: Holt's linear method, keeping the raw samples in the seasonal buffer.
+            seasonal[slot] = (float) sample;
+            if (intervals == 0) {
+                level = sample;
+            } else {
+                smoothLevel(sample);
+            }
+            if (slot == seasonLength - 1) {
+                initialiseSeasonal();
+            }
+        } else {
+            double seasonalTerm = seasonal[slot];
+            smoothLevel(sample - seasonalTerm);
+            seasonal[slot] = (float) (gamma * (sample - level) + (1 - gamma) * seasonalTerm);
+        }
+        intervals++;
+    }
+
+    private void smoothLevel(double deseasonalised) {
+        double previous = level;
+        level = alpha * deseasonalised + (1 - alpha) * (level + trend);
+        trend = beta * (level - previous) + (1 - beta) * trend;
+    }
+
+    private void initialiseSeasonal() {
+        double sum = 0d;
+        for (float sample : seasonal) {
+            sum += sample;
+        }
+        double mean = sum / seasonLength;
+        for (int i = 0; i < seasonLength; i++) {
+            seasonal[i] = (float) (seasonal[i] - mean);
+        }
+        // The warm-up level followed the season's shape; restart from the deseasonalised mean.
+        level = mean;
+        trend = 0d;
+    }
+
+    private void publish(double localQps, long nowNanos) {
+        clusterQps = Math.max(clusterQps, localQps);
+        state = new EwmaTrafficEstimator.AdaptiveState(localQps, clusterQps, nowNanos);
+    }
+
+    private static void requireUnitInterval(double value, String name) {
+        if (!(value > 0d && value <= 1d)) {
+            throw new IllegalArgumentException(name + " must be in (0, 1]");
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private Duration interval = Duration.ofSeconds(1);
+        private Duration seasonPeriod = Duration.ofHours(1);
+        private double alpha = 0.2d;
+        private double beta = 0.05d;
+        private double gamma = 0.3d;
+        private int horizon = 1;
+
+        public Builder withInterval(Duration interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * Length of the recurring pattern, e.g. one day. Memory is four bytes per interval of
+         * the period, so use coarser intervals for long periods.
+         */
+        public Builder withSeasonPeriod(Duration seasonPeriod) {
+            this.seasonPeriod = seasonPeriod;
+            return this;
+        }
+
+        /**
+         * Smoothing weights of the level, trend and seasonal components.
+         */
+        public Builder withSmoothing(double alpha, double beta, double gamma) {
+            this.alpha = alpha;
+            this.beta = beta;
+            this.gamma = gamma;
+            return this;
+        }
+
+        /**
+         * Number of intervals to look ahead; the published rate is the highest forecast
+         * within the horizon.
+         */
+        public Builder withHorizon(int horizon) {
+            this.horizon = horizon;
+            return this;
+        }
+
+        public HoltWintersTrafficEstimator build() {
+            return new HoltWintersTrafficEstimator(this);
+        }
+    }
+}
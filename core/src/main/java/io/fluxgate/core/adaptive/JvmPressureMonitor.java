@@ -0,0 +1,264 @@
+package io.fluxgate.core.adaptive;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Turns JVM health into a pressure factor in {@code [minFactor, 1]} that {@link LimitScaler}
+ * multiplies into policy rates. Each poll reads the fraction of wall time spent in GC pauses,
+ * the process CPU load and the allocation rate; every input is mapped linearly from 0 at its
+ * low threshold to 1 at its high threshold, and the worst input sets the pressure.
+ *
+ * <p>The factor drops to its target immediately but recovers by at most {@code recoveryStep}
+ * per poll, so a GC storm that pauses for a poll or two does not let the full rate back in
+ * between collections. Polling runs on a daemon thread; the request path reads one volatile.
+ */
+public final class JvmPressureMonitor implements DoubleSupplier, AutoCloseable {
+
+    private final Probe probe;
+    private final long intervalNanos;
+    private final double gcLow;
+    private final double gcHigh;
+    private final double cpuLow;
+    private final double cpuHigh;
+    private final double allocationLow;
+    private final double allocationHigh;
+    private final double minFactor;
+    private final double recoveryStep;
+    private ScheduledExecutorService scheduler;
+    private Reading previous;
+    private long previousNanos;
+    private volatile double pressure;
+    private volatile double factor = 1d;
+
+    private JvmPressureMonitor(Builder builder) {
+        this.probe = Objects.requireNonNull(builder.probe, "probe");
+        this.intervalNanos = builder.interval.toNanos();
+        if (intervalNanos <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        requireRange(builder.gcLow, builder.gcHigh, "GC");
+        requireRange(builder.cpuLow, builder.cpuHigh, "CPU");
+        requireRange(builder.allocationLow, builder.allocationHigh, "allocation");
+        if (!(builder.minFactor > 0d && builder.minFactor <= 1d)) {
+            throw new IllegalArgumentException("minFactor must be in (0, 1]");
+        }
+        if (!(builder.recoveryStep > 0d)) {
+            throw new IllegalArgumentException("recoveryStep must be positive");
+        }
+        this.gcLow = builder.gcLow;
+        this.gcHigh = builder.gcHigh;
+        this.cpuLow = builder.cpuLow;
+        this.cpuHigh = builder.cpuHigh;
+        this.allocationLow = builder.allocationLow;
+        this.allocationHigh = builder.allocationHigh;
+        this.minFactor = builder.minFactor;
+        this.recoveryStep = builder.recoveryStep;
+    }
+
+    /**
+     * Current factor; {@code 1} means no pressure.
+     */
+    public double factor() {
+        return factor;
+    }
+
+    @Override
+    public double getAsDouble() {
+        return factor;
+    }
+
+    /**
+     * Pressure in {@code [0, 1]} measured by the last poll, before recovery damping.
+     */
+    public double pressure() {
+        return pressure;
+    }
+
+    /**
+     * Reads the probe and updates the factor. The first poll only records a baseline.
+     */
+    public synchronized double poll(long nowNanos) {
+        Reading reading = probe.read();
+        Reading last = previous;
+        long elapsed = nowNanos - previousNanos;
+        previous = reading;
+        previousNanos = nowNanos;
+        if (last == null || elapsed <= 0) {
+            return factor;
+        }
+        double seconds = elapsed / 1_000_000_000d;
+        double gcFraction = Math.max(0L, reading.gcPauseNanos() - last.gcPauseNanos()) / (double) elapsed;
+        double allocationRate = Math.max(0L, reading.allocatedBytes() - last.allocatedBytes()) / seconds;
+        double current = Math.max(ramp(gcFraction, gcLow, gcHigh),
+                Math.max(ramp(reading.processCpuLoad(), cpuLow, cpuHigh),
+                        ramp(allocationRate, allocationLow, allocationHigh)));
+        double target = 1d - current * (1d - minFactor);
+        pressure = current;
+        factor = target < factor ? target : Math.min(target, factor + recoveryStep);
+        return factor;
+    }
+
+    /**
+     * Starts polling every interval on a daemon thread.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            throw new IllegalStateException("JVM pressure monitor already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fluxgate-jvm-pressure");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> poll(System.nanoTime()), 0L, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static double ramp(double value, double low, double high) {
+        if (Double.isNaN(value) || value <= low) {
+            return 0d;
+        }
+        if (value >= high) {
+            return 1d;
+        }
+        return (value - low) / (high - low);
+    }
+
+    private static void requireRange(double low, double high, String input) {
+        if (!(low >= 0d && high > low)) {
+            throw new IllegalArgumentException(input + " thresholds must satisfy 0 <= low < high");
+        }
+    }
+
+    /**
+     * Reads the platform MXBeans. Inputs the JVM does not support read as no pressure. The
+     * allocation total only covers live threads, so bytes allocated by threads that exit
+     * between polls are not counted.
+     */
+    public static Probe platformProbe() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return () -> {
+            long gcMillis = 0L;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcMillis += Math.max(0L, gc.getCollectionTime());
+            }
+            double cpu = Double.NaN;
+            if (os instanceof com.sun.management.OperatingSystemMXBean extended) {
+                double load = extended.getProcessCpuLoad();
+                cpu = load < 0d ? Double.NaN : load;
+            }
+            long allocated = 0L;
+            if (threads instanceof com.sun.management.ThreadMXBean extended
+                    && extended.isThreadAllocatedMemorySupported() && extended.isThreadAllocatedMemoryEnabled()) {
+                for (long bytes : extended.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                    allocated += Math.max(0L, bytes);
+                }
+            }
+            return new Reading(TimeUnit.MILLISECONDS.toNanos(gcMillis), cpu, allocated);
+        };
+    }
+
+    /**
+     * Source of the cumulative counters behind each poll.
+     */
+    @FunctionalInterface
+    public interface Probe {
+        Reading read();
+    }
+
+    /**
+     * @param gcPauseNanos cumulative time spent in collections
+     * @param processCpuLoad recent process CPU load in {@code [0, 1]}, or {@code NaN} if unknown
+     * @param allocatedBytes cumulative bytes allocated
+     */
+    public record Reading(long gcPauseNanos, double processCpuLoad, long allocatedBytes) {
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private Probe probe;
+        private Duration interval = Duration.ofSeconds(1);
+        private double gcLow = 0.05d;
+        private double gcHigh = 0.25d;
+        private double cpuLow = 0.80d;
+        private double cpuHigh = 0.95d;
+        private double allocationLow = Double.MAX_VALUE / 2;
+        private double allocationHigh = Double.MAX_VALUE;
+        private double minFactor = 0.2d;
+        private double recoveryStep = 0.1d;
+
+        public Builder withProbe(Probe probe) {
+            this.probe = probe;
+            return this;
+        }
+
+        public Builder withInterval(Duration interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * Fractions of wall time spent in GC pauses between which pressure rises from 0 to 1.
+         */
+        public Builder withGcThresholds(double low, double high) {
+            this.gcLow = low;
+            this.gcHigh = high;
+            return this;
+        }
+
+        /**
+         * Process CPU load between which pressure rises from 0 to 1.
+         */
+        public Builder withCpuThresholds(double low, double high) {
+            this.cpuLow = low;
+            this.cpuHigh = high;
+            return this;
+        }
+
+        /**
+         * Allocation rates, in bytes per second, between which pressure rises from 0 to 1.
+         * Allocation is ignored unless thresholds are set, since a healthy rate depends on
+         * the heap and collector.
+         */
+        public Builder withAllocationThresholds(double lowBytesPerSecond, double highBytesPerSecond) {
+            this.allocationLow = lowBytesPerSecond;
+            this.allocationHigh = highBytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Factor applied at full pressure, and how much it may recover per poll.
+         */
+        public Builder withShedding(double minFactor, double recoveryStep) {
+            this.minFactor = minFactor;
+            this.recoveryStep = recoveryStep;
+            return this;
+        }
+
+        public JvmPressureMonitor build() {
+            if (probe == null) {
+                probe = platformProbe();
+            }
+            return new JvmPressureMonitor(this);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package io.fluxgate.core.adaptive;
+
+import java.time.Duration;
+
+/**
+ * Derives a new concurrency limit from one completed request. {@link ConcurrencyLimiter} calls
+ * {@link #update} from a single thread at a time, so implementations may keep plain mutable
+ * state, but an instance must not be shared between limiters.
+ */
+public interface LimitAlgorithm {
+
+    /**
+     * Returns the next limit.
+     *
+     * @param limit current estimated limit
+     * @param rttNanos round-trip time of the completed request
+     * @param inFlight requests in flight when the request completed, itself included
+     * @param dropped whether the request failed or timed out
+     */
+    double update(double limit, long rttNanos, int inFlight, boolean dropped);
+
+    /**
+     * Additive-increase / multiplicative-decrease: grows the limit by one per window of
+     * {@code limit} samples while the limit is in use, and multiplies it by
+     * {@code backoffRatio}, at most once per window, when requests are dropped or slower than
+     * {@code latencyThreshold}.
+     */
+    static LimitAlgorithm aimd(Duration latencyThreshold, double backoffRatio) {
+        return new AimdLimitAlgorithm(latencyThreshold.toNanos(), backoffRatio);
+    }
+
+    /**
+     * Gradient algorithm: once per window of {@code limit} samples, scales the limit by
+     * {@code tolerance * minRtt / averageRtt}, clamped to {@code [0.5, 1]}, adds a queue
+     * allowance of {@code sqrt(limit)}, and blends the result in with {@code smoothing}. Every
+     * {@code probeMultiplier} windows the limit is halved and the minimum RTT relearned, so the
+     * no-load baseline follows the backend.
+     */
+    static LimitAlgorithm gradient(double tolerance, double smoothing, int probeMultiplier) {
+        return new GradientLimitAlgorithm(tolerance, smoothing, probeMultiplier);
+    }
+}
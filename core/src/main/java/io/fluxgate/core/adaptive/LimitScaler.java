@@ -1,9 +1,38 @@
 package io.fluxgate.core.adaptive;
 
+import io.fluxgate.core.policy.LimitPolicy;
+
+import java.util.Collection;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.DoubleSupplier;
 
 public final class LimitScaler {
 
+    private final DoubleSupplier pressureFactor;
+    private final Set<String> sheddablePolicies;
+
+    public LimitScaler() {
+        this(() -> 1d, Set.of());
+    }
+
+    /**
+     * Scaler that additionally sheds every policy's rate by {@code pressureFactor}, typically
+     * a {@link JvmPressureMonitor}.
+     */
+    public LimitScaler(DoubleSupplier pressureFactor) {
+        this(pressureFactor, Set.of());
+    }
+
+    /**
+     * Scaler that sheds only the listed low-priority policies by {@code pressureFactor}; an
+     * empty collection sheds every policy.
+     */
+    public LimitScaler(DoubleSupplier pressureFactor, Collection<String> sheddablePolicyIds) {
+        this.pressureFactor = Objects.requireNonNull(pressureFactor, "pressureFactor");
+        this.sheddablePolicies = Set.copyOf(sheddablePolicyIds);
+    }
+
     public double scale(double globalLimit, EwmaTrafficEstimator.AdaptiveState state) {
         Objects.requireNonNull(state, "state");
         double share = state.share();
@@ -22,4 +51,26 @@ public final class LimitScaler {
         }
         return Math.max(1d, globalLimit * instanceShare);
     }
+
+    /**
+     * Current pressure factor in {@code (0, 1]}, regardless of policy.
+     */
+    public double pressureFactor() {
+        double factor = pressureFactor.getAsDouble();
+        if (Double.isNaN(factor) || factor <= 0d) {
+            return 1d;
+        }
+        return Math.min(1d, factor);
+    }
+
+    /**
+     * Pressure factor to apply to the rate of {@code policy}: the current factor if the policy
+     * may be shed, otherwise {@code 1}.
+     */
+    public double pressureFactor(LimitPolicy policy) {
+        if (!sheddablePolicies.isEmpty() && !sheddablePolicies.contains(policy.id())) {
+            return 1d;
+        }
+        return pressureFactor();
+    }
 }
@@ -0,0 +1,138 @@
+package io.fluxgate.core.adaptive;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * One {@link TrafficEstimator} per policy, {@link EwmaTrafficEstimator} unless a factory is
+ * given, stored in a flat array indexed by the policy's
+ * ordinal in the compiled policy set. Keeping the adaptive state per policy means a surge on
+ * one route only shrinks that route's share. Memory and update cost are O(policies) and do
+ * not depend on how many keys each policy sees.
+ *
+ * <p>The array grows copy-on-write when policies are registered at runtime; lookups on the
+ * request path read a single volatile reference. Each slot also remembers whether its policy
+ * ever received a cluster-wide rate, so callers can tell an estimator that only sees local
+ * traffic from one fed by gossip.
+ */
+public final class PolicyEstimators {
+
+    private final Supplier<? extends TrafficEstimator> factory;
+    private volatile Slot[] slots;
+
+    public PolicyEstimators(int policies) {
+        this(policies, false);
+    }
+
+    /**
+     * @param backgroundSampled create {@link EwmaTrafficEstimator#backgroundSampled()}
+     *                          estimators, folded by {@link #sample(long)}
+     */
+    public PolicyEstimators(int policies, boolean backgroundSampled) {
+        this(policies, backgroundSampled ? EwmaTrafficEstimator::backgroundSampled : EwmaTrafficEstimator::new);
+    }
+
+    /**
+     * @param factory creates the estimator of each policy, e.g. a configured
+     *                {@link HoltWintersTrafficEstimator}; every call must return a new instance
+     */
+    public PolicyEstimators(int policies, Supplier<? extends TrafficEstimator> factory) {
+        if (policies < 0) {
+            throw new IllegalArgumentException("policies must not be negative");
+        }
+        this.factory = Objects.requireNonNull(factory, "factory");
+        Slot[] initial = new Slot[policies];
+        for (int i = 0; i < policies; i++) {
+            initial[i] = newSlot();
+        }
+        this.slots = initial;
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    /**
+     * Grows the array so that ordinals {@code [0, policies)} are valid. Existing estimators
+     * keep their state.
+     */
+    public synchronized void ensureCapacity(int policies) {
+        Slot[] current = slots;
+        if (policies <= current.length) {
+            return;
+        }
+        Slot[] grown = Arrays.copyOf(current, policies);
+        for (int i = current.length; i < policies; i++) {
+            grown[i] = newSlot();
+        }
+        slots = grown;
+    }
+
+    /**
+     * Moves the estimators to new ordinals, e.g. after a policy reload renumbered them: the
+     * estimator at ordinal {@code i} becomes the one previously at {@code previous[i]}, or a
+     * new one where that is {@code -1}. The array is replaced with a single volatile write.
+     */
+    public synchronized void reorder(int[] previous) {
+        Slot[] current = slots;
+        Slot[] reordered = new Slot[previous.length];
+        for (int i = 0; i < previous.length; i++) {
+            if (previous[i] >= current.length) {
+                throw new IllegalArgumentException("No estimator at ordinal " + previous[i]);
+            }
+            reordered[i] = previous[i] < 0 ? newSlot() : current[previous[i]];
+        }
+        slots = reordered;
+    }
+
+    /**
+     * Samples every policy's estimator; see {@link TrafficEstimator#sample(long)}.
+     */
+    public void sample(long nowNanos) {
+        for (Slot slot : slots) {
+            slot.estimator.sample(nowNanos);
+        }
+    }
+
+    public TrafficEstimator estimator(int ordinal) {
+        return slots[ordinal].estimator;
+    }
+
+    /**
+     * Returns whether {@link #ingestClusterEstimate} was ever called for the policy.
+     */
+    public boolean hasClusterInput(int ordinal) {
+        return slots[ordinal].clustered;
+    }
+
+    public EwmaTrafficEstimator.AdaptiveState observe(int ordinal, long nowNanos) {
+        return slots[ordinal].estimator.observe(nowNanos);
+    }
+
+    public EwmaTrafficEstimator.AdaptiveState recordLocalPermits(int ordinal, long permits, long nowNanos) {
+        return slots[ordinal].estimator.recordLocalPermits(permits, nowNanos);
+    }
+
+    public EwmaTrafficEstimator.AdaptiveState ingestClusterEstimate(int ordinal, double clusterQps,
+                                                                    long nowNanos) {
+        Slot slot = slots[ordinal];
+        if (!slot.clustered) {
+            slot.clustered = true;
+        }
+        return slot.estimator.ingestClusterEstimate(clusterQps, nowNanos);
+    }
+
+    private Slot newSlot() {
+        return new Slot(Objects.requireNonNull(factory.get(), "estimator"));
+    }
+
+    private static final class Slot {
+        private final TrafficEstimator estimator;
+        private volatile boolean clustered;
+
+        private Slot(TrafficEstimator estimator) {
+            this.estimator = estimator;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package io.fluxgate.core.adaptive;
+
+/**
+ * Source of the {@link EwmaTrafficEstimator.AdaptiveState} that scales an instance's share of
+ * the global limit. Implementations must be safe for concurrent use by the limiter hot-path.
+ */
+public interface TrafficEstimator {
+
+    /**
+     * Returns the current adaptive state, folding pending samples if the implementation does
+     * so on the request path.
+     */
+    EwmaTrafficEstimator.AdaptiveState observe(long nowNanos);
+
+    /**
+     * Records locally processed permits.
+     */
+    EwmaTrafficEstimator.AdaptiveState recordLocalPermits(long permits, long nowNanos);
+
+    /**
+     * Ingests a cluster-wide QPS estimate, typically supplied by gossip.
+     */
+    EwmaTrafficEstimator.AdaptiveState ingestClusterEstimate(double clusterQps, long nowNanos);
+
+    /**
+     * Whether samples are only folded by {@link #sample(long)} from a maintenance thread.
+     */
+    default boolean isBackgroundSampled() {
+        return false;
+    }
+
+    /**
+     * Folds pending samples regardless of the request path; see {@link EstimatorSampler}.
+     */
+    default EwmaTrafficEstimator.AdaptiveState sample(long nowNanos) {
+        return observe(nowNanos);
+    }
+}
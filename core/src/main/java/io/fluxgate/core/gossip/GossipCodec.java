@@ -0,0 +1,97 @@
+package io.fluxgate.core.gossip;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size datagram layout exchanged by {@link GossipNode}:
+ *
+ * <pre>
+ * int magic | byte version | byte reserved | short entries | long sender | short policies | short reserved
+ * entries x (long nodeId | long version | double localQps | float[policies] policyQps)
+ * </pre>
+ *
+ * Every datagram is padded to {@link #datagramSize(int, int)} so receivers can validate the
+ * length up front and both sides reuse preallocated buffers. Policy rates are indexed by
+ * compiled policy ordinal and carried as floats to keep the vector compact. The policy count
+ * is an unsigned short, but a datagram must also fit in {@link #MAX_DATAGRAM_BYTES}, which
+ * bounds policies times nodes: 800 policies leave room for 20 nodes.
+ */
+final class GossipCodec {
+
+    static final int MAGIC = 0x46474750; // "FGGP"
+    static final byte VERSION = 2;
+    static final int HEADER_BYTES = 20;
+    static final int ENTRY_BYTES = 24;
+    static final int MAX_POLICIES = 0xffff;
+    /**
+     * Largest UDP payload over IPv4.
+     */
+    static final int MAX_DATAGRAM_BYTES = 65_507;
+
+    private GossipCodec() {
+        throw new IllegalStateException("Cannot instantiate " + GossipCodec.class);
+    }
+
+    static int datagramSize(int maxNodes, int policies) {
+        return Math.toIntExact(HEADER_BYTES + (long) maxNodes * entryBytes(policies));
+    }
+
+    static int entryBytes(int policies) {
+        return ENTRY_BYTES + policies * Float.BYTES;
+    }
+
+    static void writeHeader(ByteBuffer out, long sender, int entries, int policies) {
+        out.putInt(0, MAGIC);
+        out.put(4, VERSION);
+        out.put(5, (byte) 0);
+        out.putShort(6, (short) entries);
+        out.putLong(8, sender);
+        out.putShort(16, (short) policies);
+        out.putShort(18, (short) 0);
+    }
+
+    static void writeEntry(ByteBuffer out, int slot, int policies, long nodeId, long version, double localQps) {
+        int offset = HEADER_BYTES + slot * entryBytes(policies);
+        out.putLong(offset, nodeId);
+        out.putLong(offset + 8, version);
+        out.putDouble(offset + 16, localQps);
+    }
+
+    static void writePolicyQps(ByteBuffer out, int slot, int policies, int policy, float qps) {
+        out.putFloat(HEADER_BYTES + slot * entryBytes(policies) + ENTRY_BYTES + policy * Float.BYTES, qps);
+    }
+
+    /**
+     * Returns the number of entries in {@code in}, or {@code -1} if the datagram is not a
+     * well-formed gossip message for a cluster of {@code maxNodes} exchanging
+     * {@code policies} policy rates.
+     */
+    static int readEntryCount(ByteBuffer in, int maxNodes, int policies) {
+        if (in.limit() != datagramSize(maxNodes, policies) || in.getInt(0) != MAGIC || in.get(4) != VERSION
+                || (in.getShort(16) & 0xffff) != policies) {
+            return -1;
+        }
+        int entries = in.getShort(6);
+        return entries < 0 || entries > maxNodes ? -1 : entries;
+    }
+
+    static long sender(ByteBuffer in) {
+        return in.getLong(8);
+    }
+
+    static long nodeId(ByteBuffer in, int slot, int policies) {
+        return in.getLong(HEADER_BYTES + slot * entryBytes(policies));
+    }
+
+    static long version(ByteBuffer in, int slot, int policies) {
+        return in.getLong(HEADER_BYTES + slot * entryBytes(policies) + 8);
+    }
+
+    static double localQps(ByteBuffer in, int slot, int policies) {
+        return in.getDouble(HEADER_BYTES + slot * entryBytes(policies) + 16);
+    }
+
+    static float policyQps(ByteBuffer in, int slot, int policies, int policy) {
+        return in.getFloat(HEADER_BYTES + slot * entryBytes(policies) + ENTRY_BYTES + policy * Float.BYTES);
+    }
+}
@@ -0,0 +1,422 @@
+package io.fluxgate.core.gossip;
+
+import io.fluxgate.core.adaptive.PolicyEstimators;
+import io.fluxgate.core.adaptive.TrafficEstimator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exchanges local QPS between FluxGate instances so that each can feed a cluster-wide rate
+ * into {@link TrafficEstimator#ingestClusterEstimate(double, long)}.
+ *
+ * <p>Every node keeps a version vector: one {@code (nodeId, version, localQps)} entry per
+ * known node. On each {@link #tick(long)} the node bumps its own version with a fresh local
+ * rate, merges the datagrams it received (an entry wins when its version is higher), sends
+ * its whole table to a few random peers, and ingests the sum of all live entries. Entries
+ * whose version has not advanced within the expiry are left out of the sum but kept as
+ * tombstones, so stale gossip cannot resurrect them. Versions start at the node's incarnation
+ * shifted into the high bits, so a node that restarts with the same id outranks the entries
+ * its previous run left behind.
+ *
+ * <p>When configured with {@link PolicyEstimators}, every entry also carries a vector of
+ * per-policy rates indexed by compiled policy ordinal, and the per-policy sums are ingested
+ * into the matching estimators. All nodes must then run the same compiled policy set.
+ *
+ * <p>Datagrams have a fixed size and are encoded into buffers allocated once, so steady-state
+ * gossip does not allocate per message.
+ */
+public final class GossipNode implements AutoCloseable {
+
+    /**
+     * Low version bits left for the per-round counter: a million rounds per incarnation unit,
+     * far more than a node can tick in one millisecond of wall-clock time.
+     */
+    static final int INCARNATION_SHIFT = 20;
+    static final long MAX_INCARNATION = (1L << (Long.SIZE - 1 - INCARNATION_SHIFT)) - 1;
+
+    private final long nodeId;
+    private final GossipTransport transport;
+    private final TrafficEstimator estimator;
+    private final PolicyEstimators policyEstimators;
+    private final int policies;
+    private final int maxNodes;
+    private final int fanout;
+    private final long intervalNanos;
+    private final long expiryNanos;
+    private final ByteBuffer outbound;
+    private final ByteBuffer inbound;
+    private final SplittableRandom random;
+
+    private final long[] ids;
+    private final long[] versions;
+    private final double[] rates;
+    private final long[] advancedAtNanos;
+    private final float[] policyRates;
+    private final double[] policyTotals;
+    private int size;
+    private long version;
+    private long rejectedMessages;
+    private long failedSends;
+    private volatile double clusterQps;
+    private ScheduledExecutorService scheduler;
+
+    private GossipNode(Builder builder) {
+        if (builder.maxNodes < 1 || builder.maxNodes > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("maxNodes must be between 1 and " + Short.MAX_VALUE);
+        }
+        if (builder.fanout < 1) {
+            throw new IllegalArgumentException("fanout must be positive");
+        }
+        this.nodeId = builder.nodeId;
+        this.transport = Objects.requireNonNull(builder.transport, "transport");
+        this.estimator = Objects.requireNonNull(builder.estimator, "estimator");
+        this.policyEstimators = builder.policyEstimators;
+        this.policies = builder.policies;
+        if (policies < 0 || policies > GossipCodec.MAX_POLICIES || (policies > 0 && policyEstimators == null)) {
+            throw new IllegalArgumentException("policies must be between 0 and " + GossipCodec.MAX_POLICIES
+                    + " and requires policy estimators");
+        }
+        if (builder.incarnation < 0 || builder.incarnation > MAX_INCARNATION) {
+            throw new IllegalArgumentException("incarnation must be between 0 and " + MAX_INCARNATION);
+        }
+        this.version = builder.incarnation << INCARNATION_SHIFT;
+        this.maxNodes = builder.maxNodes;
+        this.fanout = builder.fanout;
+        this.intervalNanos = builder.interval.toNanos();
+        this.expiryNanos = builder.expiry.toNanos();
+        if (intervalNanos <= 0 || expiryNanos <= 0) {
+            throw new IllegalArgumentException("interval and expiry must be positive");
+        }
+        long required = GossipCodec.HEADER_BYTES + (long) maxNodes * GossipCodec.entryBytes(policies);
+        if (required > GossipCodec.MAX_DATAGRAM_BYTES) {
+            throw new IllegalArgumentException("Gossip datagrams for " + maxNodes + " nodes and " + policies
+                    + " policies need " + required + " bytes, more than the " + GossipCodec.MAX_DATAGRAM_BYTES
+                    + "-byte UDP limit; lower maxNodes or exchange fewer policies");
+        }
+        int datagramSize = GossipCodec.datagramSize(maxNodes, policies);
+        this.outbound = ByteBuffer.allocateDirect(datagramSize);
+        this.inbound = ByteBuffer.allocateDirect(datagramSize);
+        this.random = new SplittableRandom(nodeId);
+        this.ids = new long[maxNodes];
+        this.versions = new long[maxNodes];
+        this.rates = new double[maxNodes];
+        this.advancedAtNanos = new long[maxNodes];
+        this.policyRates = new float[maxNodes * policies];
+        this.policyTotals = new double[policies];
+        ids[0] = nodeId;
+        size = 1;
+    }
+
+    /**
+     * Runs one gossip round: refreshes the local entry, merges received datagrams, pushes
+     * the table to {@code fanout} random peers and ingests the aggregated cluster rate.
+     *
+     * @return the cluster QPS fed into the estimator
+     */
+    public synchronized double tick(long nowNanos) {
+        version++;
+        versions[0] = version;
+        rates[0] = estimator.observe(nowNanos).localQps();
+        advancedAtNanos[0] = nowNanos;
+        int tracked = policies == 0 ? 0 : Math.min(policies, policyEstimators.size());
+        for (int policy = 0; policy < tracked; policy++) {
+            policyRates[policy] = (float) policyEstimators.observe(policy, nowNanos).localQps();
+        }
+        drain(nowNanos);
+        broadcast();
+        double total = 0d;
+        Arrays.fill(policyTotals, 0d);
+        for (int slot = 0; slot < size; slot++) {
+            if (nowNanos - advancedAtNanos[slot] <= expiryNanos) {
+                total += rates[slot];
+                for (int policy = 0; policy < policies; policy++) {
+                    policyTotals[policy] += policyRates[slot * policies + policy];
+                }
+            }
+        }
+        clusterQps = total;
+        estimator.ingestClusterEstimate(total, nowNanos);
+        for (int policy = 0; policy < tracked; policy++) {
+            policyEstimators.ingestClusterEstimate(policy, policyTotals[policy], nowNanos);
+        }
+        return total;
+    }
+
+    /**
+     * Starts gossiping every interval on a daemon thread.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            throw new IllegalStateException("Gossip node already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fluxgate-gossip-" + Long.toHexString(nodeId));
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> tick(System.nanoTime()), intervalNanos, intervalNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops the background thread, if any, and closes the transport.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+            }
+        }
+        transport.close();
+    }
+
+    public long nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Returns the cluster QPS computed by the most recent {@link #tick(long)}.
+     */
+    public double clusterQps() {
+        return clusterQps;
+    }
+
+    /**
+     * Returns the cluster QPS of the policy with the given ordinal as of the most recent
+     * {@link #tick(long)}.
+     */
+    public synchronized double clusterQps(int policyOrdinal) {
+        return policyTotals[policyOrdinal];
+    }
+
+    /**
+     * Returns the number of nodes, including this one, whose entries are currently live.
+     */
+    public synchronized int liveNodes(long nowNanos) {
+        int live = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (nowNanos - advancedAtNanos[slot] <= expiryNanos) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Returns the number of datagrams dropped because they were malformed, used a different
+     * cluster size, or described more nodes than the table can hold.
+     */
+    public synchronized long rejectedMessages() {
+        return rejectedMessages;
+    }
+
+    public synchronized long failedSends() {
+        return failedSends;
+    }
+
+    private void drain(long nowNanos) {
+        while (true) {
+            inbound.clear();
+            try {
+                if (!transport.receive(inbound)) {
+                    return;
+                }
+            } catch (IOException e) {
+                rejectedMessages++;
+                return;
+            }
+            inbound.flip();
+            int entries = GossipCodec.readEntryCount(inbound, maxNodes, policies);
+            if (entries < 0 || GossipCodec.sender(inbound) == nodeId) {
+                rejectedMessages++;
+                continue;
+            }
+            for (int i = 0; i < entries; i++) {
+                merge(i, nowNanos);
+            }
+        }
+    }
+
+    private void merge(int entry, long nowNanos) {
+        long id = GossipCodec.nodeId(inbound, entry, policies);
+        if (id == nodeId) {
+            return;
+        }
+        int slot = slotOf(id);
+        if (slot < 0) {
+            slot = claimSlot(nowNanos);
+            if (slot < 0) {
+                rejectedMessages++;
+                return;
+            }
+            ids[slot] = id;
+            versions[slot] = Long.MIN_VALUE;
+        }
+        long entryVersion = GossipCodec.version(inbound, entry, policies);
+        if (entryVersion <= versions[slot]) {
+            return;
+        }
+        versions[slot] = entryVersion;
+        rates[slot] = sanitize(GossipCodec.localQps(inbound, entry, policies));
+        advancedAtNanos[slot] = nowNanos;
+        for (int policy = 0; policy < policies; policy++) {
+            policyRates[slot * policies + policy] =
+                    (float) sanitize(GossipCodec.policyQps(inbound, entry, policies, policy));
+        }
+    }
+
+    private int slotOf(long id) {
+        for (int slot = 1; slot < size; slot++) {
+            if (ids[slot] == id) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int claimSlot(long nowNanos) {
+        if (size < maxNodes) {
+            return size++;
+        }
+        int oldest = -1;
+        for (int slot = 1; slot < size; slot++) {
+            if (nowNanos - advancedAtNanos[slot] > expiryNanos
+                    && (oldest < 0 || advancedAtNanos[slot] < advancedAtNanos[oldest])) {
+                oldest = slot;
+            }
+        }
+        return oldest;
+    }
+
+    private void broadcast() {
+        int peers = transport.peerCount();
+        if (peers == 0) {
+            return;
+        }
+        GossipCodec.writeHeader(outbound, nodeId, size, policies);
+        for (int slot = 0; slot < size; slot++) {
+            GossipCodec.writeEntry(outbound, slot, policies, ids[slot], versions[slot], rates[slot]);
+            for (int policy = 0; policy < policies; policy++) {
+                GossipCodec.writePolicyQps(outbound, slot, policies, policy, policyRates[slot * policies + policy]);
+            }
+        }
+        int targets = Math.min(fanout, peers);
+        int first = random.nextInt(peers);
+        for (int i = 0; i < targets; i++) {
+            outbound.clear();
+            try {
+                transport.send((first + i) % peers, outbound);
+            } catch (IOException e) {
+                failedSends++;
+            }
+        }
+    }
+
+    private static double sanitize(double qps) {
+        return Double.isFinite(qps) ? Math.max(0d, qps) : 0d;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private long nodeId;
+        private GossipTransport transport;
+        private TrafficEstimator estimator;
+        private PolicyEstimators policyEstimators;
+        private int policies;
+        private int maxNodes = 32;
+        private int fanout = 2;
+        private Duration interval = Duration.ofMillis(500);
+        private Duration expiry = Duration.ofSeconds(5);
+        private long incarnation = System.currentTimeMillis();
+
+        /**
+         * Identifier unique across the cluster, e.g. a hash of the instance address.
+         */
+        public Builder withNodeId(long nodeId) {
+            this.nodeId = nodeId;
+            return this;
+        }
+
+        /**
+         * Number that grows every time a node with this id starts; defaults to the wall-clock
+         * time in milliseconds at construction. It forms the high bits of the node's versions,
+         * so peers accept a restarted node's entries at once instead of ignoring them until
+         * its counter passes the version its previous run reached.
+         */
+        public Builder withIncarnation(long incarnation) {
+            this.incarnation = incarnation;
+            return this;
+        }
+
+        public Builder withTransport(GossipTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Estimator read for the local rate and fed with the cluster rate; pass the same
+         * instance to {@link io.fluxgate.core.FluxGateLimiter.Builder#withEstimator}.
+         */
+        public Builder withEstimator(TrafficEstimator estimator) {
+            this.estimator = estimator;
+            return this;
+        }
+
+        /**
+         * Also exchanges the rates of the first {@code policies} policy ordinals, e.g.
+         * {@link io.fluxgate.core.FluxGateLimiter#policyEstimators()} with the size of the
+         * compiled policy set. Each policy adds four bytes per node to the datagram, and all
+         * nodes must use the same value. A datagram must fit in one UDP payload of 65,507
+         * bytes, so {@code 24 + 4 * policies} bytes per node times {@code maxNodes} is capped:
+         * 800 policies allow up to 20 nodes. {@link #build()} rejects larger combinations.
+         */
+        public Builder withPolicyEstimators(PolicyEstimators policyEstimators, int policies) {
+            this.policyEstimators = policyEstimators;
+            this.policies = policies;
+            return this;
+        }
+
+        /**
+         * Upper bound on cluster size. It fixes the datagram size, so every node must use the
+         * same value; the default of 32 keeps datagrams under 800 bytes.
+         */
+        public Builder withMaxNodes(int maxNodes) {
+            this.maxNodes = maxNodes;
+            return this;
+        }
+
+        public Builder withFanout(int fanout) {
+            this.fanout = fanout;
+            return this;
+        }
+
+        public Builder withInterval(Duration interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * How long a node may go without a version bump before its rate is left out.
+         */
+        public Builder withExpiry(Duration expiry) {
+            this.expiry = expiry;
+            return this;
+        }
+
+        public GossipNode build() {
+            return new GossipNode(this);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package io.fluxgate.core.gossip;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Datagram transport used by {@link GossipNode}. Implementations deliver whole datagrams on a
+ * best-effort basis: messages may be dropped, duplicated or reordered, which gossip tolerates.
+ * Peers are addressed by index so the node can pick targets without allocating.
+ */
+public interface GossipTransport extends Closeable {
+
+    /**
+     * Returns the number of peers currently reachable through {@link #send(int, ByteBuffer)}.
+     */
+    int peerCount();
+
+    /**
+     * Sends the remaining bytes of {@code datagram} to the peer at {@code peer}.
+     */
+    void send(int peer, ByteBuffer datagram) throws IOException;
+
+    /**
+     * Copies the next pending datagram into {@code datagram} without blocking.
+     *
+     * @return {@code false} if no datagram was pending
+     */
+    boolean receive(ByteBuffer datagram) throws IOException;
+}
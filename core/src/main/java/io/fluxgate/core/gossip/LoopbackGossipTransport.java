@@ -0,0 +1,141 @@
+package io.fluxgate.core.gossip;
+
+import java.nio.ByteBuffer;
+
+/**
+ * In-memory {@link GossipTransport} for tests and single-JVM simulations. Nodes of one
+ * {@link Network} exchange datagrams through bounded mailboxes of preallocated slots; a full
+ * mailbox drops the datagram like a congested socket would.
+ */
+public final class LoopbackGossipTransport implements GossipTransport {
+
+    private final Network network;
+    private final int node;
+
+    private LoopbackGossipTransport(Network network, int node) {
+        this.network = network;
+        this.node = node;
+    }
+
+    @Override
+    public int peerCount() {
+        return network.nodes() - 1;
+    }
+
+    @Override
+    public void send(int peer, ByteBuffer datagram) {
+        if (peer < 0 || peer >= peerCount()) {
+            throw new IndexOutOfBoundsException("peer " + peer + " outside [0, " + peerCount() + ")");
+        }
+        int target = peer < node ? peer : peer + 1;
+        network.deliver(node, target, datagram);
+    }
+
+    @Override
+    public boolean receive(ByteBuffer datagram) {
+        return network.mailboxes[node].poll(datagram);
+    }
+
+    @Override
+    public void close() {
+        network.isolate(node, true);
+    }
+
+    /**
+     * A set of nodes that can all reach each other unless isolated.
+     */
+    public static final class Network {
+
+        private final Mailbox[] mailboxes;
+        private final boolean[] isolated;
+
+        public Network(int nodes, int datagramSize, int queueDepth) {
+            if (nodes < 1 || datagramSize < 1 || queueDepth < 1) {
+                throw new IllegalArgumentException("nodes, datagramSize and queueDepth must be positive");
+            }
+            this.mailboxes = new Mailbox[nodes];
+            this.isolated = new boolean[nodes];
+            for (int i = 0; i < nodes; i++) {
+                mailboxes[i] = new Mailbox(datagramSize, queueDepth);
+            }
+        }
+
+        /**
+         * Creates a network whose datagrams fit gossip messages for {@code maxNodes}.
+         */
+        public static Network forGossip(int nodes, int maxNodes) {
+            return forGossip(nodes, maxNodes, 0);
+        }
+
+        /**
+         * Creates a network whose datagrams fit gossip messages for {@code maxNodes} that
+         * also carry {@code policies} per-policy rates.
+         */
+        public static Network forGossip(int nodes, int maxNodes, int policies) {
+            return new Network(nodes, GossipCodec.datagramSize(maxNodes, policies), 64);
+        }
+
+        public LoopbackGossipTransport transport(int node) {
+            if (node < 0 || node >= mailboxes.length) {
+                throw new IndexOutOfBoundsException("node " + node + " outside [0, " + mailboxes.length + ")");
+            }
+            return new LoopbackGossipTransport(this, node);
+        }
+
+        public int nodes() {
+            return mailboxes.length;
+        }
+
+        /**
+         * Cuts a node off the network, or reconnects it. Datagrams to or from an isolated node
+         * are dropped.
+         */
+        public synchronized void isolate(int node, boolean value) {
+            isolated[node] = value;
+        }
+
+        private void deliver(int from, int to, ByteBuffer datagram) {
+            synchronized (this) {
+                if (isolated[from] || isolated[to]) {
+                    datagram.position(datagram.limit());
+                    return;
+                }
+            }
+            mailboxes[to].offer(datagram);
+        }
+    }
+
+    private static final class Mailbox {
+        private final byte[][] slots;
+        private final int[] lengths;
+        private int head;
+        private int count;
+
+        private Mailbox(int datagramSize, int queueDepth) {
+            this.slots = new byte[queueDepth][datagramSize];
+            this.lengths = new int[queueDepth];
+        }
+
+        synchronized void offer(ByteBuffer datagram) {
+            int length = datagram.remaining();
+            if (count == slots.length || length > slots[0].length) {
+                datagram.position(datagram.limit());
+                return;
+            }
+            int tail = (head + count) % slots.length;
+            datagram.get(slots[tail], 0, length);
+            lengths[tail] = length;
+            count++;
+        }
+
+        synchronized boolean poll(ByteBuffer datagram) {
+            if (count == 0) {
+                return false;
+            }
+            datagram.put(slots[head], 0, Math.min(lengths[head], datagram.remaining()));
+            head = (head + 1) % slots.length;
+            count--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.fluxgate.core.gossip;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+
+/**
+ * {@link GossipTransport} over a non-blocking UDP socket. The peer list can be replaced at
+ * runtime as membership changes; each send goes to one peer, so gossip fan-out stays under
+ * the caller's control.
+ */
+public final class UdpGossipTransport implements GossipTransport {
+
+    private final DatagramChannel channel;
+    private volatile InetSocketAddress[] peers;
+
+    public UdpGossipTransport(InetSocketAddress bindAddress, List<InetSocketAddress> peers) throws IOException {
+        this.channel = DatagramChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.bind(bindAddress);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        peers(peers);
+    }
+
+    /**
+     * Replaces the set of peers that receive gossip.
+     */
+    public void peers(List<InetSocketAddress> peers) {
+        this.peers = peers.toArray(new InetSocketAddress[0]);
+    }
+
+    public InetSocketAddress localAddress() throws IOException {
+        return (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    @Override
+    public int peerCount() {
+        return peers.length;
+    }
+
+    @Override
+    public void send(int peer, ByteBuffer datagram) throws IOException {
+        InetSocketAddress[] current = peers;
+        if (current.length == 0) {
+            return;
+        }
+        // The list may have shrunk since the caller read peerCount().
+        channel.send(datagram, current[peer % current.length]);
+    }
+
+    @Override
+    public boolean receive(ByteBuffer datagram) throws IOException {
+        SocketAddress sender = channel.receive(datagram);
+        return sender != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -12,6 +12,14 @@ public interface FluxGateMetrics {
         // no-op by default
     }
 
+    /**
+     * Records the adaptive state that scales the limit of one policy, including the cluster
+     * rate gossiped for that policy.
+     */
+    default void recordPolicyAdaptiveState(String policyId, EwmaTrafficEstimator.AdaptiveState state) {
+        // no-op by default
+    }
+
     static FluxGateMetrics noop() {
         return new FluxGateMetrics() {
             @Override
@@ -2,7 +2,9 @@ package io.fluxgate.core.observability;
 
 import io.fluxgate.core.adaptive.EwmaTrafficEstimator;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -12,6 +14,7 @@ public final class FluxGateStats {
     private final AtomicLong blockedRequests = new AtomicLong();
     private final AtomicReference<EwmaTrafficEstimator.AdaptiveState> adaptiveState =
             new AtomicReference<>();
+    private final Map<String, EwmaTrafficEstimator.AdaptiveState> policyStates = new ConcurrentHashMap<>();
 
     public void onAllowed() {
         totalRequests.incrementAndGet();
@@ -26,6 +29,10 @@ public final class FluxGateStats {
         adaptiveState.set(state);
     }
 
+    public void onPolicyAdaptiveUpdate(String policyId, EwmaTrafficEstimator.AdaptiveState state) {
+        policyStates.put(policyId, state);
+    }
+
     public long totalRequests() {
         return totalRequests.get();
     }
@@ -38,6 +45,20 @@ public final class FluxGateStats {
         return adaptiveState.get();
     }
 
+    /**
+     * Returns the last published state of the given policy, or {@code null}.
+     */
+    public EwmaTrafficEstimator.AdaptiveState policyAdaptiveState(String policyId) {
+        return policyStates.get(policyId);
+    }
+
+    /**
+     * Returns the last published state of every policy, keyed by policy id.
+     */
+    public Map<String, EwmaTrafficEstimator.AdaptiveState> policyAdaptiveStates() {
+        return Collections.unmodifiableMap(policyStates);
+    }
+
     public Map<String, Double> adaptiveDebugView() {
         EwmaTrafficEstimator.AdaptiveState state = adaptiveState.get();
         if (state == null) {
@@ -1,20 +1,57 @@
 package io.fluxgate.core.observability;
 
 import io.fluxgate.core.tierB.HeavyKeeper;
+import io.fluxgate.core.tierB.WindowedHeavyHitters;
+
+import java.io.IOException;
+import java.time.Duration;
 
 public final class HeatmapReporter {
 
     private final HeavyKeeper heavyKeeper;
+    private final WindowedHeavyHitters heavyHitters;
 
     public HeatmapReporter(HeavyKeeper heavyKeeper) {
         this.heavyKeeper = heavyKeeper;
+        this.heavyHitters = null;
+    }
+
+    public HeatmapReporter(WindowedHeavyHitters heavyHitters) {
+        this.heavyKeeper = null;
+        this.heavyHitters = heavyHitters;
     }
 
     public String renderTopKeys() {
         StringBuilder builder = new StringBuilder();
+        if (heavyHitters != null) {
+            try {
+                write(heavyHitters.live(System.nanoTime()), builder);
+            } catch (IOException e) {
+                throw new IllegalStateException("StringBuilder does not throw", e);
+            }
+            return builder.toString();
+        }
         for (HeavyKeeper.Entry entry : heavyKeeper.topK()) {
             builder.append(Long.toHexString(entry.key())).append(':').append(entry.count()).append('\n');
         }
         return builder.toString();
     }
+
+    /**
+     * Streams the ranked top keys of the trailing window to {@code out}, one
+     * {@code hexKey:count} line per key, heaviest first.
+     */
+    public void writeTopKeys(Duration window, int limit, long nowNanos, Appendable out) throws IOException {
+        if (heavyHitters == null) {
+            throw new IllegalStateException("Windowed reporting requires WindowedHeavyHitters");
+        }
+        write(heavyHitters.topK(window, limit, nowNanos), out);
+    }
+
+    private static void write(WindowedHeavyHitters.TopKeys topKeys, Appendable out) throws IOException {
+        for (int rank = 0; rank < topKeys.size(); rank++) {
+            out.append(Long.toHexString(topKeys.key(rank))).append(':')
+                    .append(Long.toString(topKeys.count(rank))).append('\n');
+        }
+    }
 }
@@ -0,0 +1,47 @@
+package io.fluxgate.core.policy;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide numbering of the attribute names that compiled matchers read. The compiler
+ * resolves each name to its slot once, and a reusable {@link PolicyContext} caches attribute
+ * values by slot, so a matcher reads an attribute through an array index instead of a map
+ * lookup. Slots are never reused, which keeps them valid across policy reloads; the registry
+ * grows only with the distinct names that appear in policies.
+ */
+final class AttributeSlots {
+
+    private static final Map<String, Integer> SLOTS = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[0];
+
+    private AttributeSlots() {
+    }
+
+    static int slot(String name) {
+        Integer slot = SLOTS.get(name);
+        return slot != null ? slot : assign(name);
+    }
+
+    static String name(int slot) {
+        return names[slot];
+    }
+
+    static int count() {
+        return names.length;
+    }
+
+    private static synchronized int assign(String name) {
+        Integer existing = SLOTS.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        String[] grown = Arrays.copyOf(names, names.length + 1);
+        grown[names.length] = name;
+        // Publish the name before the slot, so any reader holding the slot can resolve it.
+        names = grown;
+        SLOTS.put(name, names.length - 1);
+        return names.length - 1;
+    }
+}
@@ -0,0 +1,43 @@
+package io.fluxgate.core.policy;
+
+import java.util.Map;
+
+/**
+ * Read access to request attributes without copying them, e.g. straight from the headers of
+ * the request being served. Matchers only ask for the attributes they reference, by name.
+ */
+@FunctionalInterface
+public interface AttributeSource {
+
+    AttributeSource EMPTY = name -> null;
+
+    /**
+     * Returns the value of attribute {@code name}, or {@code null} if the request has none.
+     */
+    String attribute(String name);
+
+    /**
+     * Returns every attribute, for matchers that enumerate them. Sources that cannot list
+     * their attributes return an empty map.
+     */
+    default Map<String, String> attributes() {
+        return Map.of();
+    }
+
+    static AttributeSource of(Map<String, String> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            return EMPTY;
+        }
+        return new AttributeSource() {
+            @Override
+            public String attribute(String name) {
+                return attributes.get(name);
+            }
+
+            @Override
+            public Map<String, String> attributes() {
+                return attributes;
+            }
+        };
+    }
+}
@@ -0,0 +1,351 @@
+package io.fluxgate.core.policy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough of a class file writer for {@link MatcherClassGenerator}: a deduplicating
+ * constant pool, fields, and methods whose code has forward branches to labels. Generated
+ * methods keep the operand stack empty at every branch target and never change local types
+ * after their prologue, so the stack map table is a list of same frames, optionally preceded
+ * by one append frame for extra locals set in the prologue.
+ */
+final class ClassFileWriter {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int JAVA_17 = 61;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+
+    ClassFileWriter(String name, String superName, String... interfaceNames) {
+        this.thisClass = classRef(name);
+        this.superClass = classRef(superName);
+        this.interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+    int utf8(String value) {
+        return entry("U" + value, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return entry("C" + internalName, out -> {
+            out.writeByte(7);
+            out.writeShort(name);
+        });
+    }
+
+    int integer(int value) {
+        return entry("I" + value, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(11, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = entry("N" + name + ' ' + descriptor, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return entry(tag + owner + '.' + name + ' ' + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int entry(String key, PoolWriter writer) {
+        Integer existing = poolIndex.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            writer.write(poolOut);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (poolCount == 0xFFFF) {
+            throw new IllegalStateException("Constant pool overflow");
+        }
+        int index = poolCount++;
+        poolIndex.put(key, index);
+        return index;
+    }
+
+    void field(int access, String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        write(() -> {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        });
+        fields.add(bytes.toByteArray());
+    }
+
+    /**
+     * Adds a method with the given code.
+     *
+     * @param appendedLocal class of the one local the prologue adds before any branch target,
+     *                      or {@code null}
+     */
+    void method(int access, String name, String descriptor, Code code, int maxStack, int maxLocals,
+                String appendedLocal) {
+        byte[] instructions = code.toByteArray();
+        byte[] frames = code.stackMapFrames(appendedLocal == null ? -1 : classRef(appendedLocal));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(instructions.length + frames.length + 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        int codeAttribute = utf8("Code");
+        int stackMapAttribute = utf8("StackMapTable");
+        write(() -> {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            int stackMapLength = frames.length == 0 ? 0 : 6 + frames.length;
+            out.writeInt(12 + instructions.length + stackMapLength);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(instructions.length);
+            out.write(instructions);
+            out.writeShort(0);
+            if (frames.length == 0) {
+                out.writeShort(0);
+            } else {
+                out.writeShort(1);
+                out.writeShort(stackMapAttribute);
+                out.writeInt(frames.length);
+                out.write(frames);
+            }
+        });
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toByteArray(int access) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(pool.size() + 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        write(() -> {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(JAVA_17);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int index : interfaces) {
+                out.writeShort(index);
+            }
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        });
+        return bytes.toByteArray();
+    }
+
+    private static void write(IoAction action) {
+        try {
+            action.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface PoolWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    /**
+     * Growable code buffer with labels. Branches use 16-bit offsets, so a method must stay
+     * under 32 KiB of code, far above what {@link MatcherClassGenerator} emits per method.
+     */
+    static final class Code {
+
+        private byte[] bytes = new byte[64];
+        private int length;
+        private int[] labels = new int[8];
+        private int labelCount;
+        private final List<int[]> branches = new ArrayList<>();
+
+        int length() {
+            return length;
+        }
+
+        Code op(int opcode) {
+            ensure(1);
+            bytes[length++] = (byte) opcode;
+            return this;
+        }
+
+        Code op(int opcode, int u2) {
+            op(opcode);
+            return u2(u2);
+        }
+
+        Code u1(int value) {
+            ensure(1);
+            bytes[length++] = (byte) value;
+            return this;
+        }
+
+        Code u2(int value) {
+            ensure(2);
+            bytes[length++] = (byte) (value >>> 8);
+            bytes[length++] = (byte) value;
+            return this;
+        }
+
+        Code u4(int value) {
+            return u2(value >>> 16).u2(value & 0xFFFF);
+        }
+
+        int newLabel() {
+            if (labelCount == labels.length) {
+                labels = Arrays.copyOf(labels, labelCount * 2);
+            }
+            labels[labelCount] = -1;
+            return labelCount++;
+        }
+
+        void bind(int label) {
+            labels[label] = length;
+        }
+
+        /**
+         * Emits a branch instruction with a 16-bit offset to {@code label}.
+         */
+        void branch(int opcode, int label) {
+            branches.add(new int[] {length, length + 1, label, 2});
+            op(opcode).u2(0);
+        }
+
+        /**
+         * Emits a 32-bit offset to {@code label}, relative to the instruction at {@code origin}.
+         */
+        void offset(int origin, int label) {
+            branches.add(new int[] {origin, length, label, 4});
+            u4(0);
+        }
+
+        /**
+         * Pads with zero bytes up to the next multiple of four, as switch instructions need.
+         */
+        void align() {
+            while ((length & 3) != 0) {
+                u1(0);
+            }
+        }
+
+        byte[] toByteArray() {
+            for (int[] branch : branches) {
+                int target = labels[branch[2]];
+                if (target < 0) {
+                    throw new IllegalStateException("Unbound label " + branch[2]);
+                }
+                int offset = target - branch[0];
+                if (branch[3] == 2) {
+                    if (offset != (short) offset) {
+                        throw new IllegalStateException("Branch offset out of range: " + offset);
+                    }
+                    bytes[branch[1]] = (byte) (offset >>> 8);
+                    bytes[branch[1] + 1] = (byte) offset;
+                } else {
+                    bytes[branch[1]] = (byte) (offset >>> 24);
+                    bytes[branch[1] + 1] = (byte) (offset >>> 16);
+                    bytes[branch[1] + 2] = (byte) (offset >>> 8);
+                    bytes[branch[1] + 3] = (byte) offset;
+                }
+            }
+            return Arrays.copyOf(bytes, length);
+        }
+
+        /**
+         * Encodes one frame per distinct bound label: an append frame adding
+         * {@code appendedClass} for the first, if given, and same frames after that.
+         */
+        byte[] stackMapFrames(int appendedClass) {
+            int[] offsets = Arrays.stream(labels, 0, labelCount).filter(offset -> offset >= 0).sorted().distinct()
+                    .toArray();
+            ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(frames);
+            write(() -> {
+                out.writeShort(offsets.length);
+                int previous = -1;
+                for (int i = 0; i < offsets.length; i++) {
+                    int delta = offsets[i] - previous - 1;
+                    previous = offsets[i];
+                    if (i == 0 && appendedClass >= 0) {
+                        out.writeByte(252);
+                        out.writeShort(delta);
+                        out.writeByte(7);
+                        out.writeShort(appendedClass);
+                    } else if (delta < 64) {
+                        out.writeByte(delta);
+                    } else {
+                        out.writeByte(251);
+                        out.writeShort(delta);
+                    }
+                }
+            });
+            return offsets.length == 0 ? new byte[0] : frames.toByteArray();
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
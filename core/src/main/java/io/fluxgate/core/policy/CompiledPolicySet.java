@@ -2,38 +2,167 @@ package io.fluxgate.core.policy;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Immutable container for compiled policies. Provides evaluation helpers that walk the
- * matcher graph and produce per-policy decisions without additional allocation.
+ * Immutable container for compiled policies. Evaluation goes through a {@link PolicyIndex}
+ * built at construction, so the cost of a lookup depends on the shape of the request rather
+ * than on the number of policies. The {@link MatcherBackend} decides how the matchers of
+ * candidate policies are evaluated.
  */
-public record CompiledPolicySet(List<LimitPolicy> policies) {
+public final class CompiledPolicySet {
 
-    public CompiledPolicySet {
-        policies = List.copyOf(policies);
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private final List<LimitPolicy> policies;
+    private final PolicyIndex index;
+    private final MatcherBackend backend;
+    private final long version;
+    private final Set<String> referencedAttributes;
+    private final boolean opaque;
+
+    public CompiledPolicySet(List<LimitPolicy> policies) {
+        this(policies, MatcherBackend.CLOSURES);
+    }
+
+    public CompiledPolicySet(List<LimitPolicy> policies, MatcherBackend backend) {
+        this(policies, backend, null);
+    }
+
+    /**
+     * Wraps {@code policies} around {@code index} when it was restored by
+     * {@link PolicyArtifact}, or builds the index when it is {@code null}.
+     */
+    CompiledPolicySet(List<LimitPolicy> policies, MatcherBackend backend, PolicyIndex index) {
+        this.policies = List.copyOf(policies);
+        this.backend = Objects.requireNonNull(backend, "backend");
+        this.index = index != null ? index : new PolicyIndex(this.policies, backend);
+        this.version = VERSIONS.incrementAndGet();
+        Set<String> attributes = new TreeSet<>();
+        boolean known = true;
+        for (LimitPolicy policy : this.policies) {
+            known &= Matchers.collectAttributes(policy.matcher(), attributes);
+        }
+        this.referencedAttributes = Collections.unmodifiableSet(attributes);
+        this.opaque = !known;
+    }
+
+    public List<LimitPolicy> policies() {
+        return policies;
+    }
+
+    /**
+     * Returns the backend the matchers were compiled with, so a reload of the same source can
+     * keep it.
+     */
+    public MatcherBackend backend() {
+        return backend;
+    }
+
+    /**
+     * Identifies this set among all sets compiled in this JVM; a reload always yields a new
+     * version, so caches of decisions can tell stale entries apart.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Names of the attributes the compiled matchers read, in sorted order. Incomplete if
+     * {@link #hasCustomMatchers()}.
+     */
+    public Set<String> referencedAttributes() {
+        return referencedAttributes;
+    }
+
+    /**
+     * Returns whether some policy uses a matcher that was not produced by
+     * {@link PolicyCompiler}, whose inputs are therefore unknown.
+     */
+    public boolean hasCustomMatchers() {
+        return opaque;
     }
 
+    PolicyIndex index() {
+        return index;
+    }
+
+    /**
+     * Number of {@code long} words a bitset passed to {@link #evaluate(PolicyContext, long[])}
+     * needs: one bit per policy.
+     */
+    public int bitsetWords() {
+        return (policies.size() + 63) >>> 6;
+    }
+
+    /**
+     * Evaluates every policy against {@code context} in one pass over the index and replaces
+     * the contents of {@code matched} with the result: bit {@code i} of word {@code i >>> 6}
+     * is set if the policy at ordinal {@code i} matches. Allocates nothing, so a caller can
+     * reuse one bitset per thread.
+     *
+     * @return the number of matching policies
+     * @throws IllegalArgumentException if {@code matched} is shorter than {@link #bitsetWords()}
+     */
+    public int evaluate(PolicyContext context, long[] matched) {
+        if (matched.length < bitsetWords()) {
+            throw new IllegalArgumentException("Bitset of " + matched.length + " words cannot hold "
+                    + policies.size() + " policies");
+        }
+        return index.matching(context, matched);
+    }
+
+    /**
+     * Evaluates every policy against {@code context} into {@code result}, growing it to this
+     * set if needed, and returns it.
+     */
+    public MatchResult evaluate(PolicyContext context, MatchResult result) {
+        result.count(evaluate(context, result.reset(policies, bitsetWords())));
+        return result;
+    }
+
+    /**
+     * Returns a decision per policy in declaration order. Allocates the list and its
+     * decisions on every call; use {@link #evaluate(PolicyContext, MatchResult)} on hot paths.
+     */
     public List<PolicyDecision> evaluate(PolicyContext context) {
+        long[] matched = new long[bitsetWords()];
+        evaluate(context, matched);
         List<PolicyDecision> results = new ArrayList<>(policies.size());
-        for (LimitPolicy policy : policies) {
-            boolean matched = policy.matcher().matches(context);
-            results.add(new PolicyDecision(policy.id(), matched));
+        for (int i = 0; i < policies.size(); i++) {
+            boolean isMatch = (matched[i >>> 6] & (1L << i)) != 0;
+            results.add(new PolicyDecision(policies.get(i).id(), isMatch));
         }
         return results;
     }
 
     public Optional<LimitPolicy> firstMatch(PolicyContext context) {
-        for (LimitPolicy policy : policies) {
-            if (policy.matcher().matches(context)) {
-                return Optional.of(policy);
-            }
-        }
-        return Optional.empty();
+        int match = index.firstMatch(context);
+        return match < 0 ? Optional.empty() : Optional.of(policies.get(match));
     }
 
     public static CompiledPolicySet of(Collection<LimitPolicy> policies) {
         return new CompiledPolicySet(List.copyOf(policies));
     }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CompiledPolicySet set && policies.equals(set.policies);
+    }
+
+    @Override
+    public int hashCode() {
+        return policies.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledPolicySet[policies=" + policies + "]";
+    }
 }
@@ -0,0 +1,36 @@
+package io.fluxgate.core.policy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled matcher that also describes its constraints, so {@link PolicyIndex} can place the
+ * policy in the merged route and IP tries and the attribute hash tables. The description is a
+ * necessary condition for {@link #delegate()}; when {@code exact} is set it is also sufficient
+ * and the index never has to call the delegate.
+ *
+ * @param routes route patterns the request must match one of, or {@code null} for any route
+ * @param cidrs CIDRs the client IP must fall in one of, or {@code null} for any address
+ * @param attributes accepted values per attribute name
+ * @param exact whether the constraints above are everything the delegate checks
+ */
+record IndexableMatcher(List<String> routes,
+                        List<String> cidrs,
+                        Map<String, Set<String>> attributes,
+                        PolicyMatcher delegate,
+                        boolean exact) implements PolicyMatcher {
+
+    static final IndexableMatcher ALWAYS = new IndexableMatcher(null, null, Map.of(), Matchers.TRUE, true);
+
+    IndexableMatcher {
+        routes = routes == null ? null : List.copyOf(routes);
+        cidrs = cidrs == null ? null : List.copyOf(cidrs);
+        attributes = Map.copyOf(attributes);
+    }
+
+    @Override
+    public boolean matches(PolicyContext context) {
+        return delegate.matches(context);
+    }
+}
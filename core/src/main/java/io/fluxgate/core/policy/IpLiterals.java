@@ -0,0 +1,196 @@
+package io.fluxgate.core.policy;
+
+/**
+ * Allocation-free parsers for IP address literals. Unlike {@link java.net.InetAddress#getByName},
+ * nothing here ever resolves a host name: text that is not a literal is simply rejected, so a
+ * request carrying a bogus address cannot trigger a DNS lookup on the request thread.
+ */
+final class IpLiterals {
+
+    /**
+     * Returned by the parsers for text that is not a valid literal.
+     */
+    static final long INVALID = -1L;
+
+    /**
+     * Low 64 bits of the IPv4-mapped prefix {@code ::ffff:0:0/96}, without the IPv4 address.
+     */
+    static final long IPV4_MAPPED = 0xFFFFL << 32;
+
+    private IpLiterals() {
+    }
+
+    static long parseIpv4(CharSequence text) {
+        return text == null ? INVALID : parseIpv4(text, 0, text.length());
+    }
+
+    /**
+     * Parses the dotted-quad literal in {@code text[from, to)}: exactly four decimal octets of
+     * one to three digits, each at most 255. Shorthand forms that {@code InetAddress} accepts,
+     * such as {@code 10.1} or a bare 32-bit number, are rejected.
+     *
+     * @return the address as an unsigned value in the low 32 bits, or {@link #INVALID}
+     */
+    static long parseIpv4(CharSequence text, int from, int to) {
+        long address = 0L;
+        int octets = 0;
+        int index = from;
+        while (index < to && octets < 4) {
+            int value = 0;
+            int digits = 0;
+            while (index < to && digits <= 3) {
+                int digit = text.charAt(index) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = value * 10 + digit;
+                digits++;
+                index++;
+            }
+            if (digits == 0 || digits > 3 || value > 255) {
+                return INVALID;
+            }
+            address = (address << 8) | value;
+            octets++;
+            if (octets < 4) {
+                if (index >= to || text.charAt(index) != '.') {
+                    return INVALID;
+                }
+                index++;
+            }
+        }
+        return octets == 4 && index == to ? address : INVALID;
+    }
+
+    static boolean parse(CharSequence text, long[] address) {
+        return text != null && parse(text, 0, text.length(), address);
+    }
+
+    /**
+     * Parses an IPv4 or IPv6 literal in {@code text[from, to)} into a 128-bit address, high
+     * half in {@code address[0]} and low half in {@code address[1]}. IPv4 literals become
+     * IPv4-mapped addresses ({@code ::ffff:a.b.c.d}), so both families share one address space.
+     *
+     * @return whether the text was a literal; {@code address} is unspecified otherwise
+     */
+    static boolean parse(CharSequence text, int from, int to, long[] address) {
+        long ipv4 = parseIpv4(text, from, to);
+        if (ipv4 != INVALID) {
+            address[0] = 0L;
+            address[1] = IPV4_MAPPED | ipv4;
+            return true;
+        }
+        return parseIpv6(text, from, to, address);
+    }
+
+    /**
+     * Parses RFC 4291 text: eight groups of one to four hex digits, at most one {@code ::} for
+     * a run of zero groups, and optionally a dotted quad as the last 32 bits. Zone ids and
+     * brackets are rejected.
+     */
+    static boolean parseIpv6(CharSequence text, int from, int to, long[] address) {
+        // Groups before and after '::' accumulate separately, each shifted in from the right.
+        long headHigh = 0L;
+        long headLow = 0L;
+        long tailHigh = 0L;
+        long tailLow = 0L;
+        int groups = 0;
+        int headGroups = 0;
+        boolean compressed = false;
+        int index = from;
+        if (to - from >= 2 && text.charAt(from) == ':' && text.charAt(from + 1) == ':') {
+            compressed = true;
+            index += 2;
+        }
+        while (index < to) {
+            int groupEnd = index;
+            int value = 0;
+            while (groupEnd < to && groupEnd - index < 4) {
+                int digit = hexDigit(text.charAt(groupEnd));
+                if (digit < 0) {
+                    break;
+                }
+                value = (value << 4) | digit;
+                groupEnd++;
+            }
+            boolean dottedQuad = groupEnd < to && text.charAt(groupEnd) == '.';
+            int width = dottedQuad ? 2 : 1;
+            if (groups + width > (compressed ? 7 : 8)) {
+                return false;
+            }
+            long bits;
+            if (dottedQuad) {
+                long ipv4 = parseIpv4(text, index, to);
+                if (ipv4 == INVALID) {
+                    return false;
+                }
+                bits = ipv4;
+                groupEnd = to;
+            } else {
+                if (groupEnd == index) {
+                    return false;
+                }
+                bits = value;
+            }
+            int shift = 16 * width;
+            if (compressed) {
+                tailHigh = (tailHigh << shift) | (tailLow >>> (64 - shift));
+                tailLow = (tailLow << shift) | bits;
+            } else {
+                headHigh = (headHigh << shift) | (headLow >>> (64 - shift));
+                headLow = (headLow << shift) | bits;
+                headGroups += width;
+            }
+            groups += width;
+            index = groupEnd;
+            if (index == to) {
+                break;
+            }
+            if (text.charAt(index) != ':' || ++index == to) {
+                return false;
+            }
+            if (text.charAt(index) == ':') {
+                if (compressed) {
+                    return false;
+                }
+                compressed = true;
+                index++;
+            }
+        }
+        if (compressed ? groups > 7 : groups != 8) {
+            return false;
+        }
+        // Move the head groups to the top of the address, above the tail and the zero run.
+        int shift = 16 * (8 - headGroups);
+        if (shift == 128) {
+            address[0] = tailHigh;
+            address[1] = tailLow;
+        } else if (shift >= 64) {
+            address[0] = (headLow << (shift - 64)) | tailHigh;
+            address[1] = tailLow;
+        } else if (shift > 0) {
+            address[0] = (headHigh << shift) | (headLow >>> (64 - shift)) | tailHigh;
+            address[1] = (headLow << shift) | tailLow;
+        } else {
+            address[0] = headHigh;
+            address[1] = headLow;
+        }
+        return true;
+    }
+
+    /**
+     * ASCII-only, unlike {@link Character#digit(char, int)}, which accepts other scripts' digits.
+     */
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+}
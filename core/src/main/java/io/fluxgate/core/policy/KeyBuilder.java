@@ -1,13 +1,15 @@
 package io.fluxgate.core.policy;
 
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 
 public final class KeyBuilder {
 
-    private final Map<String, String> attributes = new LinkedHashMap<>();
+    private final Map<String, CharSequence> attributes = new LinkedHashMap<>();
 
     private KeyBuilder() {
         // no-op
@@ -39,8 +41,25 @@ public final class KeyBuilder {
         return attribute("route", route);
     }
 
+    /**
+     * Adds a header field under its lower-cased name, as {@link KeyPlan} labels
+     * {@code header:<name>} fields.
+     */
     public KeyBuilder header(String name, String value) {
-        return attribute("header:" + name, value);
+        return attribute("header:" + name.toLowerCase(Locale.ROOT), value);
+    }
+
+    /**
+     * Adds every captured route parameter as {@code param:<name>}. Values are read from the
+     * route in place rather than copied into substrings.
+     */
+    public KeyBuilder parameters(RouteParameters parameters) {
+        String route = parameters.route();
+        for (int i = 0; i < parameters.size(); i++) {
+            attributes.put("param:" + parameters.name(i),
+                    CharBuffer.wrap(route, parameters.start(i), parameters.end(i)));
+        }
+        return this;
     }
 
     public long buildHash(String secret) {
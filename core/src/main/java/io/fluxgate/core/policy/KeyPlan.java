@@ -0,0 +1,281 @@
+package io.fluxgate.core.policy;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Compiled {@code keyBy} list of a policy: the request fields that identify one rate-limited
+ * key. Fields are {@code ip}, {@code route}, {@code header:<name>} and
+ * {@code attribute:<name>}, which read request attributes, and {@code param:<name>}, which
+ * reads a parameter captured by the policy's route template.
+ *
+ * <p>HTTP header names are case-insensitive, so {@code header:<name>} is normalised to
+ * lower case and reads the attribute named by the lower-cased header name: both
+ * {@code header:X-Api-Key} and {@code header:x-api-key} read {@code attribute("x-api-key")},
+ * the same attribute a policy matching on {@code x-api-key} reads. Request sources must
+ * therefore serve headers under their lower-cased names.
+ *
+ * <p>{@link #hash} runs after policy selection and feeds the policy id and the listed fields
+ * straight into the keyed digest, so it reads only what the key needs and builds no map or
+ * intermediate string. The result equals {@link KeyBuilder#buildHash} over
+ * {@code attribute("policy", id)} followed by the same fields, and absent fields are skipped
+ * as there.
+ */
+public final class KeyPlan {
+
+    private static final int IP = 0;
+    private static final int ROUTE = 1;
+    private static final int ATTRIBUTE = 2;
+    private static final int PARAMETER = 3;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final List<String> fields;
+    private final int[] kinds;
+    private final String[] names;
+    private final String[] labels;
+    private final int[] slots;
+    private final boolean usesParameters;
+
+    private KeyPlan(List<String> fields) {
+        this.fields = fields.stream().map(KeyPlan::normalise).toList();
+        int size = this.fields.size();
+        this.kinds = new int[size];
+        this.names = new String[size];
+        this.labels = new String[size];
+        this.slots = new int[size];
+        Set<String> seen = new HashSet<>();
+        boolean parameters = false;
+        for (int i = 0; i < size; i++) {
+            String field = this.fields.get(i);
+            if (!seen.add(field)) {
+                throw new IllegalArgumentException("Duplicate keyBy field: " + field);
+            }
+            int colon = field.indexOf(':');
+            String prefix = colon < 0 ? field : field.substring(0, colon);
+            String name = colon < 0 ? null : field.substring(colon + 1);
+            if (name != null && name.isEmpty()) {
+                throw new IllegalArgumentException("keyBy field requires a name: " + field);
+            }
+            switch (prefix) {
+                case "ip", "route" -> {
+                    if (name != null) {
+                        throw new IllegalArgumentException("keyBy field takes no name: " + field);
+                    }
+                    kinds[i] = prefix.equals("ip") ? IP : ROUTE;
+                    labels[i] = prefix;
+                }
+                case "header" -> {
+                    kinds[i] = ATTRIBUTE;
+                    names[i] = name;
+                    labels[i] = field;
+                    slots[i] = AttributeSlots.slot(name);
+                }
+                case "attribute" -> {
+                    kinds[i] = ATTRIBUTE;
+                    names[i] = name;
+                    labels[i] = name;
+                    slots[i] = AttributeSlots.slot(name);
+                }
+                case "param" -> {
+                    kinds[i] = PARAMETER;
+                    names[i] = name;
+                    labels[i] = field;
+                    parameters = true;
+                }
+                default -> throw new IllegalArgumentException("Unknown keyBy field: " + field);
+            }
+        }
+        this.usesParameters = parameters;
+    }
+
+    /**
+     * Compiles a {@code keyBy} list.
+     *
+     * @throws IllegalArgumentException if a field is unknown, malformed or repeated
+     */
+    public static KeyPlan of(List<String> fields) {
+        return new KeyPlan(fields);
+    }
+
+    private static String normalise(String field) {
+        return field.startsWith("header:") ? field.toLowerCase(Locale.ROOT) : field;
+    }
+
+    /**
+     * Returns a plan over every parameter the route template of {@code matcher} names, in
+     * sorted order, or {@code null} if the template names none or there is no template.
+     */
+    static KeyPlan forTemplate(PolicyMatcher matcher) {
+        RouteTrie template = Matchers.routeTemplate(matcher);
+        if (template == null || template.parameterNames().isEmpty()) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        for (String name : template.parameterNames()) {
+            fields.add("param:" + name);
+        }
+        return new KeyPlan(fields);
+    }
+
+    public List<String> fields() {
+        return fields;
+    }
+
+    /**
+     * Names of the route parameters the plan reads.
+     */
+    List<String> parameterNames() {
+        List<String> parameters = new ArrayList<>();
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == PARAMETER) {
+                parameters.add(names[i]);
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Hashes the key of {@code context} under {@code policy} with {@code secret}.
+     */
+    public long hash(LimitPolicy policy, PolicyContext context, String secret) {
+        Scratch scratch = SCRATCH.get();
+        scratch.reset(secret);
+        scratch.field("policy", policy.id(), 0, policy.id().length());
+        RouteParameters parameters = scratch.parameters;
+        if (usesParameters) {
+            parameters.capture(policy, context.route());
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case IP -> scratch.field(labels[i], context.ip());
+                case ROUTE -> scratch.field(labels[i], context.route());
+                case ATTRIBUTE -> scratch.field(labels[i], context.attribute(slots[i]));
+                default -> {
+                    int index = parameters.indexOf(names[i]);
+                    if (index >= 0) {
+                        scratch.field(labels[i], parameters.route(), parameters.start(index), parameters.end(index));
+                    }
+                }
+            }
+        }
+        return scratch.finish();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof KeyPlan plan && fields.equals(plan.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return fields.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "KeyPlan" + fields;
+    }
+
+    /**
+     * Per-thread digest, the UTF-8 encoding of the last secret, and a buffer that collects
+     * {@code label=value\n} lines as {@link KeyBuilder} formats them.
+     */
+    private static final class Scratch {
+        private final MessageDigest digest;
+        private final byte[] output = new byte[32];
+        private final RouteParameters parameters = new RouteParameters();
+        private byte[] buffer = new byte[256];
+        private int size;
+        private String secret;
+        private byte[] secretBytes;
+
+        private Scratch() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Unable to hash key", e);
+            }
+        }
+
+        void reset(String nextSecret) {
+            if (!nextSecret.equals(secret)) {
+                secret = nextSecret;
+                secretBytes = nextSecret.getBytes(StandardCharsets.UTF_8);
+            }
+            size = 0;
+        }
+
+        void field(String label, String value) {
+            if (value != null) {
+                field(label, value, 0, value.length());
+            }
+        }
+
+        void field(String label, String value, int start, int end) {
+            append(label, 0, label.length());
+            put((byte) '=');
+            append(value, start, end);
+            put((byte) '\n');
+        }
+
+        long finish() {
+            digest.update(secretBytes);
+            digest.update(buffer, 0, size);
+            try {
+                digest.digest(output, 0, output.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException("Unable to hash key", e);
+            }
+            long result = 0L;
+            for (int i = 0; i < 8; i++) {
+                result = (result << 8) | (output[i] & 0xff);
+            }
+            return result;
+        }
+
+        /**
+         * Encodes {@code text[start, end)} as UTF-8, replacing unpaired surrogates with
+         * {@code '?'} like {@link String#getBytes}.
+         */
+        private void append(String text, int start, int end) {
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    put((byte) c);
+                } else if (c < 0x800) {
+                    put((byte) (0xc0 | c >> 6));
+                    put((byte) (0x80 | c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < end
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int code = Character.toCodePoint(c, text.charAt(++i));
+                    put((byte) (0xf0 | code >> 18));
+                    put((byte) (0x80 | code >> 12 & 0x3f));
+                    put((byte) (0x80 | code >> 6 & 0x3f));
+                    put((byte) (0x80 | code & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    put((byte) '?');
+                } else {
+                    put((byte) (0xe0 | c >> 12));
+                    put((byte) (0x80 | c >> 6 & 0x3f));
+                    put((byte) (0x80 | c & 0x3f));
+                }
+            }
+        }
+
+        private void put(byte value) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = value;
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package io.fluxgate.core.policy;
 
+/**
+ * A rate limit and the requests it applies to.
+ *
+ * @param keyBy request fields that identify one limited key; {@code null} keys requests by
+ *              IP, route and every attribute. Policies whose route template names parameters
+ *              default to a plan over those parameters.
+ */
 public record LimitPolicy(String id,
                           double limitPerSecond,
                           double burstTokens,
                           long windowSeconds,
-                          PolicyMatcher matcher) {
+                          PolicyMatcher matcher,
+                          KeyPlan keyBy) {
 
     public LimitPolicy {
         matcher = matcher == null ? PolicyMatcher.always() : matcher;
+        keyBy = keyBy == null ? KeyPlan.forTemplate(matcher) : keyBy;
+    }
+
+    public LimitPolicy(String id, double limitPerSecond, double burstTokens, long windowSeconds,
+                       PolicyMatcher matcher) {
+        this(id, limitPerSecond, burstTokens, windowSeconds, matcher, null);
     }
 
     public LimitPolicy(String id, double limitPerSecond, double burstTokens, long windowSeconds) {
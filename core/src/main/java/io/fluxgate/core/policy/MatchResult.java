@@ -0,0 +1,99 @@
+package io.fluxgate.core.policy;
+
+import java.util.List;
+
+/**
+ * Reusable outcome of {@link CompiledPolicySet#evaluate(PolicyContext, MatchResult)}: a
+ * bitset over the ordinals of the evaluated set. The bitset only grows, so evaluating into
+ * the same result does not allocate once it fits the largest set; walk the matches with
+ * {@link #nextMatch(int)}.
+ *
+ * <p>A result must only be used by one thread at a time, typically through a
+ * {@link ThreadLocal}.
+ */
+public final class MatchResult {
+
+    private List<LimitPolicy> policies = List.of();
+    private long[] bits = new long[1];
+    private int count;
+
+    /**
+     * Number of policies evaluated.
+     */
+    public int size() {
+        return policies.size();
+    }
+
+    /**
+     * Number of matching policies.
+     */
+    public int count() {
+        return count;
+    }
+
+    public boolean matched(int ordinal) {
+        checkOrdinal(ordinal);
+        return (bits[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Returns the ordinal of the first matching policy at or after {@code from}, or {@code -1}.
+     */
+    public int nextMatch(int from) {
+        if (from < 0) {
+            throw new IndexOutOfBoundsException("Policy " + from + " of " + policies.size());
+        }
+        int words = (policies.size() + 63) >>> 6;
+        int w = from >>> 6;
+        if (w >= words) {
+            return -1;
+        }
+        long word = bits[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words) {
+                return -1;
+            }
+            word = bits[w];
+        }
+    }
+
+    public LimitPolicy policy(int ordinal) {
+        checkOrdinal(ordinal);
+        return policies.get(ordinal);
+    }
+
+    /**
+     * Clears the result for {@code set} and returns a bitset of at least {@code words} words
+     * to evaluate into.
+     */
+    long[] reset(List<LimitPolicy> set, int words) {
+        policies = set;
+        count = 0;
+        if (bits.length < words) {
+            bits = new long[Math.max(words, bits.length * 2)];
+        }
+        return bits;
+    }
+
+    void count(int matches) {
+        count = matches;
+    }
+
+    private void checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= policies.size()) {
+            throw new IndexOutOfBoundsException("Policy " + ordinal + " of " + policies.size());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("MatchResult[");
+        for (int i = nextMatch(0); i >= 0; i = nextMatch(i + 1)) {
+            builder.append(builder.charAt(builder.length() - 1) == '[' ? "" : ", ").append(policies.get(i).id());
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,20 @@
+package io.fluxgate.core.policy;
+
+/**
+ * How a {@link CompiledPolicySet} evaluates policy matchers.
+ */
+public enum MatcherBackend {
+
+    /**
+     * Evaluates the matcher tree built by {@link PolicyCompiler} node by node. Works
+     * everywhere and is the default.
+     */
+    CLOSURES,
+
+    /**
+     * Compiles each policy's matcher tree into a method of a hidden class, which removes the
+     * virtual call per tree level on deeply nested {@code all}/{@code any}/{@code not}
+     * matchers. Falls back to {@link #CLOSURES} if classes cannot be defined.
+     */
+    HIDDEN_CLASSES
+}
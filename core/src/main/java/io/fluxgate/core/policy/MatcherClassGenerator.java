@@ -0,0 +1,402 @@
+package io.fluxgate.core.policy;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles the matchers of a policy set into hidden classes. Every policy becomes one private
+ * method of straight-line code: {@code all}, {@code any} and {@code not} turn into
+ * short-circuit branches, constants are folded, and leaves read final fields of the exact
+ * trie and value-set types, so each lookup is a direct call the JIT can inline rather than a
+ * megamorphic {@link PolicyMatcher#matches} dispatch per tree level. A {@code tableswitch}
+ * selects the method for a policy ordinal.
+ *
+ * <p>Matchers the generator does not recognise, such as caller-supplied lambdas, are called
+ * through their interface. Policies whose code would exceed the JIT's huge-method limit are
+ * called the same way, and each class holds at most {@value #POLICIES_PER_CLASS} policies to
+ * keep the dispatch method small.
+ */
+final class MatcherClassGenerator {
+
+    static final int POLICIES_PER_CLASS = 256;
+
+    // HotSpot does not compile methods with more bytecode than this (-XX:HugeMethodLimit).
+    private static final int HUGE_METHOD_LIMIT = 8000;
+
+    private static final String CLASS_NAME = "io/fluxgate/core/policy/GeneratedMatcherTable";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String STRING = "java/lang/String";
+    private static final String CONTEXT = "io/fluxgate/core/policy/PolicyContext";
+    private static final String ROUTE_TRIE = "io/fluxgate/core/policy/RouteTrie";
+    private static final String PATRICIA_TRIE = "io/fluxgate/core/policy/PatriciaTrie";
+    private static final String VALUE_SET = "io/fluxgate/core/policy/ValueSet";
+    private static final String MATCHER = "io/fluxgate/core/policy/PolicyMatcher";
+    private static final String TABLE = "io/fluxgate/core/policy/MatcherTable";
+    private static final String MATCH_DESCRIPTOR = "(L" + CONTEXT + ";)Z";
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ACONST_NULL = 0x01;
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD_1 = 0x1b;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int AALOAD = 0x32;
+    private static final int ASTORE_2 = 0x4d;
+    private static final int DUP = 0x59;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int TABLESWITCH = 0xaa;
+    private static final int IRETURN = 0xac;
+    private static final int RETURN = 0xb1;
+    private static final int GETFIELD = 0xb4;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKEINTERFACE = 0xb9;
+    private static final int CHECKCAST = 0xc0;
+    private static final int IFNULL = 0xc6;
+    private static final int IFNONNULL = 0xc7;
+
+    private MatcherClassGenerator() {
+    }
+
+    /**
+     * Generates a table over {@code matchers}, where policy {@code i} is evaluated by
+     * {@code matchers.get(i)}.
+     *
+     * @throws IllegalStateException if a class cannot be generated or defined
+     */
+    static MatcherTable generate(List<PolicyMatcher> matchers) {
+        if (matchers.isEmpty()) {
+            return (policy, context) -> false;
+        }
+        int chunks = (matchers.size() + POLICIES_PER_CLASS - 1) / POLICIES_PER_CLASS;
+        MatcherTable[] tables = new MatcherTable[chunks];
+        for (int c = 0; c < chunks; c++) {
+            int from = c * POLICIES_PER_CLASS;
+            tables[c] = define(matchers.subList(from, Math.min(matchers.size(), from + POLICIES_PER_CLASS)));
+        }
+        if (chunks == 1) {
+            return tables[0];
+        }
+        return (policy, context) -> tables[policy / POLICIES_PER_CLASS].matches(policy % POLICIES_PER_CLASS, context);
+    }
+
+    private static MatcherTable define(List<PolicyMatcher> matchers) {
+        ClassBuilder builder = new ClassBuilder();
+        for (int i = 0; i < matchers.size(); i++) {
+            builder.policyMethod(i, matchers.get(i));
+        }
+        byte[] bytes = builder.finish(matchers.size());
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (MatcherTable) lookup
+                    .findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, Object[].class))
+                    .invoke(builder.fieldValues.toArray());
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to define generated matcher class", e);
+        }
+    }
+
+    /**
+     * Boolean expression over matcher leaves, after constant folding.
+     */
+    private sealed interface Condition {
+    }
+
+    private record And(List<Condition> operands) implements Condition {
+    }
+
+    private record Or(List<Condition> operands) implements Condition {
+    }
+
+    private record Negation(Condition operand) implements Condition {
+    }
+
+    private record Literal(boolean value) implements Condition {
+    }
+
+    /**
+     * Calls {@code matches} on an object held in field {@code field}: a trie, a value set or
+     * an opaque matcher, depending on {@code kind}.
+     */
+    private record Leaf(LeafKind kind, int field) implements Condition {
+    }
+
+    /**
+     * Loads the attribute in {@code slot} into the attribute local; true if it is present.
+     */
+    private record LoadAttribute(int slot) implements Condition {
+    }
+
+    private enum LeafKind {
+        ROUTE, IP, CONTAINS, OPAQUE
+    }
+
+    private static final class ClassBuilder {
+
+        private final ClassFileWriter writer = new ClassFileWriter(CLASS_NAME, OBJECT, TABLE);
+        private final List<Object> fieldValues = new ArrayList<>();
+        private final List<String> fieldTypes = new ArrayList<>();
+
+        void policyMethod(int policy, PolicyMatcher matcher) {
+            int fields = fieldValues.size();
+            ClassFileWriter.Code code = policyCode(convert(matcher));
+            if (code.length() > HUGE_METHOD_LIMIT) {
+                fieldValues.subList(fields, fieldValues.size()).clear();
+                fieldTypes.subList(fields, fieldTypes.size()).clear();
+                code = policyCode(new Leaf(LeafKind.OPAQUE, field(matcher, MATCHER)));
+            }
+            writer.method(ACC_PRIVATE, "policy" + policy, MATCH_DESCRIPTOR, code, 3, 3, STRING);
+        }
+
+        private ClassFileWriter.Code policyCode(Condition condition) {
+            ClassFileWriter.Code code = new ClassFileWriter.Code();
+            if (condition instanceof Literal literal) {
+                return code.op(literal.value() ? ICONST_1 : ICONST_0).op(IRETURN);
+            }
+            // Local 2 holds the attribute being tested; set it before any branch so every
+            // frame has the same locals.
+            code.op(ACONST_NULL).op(ASTORE_2);
+            int noMatch = code.newLabel();
+            jumpIfFalse(code, condition, noMatch);
+            code.op(ICONST_1).op(IRETURN);
+            code.bind(noMatch);
+            return code.op(ICONST_0).op(IRETURN);
+        }
+
+        byte[] finish(int policies) {
+            for (int i = 0; i < fieldTypes.size(); i++) {
+                writer.field(ACC_PRIVATE | ACC_FINAL, "f" + i, "L" + fieldTypes.get(i) + ";");
+            }
+            writer.method(ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", constructor(), 3, 2, null);
+            writer.method(ACC_PUBLIC, "matches", "(IL" + CONTEXT + ";)Z", dispatch(policies), 2, 3, null);
+            return writer.toByteArray(ACC_FINAL | ACC_SUPER);
+        }
+
+        private ClassFileWriter.Code constructor() {
+            ClassFileWriter.Code code = new ClassFileWriter.Code();
+            code.op(ALOAD_0).op(INVOKESPECIAL, writer.methodRef(OBJECT, "<init>", "()V"));
+            for (int i = 0; i < fieldTypes.size(); i++) {
+                code.op(ALOAD_0).op(ALOAD_1);
+                pushInt(code, i);
+                code.op(AALOAD)
+                        .op(CHECKCAST, writer.classRef(fieldTypes.get(i)))
+                        .op(PUTFIELD, writer.fieldRef(CLASS_NAME, "f" + i, "L" + fieldTypes.get(i) + ";"));
+            }
+            return code.op(RETURN);
+        }
+
+        private ClassFileWriter.Code dispatch(int policies) {
+            ClassFileWriter.Code code = new ClassFileWriter.Code();
+            int origin = code.length();
+            code.op(ILOAD_1).op(TABLESWITCH);
+            origin++;
+            code.align();
+            int noMatch = code.newLabel();
+            int[] cases = new int[policies];
+            code.offset(origin, noMatch);
+            code.u4(0).u4(policies - 1);
+            for (int i = 0; i < policies; i++) {
+                cases[i] = code.newLabel();
+                code.offset(origin, cases[i]);
+            }
+            for (int i = 0; i < policies; i++) {
+                code.bind(cases[i]);
+                code.op(ALOAD_0).op(ALOAD_2)
+                        .op(INVOKESPECIAL, writer.methodRef(CLASS_NAME, "policy" + i, MATCH_DESCRIPTOR))
+                        .op(IRETURN);
+            }
+            code.bind(noMatch);
+            return code.op(ICONST_0).op(IRETURN);
+        }
+
+        private void pushInt(ClassFileWriter.Code code, int value) {
+            if (value < 128) {
+                code.op(BIPUSH).u1(value);
+            } else if (value <= Short.MAX_VALUE) {
+                code.op(SIPUSH, value);
+            } else {
+                code.op(LDC_W, writer.integer(value));
+            }
+        }
+
+        private int field(Object value, String type) {
+            fieldValues.add(value);
+            fieldTypes.add(type);
+            return fieldValues.size() - 1;
+        }
+
+        private Condition convert(PolicyMatcher matcher) {
+            if (matcher instanceof IndexableMatcher indexable) {
+                return convert(indexable.delegate());
+            }
+            if (matcher instanceof Matchers.Constant constant) {
+                return new Literal(constant.value());
+            }
+            if (matcher instanceof Matchers.All all) {
+                return and(all.matchers().stream().map(this::convert).toList());
+            }
+            if (matcher instanceof Matchers.Any any) {
+                return or(any.matchers().stream().map(this::convert).toList());
+            }
+            if (matcher instanceof Matchers.Not not) {
+                return negate(convert(not.matcher()));
+            }
+            if (matcher instanceof Matchers.Route route) {
+                return new Leaf(LeafKind.ROUTE, field(route.trie(), ROUTE_TRIE));
+            }
+            if (matcher instanceof Matchers.Ip ip) {
+                return new Leaf(LeafKind.IP, field(ip.trie(), PATRICIA_TRIE));
+            }
+            if (matcher instanceof Matchers.Attribute attribute) {
+                List<Condition> checks = new ArrayList<>();
+                checks.add(new LoadAttribute(attribute.slot()));
+                if (attribute.equalsValues() != null) {
+                    checks.add(new Leaf(LeafKind.CONTAINS, field(attribute.equalsValues(), VALUE_SET)));
+                }
+                if (attribute.anyValues() != null) {
+                    checks.add(new Leaf(LeafKind.CONTAINS, field(attribute.anyValues(), VALUE_SET)));
+                }
+                if (attribute.noneValues() != null) {
+                    checks.add(negate(new Leaf(LeafKind.CONTAINS, field(attribute.noneValues(), VALUE_SET))));
+                }
+                return and(checks);
+            }
+            return new Leaf(LeafKind.OPAQUE, field(matcher, MATCHER));
+        }
+
+        private static Condition and(List<Condition> operands) {
+            List<Condition> flattened = new ArrayList<>();
+            for (Condition operand : operands) {
+                if (operand instanceof Literal literal) {
+                    if (!literal.value()) {
+                        return literal;
+                    }
+                } else if (operand instanceof And and) {
+                    flattened.addAll(and.operands());
+                } else {
+                    flattened.add(operand);
+                }
+            }
+            if (flattened.isEmpty()) {
+                return new Literal(true);
+            }
+            return flattened.size() == 1 ? flattened.get(0) : new And(flattened);
+        }
+
+        private static Condition or(List<Condition> operands) {
+            List<Condition> flattened = new ArrayList<>();
+            for (Condition operand : operands) {
+                if (operand instanceof Literal literal) {
+                    if (literal.value()) {
+                        return literal;
+                    }
+                } else if (operand instanceof Or or) {
+                    flattened.addAll(or.operands());
+                } else {
+                    flattened.add(operand);
+                }
+            }
+            if (flattened.isEmpty()) {
+                return new Literal(false);
+            }
+            return flattened.size() == 1 ? flattened.get(0) : new Or(flattened);
+        }
+
+        private static Condition negate(Condition operand) {
+            if (operand instanceof Literal literal) {
+                return new Literal(!literal.value());
+            }
+            if (operand instanceof Negation negation) {
+                return negation.operand();
+            }
+            return new Negation(operand);
+        }
+
+        private void jumpIfFalse(ClassFileWriter.Code code, Condition condition, int target) {
+            if (condition instanceof And and) {
+                for (Condition operand : and.operands()) {
+                    jumpIfFalse(code, operand, target);
+                }
+            } else if (condition instanceof Or or) {
+                int matched = code.newLabel();
+                List<Condition> operands = or.operands();
+                for (int i = 0; i < operands.size() - 1; i++) {
+                    jumpIfTrue(code, operands.get(i), matched);
+                }
+                jumpIfFalse(code, operands.get(operands.size() - 1), target);
+                code.bind(matched);
+            } else if (condition instanceof Negation negation) {
+                jumpIfTrue(code, negation.operand(), target);
+            } else {
+                code.branch(emitLeaf(code, condition) ? IFNULL : IFEQ, target);
+            }
+        }
+
+        private void jumpIfTrue(ClassFileWriter.Code code, Condition condition, int target) {
+            if (condition instanceof Or or) {
+                for (Condition operand : or.operands()) {
+                    jumpIfTrue(code, operand, target);
+                }
+            } else if (condition instanceof And and) {
+                int failed = code.newLabel();
+                List<Condition> operands = and.operands();
+                for (int i = 0; i < operands.size() - 1; i++) {
+                    jumpIfFalse(code, operands.get(i), failed);
+                }
+                jumpIfTrue(code, operands.get(operands.size() - 1), target);
+                code.bind(failed);
+            } else if (condition instanceof Negation negation) {
+                jumpIfFalse(code, negation.operand(), target);
+            } else {
+                code.branch(emitLeaf(code, condition) ? IFNONNULL : IFNE, target);
+            }
+        }
+
+        /**
+         * Emits a leaf, leaving a boolean on the stack, or for an attribute load the
+         * attribute reference; returns whether it left a reference.
+         */
+        private boolean emitLeaf(ClassFileWriter.Code code, Condition condition) {
+            if (condition instanceof LoadAttribute load) {
+                code.op(ALOAD_1);
+                pushInt(code, load.slot());
+                code.op(INVOKEVIRTUAL, writer.methodRef(CONTEXT, "attribute", "(I)L" + STRING + ";"))
+                        .op(DUP)
+                        .op(ASTORE_2);
+                return true;
+            }
+            Leaf leaf = (Leaf) condition;
+            String type = fieldTypes.get(leaf.field());
+            code.op(ALOAD_0).op(GETFIELD, writer.fieldRef(CLASS_NAME, "f" + leaf.field(), "L" + type + ";"));
+            switch (leaf.kind()) {
+                case ROUTE -> code.op(ALOAD_1)
+                        .op(INVOKEVIRTUAL, writer.methodRef(CONTEXT, "route", "()L" + STRING + ";"))
+                        .op(INVOKEVIRTUAL, writer.methodRef(ROUTE_TRIE, "matches", "(L" + STRING + ";)Z"));
+                case IP -> code.op(ALOAD_1)
+                        .op(INVOKEVIRTUAL, writer.methodRef(CONTEXT, "ip", "()L" + STRING + ";"))
+                        .op(INVOKEVIRTUAL, writer.methodRef(PATRICIA_TRIE, "matches", "(L" + STRING + ";)Z"));
+                case CONTAINS -> code.op(ALOAD_2)
+                        .op(INVOKEINTERFACE, writer.interfaceMethodRef(VALUE_SET, "contains", "(L" + STRING + ";)Z"))
+                        .u1(2).u1(0);
+                case OPAQUE -> code.op(ALOAD_1)
+                        .op(INVOKEINTERFACE, writer.interfaceMethodRef(MATCHER, "matches", MATCH_DESCRIPTOR))
+                        .u1(2).u1(0);
+                default -> throw new IllegalStateException("Unknown leaf " + leaf.kind());
+            }
+            return false;
+        }
+    }
+}
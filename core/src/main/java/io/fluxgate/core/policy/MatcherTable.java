@@ -0,0 +1,30 @@
+package io.fluxgate.core.policy;
+
+import java.util.List;
+
+/**
+ * Evaluates the matcher of a policy by its ordinal in a policy set.
+ */
+@FunctionalInterface
+interface MatcherTable {
+
+    boolean matches(int policy, PolicyContext context);
+
+    /**
+     * Builds the table for {@code policies} with {@code backend}. If hidden classes cannot be
+     * generated or defined on this JVM, the closure backend is used instead, so the choice of
+     * backend never changes which policies match.
+     */
+    static MatcherTable of(List<LimitPolicy> policies, MatcherBackend backend) {
+        List<PolicyMatcher> matchers = policies.stream().map(LimitPolicy::matcher).toList();
+        if (backend == MatcherBackend.HIDDEN_CLASSES) {
+            try {
+                return MatcherClassGenerator.generate(matchers);
+            } catch (RuntimeException | LinkageError e) {
+                // Fall through to closures.
+            }
+        }
+        PolicyMatcher[] closures = matchers.toArray(new PolicyMatcher[0]);
+        return (policy, context) -> closures[policy].matches(context);
+    }
+}
@@ -0,0 +1,155 @@
+package io.fluxgate.core.policy;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matcher nodes produced by {@link PolicyCompiler}. Each node evaluates itself, which is the
+ * closure backend, and exposes its structure so {@link MatcherClassGenerator} can compile a
+ * whole tree into straight-line bytecode.
+ */
+final class Matchers {
+
+    static final Constant TRUE = new Constant(true);
+    static final Constant FALSE = new Constant(false);
+
+    private Matchers() {
+    }
+
+    /**
+     * Adds the attribute names {@code matcher} reads to {@code names}. Returns {@code false}
+     * if the tree contains a matcher this class did not produce, which may read anything.
+     */
+    static boolean collectAttributes(PolicyMatcher matcher, Set<String> names) {
+        if (matcher instanceof IndexableMatcher indexable) {
+            return collectAttributes(indexable.delegate(), names);
+        }
+        if (matcher instanceof All all) {
+            return all.matchers().stream().allMatch(child -> collectAttributes(child, names));
+        }
+        if (matcher instanceof Any any) {
+            return any.matchers().stream().allMatch(child -> collectAttributes(child, names));
+        }
+        if (matcher instanceof Not not) {
+            return collectAttributes(not.matcher(), names);
+        }
+        if (matcher instanceof Attribute attribute) {
+            names.add(attribute.name());
+            return true;
+        }
+        return matcher instanceof Route || matcher instanceof Ip || matcher instanceof Constant;
+    }
+
+    /**
+     * Returns the trie of the {@code route} constraint at the top level of a compiled
+     * {@code match} block, or {@code null} if there is none.
+     */
+    static RouteTrie routeTemplate(PolicyMatcher matcher) {
+        PolicyMatcher delegate = matcher instanceof IndexableMatcher indexable ? indexable.delegate() : matcher;
+        if (delegate instanceof Route route) {
+            return route.trie();
+        }
+        if (delegate instanceof All all) {
+            for (PolicyMatcher child : all.matchers()) {
+                if (child instanceof Route route) {
+                    return route.trie();
+                }
+            }
+        }
+        return null;
+    }
+
+    record All(List<PolicyMatcher> matchers) implements PolicyMatcher {
+
+        All {
+            matchers = List.copyOf(matchers);
+        }
+
+        @Override
+        public boolean matches(PolicyContext context) {
+            for (PolicyMatcher matcher : matchers) {
+                if (!matcher.matches(context)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    record Any(List<PolicyMatcher> matchers) implements PolicyMatcher {
+
+        Any {
+            matchers = List.copyOf(matchers);
+        }
+
+        @Override
+        public boolean matches(PolicyContext context) {
+            for (PolicyMatcher matcher : matchers) {
+                if (matcher.matches(context)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    record Not(PolicyMatcher matcher) implements PolicyMatcher {
+
+        @Override
+        public boolean matches(PolicyContext context) {
+            return !matcher.matches(context);
+        }
+    }
+
+    record Route(RouteTrie trie) implements PolicyMatcher {
+
+        @Override
+        public boolean matches(PolicyContext context) {
+            return trie.matches(context.route());
+        }
+    }
+
+    record Ip(PatriciaTrie trie) implements PolicyMatcher {
+
+        @Override
+        public boolean matches(PolicyContext context) {
+            return trie.matches(context.ip());
+        }
+    }
+
+    /**
+     * Requires the attribute to be present, in {@code equalsValues} and {@code anyValues},
+     * and not in {@code noneValues}; a {@code null} set is not checked. The attribute is read
+     * by its {@link AttributeSlots slot}.
+     */
+    record Attribute(String name, int slot, ValueSet equalsValues, ValueSet anyValues, ValueSet noneValues)
+            implements PolicyMatcher {
+
+        Attribute(String name, ValueSet equalsValues, ValueSet anyValues, ValueSet noneValues) {
+            this(name, AttributeSlots.slot(name), equalsValues, anyValues, noneValues);
+        }
+
+        @Override
+        public boolean matches(PolicyContext context) {
+            String attribute = context.attribute(slot);
+            if (attribute == null) {
+                return false;
+            }
+            if (equalsValues != null && !equalsValues.contains(attribute)) {
+                return false;
+            }
+            if (anyValues != null && !anyValues.contains(attribute)) {
+                return false;
+            }
+            return noneValues == null || !noneValues.contains(attribute);
+        }
+    }
+
+    record Constant(boolean value) implements PolicyMatcher {
+
+        @Override
+        public boolean matches(PolicyContext context) {
+            return value;
+        }
+    }
+}
@@ -1,29 +1,54 @@
 package io.fluxgate.core.policy;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Compact Patricia trie for IPv4 CIDR prefixes. The trie is built during policy compilation
- * and flattened into cache-friendly arrays for lookups.
+ * Compact Patricia trie for IPv4 and IPv6 CIDR prefixes. The trie is built during policy
+ * compilation and flattened into cache-friendly arrays for lookups. Keys are 128 bits wide
+ * and IPv4 prefixes are stored as IPv4-mapped ones ({@code 10.0.0.0/8} becomes
+ * {@code ::ffff:10.0.0.0/104}), so one trie serves both families and an IPv4-mapped IPv6
+ * client matches its IPv4 rules. Addresses are parsed by {@link IpLiterals}, so lookups
+ * neither allocate nor resolve host names; text that is not a literal matches nothing.
+ *
+ * <p>Prefixes inserted with a policy ordinal record it in a bitset on their node;
+ * {@link #collect(String, long[], int)} ORs the bitsets of every prefix on the lookup path, so one
+ * trie answers which policies' CIDRs contain an address.
  */
 final class PatriciaTrie {
 
-    private final Node root = new Node(0, 0, false);
+    private static final int BITS = 128;
+    private static final ThreadLocal<long[]> ADDRESS = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final Node root = new Node(0L, 0L, 0, false);
     private boolean frozen;
 
-    private int[] prefixes;
+    // Per node: prefix high, prefix low, mask high, mask low.
+    private long[] keys;
     private byte[] lengths;
     private int[] children;
     private byte[] terminal;
-    private int[] masks;
+    private long[][] policies;
 
     void insert(String cidr) {
+        insert(cidr, -1, 0);
+    }
+
+    /**
+     * Inserts the prefix and marks {@code policy} in its node's bitset.
+     *
+     * @param words length of the policy bitsets
+     */
+    void insert(String cidr, int policy, int words) {
         ensureNotFrozen();
         Prefix prefix = Prefix.parse(cidr);
-        insert(root, prefix.address(), prefix.length());
+        Node node = insert(root, prefix.high(), prefix.low(), prefix.length());
+        if (policy >= 0) {
+            if (node.policies == null) {
+                node.policies = new long[words];
+            }
+            node.policies[policy >>> 6] |= 1L << policy;
+        }
     }
 
     void freeze() {
@@ -32,88 +57,165 @@ final class PatriciaTrie {
         }
         List<Node> ordered = new ArrayList<>();
         assignIndices(root, ordered);
-        prefixes = new int[ordered.size()];
+        keys = new long[ordered.size() * 4];
         lengths = new byte[ordered.size()];
         children = new int[ordered.size() * 2];
         terminal = new byte[ordered.size()];
-        masks = new int[ordered.size()];
+        policies = new long[ordered.size()][];
         for (int i = 0; i < ordered.size(); i++) {
             Node node = ordered.get(i);
-            prefixes[i] = node.prefix;
+            policies[i] = node.policies;
+            keys[i * 4] = node.high;
+            keys[i * 4 + 1] = node.low;
+            keys[i * 4 + 2] = highMask(node.length);
+            keys[i * 4 + 3] = lowMask(node.length);
             lengths[i] = (byte) node.length;
             terminal[i] = (byte) (node.terminal ? 1 : 0);
-            masks[i] = mask(node.length);
             children[i * 2] = node.zero != null ? node.zero.index : -1;
             children[i * 2 + 1] = node.one != null ? node.one.index : -1;
         }
         frozen = true;
     }
 
+    /**
+     * Writes the frozen arrays, so {@link #read} restores the trie without rebuilding it.
+     */
+    void write(PolicyArtifact.Writer out) {
+        if (!frozen) {
+            throw new IllegalStateException("Trie must be frozen before it is written");
+        }
+        out.longs(keys);
+        out.bytes(lengths);
+        out.ints(children);
+        out.bytes(terminal);
+        out.bitsets(policies);
+    }
+
+    static PatriciaTrie read(PolicyArtifact.Reader in) {
+        PatriciaTrie trie = new PatriciaTrie();
+        trie.keys = in.longs();
+        trie.lengths = in.bytes();
+        trie.children = in.ints();
+        trie.terminal = in.bytes();
+        trie.policies = in.bitsets();
+        int nodes = trie.lengths.length;
+        if (nodes == 0 || trie.keys == null || trie.keys.length != nodes * 4 || trie.children.length != nodes * 2
+                || trie.terminal.length != nodes || trie.policies.length != nodes) {
+            throw new IllegalArgumentException("Inconsistent IP trie arrays");
+        }
+        // Children are numbered after their parent, which also rules out cycles.
+        for (int i = 0; i < nodes; i++) {
+            if ((trie.lengths[i] & 0xff) > BITS) {
+                throw new IllegalArgumentException("Invalid IP trie prefix length " + (trie.lengths[i] & 0xff));
+            }
+            for (int bit = 0; bit < 2; bit++) {
+                int child = trie.children[i * 2 + bit];
+                if (child != -1 && (child <= i || child >= nodes)) {
+                    throw new IllegalArgumentException("Invalid IP trie child " + child);
+                }
+            }
+        }
+        trie.frozen = true;
+        return trie;
+    }
+
     boolean matches(String ip) {
         if (!frozen) {
             throw new IllegalStateException("Trie must be frozen before lookups");
         }
-        if (ip == null || ip.isEmpty()) {
-            return false;
-        }
-        int address;
-        try {
-            address = Prefix.toAddress(ip);
-        } catch (UnknownHostException e) {
+        long[] address = ADDRESS.get();
+        if (!IpLiterals.parse(ip, address)) {
             return false;
         }
+        long high = address[0];
+        long low = address[1];
         int index = 0;
-        if (terminal[index] == 1) {
-            return true;
-        }
-        while (true) {
-            int nodeLength = lengths[index] & 0xff;
-            if (nodeLength == 32) {
-                return terminal[index] == 1;
-            }
-            int bit = (address >>> (31 - nodeLength)) & 1;
-            int childIndex = children[index * 2 + bit];
-            if (childIndex < 0) {
+        while (terminal[index] == 0) {
+            int length = lengths[index] & 0xff;
+            if (length == BITS) {
                 return false;
             }
-            if ((address & masks[childIndex]) != prefixes[childIndex]) {
+            int childIndex = children[(index << 1) | bitAt(high, low, length)];
+            if (childIndex < 0 || !contains(childIndex, high, low)) {
                 return false;
             }
-            if (terminal[childIndex] == 1) {
-                return true;
+            index = childIndex;
+        }
+        return true;
+    }
+
+    /**
+     * ORs into {@code matched}, starting at {@code offset}, the policy bitsets of every
+     * inserted prefix containing {@code ip}. Addresses that cannot be parsed match nothing.
+     */
+    void collect(String ip, long[] matched, int offset) {
+        if (!frozen) {
+            throw new IllegalStateException("Trie must be frozen before lookups");
+        }
+        long[] address = ADDRESS.get();
+        if (!IpLiterals.parse(ip, address)) {
+            return;
+        }
+        long high = address[0];
+        long low = address[1];
+        int index = 0;
+        or(matched, offset, policies[index]);
+        while ((lengths[index] & 0xff) < BITS) {
+            int childIndex = children[(index << 1) | bitAt(high, low, lengths[index] & 0xff)];
+            if (childIndex < 0 || !contains(childIndex, high, low)) {
+                return;
             }
+            or(matched, offset, policies[childIndex]);
             index = childIndex;
         }
     }
 
-    private void insert(Node node, int prefix, int length) {
-        if (length == node.length && node.prefix == (prefix & mask(length))) {
-            node.terminal = true;
+    private boolean contains(int node, long high, long low) {
+        int key = node * 4;
+        return (((high & keys[key + 2]) ^ keys[key]) | ((low & keys[key + 3]) ^ keys[key + 1])) == 0L;
+    }
+
+    private static void or(long[] target, int offset, long[] bits) {
+        if (bits == null) {
             return;
         }
-        int bit = bitAt(prefix, node.length);
+        for (int i = 0; i < bits.length; i++) {
+            target[offset + i] |= bits[i];
+        }
+    }
+
+    /**
+     * Inserts the prefix below {@code node} and returns the node that now represents it.
+     */
+    private Node insert(Node node, long high, long low, int length) {
+        long maskedHigh = high & highMask(length);
+        long maskedLow = low & lowMask(length);
+        if (length == node.length && node.high == maskedHigh && node.low == maskedLow) {
+            node.terminal = true;
+            return node;
+        }
+        int bit = bitAt(high, low, node.length);
         Node child = bit == 0 ? node.zero : node.one;
         if (child == null) {
-            Node newChild = new Node(prefix & mask(length), length, true);
+            Node newChild = new Node(maskedHigh, maskedLow, length, true);
             if (bit == 0) {
                 node.zero = newChild;
             } else {
                 node.one = newChild;
             }
-            return;
+            return newChild;
         }
-        int common = commonPrefixLength(prefix, length, child.prefix, child.length);
+        int common = commonPrefixLength(high, low, length, child.high, child.low, child.length);
         if (common == child.length) {
             if (common == length) {
                 child.terminal = true;
-            } else {
-                insert(child, prefix, length);
+                return child;
             }
-            return;
+            return insert(child, high, low, length);
         }
         if (common == length) {
-            Node newNode = new Node(prefix & mask(length), length, true);
-            int childBit = bitAt(child.prefix, length);
+            Node newNode = new Node(maskedHigh, maskedLow, length, true);
+            int childBit = bitAt(child.high, child.low, length);
             if (childBit == 0) {
                 newNode.zero = child;
             } else {
@@ -124,13 +226,14 @@ final class PatriciaTrie {
             } else {
                 node.one = newNode;
             }
-            return;
+            return newNode;
         }
-        Node split = new Node(child.prefix & mask(common), common, common == length);
-        int childBit = bitAt(child.prefix, common);
+        Node split = new Node(child.high & highMask(common), child.low & lowMask(common), common, common == length);
+        int childBit = bitAt(child.high, child.low, common);
+        Node inserted = split;
         if (common < length) {
-            int newBit = bitAt(prefix, common);
-            Node newNode = new Node(prefix & mask(length), length, true);
+            int newBit = bitAt(high, low, common);
+            Node newNode = new Node(maskedHigh, maskedLow, length, true);
             if (newBit == 0) {
                 split.zero = newNode;
                 split.one = child;
@@ -138,6 +241,7 @@ final class PatriciaTrie {
                 split.one = newNode;
                 split.zero = child;
             }
+            inserted = newNode;
         } else {
             if (childBit == 0) {
                 split.zero = child;
@@ -150,32 +254,44 @@ final class PatriciaTrie {
         } else {
             node.one = split;
         }
+        return inserted;
     }
 
-    private static int mask(int length) {
+    private static long highMask(int length) {
         if (length == 0) {
-            return 0;
+            return 0L;
         }
-        return -1 << (32 - length);
+        return length >= 64 ? -1L : -1L << (64 - length);
     }
 
-    private static int bitAt(int value, int index) {
-        if (index >= 32) {
-            return 0;
+    private static long lowMask(int length) {
+        if (length <= 64) {
+            return 0L;
         }
-        return (value >>> (31 - index)) & 1;
+        return -1L << (BITS - length);
     }
 
-    private static int commonPrefixLength(int aPrefix, int aLength, int bPrefix, int bLength) {
+    private static int bitAt(long high, long low, int index) {
+        if (index < 64) {
+            return (int) (high >>> (63 - index)) & 1;
+        }
+        if (index < BITS) {
+            return (int) (low >>> (127 - index)) & 1;
+        }
+        return 0;
+    }
+
+    private static int commonPrefixLength(long aHigh, long aLow, int aLength, long bHigh, long bLow, int bLength) {
         int max = Math.min(aLength, bLength);
-        if (max == 0) {
-            return 0;
+        long highDiff = (aHigh ^ bHigh) & highMask(max);
+        if (highDiff != 0L) {
+            return Long.numberOfLeadingZeros(highDiff);
         }
-        int xor = (aPrefix ^ bPrefix) & mask(max);
-        if (xor == 0) {
-            return max;
+        long lowDiff = (aLow ^ bLow) & lowMask(max);
+        if (lowDiff != 0L) {
+            return 64 + Long.numberOfLeadingZeros(lowDiff);
         }
-        return Integer.numberOfLeadingZeros(xor);
+        return max;
     }
 
     private void assignIndices(Node node, List<Node> ordered) {
@@ -196,54 +312,49 @@ final class PatriciaTrie {
     }
 
     private static final class Node {
-        private final int prefix;
+        private final long high;
+        private final long low;
         private final int length;
         private Node zero;
         private Node one;
         private boolean terminal;
+        private long[] policies;
         private int index;
 
-        private Node(int prefix, int length, boolean terminal) {
-            this.prefix = prefix;
+        private Node(long high, long low, int length, boolean terminal) {
+            this.high = high;
+            this.low = low;
             this.length = length;
             this.terminal = terminal;
         }
     }
 
-    record Prefix(int address, int length) {
+    /**
+     * CIDR prefix in the 128-bit key space.
+     */
+    record Prefix(long high, long low, int length) {
 
         static Prefix parse(String cidr) {
             String trimmed = cidr.trim();
             int slashIndex = trimmed.indexOf('/');
-            if (slashIndex < 0) {
-                return new Prefix(toAddressUnchecked(trimmed), 32);
-            }
-            int address = toAddressUnchecked(trimmed.substring(0, slashIndex));
-            int length = Integer.parseInt(trimmed.substring(slashIndex + 1));
-            if (length < 0 || length > 32) {
-                throw new IllegalArgumentException("CIDR prefix length must be between 0 and 32: " + cidr);
-            }
-            return new Prefix(address, length);
-        }
-
-        static int toAddressUnchecked(String ip) {
-            try {
-                return toAddress(ip);
-            } catch (UnknownHostException e) {
-                throw new IllegalArgumentException("Invalid IP address: " + ip, e);
-            }
-        }
-
-        static int toAddress(String ip) throws UnknownHostException {
-            byte[] address = InetAddress.getByName(ip).getAddress();
-            if (address.length != 4) {
-                throw new UnknownHostException("Only IPv4 addresses supported: " + ip);
+            int end = slashIndex < 0 ? trimmed.length() : slashIndex;
+            long ipv4 = IpLiterals.parseIpv4(trimmed, 0, end);
+            long[] address = new long[2];
+            int bits;
+            if (ipv4 != IpLiterals.INVALID) {
+                address[1] = IpLiterals.IPV4_MAPPED | ipv4;
+                bits = 32;
+            } else if (IpLiterals.parseIpv6(trimmed, 0, end, address)) {
+                bits = BITS;
+            } else {
+                throw new IllegalArgumentException("Invalid IP address: " + trimmed.substring(0, end));
             }
-            int result = 0;
-            for (byte b : address) {
-                result = (result << 8) | (b & 0xff);
+            int length = slashIndex < 0 ? bits : Integer.parseInt(trimmed.substring(slashIndex + 1));
+            if (length < 0 || length > bits) {
+                throw new IllegalArgumentException("CIDR prefix length must be between 0 and " + bits + ": " + cidr);
             }
-            return result;
+            // IPv4 prefixes sit below the 96-bit IPv4-mapped prefix.
+            return new Prefix(address[0], address[1], bits == 32 ? length + 96 : length);
         }
     }
 }
@@ -0,0 +1,564 @@
+package io.fluxgate.core.policy;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * Precompiled binary form of a {@link CompiledPolicySet}. {@link PolicyCompiler#fromYaml}
+ * parses YAML, builds every matcher's tries and value sets and then merges all policies into
+ * the {@link PolicyIndex}, which takes seconds for thousands of policies. An artifact stores
+ * the result of all of that: the matcher trees with their frozen trie arrays and value set
+ * tables, and the frozen policy index. {@link #load} memory-maps the file and copies those
+ * arrays back into place, so startup neither parses YAML nor builds a trie.
+ *
+ * <p>The file starts with a magic number, the format version and a CRC-32 of the rest, so a
+ * truncated, corrupt or outdated artifact is rejected instead of producing wrong matches. Only
+ * sets produced by {@link PolicyCompiler} can be written; custom matchers have no encoding.
+ *
+ * <p>Artifacts are produced at build time with {@link #main}:
+ * <pre>
+ * java -cp fluxgate-core.jar io.fluxgate.core.policy.PolicyArtifact policies.yaml policies.fgp
+ * </pre>
+ */
+public final class PolicyArtifact {
+
+    static final int MAGIC = 0x46475041;
+    static final int VERSION = 3;
+
+    static final byte CONSTANT = 0;
+    static final byte ALL = 1;
+    static final byte ANY = 2;
+    static final byte NOT = 3;
+    static final byte ROUTE = 4;
+    static final byte IP = 5;
+    static final byte ATTRIBUTE = 6;
+    static final byte INDEXABLE = 7;
+
+    private static final int HEADER_BYTES = 12;
+
+    private PolicyArtifact() {
+        throw new IllegalStateException("Cannot instantiate " + PolicyArtifact.class);
+    }
+
+    /**
+     * Compiles a policy YAML file into an artifact: {@code PolicyArtifact <policies.yaml> <output>}.
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: PolicyArtifact <policies.yaml> <output>");
+            System.exit(2);
+            return;
+        }
+        CompiledPolicySet set = PolicyCompiler.fromYaml(Path.of(args[0]));
+        write(set, Path.of(args[1]));
+        System.out.println("Wrote " + set.policies().size() + " policies to " + args[1]);
+    }
+
+    /**
+     * Writes {@code set} to {@code path}, replacing it atomically where the file system
+     * allows, so a process loading the artifact never sees a partial file.
+     *
+     * @throws IllegalArgumentException if a policy uses a matcher {@link PolicyCompiler} did not produce
+     */
+    public static void write(CompiledPolicySet set, Path path) {
+        byte[] bytes = toByteArray(set);
+        Path absolute = path.toAbsolutePath();
+        Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try {
+            Files.write(temporary, bytes);
+            try {
+                Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write policy artifact " + path, e);
+        }
+    }
+
+    /**
+     * Encodes {@code set} in the artifact format.
+     *
+     * @throws IllegalArgumentException if a policy uses a matcher {@link PolicyCompiler} did not produce
+     */
+    public static byte[] toByteArray(CompiledPolicySet set) {
+        Writer body = new Writer();
+        List<LimitPolicy> policies = set.policies();
+        body.writeInt(policies.size());
+        for (LimitPolicy policy : policies) {
+            body.string(policy.id());
+            body.writeDouble(policy.limitPerSecond());
+            body.writeDouble(policy.burstTokens());
+            body.writeLong(policy.windowSeconds());
+            try {
+                writeMatcher(policy.matcher(), body);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Policy " + policy.id() + " cannot be written to an artifact", e);
+            }
+            body.stringList(policy.keyBy() != null ? policy.keyBy().fields() : null);
+        }
+        set.index().write(body);
+        return frame(body);
+    }
+
+    /**
+     * Prefixes {@code body} with the header and the string table it refers to.
+     */
+    static byte[] frame(Writer body) {
+        Writer table = new Writer();
+        table.writeInt(body.strings.size());
+        for (String value : body.strings.keySet()) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            table.writeInt(utf8.length);
+            table.writeBytes(utf8);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(table.buffer, 0, table.size);
+        crc.update(body.buffer, 0, body.size);
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + table.size + body.size);
+        out.putInt(MAGIC).putInt(VERSION).putInt((int) crc.getValue());
+        out.put(table.buffer, 0, table.size).put(body.buffer, 0, body.size);
+        return out.array();
+    }
+
+    public static CompiledPolicySet load(Path path) {
+        return load(path, MatcherBackend.CLOSURES);
+    }
+
+    /**
+     * Memory-maps the artifact at {@code path} and restores its policy set.
+     *
+     * @throws IllegalStateException if the file cannot be read or is not a valid artifact of
+     *                               this version
+     */
+    public static CompiledPolicySet load(Path path, MatcherBackend backend) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(mapped, backend);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read policy artifact " + path, e);
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(e.getMessage() + ": " + path, e);
+        }
+    }
+
+    /**
+     * Restores the policy set encoded in {@code buffer} from its position to its limit.
+     *
+     * @throws IllegalStateException if the buffer does not hold a valid artifact of this version
+     */
+    public static CompiledPolicySet read(ByteBuffer buffer, MatcherBackend backend) {
+        ByteBuffer in = buffer.slice();
+        if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC) {
+            throw new IllegalStateException("Not a policy artifact");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported policy artifact version " + version + ", expected " + VERSION);
+        }
+        int checksum = in.getInt();
+        CRC32 crc = new CRC32();
+        crc.update(in.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IllegalStateException("Corrupt policy artifact");
+        }
+        try {
+            Reader reader = new Reader(in);
+            int count = reader.readInt();
+            List<LimitPolicy> policies = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String id = reader.string();
+                double limit = reader.readDouble();
+                double burst = reader.readDouble();
+                long window = reader.readLong();
+                PolicyMatcher matcher = readMatcher(reader);
+                List<String> keyBy = reader.stringList();
+                KeyPlan plan = keyBy != null ? KeyPlan.of(keyBy) : null;
+                policies.add(new LimitPolicy(id, limit, burst, window, matcher, plan));
+            }
+            policies = List.copyOf(policies);
+            return new CompiledPolicySet(policies, backend, PolicyIndex.read(reader, policies, backend));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IllegalStateException("Corrupt policy artifact", e);
+        }
+    }
+
+    private static void writeMatcher(PolicyMatcher matcher, Writer out) {
+        if (matcher instanceof IndexableMatcher indexable) {
+            out.writeByte(INDEXABLE);
+            out.stringList(indexable.routes());
+            out.stringList(indexable.cidrs());
+            // Sorted, so compiling the same YAML twice yields identical artifacts.
+            Map<String, Set<String>> attributes = new TreeMap<>(indexable.attributes());
+            out.writeInt(attributes.size());
+            for (Map.Entry<String, Set<String>> entry : attributes.entrySet()) {
+                out.string(entry.getKey());
+                out.stringList(List.copyOf(new TreeSet<>(entry.getValue())));
+            }
+            out.writeBoolean(indexable.exact());
+            writeMatcher(indexable.delegate(), out);
+        } else if (matcher instanceof Matchers.All all) {
+            out.writeByte(ALL);
+            writeMatchers(all.matchers(), out);
+        } else if (matcher instanceof Matchers.Any any) {
+            out.writeByte(ANY);
+            writeMatchers(any.matchers(), out);
+        } else if (matcher instanceof Matchers.Not not) {
+            out.writeByte(NOT);
+            writeMatcher(not.matcher(), out);
+        } else if (matcher instanceof Matchers.Route route) {
+            out.writeByte(ROUTE);
+            route.trie().write(out);
+        } else if (matcher instanceof Matchers.Ip ip) {
+            out.writeByte(IP);
+            ip.trie().write(out);
+        } else if (matcher instanceof Matchers.Attribute attribute) {
+            out.writeByte(ATTRIBUTE);
+            out.string(attribute.name());
+            ValueSet.write(attribute.equalsValues(), out);
+            ValueSet.write(attribute.anyValues(), out);
+            ValueSet.write(attribute.noneValues(), out);
+        } else if (matcher instanceof Matchers.Constant constant) {
+            out.writeByte(CONSTANT);
+            out.writeBoolean(constant.value());
+        } else {
+            throw new IllegalArgumentException("Custom matcher has no artifact encoding: " + matcher);
+        }
+    }
+
+    private static void writeMatchers(List<PolicyMatcher> matchers, Writer out) {
+        out.writeInt(matchers.size());
+        for (PolicyMatcher matcher : matchers) {
+            writeMatcher(matcher, out);
+        }
+    }
+
+    private static PolicyMatcher readMatcher(Reader in) {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case INDEXABLE -> {
+                List<String> routes = in.stringList();
+                List<String> cidrs = in.stringList();
+                int count = in.readInt();
+                Map<String, Set<String>> attributes = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    attributes.put(in.string(), Set.copyOf(in.stringList()));
+                }
+                boolean exact = in.readBoolean();
+                PolicyMatcher delegate = readMatcher(in);
+                if (routes == null && cidrs == null && attributes.isEmpty() && exact && delegate == Matchers.TRUE) {
+                    yield IndexableMatcher.ALWAYS;
+                }
+                yield new IndexableMatcher(routes, cidrs, attributes, delegate, exact);
+            }
+            case ALL -> new Matchers.All(readMatchers(in));
+            case ANY -> new Matchers.Any(readMatchers(in));
+            case NOT -> new Matchers.Not(readMatcher(in));
+            case ROUTE -> new Matchers.Route(RouteTrie.read(in));
+            case IP -> new Matchers.Ip(PatriciaTrie.read(in));
+            case ATTRIBUTE -> new Matchers.Attribute(in.string(), ValueSet.read(in), ValueSet.read(in),
+                    ValueSet.read(in));
+            case CONSTANT -> in.readBoolean() ? Matchers.TRUE : Matchers.FALSE;
+            default -> throw new IllegalArgumentException("Unknown matcher tag " + tag);
+        };
+    }
+
+    private static List<PolicyMatcher> readMatchers(Reader in) {
+        int count = in.readInt();
+        List<PolicyMatcher> matchers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            matchers.add(readMatcher(in));
+        }
+        return matchers;
+    }
+
+    /**
+     * Big-endian encoder for the artifact body. Strings are written as indices into a table
+     * of distinct strings, so labels and values shared by many policies are stored once.
+     */
+    static final class Writer {
+
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private byte[] buffer = new byte[1024];
+        private int size;
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeBoolean(boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeDouble(double value) {
+            writeLong(Double.doubleToRawLongBits(value));
+        }
+
+        void writeBytes(byte[] values) {
+            ensure(values.length);
+            System.arraycopy(values, 0, buffer, size, values.length);
+            size += values.length;
+        }
+
+        /**
+         * Writes {@code value} as its index in the string table, or {@code -1} for {@code null}.
+         */
+        void string(String value) {
+            writeInt(value == null ? -1 : strings.computeIfAbsent(value, ignored -> strings.size()));
+        }
+
+        void strings(String[] values) {
+            writeInt(values.length);
+            for (String value : values) {
+                string(value);
+            }
+        }
+
+        /**
+         * Writes a list that may be {@code null} but holds no {@code null} elements.
+         */
+        void stringList(List<String> values) {
+            if (values == null) {
+                writeInt(-1);
+                return;
+            }
+            strings(values.toArray(new String[0]));
+        }
+
+        void ints(int[] values) {
+            writeInt(values.length);
+            for (int value : values) {
+                writeInt(value);
+            }
+        }
+
+        void bytes(byte[] values) {
+            writeInt(values.length);
+            writeBytes(values);
+        }
+
+        void booleans(boolean[] values) {
+            writeInt(values.length);
+            for (boolean value : values) {
+                writeBoolean(value);
+            }
+        }
+
+        /**
+         * Writes an array that may be {@code null}.
+         */
+        void longs(long[] values) {
+            if (values == null) {
+                writeInt(-1);
+                return;
+            }
+            writeInt(values.length);
+            for (long value : values) {
+                writeLong(value);
+            }
+        }
+
+        /**
+         * Writes a policy bitset, which may be {@code null}, as its length and nonzero words.
+         * Most policy bitsets have a single bit set, so this is far smaller than the array.
+         */
+        void bitset(long[] bits) {
+            if (bits == null) {
+                writeInt(-1);
+                return;
+            }
+            int nonzero = 0;
+            for (long word : bits) {
+                nonzero += word != 0 ? 1 : 0;
+            }
+            writeInt(bits.length);
+            writeInt(nonzero);
+            for (int w = 0; w < bits.length; w++) {
+                if (bits[w] != 0) {
+                    writeInt(w);
+                    writeLong(bits[w]);
+                }
+            }
+        }
+
+        /**
+         * Writes per-node policy bitsets, any of which may be {@code null}.
+         */
+        void bitsets(long[][] values) {
+            writeInt(values.length);
+            for (long[] value : values) {
+                bitset(value);
+            }
+        }
+
+        private void ensure(int bytes) {
+            if (size + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+            }
+        }
+    }
+
+    /**
+     * Decoder for {@link Writer} output. Arrays are bulk-copied out of the buffer, so the
+     * restored structures live on the heap and the mapping can be released once loading ends.
+     */
+    static final class Reader {
+
+        private final ByteBuffer buffer;
+        private final String[] strings;
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] utf8 = new byte[buffer.getInt()];
+                buffer.get(utf8);
+                strings[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+        }
+
+        byte readByte() {
+            return buffer.get();
+        }
+
+        boolean readBoolean() {
+            return buffer.get() != 0;
+        }
+
+        int readInt() {
+            return buffer.getInt();
+        }
+
+        long readLong() {
+            return buffer.getLong();
+        }
+
+        double readDouble() {
+            return buffer.getDouble();
+        }
+
+        String string() {
+            int index = buffer.getInt();
+            return index == -1 ? null : strings[index];
+        }
+
+        String[] strings() {
+            String[] values = new String[length()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = string();
+            }
+            return values;
+        }
+
+        List<String> stringList() {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            String[] values = new String[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = string();
+            }
+            return List.of(values);
+        }
+
+        int[] ints() {
+            int[] values = new int[length()];
+            buffer.asIntBuffer().get(values);
+            buffer.position(buffer.position() + values.length * Integer.BYTES);
+            return values;
+        }
+
+        byte[] bytes() {
+            byte[] values = new byte[length()];
+            buffer.get(values);
+            return values;
+        }
+
+        boolean[] booleans() {
+            boolean[] values = new boolean[length()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = buffer.get() != 0;
+            }
+            return values;
+        }
+
+        long[] longs() {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            long[] values = new long[length];
+            buffer.asLongBuffer().get(values);
+            buffer.position(buffer.position() + length * Long.BYTES);
+            return values;
+        }
+
+        long[] bitset() {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            long[] bits = new long[length];
+            int nonzero = buffer.getInt();
+            for (int i = 0; i < nonzero; i++) {
+                bits[buffer.getInt()] = buffer.getLong();
+            }
+            return bits;
+        }
+
+        long[][] bitsets() {
+            long[][] values = new long[length()][];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = bitset();
+            }
+            return values;
+        }
+
+        /**
+         * Reads an array length, rejecting values the remaining bytes cannot hold before an
+         * array of that size is allocated.
+         */
+        private int length() {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid array length " + length);
+            }
+            return length;
+        }
+    }
+}
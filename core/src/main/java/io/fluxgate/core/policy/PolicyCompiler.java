@@ -14,22 +14,30 @@ public final class PolicyCompiler {
     }
 
     public static CompiledPolicySet fromYaml(Path path) {
+        return fromYaml(path, MatcherBackend.CLOSURES);
+    }
+
+    public static CompiledPolicySet fromYaml(Path path, MatcherBackend backend) {
         try (InputStream in = Files.newInputStream(path)) {
-            return fromYaml(in);
+            return fromYaml(in, backend);
         } catch (Exception e) {
             throw new IllegalStateException("Unable to read policies from " + path, e);
         }
     }
 
     public static CompiledPolicySet fromYaml(InputStream in) {
+        return fromYaml(in, MatcherBackend.CLOSURES);
+    }
+
+    public static CompiledPolicySet fromYaml(InputStream in, MatcherBackend backend) {
         Yaml yaml = new Yaml();
         Object root = yaml.load(in);
         if (!(root instanceof Map<?, ?> map)) {
-            return new CompiledPolicySet(Collections.emptyList());
+            return new CompiledPolicySet(Collections.emptyList(), backend);
         }
         Object policiesNode = map.get("policies");
         if (!(policiesNode instanceof Iterable<?> iterable)) {
-            return new CompiledPolicySet(Collections.emptyList());
+            return new CompiledPolicySet(Collections.emptyList(), backend);
         }
         List<LimitPolicy> policies = new ArrayList<>();
         for (Object element : iterable) {
@@ -37,7 +45,7 @@ public final class PolicyCompiler {
                 policies.add(parsePolicy(policyMap));
             }
         }
-        return new CompiledPolicySet(policies);
+        return new CompiledPolicySet(policies, backend);
     }
 
     public static CompiledPolicySet defaults() {
@@ -51,7 +59,26 @@ public final class PolicyCompiler {
         double burst = toDouble(policyMap.get("burst"), limit);
         long window = toLong(policyMap.get("windowSeconds"), 60L);
         PolicyMatcher matcher = parseMatcher(policyMap.get("match"));
-        return new LimitPolicy(id, limit, burst, window, matcher);
+        return new LimitPolicy(id, limit, burst, window, matcher, keyPlan(id, policyMap.get("keyBy"), matcher));
+    }
+
+    /**
+     * Compiles a {@code keyBy} list, checking that every {@code param:} field is captured by
+     * the policy's route template. Returns {@code null} if the list is absent.
+     */
+    private static KeyPlan keyPlan(String id, Object node, PolicyMatcher matcher) {
+        if (node == null) {
+            return null;
+        }
+        KeyPlan plan = KeyPlan.of(collectStrings(node));
+        RouteTrie template = Matchers.routeTemplate(matcher);
+        for (String parameter : plan.parameterNames()) {
+            if (template == null || !template.parameterNames().contains(parameter)) {
+                throw new IllegalArgumentException("Policy " + id + " keys by param:" + parameter
+                        + ", which its route does not capture");
+            }
+        }
+        return plan;
     }
 
     static PolicyMatcher parseMatcher(Object node) {
@@ -60,6 +87,10 @@ public final class PolicyCompiler {
         }
         if (node instanceof Map<?, ?> map) {
             List<PolicyMatcher> matchers = new ArrayList<>();
+            List<String> routes = null;
+            List<String> cidrs = null;
+            Map<String, Set<String>> attributes = new HashMap<>();
+            boolean exact = true;
             for (Map.Entry<?, ?> entry : map.entrySet()) {
                 String key = entry.getKey().toString();
                 Object value = entry.getValue();
@@ -73,8 +104,23 @@ public final class PolicyCompiler {
                     case "attribute" -> matchers.add(singleAttributeMatcher(value));
                     default -> throw new IllegalArgumentException("Unknown matcher key: " + key);
                 }
+                switch (key) {
+                    case "ip" -> cidrs = collectStrings(value);
+                    case "route" -> routes = collectStrings(value);
+                    case "attributes" -> {
+                        for (Map.Entry<?, ?> attribute : ((Map<?, ?>) value).entrySet()) {
+                            exact &= indexAttribute(attributes, attribute.getKey().toString(), attribute.getValue());
+                        }
+                    }
+                    case "attribute" -> {
+                        Map<?, ?> attribute = (Map<?, ?>) value;
+                        exact &= indexAttribute(attributes, attribute.get("name").toString(),
+                                singleAttributeConfig(attribute));
+                    }
+                    default -> exact = false;
+                }
             }
-            return aggregate(matchers);
+            return new IndexableMatcher(routes, cidrs, attributes, aggregate(matchers), exact);
         }
         if (node instanceof Iterable<?> iterable) {
             List<PolicyMatcher> matchers = new ArrayList<>();
@@ -93,14 +139,7 @@ public final class PolicyCompiler {
         if (matchers.size() == 1) {
             return matchers.get(0);
         }
-        return context -> {
-            for (PolicyMatcher matcher : matchers) {
-                if (!matcher.matches(context)) {
-                    return false;
-                }
-            }
-            return true;
-        };
+        return new Matchers.All(matchers);
     }
 
     static PolicyMatcher allMatcher(Object node) {
@@ -112,14 +151,7 @@ public final class PolicyCompiler {
         } else {
             matchers.add(parseMatcher(node));
         }
-        return context -> {
-            for (PolicyMatcher matcher : matchers) {
-                if (!matcher.matches(context)) {
-                    return false;
-                }
-            }
-            return true;
-        };
+        return new Matchers.All(matchers);
     }
 
     static PolicyMatcher anyMatcher(Object node) {
@@ -131,19 +163,11 @@ public final class PolicyCompiler {
         } else {
             matchers.add(parseMatcher(node));
         }
-        return context -> {
-            for (PolicyMatcher matcher : matchers) {
-                if (matcher.matches(context)) {
-                    return true;
-                }
-            }
-            return false;
-        };
+        return new Matchers.Any(matchers);
     }
 
     static PolicyMatcher notMatcher(Object node) {
-        PolicyMatcher matcher = parseMatcher(node);
-        return context -> !matcher.matches(context);
+        return new Matchers.Not(parseMatcher(node));
     }
 
     static PolicyMatcher ipMatcher(Object node) {
@@ -156,7 +180,7 @@ public final class PolicyCompiler {
             trie.insert(node.toString());
         }
         trie.freeze();
-        return context -> trie.matches(context.ip());
+        return new Matchers.Ip(trie);
     }
 
     static PolicyMatcher routeMatcher(Object node) {
@@ -168,7 +192,8 @@ public final class PolicyCompiler {
         } else {
             trie.insert(node.toString());
         }
-        return context -> trie.matches(context.route());
+        trie.freeze();
+        return new Matchers.Route(trie);
     }
 
     static PolicyMatcher attributesMatcher(Object node) {
@@ -191,7 +216,10 @@ public final class PolicyCompiler {
         if (nameNode == null) {
             throw new IllegalArgumentException("attribute matcher requires name");
         }
-        String attribute = nameNode.toString();
+        return attributeMatcher(nameNode.toString(), singleAttributeConfig(map));
+    }
+
+    private static Object singleAttributeConfig(Map<?, ?> map) {
         Map<String, Object> config = new HashMap<>();
         for (Map.Entry<?, ?> entry : map.entrySet()) {
             String key = entry.getKey().toString();
@@ -202,8 +230,37 @@ public final class PolicyCompiler {
         if (config.isEmpty() && !map.containsKey("equals")) {
             throw new IllegalArgumentException("attribute matcher requires value");
         }
-        Object valueConfig = config.isEmpty() ? map.get("equals") : config;
-        return attributeMatcher(attribute, valueConfig);
+        return config.isEmpty() ? map.get("equals") : config;
+    }
+
+    /**
+     * Records the values an attribute constraint accepts, intersecting with earlier
+     * constraints on the same name. Returns {@code false} if the constraint also checks
+     * something the index cannot express, such as {@code noneOf}.
+     */
+    private static boolean indexAttribute(Map<String, Set<String>> attributes, String name, Object config) {
+        Set<String> accepted;
+        boolean exact = true;
+        if (config instanceof Map<?, ?> map) {
+            Object equals = map.get("equals");
+            Object anyOf = map.get("anyOf");
+            exact = map.get("noneOf") == null;
+            if (equals == null && anyOf == null) {
+                return exact;
+            }
+            accepted = new HashSet<>(equals != null ? List.of(equals.toString()) : collectStrings(anyOf));
+            if (equals != null && anyOf != null) {
+                accepted.retainAll(collectStrings(anyOf));
+            }
+        } else {
+            accepted = new HashSet<>(collectStrings(config));
+        }
+        Set<String> previous = attributes.get(name);
+        if (previous != null) {
+            accepted.retainAll(previous);
+        }
+        attributes.put(name, accepted);
+        return exact;
     }
 
     static PolicyMatcher attributeMatcher(String name, Object config) {
@@ -211,37 +268,28 @@ public final class PolicyCompiler {
             Object equals = map.get("equals");
             Object anyOf = map.get("anyOf");
             Object noneOf = map.get("noneOf");
-            List<String> equalsValues = equals != null ? List.of(equals.toString()) : List.of();
-            List<String> anyValues = collectStrings(anyOf);
-            List<String> noneValues = collectStrings(noneOf);
-            if (equalsValues.isEmpty() && anyValues.isEmpty() && noneValues.isEmpty()) {
+            ValueSet equalsValues = equals != null ? ValueSet.of(List.of(equals.toString())) : null;
+            ValueSet anyValues = valueSet(anyOf);
+            ValueSet noneValues = valueSet(noneOf);
+            if (equalsValues == null && anyValues == null && noneValues == null) {
                 throw new IllegalArgumentException("attribute matcher requires equals/anyOf/noneOf");
             }
-            return context -> {
-                String attribute = context.attribute(name);
-                if (attribute == null) {
-                    return false;
-                }
-                if (!equalsValues.isEmpty() && !equalsValues.contains(attribute)) {
-                    return false;
-                }
-                if (!anyValues.isEmpty() && !anyValues.contains(attribute)) {
-                    return false;
-                }
-                if (!noneValues.isEmpty() && noneValues.contains(attribute)) {
-                    return false;
-                }
-                return true;
-            };
+            return new Matchers.Attribute(name, equalsValues, anyValues, noneValues);
         }
         if (config instanceof Iterable<?> iterable) {
-            List<String> values = collectStrings(iterable);
-            return context -> values.contains(context.attribute(name));
+            ValueSet values = valueSet(iterable);
+            return values == null ? Matchers.FALSE : new Matchers.Attribute(name, null, values, null);
         }
-        return context -> {
-            String attribute = context.attribute(name);
-            return attribute != null && attribute.equals(config.toString());
-        };
+        return new Matchers.Attribute(name, ValueSet.of(List.of(config.toString())), null, null);
+    }
+
+    /**
+     * Compiles the listed values into a {@link ValueSet}, or returns {@code null} if there are
+     * none.
+     */
+    private static ValueSet valueSet(Object node) {
+        List<String> values = collectStrings(node);
+        return values.isEmpty() ? null : ValueSet.of(values);
     }
 
     static List<String> collectStrings(Object node) {
@@ -1,18 +1,132 @@
 package io.fluxgate.core.policy;
 
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Objects;
 
 /**
- * Immutable view over request attributes that policy matchers inspect. Policies operate
- * on normalized IP and route strings together with arbitrary attribute name/value pairs.
+ * View over the request fields that policy matchers inspect: normalized IP and route strings
+ * together with arbitrary attribute name/value pairs. Attributes are read from the caller's
+ * map or {@link AttributeSource} on demand and never copied, so they must not change while a
+ * policy set evaluates the context.
+ *
+ * <p>{@link #reusable()} returns a flyweight that a thread can {@link #reset} for every
+ * request instead of allocating a new context. It also caches attribute values by the slots
+ * the compiler assigned to attribute names, so each referenced attribute is fetched from the
+ * source at most once per request however many policies read it.
  */
-public record PolicyContext(String ip, String route, Map<String, String> attributes) {
+public final class PolicyContext {
 
-    public PolicyContext {
-        attributes = attributes == null ? Map.of() : Map.copyOf(attributes);
+    private String ip;
+    private String route;
+    private Map<String, String> attributes;
+    private AttributeSource source;
+    private final boolean reusable;
+    private String[] values;
+    private int[] stamps;
+    private int epoch;
+
+    public PolicyContext(String ip, String route, Map<String, String> attributes) {
+        this.ip = ip;
+        this.route = route;
+        this.attributes = attributes == null ? Map.of() : attributes;
+        this.reusable = false;
+    }
+
+    private PolicyContext() {
+        this.attributes = Map.of();
+        this.source = AttributeSource.EMPTY;
+        this.reusable = true;
+        this.values = new String[0];
+        this.stamps = new int[0];
+    }
+
+    /**
+     * Returns an empty context for {@link #reset}. It must only be used by one thread at a
+     * time, typically through a {@link ThreadLocal}.
+     */
+    public static PolicyContext reusable() {
+        return new PolicyContext();
+    }
+
+    /**
+     * Points this reusable context at the next request and forgets the attribute values
+     * cached for the previous one.
+     *
+     * @throws IllegalStateException if the context was not created by {@link #reusable()}
+     */
+    public PolicyContext reset(String ip, String route, AttributeSource source) {
+        if (!reusable) {
+            throw new IllegalStateException("Only contexts created by reusable() can be reset");
+        }
+        this.ip = ip;
+        this.route = route;
+        this.source = source == null ? AttributeSource.EMPTY : source;
+        this.attributes = null;
+        if (++epoch == 0) {
+            Arrays.fill(stamps, 0);
+            epoch = 1;
+        }
+        return this;
+    }
+
+    public String ip() {
+        return ip;
+    }
+
+    public String route() {
+        return route;
+    }
+
+    /**
+     * Returns every attribute of the request. For a reset context this is whatever its
+     * {@link AttributeSource#attributes()} lists.
+     */
+    public Map<String, String> attributes() {
+        if (attributes == null) {
+            attributes = source.attributes();
+        }
+        return attributes;
     }
 
     public String attribute(String name) {
-        return attributes.get(name);
+        return source != null ? source.attribute(name) : attributes.get(name);
+    }
+
+    /**
+     * Returns the attribute assigned to {@code slot} by {@link AttributeSlots}.
+     */
+    String attribute(int slot) {
+        if (!reusable) {
+            return attributes.get(AttributeSlots.name(slot));
+        }
+        if (slot >= stamps.length) {
+            int size = Math.max(slot + 1, AttributeSlots.count());
+            stamps = Arrays.copyOf(stamps, size);
+            values = Arrays.copyOf(values, size);
+        }
+        if (stamps[slot] != epoch) {
+            values[slot] = source.attribute(AttributeSlots.name(slot));
+            stamps[slot] = epoch;
+        }
+        return values[slot];
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PolicyContext context
+                && Objects.equals(ip, context.ip)
+                && Objects.equals(route, context.route)
+                && attributes().equals(context.attributes());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ip, route, attributes());
+    }
+
+    @Override
+    public String toString() {
+        return "PolicyContext[ip=" + ip + ", route=" + route + ", attributes=" + attributes() + "]";
     }
 }
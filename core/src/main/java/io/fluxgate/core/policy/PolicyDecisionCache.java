@@ -0,0 +1,140 @@
+package io.fluxgate.core.policy;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of {@link CompiledPolicySet#firstMatch} results for repeated requests. A
+ * request is identified by its IP, route and the values of the attributes the set's matchers
+ * read, so attributes no policy looks at do not split entries.
+ *
+ * <p>The cache is a direct-mapped array of immutable entries: a fingerprint of the request
+ * selects one slot, and a hit requires the slot to hold the same set version and the same
+ * field values, so a fingerprint collision or a reload only costs a miss. Racing writers
+ * may overwrite each other's entries, which is harmless. Sets that contain custom matchers
+ * bypass the cache, since their inputs are unknown.
+ */
+public final class PolicyDecisionCache {
+
+    private static final LimitPolicy NO_MATCH = new LimitPolicy("", 0d, 0d, 0L);
+    private static final int[] NO_ATTRIBUTES = new int[0];
+
+    private final Entry[] slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder missNanos = new LongAdder();
+    private volatile Referenced referenced = new Referenced(-1L, NO_ATTRIBUTES);
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    public PolicyDecisionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns the first policy of {@code set} matching {@code context}, or {@code null}.
+     */
+    public LimitPolicy firstMatch(CompiledPolicySet set, PolicyContext context) {
+        if (set.hasCustomMatchers()) {
+            return set.firstMatch(context).orElse(null);
+        }
+        int[] attributes = referencedSlots(set);
+        long fingerprint = fingerprint(context, attributes);
+        int slot = (int) fingerprint & mask;
+        Entry entry = slots[slot];
+        if (entry != null && entry.version == set.version() && entry.fingerprint == fingerprint
+                && entry.matches(context, attributes)) {
+            hits.increment();
+            return entry.policy == NO_MATCH ? null : entry.policy;
+        }
+        long start = System.nanoTime();
+        LimitPolicy policy = set.firstMatch(context).orElse(null);
+        missNanos.add(System.nanoTime() - start);
+        misses.increment();
+        String[] values = new String[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            values[i] = context.attribute(attributes[i]);
+        }
+        slots[slot] = new Entry(set.version(), fingerprint, context.ip(), context.route(), values,
+                policy == null ? NO_MATCH : policy);
+        return policy;
+    }
+
+    public Stats stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long saved = missCount == 0 ? 0L : (long) (hitCount * ((double) missNanos.sum() / missCount));
+        return new Stats(hitCount, missCount, saved);
+    }
+
+    private int[] referencedSlots(CompiledPolicySet set) {
+        Referenced current = referenced;
+        if (current.version != set.version()) {
+            current = new Referenced(set.version(),
+                    set.referencedAttributes().stream().mapToInt(AttributeSlots::slot).toArray());
+            referenced = current;
+        }
+        return current.slots;
+    }
+
+    private static long fingerprint(PolicyContext context, int[] attributes) {
+        long hash = mix(hash(context.ip()), hash(context.route()));
+        for (int attribute : attributes) {
+            hash = mix(hash, hash(context.attribute(attribute)));
+        }
+        hash ^= hash >>> 29;
+        return hash;
+    }
+
+    private static long hash(String value) {
+        return value == null ? 0x9E3779B97F4A7C15L : value.hashCode();
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * 0xBF58476D1CE4E5B9L + 0x94D049BB133111EBL;
+    }
+
+    /**
+     * Hits, misses, and the matcher time the hits saved, estimated from the average time of a
+     * miss.
+     */
+    public record Stats(long hits, long misses, long savedNanos) {
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0d : (double) hits / total;
+        }
+    }
+
+    /**
+     * Attribute slots read by the set with the given version.
+     */
+    private record Referenced(long version, int[] slots) {
+    }
+
+    private record Entry(long version, long fingerprint, String ip, String route, String[] values,
+                         LimitPolicy policy) {
+
+        boolean matches(PolicyContext context, int[] attributes) {
+            if (!equal(ip, context.ip()) || !equal(route, context.route())) {
+                return false;
+            }
+            for (int i = 0; i < attributes.length; i++) {
+                if (!equal(values[i], context.attribute(attributes[i]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean equal(String cached, String value) {
+            return cached == null ? value == null : cached.equals(value);
+        }
+    }
+}
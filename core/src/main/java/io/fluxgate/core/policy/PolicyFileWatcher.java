@@ -0,0 +1,141 @@
+package io.fluxgate.core.policy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a policy YAML file and compiles it on a daemon thread whenever it changes, then
+ * hands the new {@link CompiledPolicySet} to a listener. Compilation never runs on a request
+ * thread, and a file that fails to compile is reported to the error handler while the
+ * listener keeps its current set. A change is compiled once the file has been quiet for
+ * {@value #SETTLE_MILLIS} ms, and writes that leave the content unchanged are skipped.
+ *
+ * <p>The parent directory is watched rather than the file, and any event in it triggers a
+ * content comparison, so replacing the file through a rename, as atomic deploys do, or
+ * swapping a parent symlink, as Kubernetes does with a ConfigMap's {@code ..data} link, is
+ * picked up too.
+ */
+public final class PolicyFileWatcher implements AutoCloseable {
+
+    private static final long SETTLE_MILLIS = 100;
+
+    private final Path file;
+    private final MatcherBackend backend;
+    private final Consumer<CompiledPolicySet> listener;
+    private final Consumer<Exception> errorHandler;
+    private byte[] lastContent;
+    private WatchService watchService;
+    private Thread thread;
+
+    /**
+     * @param listener     receives each newly compiled set on the watcher thread
+     * @param errorHandler receives read and compile failures on the watcher thread
+     */
+    public PolicyFileWatcher(Path file, MatcherBackend backend, Consumer<CompiledPolicySet> listener,
+                             Consumer<Exception> errorHandler) {
+        this.file = Objects.requireNonNull(file, "file").toAbsolutePath();
+        this.backend = Objects.requireNonNull(backend, "backend");
+        this.listener = Objects.requireNonNull(listener, "listener");
+        this.errorHandler = Objects.requireNonNull(errorHandler, "errorHandler");
+        if (this.file.getParent() == null) {
+            throw new IllegalArgumentException("Policy file has no parent directory: " + file);
+        }
+    }
+
+    /**
+     * Reads and compiles the file on the calling thread and notifies the listener if its
+     * content changed since the last reload.
+     *
+     * @return whether the listener was notified
+     */
+    public synchronized boolean reload() {
+        byte[] content;
+        CompiledPolicySet compiled;
+        try {
+            content = Files.readAllBytes(file);
+            if (Arrays.equals(content, lastContent)) {
+                return false;
+            }
+            compiled = PolicyCompiler.fromYaml(new ByteArrayInputStream(content), backend);
+        } catch (IOException | RuntimeException e) {
+            errorHandler.accept(e);
+            return false;
+        }
+        lastContent = content;
+        listener.accept(compiled);
+        return true;
+    }
+
+    /**
+     * Starts watching on a daemon thread. The current content counts as loaded, so the
+     * listener is only called for later changes.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Policy file watcher already started");
+        }
+        try {
+            lastContent = Files.readAllBytes(file);
+            watchService = FileSystems.getDefault().newWatchService();
+            file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to watch " + file, e);
+        }
+        thread = new Thread(this::watch, "fluxgate-policy-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        WatchService service = watchService;
+        try {
+            while (true) {
+                boolean touched = drain(service.take());
+                // Editors and deploy tools often write a file in several steps, and reading
+                // it midway would publish a truncated policy set; wait until it settles.
+                WatchKey key;
+                while ((key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    touched |= drain(key);
+                }
+                if (touched) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Closed by close().
+        }
+    }
+
+    private boolean drain(WatchKey key) {
+        // The file may be a symlink through an entry with another name, so no event is
+        // filtered out here; reload() reads through the links and skips unchanged content.
+        boolean touched = !key.pollEvents().isEmpty();
+        key.reset();
+        return touched;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to close policy file watcher", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package io.fluxgate.core.policy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Route-first decision structure over a policy set. Every policy owns one bit; the routes of
+ * all policies share one {@link RouteTrie}, their CIDRs one {@link PatriciaTrie}, and each
+ * attribute name used in an equality or {@code anyOf} constraint has a hash table from value
+ * to bitset. A lookup intersects the three, which costs O(route segments + IP bits +
+ * attribute names) independent of the number of policies, and only calls the matchers of
+ * candidates whose constraints the index cannot express in full.
+ *
+ * <p>Policies whose matcher is not an {@link IndexableMatcher} are candidates for every
+ * request and are always confirmed by their matcher, so the index never changes which
+ * policies match.
+ */
+final class PolicyIndex {
+
+    private final MatcherTable matchers;
+    private final int words;
+    private final RouteTrie routes;
+    private final long[] anyRoute;
+    private final PatriciaTrie ips;
+    private final long[] anyIp;
+    private final String[] attributeNames;
+    private final int[] attributeSlots;
+    private final List<Map<String, long[]>> attributeValues;
+    private final long[][] anyAttributeValue;
+    private final long[] exact;
+    private final ThreadLocal<long[]> scratch;
+
+    PolicyIndex(List<LimitPolicy> policies) {
+        this(policies, MatcherBackend.CLOSURES);
+    }
+
+    @SuppressWarnings("unchecked")
+    PolicyIndex(List<LimitPolicy> policies, MatcherBackend backend) {
+        this.matchers = MatcherTable.of(policies, backend);
+        int size = policies.size();
+        this.words = Math.max(1, (size + 63) >>> 6);
+        this.anyRoute = new long[words];
+        this.anyIp = new long[words];
+        this.exact = new long[words];
+        RouteTrie routeTrie = null;
+        PatriciaTrie ipTrie = null;
+        Map<String, Map<String, long[]>> valuesByName = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            PolicyMatcher matcher = policies.get(i).matcher();
+            IndexableMatcher indexable = matcher instanceof IndexableMatcher candidate ? candidate : null;
+            if (indexable == null || indexable.routes() == null) {
+                set(anyRoute, i);
+            } else {
+                routeTrie = routeTrie != null ? routeTrie : new RouteTrie();
+                for (String route : indexable.routes()) {
+                    routeTrie.insert(route, i, words);
+                }
+            }
+            if (indexable == null || indexable.cidrs() == null) {
+                set(anyIp, i);
+            } else {
+                ipTrie = ipTrie != null ? ipTrie : new PatriciaTrie();
+                for (String cidr : indexable.cidrs()) {
+                    ipTrie.insert(cidr, i, words);
+                }
+            }
+            if (indexable != null) {
+                for (Map.Entry<String, Set<String>> entry : indexable.attributes().entrySet()) {
+                    Map<String, long[]> values =
+                            valuesByName.computeIfAbsent(entry.getKey(), ignored -> new HashMap<>());
+                    for (String value : entry.getValue()) {
+                        set(values.computeIfAbsent(value, ignored -> new long[words]), i);
+                    }
+                }
+                if (indexable.exact()) {
+                    set(exact, i);
+                }
+            }
+        }
+        if (routeTrie != null) {
+            routeTrie.freeze();
+        }
+        if (ipTrie != null) {
+            ipTrie.freeze();
+        }
+        this.routes = routeTrie;
+        this.ips = ipTrie;
+        this.attributeNames = valuesByName.keySet().toArray(new String[0]);
+        this.attributeSlots = new int[attributeNames.length];
+        this.anyAttributeValue = new long[attributeNames.length][];
+        List<Map<String, long[]>> valueIndexes = new ArrayList<>(attributeNames.length);
+        for (int a = 0; a < attributeNames.length; a++) {
+            attributeSlots[a] = AttributeSlots.slot(attributeNames[a]);
+            valueIndexes.add(valuesByName.get(attributeNames[a]));
+            long[] unconstrained = new long[words];
+            for (int i = 0; i < size; i++) {
+                PolicyMatcher matcher = policies.get(i).matcher();
+                if (!(matcher instanceof IndexableMatcher indexable)
+                        || !indexable.attributes().containsKey(attributeNames[a])) {
+                    set(unconstrained, i);
+                }
+            }
+            anyAttributeValue[a] = unconstrained;
+        }
+        this.attributeValues = List.copyOf(valueIndexes);
+        this.scratch = ThreadLocal.withInitial(() -> new long[words * 2]);
+    }
+
+    private PolicyIndex(MatcherTable matchers, int words, RouteTrie routes, long[] anyRoute, PatriciaTrie ips,
+                        long[] anyIp, String[] attributeNames, List<Map<String, long[]>> attributeValues,
+                        long[][] anyAttributeValue, long[] exact) {
+        this.matchers = matchers;
+        this.words = words;
+        this.routes = routes;
+        this.anyRoute = anyRoute;
+        this.ips = ips;
+        this.anyIp = anyIp;
+        this.attributeNames = attributeNames;
+        this.attributeSlots = new int[attributeNames.length];
+        for (int a = 0; a < attributeNames.length; a++) {
+            attributeSlots[a] = AttributeSlots.slot(attributeNames[a]);
+        }
+        this.attributeValues = List.copyOf(attributeValues);
+        this.anyAttributeValue = anyAttributeValue;
+        this.exact = exact;
+        this.scratch = ThreadLocal.withInitial(() -> new long[words * 2]);
+    }
+
+    /**
+     * Writes the frozen index for {@link PolicyArtifact}. The matchers are not included; they
+     * are written with the policies.
+     */
+    void write(PolicyArtifact.Writer out) {
+        out.writeInt(words);
+        out.writeBoolean(routes != null);
+        if (routes != null) {
+            routes.write(out);
+        }
+        out.bitset(anyRoute);
+        out.writeBoolean(ips != null);
+        if (ips != null) {
+            ips.write(out);
+        }
+        out.bitset(anyIp);
+        // Names and values in sorted order, so the same policies always encode the same way.
+        Integer[] order = new Integer[attributeNames.length];
+        for (int a = 0; a < order.length; a++) {
+            order[a] = a;
+        }
+        Arrays.sort(order, Comparator.comparing(a -> attributeNames[a]));
+        out.writeInt(attributeNames.length);
+        for (int a : order) {
+            out.string(attributeNames[a]);
+            Map<String, long[]> values = new TreeMap<>(attributeValues.get(a));
+            out.writeInt(values.size());
+            for (Map.Entry<String, long[]> entry : values.entrySet()) {
+                out.string(entry.getKey());
+                out.bitset(entry.getValue());
+            }
+            out.bitset(anyAttributeValue[a]);
+        }
+        out.bitset(exact);
+    }
+
+    /**
+     * Restores an index written by {@link #write} for {@code policies}, whose matchers are
+     * compiled with {@code backend}.
+     */
+    static PolicyIndex read(PolicyArtifact.Reader in, List<LimitPolicy> policies, MatcherBackend backend) {
+        int words = in.readInt();
+        if (words != Math.max(1, (policies.size() + 63) >>> 6)) {
+            throw new IllegalArgumentException("Index does not fit " + policies.size() + " policies");
+        }
+        RouteTrie routes = in.readBoolean() ? RouteTrie.read(in) : null;
+        long[] anyRoute = bits(in, words);
+        PatriciaTrie ips = in.readBoolean() ? PatriciaTrie.read(in) : null;
+        long[] anyIp = bits(in, words);
+        int attributes = in.readInt();
+        String[] attributeNames = new String[attributes];
+        List<Map<String, long[]>> attributeValues = new ArrayList<>(attributes);
+        long[][] anyAttributeValue = new long[attributes][];
+        for (int a = 0; a < attributes; a++) {
+            attributeNames[a] = in.string();
+            int count = in.readInt();
+            Map<String, long[]> values = new HashMap<>(Math.max(16, count * 2));
+            for (int v = 0; v < count; v++) {
+                values.put(in.string(), bits(in, words));
+            }
+            attributeValues.add(values);
+            anyAttributeValue[a] = bits(in, words);
+        }
+        long[] exact = bits(in, words);
+        return new PolicyIndex(MatcherTable.of(policies, backend), words, routes, anyRoute, ips, anyIp,
+                attributeNames, attributeValues, anyAttributeValue, exact);
+    }
+
+    private static long[] bits(PolicyArtifact.Reader in, int words) {
+        long[] bits = in.bitset();
+        if (bits == null || bits.length != words) {
+            throw new IllegalArgumentException("Policy bitset must have " + words + " words");
+        }
+        return bits;
+    }
+
+    /**
+     * Returns the ordinal of the first policy matching {@code context}, or {@code -1}.
+     */
+    int firstMatch(PolicyContext context) {
+        long[] buffer = scratch.get();
+        candidates(context, buffer);
+        for (int w = 0; w < words; w++) {
+            long bits = buffer[w];
+            while (bits != 0) {
+                int policy = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (confirm(policy, context)) {
+                    return policy;
+                }
+                bits &= bits - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces the contents of {@code matched} with the bitset of every policy matching
+     * {@code context} and returns how many match. {@code matched} must hold a bit per policy.
+     */
+    int matching(PolicyContext context, long[] matched) {
+        long[] buffer = scratch.get();
+        candidates(context, buffer);
+        Arrays.fill(matched, 0L);
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            long bits = buffer[w];
+            while (bits != 0) {
+                int policy = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (confirm(policy, context)) {
+                    matched[w] |= 1L << policy;
+                    count++;
+                }
+                bits &= bits - 1;
+            }
+        }
+        return count;
+    }
+
+    private boolean confirm(int policy, PolicyContext context) {
+        return (exact[policy >>> 6] & (1L << policy)) != 0 || matchers.matches(policy, context);
+    }
+
+    /**
+     * Fills the first {@code words} longs of {@code buffer} with the candidate bitset; the
+     * rest is scratch space.
+     */
+    private void candidates(PolicyContext context, long[] buffer) {
+        System.arraycopy(anyRoute, 0, buffer, 0, words);
+        if (routes != null) {
+            routes.collect(context.route(), buffer);
+        }
+        if (ips != null) {
+            System.arraycopy(anyIp, 0, buffer, words, words);
+            ips.collect(context.ip(), buffer, words);
+            for (int w = 0; w < words; w++) {
+                buffer[w] &= buffer[words + w];
+            }
+        }
+        for (int a = 0; a < attributeNames.length; a++) {
+            String value = context.attribute(attributeSlots[a]);
+            long[] withValue = value != null ? attributeValues.get(a).get(value) : null;
+            long[] unconstrained = anyAttributeValue[a];
+            for (int w = 0; w < words; w++) {
+                buffer[w] &= unconstrained[w] | (withValue != null ? withValue[w] : 0L);
+            }
+        }
+    }
+
+    private static void set(long[] bits, int policy) {
+        bits[policy >>> 6] |= 1L << policy;
+    }
+}
@@ -11,6 +11,6 @@ public interface PolicyMatcher {
     boolean matches(PolicyContext context);
 
     static PolicyMatcher always() {
-        return ctx -> true;
+        return IndexableMatcher.ALWAYS;
     }
 }
@@ -0,0 +1,62 @@
+package io.fluxgate.core.policy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Policy ids that a reload adds, removes, changes or leaves alone. A policy counts as
+ * changed when its rate, burst or window differs; a policy whose matcher changed but whose
+ * limits did not is unchanged, because limiter state only depends on the limits.
+ */
+public record PolicySetDiff(List<String> added, List<String> removed, List<String> changed, List<String> unchanged) {
+
+    public PolicySetDiff {
+        added = List.copyOf(added);
+        removed = List.copyOf(removed);
+        changed = List.copyOf(changed);
+        unchanged = List.copyOf(unchanged);
+    }
+
+    public static PolicySetDiff between(Collection<LimitPolicy> previous, Collection<LimitPolicy> next) {
+        Map<String, LimitPolicy> remaining = new LinkedHashMap<>();
+        for (LimitPolicy policy : previous) {
+            remaining.putIfAbsent(policy.id(), policy);
+        }
+        List<String> added = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        List<String> unchanged = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (LimitPolicy policy : next) {
+            if (!seen.add(policy.id())) {
+                continue;
+            }
+            LimitPolicy old = remaining.remove(policy.id());
+            if (old == null) {
+                added.add(policy.id());
+            } else if (sameLimits(old, policy)) {
+                unchanged.add(policy.id());
+            } else {
+                changed.add(policy.id());
+            }
+        }
+        return new PolicySetDiff(added, new ArrayList<>(remaining.keySet()), changed, unchanged);
+    }
+
+    /**
+     * Returns whether both policies enforce the same rate, burst and window.
+     */
+    public static boolean sameLimits(LimitPolicy left, LimitPolicy right) {
+        return Double.compare(left.limitPerSecond(), right.limitPerSecond()) == 0
+                && Double.compare(left.burstTokens(), right.burstTokens()) == 0
+                && left.windowSeconds() == right.windowSeconds();
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+}
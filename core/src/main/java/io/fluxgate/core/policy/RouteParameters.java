@@ -0,0 +1,139 @@
+package io.fluxgate.core.policy;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer for the {@code {name}} segments a route template captured. Captures are
+ * stored as offsets into the route rather than substrings, so filling the buffer does not
+ * allocate once it has grown to the largest template; read a value in place with
+ * {@link #start(int)} and {@link #end(int)}, or append it with
+ * {@link KeyBuilder#parameters(RouteParameters)}.
+ *
+ * <p>A buffer must only be used by one thread at a time, typically through a
+ * {@link ThreadLocal}.
+ */
+public final class RouteParameters {
+
+    private String route;
+    private String[] names = new String[4];
+    private int[] offsets = new int[8];
+    private int size;
+
+    /**
+     * Matches {@code route} against the route template of {@code policy} and captures its
+     * parameters. The template is the {@code route} constraint at the top level of the
+     * policy's {@code match} block.
+     *
+     * @return whether the policy has a route template and {@code route} matches it; the buffer
+     *         is empty otherwise
+     */
+    public boolean capture(LimitPolicy policy, String route) {
+        RouteTrie template = Matchers.routeTemplate(policy.matcher());
+        if (template == null) {
+            fill(route, null, null, null);
+            return false;
+        }
+        return template.capture(route, this);
+    }
+
+    /**
+     * Number of captured parameters.
+     */
+    public int size() {
+        return size;
+    }
+
+    public String name(int index) {
+        checkIndex(index);
+        return names[index];
+    }
+
+    /**
+     * Offset in {@link #route()} of the first character of the parameter at {@code index}.
+     */
+    public int start(int index) {
+        checkIndex(index);
+        return offsets[index * 2];
+    }
+
+    /**
+     * Offset in {@link #route()} just past the last character of the parameter at {@code index}.
+     */
+    public int end(int index) {
+        checkIndex(index);
+        return offsets[index * 2 + 1];
+    }
+
+    /**
+     * The route the parameters were captured from.
+     */
+    public String route() {
+        return route;
+    }
+
+    /**
+     * Returns the index of the parameter called {@code name}, or {@code -1}.
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the parameter called {@code name} as a new string, or {@code null} if it was not
+     * captured. Prefer the offsets on hot paths.
+     */
+    public String value(String name) {
+        int index = indexOf(name);
+        return index < 0 ? null : route.substring(offsets[index * 2], offsets[index * 2 + 1]);
+    }
+
+    /**
+     * Replaces the contents with the segments of {@code route} that {@code captures} names.
+     *
+     * @param captures parameter names by segment index, {@code null} where a segment is not
+     *                 captured; {@code null} for none
+     * @param starts   start offset of each segment
+     * @param lengths  length of each segment
+     */
+    void fill(String route, String[] captures, int[] starts, int[] lengths) {
+        this.route = route;
+        size = 0;
+        if (captures == null) {
+            return;
+        }
+        for (int segment = 0; segment < captures.length; segment++) {
+            if (captures[segment] == null) {
+                continue;
+            }
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 4);
+            }
+            names[size] = captures[segment];
+            offsets[size * 2] = starts[segment];
+            offsets[size * 2 + 1] = starts[segment] + lengths[segment];
+            size++;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Parameter " + index + " of " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("RouteParameters[");
+        for (int i = 0; i < size; i++) {
+            builder.append(i == 0 ? "" : ", ").append(names[i]).append('=')
+                    .append(route, offsets[i * 2], offsets[i * 2 + 1]);
+        }
+        return builder.append(']').toString();
+    }
+}
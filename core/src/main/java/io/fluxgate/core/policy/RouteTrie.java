@@ -1,63 +1,424 @@
 package io.fluxgate.core.policy;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Path matcher with segment level trie supporting '*' (single segment) and '**' (multi-segment)
- * wildcards. The trie is optimized for read-heavy workloads and does not allocate during
- * matching which keeps GC overhead minimal.
+ * wildcards. Patterns are inserted into a node graph and flattened into arrays by
+ * {@link #freeze()}, like {@link PatriciaTrie}. Lookups scan the route in place: segment
+ * boundaries are found by index, children are found through one open-addressing table keyed
+ * by parent node and segment hash, and labels are compared with
+ * {@link String#regionMatches(int, String, int, int)}. Wildcard backtracking uses an explicit
+ * per-thread stack, so matching neither allocates nor recurses.
+ *
+ * <p>Patterns inserted with a policy ordinal also record that ordinal in a bitset on their
+ * terminal node, so one trie can hold the routes of a whole policy set and
+ * {@link #collect(String, long[])} returns every policy whose pattern matches.
+ *
+ * <p>A {@code {name}} segment matches like {@code *} and names the segment it matched.
+ * Patterns inserted without a policy ordinal record their names on their terminal node, and
+ * {@link #capture(String, RouteParameters)} reports the offsets of the named segments in the
+ * route, so callers can key on them without cutting substrings. Patterns that end on the
+ * same node must name the same segments.
  */
 final class RouteTrie {
 
-    private final Node root = new Node();
+    private static final ThreadLocal<Frames> STACK = ThreadLocal.withInitial(Frames::new);
 
+    private final Node root = new Node(null);
+    private boolean frozen;
+
+    private String[] labels;
+    private int[] singleWildcards;
+    private boolean[] matchHere;
+    private boolean[] multiWildcard;
+    private long[][] exactPolicies;
+    private long[][] multiPolicies;
+    private String[][] captures;
+    private int[] tableParents;
+    private int[] tableHashes;
+    private int[] tableChildren;
+    private int tableMask;
+
+    /**
+     * Inserts the pattern and records the names of its {@code {name}} segments.
+     *
+     * @throws IllegalArgumentException if a parameter is malformed or repeated, or another
+     *                                  pattern ending on the same node names different segments
+     */
     void insert(String pattern) {
+        insert(pattern, -1, 0);
+    }
+
+    /**
+     * Inserts the pattern and marks {@code policy} in the bitsets of its terminal node. With
+     * a policy ordinal, parameter names are not recorded, since the patterns of different
+     * policies may name the same segment differently.
+     *
+     * @param words length of the policy bitsets
+     */
+    void insert(String pattern, int policy, int words) {
+        ensureNotFrozen();
         String normalized = normalize(pattern);
         String[] segments = normalized.isEmpty() ? new String[0] : normalized.split("/");
+        String[] names = new String[segments.length];
+        boolean named = false;
         var node = root;
-        for (String segment : segments) {
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
             if (segment.equals("**")) {
                 node.multiWildcard = true;
                 node = node.ensureTerminal();
+                node.multiPolicies = mark(node.multiPolicies, policy, words);
+                bind(node, policy < 0 && named ? Arrays.copyOf(names, i) : null, pattern);
                 return;
             }
-            if (segment.equals("*")) {
+            String parameter = parameter(segment, pattern);
+            if (parameter != null) {
+                if (Arrays.asList(names).contains(parameter)) {
+                    throw new IllegalArgumentException("Duplicate route parameter {" + parameter + "} in " + pattern);
+                }
+                names[i] = parameter;
+                named = true;
+            }
+            if (parameter != null || segment.equals("*")) {
                 node = node.ensureSingleWildcard();
                 continue;
             }
             node = node.ensureChild(segment);
         }
         node.matchHere = true;
+        node.exactPolicies = mark(node.exactPolicies, policy, words);
+        bind(node, policy < 0 && named ? names : null, pattern);
     }
 
-    boolean matches(String route) {
-        String normalized = normalize(route);
-        String[] segments = normalized.isEmpty() ? new String[0] : normalized.split("/");
-        return matches(root, segments, 0);
+    /**
+     * Records the parameter names of a pattern ending on {@code node}, or {@code null} if it
+     * has none.
+     */
+    private static void bind(Node node, String[] names, String pattern) {
+        if (node.bound && !Arrays.equals(node.captures, names)) {
+            throw new IllegalArgumentException("Route " + pattern
+                    + " names its segments differently from another pattern with the same shape");
+        }
+        node.bound = true;
+        node.captures = names;
     }
 
-    private boolean matches(Node node, String[] segments, int index) {
-        if (index == segments.length) {
-            return node.matchHere || node.multiWildcard;
+    /**
+     * Returns the name of a {@code {name}} segment, or {@code null} for other segments.
+     */
+    private static String parameter(String segment, String pattern) {
+        if (segment.indexOf('{') < 0 && segment.indexOf('}') < 0) {
+            return null;
         }
-        if (node.multiWildcard && (node.matchHere || matches(node, segments, index + 1))) {
-            return true;
+        int last = segment.length() - 1;
+        if (last < 2 || segment.charAt(0) != '{' || segment.charAt(last) != '}') {
+            throw new IllegalArgumentException("Route parameter must span a whole segment: " + pattern);
         }
-        String segment = segments[index];
-        Node exact = node.children.get(segment);
-        if (exact != null && matches(exact, segments, index + 1)) {
-            return true;
+        for (int i = 1; i < last; i++) {
+            char c = segment.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+                throw new IllegalArgumentException("Invalid route parameter name " + segment + " in " + pattern);
+            }
         }
-        if (node.singleWildcard != null && matches(node.singleWildcard, segments, index + 1)) {
-            return true;
+        return segment.substring(1, last);
+    }
+
+    void freeze() {
+        if (frozen) {
+            return;
+        }
+        List<Node> ordered = new ArrayList<>();
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.add(root);
+        int edges = 0;
+        while (!pending.isEmpty()) {
+            Node node = pending.poll();
+            node.index = ordered.size();
+            ordered.add(node);
+            edges += node.children.size();
+            pending.addAll(node.children.values());
+            if (node.singleWildcard != null) {
+                pending.add(node.singleWildcard);
+            }
+        }
+        int size = ordered.size();
+        labels = new String[size];
+        singleWildcards = new int[size];
+        matchHere = new boolean[size];
+        multiWildcard = new boolean[size];
+        exactPolicies = new long[size][];
+        multiPolicies = new long[size][];
+        captures = new String[size][];
+        int capacity = Integer.highestOneBit(Math.max(2, edges * 2 - 1)) << 1;
+        tableParents = new int[capacity];
+        tableHashes = new int[capacity];
+        tableChildren = new int[capacity];
+        Arrays.fill(tableChildren, -1);
+        tableMask = capacity - 1;
+        for (Node node : ordered) {
+            int i = node.index;
+            labels[i] = node.label;
+            singleWildcards[i] = node.singleWildcard != null ? node.singleWildcard.index : -1;
+            matchHere[i] = node.matchHere;
+            multiWildcard[i] = node.multiWildcard;
+            exactPolicies[i] = node.exactPolicies;
+            multiPolicies[i] = node.multiPolicies;
+            captures[i] = node.captures;
+            for (Node child : node.children.values()) {
+                int hash = child.label.hashCode();
+                int slot = slot(i, hash);
+                while (tableChildren[slot] >= 0) {
+                    slot = (slot + 1) & tableMask;
+                }
+                tableParents[slot] = i;
+                tableHashes[slot] = hash;
+                tableChildren[slot] = child.index;
+            }
+        }
+        frozen = true;
+    }
+
+    /**
+     * Writes the frozen arrays, so {@link #read} restores the trie without rebuilding it.
+     */
+    void write(PolicyArtifact.Writer out) {
+        ensureFrozen();
+        out.strings(labels);
+        out.ints(singleWildcards);
+        out.booleans(matchHere);
+        out.booleans(multiWildcard);
+        out.bitsets(exactPolicies);
+        out.bitsets(multiPolicies);
+        for (String[] names : captures) {
+            out.writeBoolean(names != null);
+            if (names != null) {
+                out.strings(names);
+            }
+        }
+        out.ints(tableParents);
+        out.ints(tableHashes);
+        out.ints(tableChildren);
+    }
+
+    static RouteTrie read(PolicyArtifact.Reader in) {
+        RouteTrie trie = new RouteTrie();
+        trie.labels = in.strings();
+        trie.singleWildcards = in.ints();
+        trie.matchHere = in.booleans();
+        trie.multiWildcard = in.booleans();
+        trie.exactPolicies = in.bitsets();
+        trie.multiPolicies = in.bitsets();
+        trie.captures = new String[trie.labels.length][];
+        for (int i = 0; i < trie.captures.length; i++) {
+            trie.captures[i] = in.readBoolean() ? in.strings() : null;
+        }
+        trie.tableParents = in.ints();
+        trie.tableHashes = in.ints();
+        trie.tableChildren = in.ints();
+        trie.tableMask = trie.tableChildren.length - 1;
+        int nodes = trie.labels.length;
+        if (nodes == 0 || Integer.bitCount(trie.tableChildren.length) != 1
+                || trie.singleWildcards.length != nodes || trie.matchHere.length != nodes
+                || trie.multiWildcard.length != nodes || trie.exactPolicies.length != nodes
+                || trie.multiPolicies.length != nodes || trie.tableParents.length != trie.tableChildren.length
+                || trie.tableHashes.length != trie.tableChildren.length) {
+            throw new IllegalArgumentException("Inconsistent route trie arrays");
+        }
+        // Nodes are numbered breadth first, so every child follows its parent; checking that
+        // here keeps a corrupt file from sending lookups out of bounds or round a cycle.
+        for (int i = 0; i < nodes; i++) {
+            int wildcard = trie.singleWildcards[i];
+            if (wildcard != -1 && (wildcard <= i || wildcard >= nodes)) {
+                throw new IllegalArgumentException("Invalid route trie child " + wildcard);
+            }
+        }
+        for (int slot = 0; slot < trie.tableChildren.length; slot++) {
+            int child = trie.tableChildren[slot];
+            int parent = trie.tableParents[slot];
+            if (child != -1 && (parent < 0 || child <= parent || child >= nodes || trie.labels[child] == null)) {
+                throw new IllegalArgumentException("Invalid route trie child " + child);
+            }
+        }
+        trie.frozen = true;
+        return trie;
+    }
+
+    boolean matches(String route) {
+        ensureFrozen();
+        Frames stack = STACK.get();
+        int segments = stack.tokenize(route);
+        while (stack.pop()) {
+            int node = stack.node;
+            int segment = stack.segment;
+            if (multiWildcard[node]) {
+                return true;
+            }
+            if (segment == segments) {
+                if (matchHere[node]) {
+                    return true;
+                }
+                continue;
+            }
+            pushChildren(stack, node, route, segment);
+        }
+        return false;
+    }
+
+    /**
+     * Names of the parameters captured by any inserted pattern, in sorted order.
+     */
+    Set<String> parameterNames() {
+        ensureFrozen();
+        Set<String> names = new TreeSet<>();
+        for (String[] captured : captures) {
+            if (captured != null) {
+                for (String name : captured) {
+                    if (name != null) {
+                        names.add(name);
+                    }
+                }
+            }
         }
-        if (node.multiWildcard) {
-            return matches(node, segments, index + 1);
+        return names;
+    }
+
+    /**
+     * Matches {@code route} like {@link #matches} and fills {@code parameters} with the
+     * segments named by the matching pattern. Literal segments are tried before wildcards, so
+     * when several patterns match, the one with the most literal prefix wins.
+     *
+     * @return whether a pattern matched; {@code parameters} is cleared otherwise
+     */
+    boolean capture(String route, RouteParameters parameters) {
+        ensureFrozen();
+        Frames stack = STACK.get();
+        int segments = stack.tokenize(route);
+        while (stack.pop()) {
+            int node = stack.node;
+            int segment = stack.segment;
+            if (multiWildcard[node] || segment == segments && matchHere[node]) {
+                parameters.fill(route, captures[node], stack.starts, stack.lengths);
+                return true;
+            }
+            if (segment < segments) {
+                pushChildren(stack, node, route, segment);
+            }
         }
+        parameters.fill(route, null, stack.starts, stack.lengths);
         return false;
     }
 
+    /**
+     * ORs the bitsets of every pattern matching {@code route} into {@code policies}.
+     */
+    void collect(String route, long[] policies) {
+        ensureFrozen();
+        Frames stack = STACK.get();
+        int segments = stack.tokenize(route);
+        while (stack.pop()) {
+            int node = stack.node;
+            int segment = stack.segment;
+            // A '**' here matches whatever remains of the route, including nothing.
+            or(policies, multiPolicies[node]);
+            if (segment == segments) {
+                or(policies, exactPolicies[node]);
+                continue;
+            }
+            pushChildren(stack, node, route, segment);
+        }
+    }
+
+    /**
+     * Pushes the exact and single-wildcard children of {@code node} for the given segment.
+     */
+    private void pushChildren(Frames stack, int node, String route, int segment) {
+        // The exact child is pushed last so it is explored first, as literal routes are the
+        // likelier match.
+        if (singleWildcards[node] >= 0) {
+            stack.push(singleWildcards[node], segment + 1);
+        }
+        int child = child(node, stack.hashes[segment], route, stack.starts[segment], stack.lengths[segment]);
+        if (child >= 0) {
+            stack.push(child, segment + 1);
+        }
+    }
+
+    private int child(int parent, int hash, String route, int offset, int length) {
+        int slot = slot(parent, hash);
+        while (true) {
+            int child = tableChildren[slot];
+            if (child < 0) {
+                return -1;
+            }
+            if (tableParents[slot] == parent && tableHashes[slot] == hash) {
+                String label = labels[child];
+                if (label.length() == length && route.regionMatches(offset, label, 0, length)) {
+                    return child;
+                }
+            }
+            slot = (slot + 1) & tableMask;
+        }
+    }
+
+    private int slot(int parent, int hash) {
+        // Sibling labels often differ only in their last character, so spread the hash
+        // before masking or they land in one probe cluster.
+        int mixed = (hash ^ (parent * 0x85EBCA6B)) * 0x9E3779B9;
+        return (mixed ^ (mixed >>> 15)) & tableMask;
+    }
+
+    /**
+     * Index of the first segment: one leading '/' is skipped.
+     */
+    private static int start(String route) {
+        if (route == null || route.isEmpty()) {
+            return 0;
+        }
+        return route.charAt(0) == '/' ? 1 : 0;
+    }
+
+    /**
+     * End of the last segment. Trailing slashes are dropped, matching the empty trailing
+     * segments that {@link String#split(String)} discards when patterns are inserted.
+     */
+    private static int end(String route, int start) {
+        if (route == null) {
+            return 0;
+        }
+        int end = route.length();
+        while (end > start && route.charAt(end - 1) == '/') {
+            end--;
+        }
+        return end;
+    }
+
+    private static long[] mark(long[] bits, int policy, int words) {
+        if (policy < 0) {
+            return bits;
+        }
+        long[] marked = bits != null ? bits : new long[words];
+        marked[policy >>> 6] |= 1L << policy;
+        return marked;
+    }
+
+    private static void or(long[] target, long[] bits) {
+        if (bits == null) {
+            return;
+        }
+        for (int i = 0; i < bits.length; i++) {
+            target[i] |= bits[i];
+        }
+    }
+
     private static String normalize(String route) {
         if (route == null || route.isEmpty() || route.equals("/")) {
             return "";
@@ -66,19 +427,111 @@ final class RouteTrie {
         return normalized.endsWith("/") ? normalized.substring(0, normalized.length() - 1) : normalized;
     }
 
+    private void ensureFrozen() {
+        if (!frozen) {
+            throw new IllegalStateException("Trie must be frozen before lookups");
+        }
+    }
+
+    private void ensureNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Trie already frozen");
+        }
+    }
+
+    /**
+     * Per-thread lookup state: the route's segments, located once per lookup together with
+     * their String-compatible hashes so backtracking never rescans them, and the backtracking
+     * stack of (node, segment index) frames.
+     */
+    private static final class Frames {
+        private int[] starts = new int[16];
+        private int[] lengths = new int[16];
+        private int[] hashes = new int[16];
+        private int[] frames = new int[64];
+        private int top;
+        private int node;
+        private int segment;
+
+        /**
+         * Records the segments of {@code route}, pushes the root frame and returns the
+         * segment count.
+         */
+        int tokenize(String route) {
+            int start = start(route);
+            int end = end(route, start);
+            int count = 0;
+            int offset = start;
+            while (offset < end) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    lengths = Arrays.copyOf(lengths, count * 2);
+                    hashes = Arrays.copyOf(hashes, count * 2);
+                }
+                int cursor = offset;
+                int hash = 0;
+                while (cursor < end) {
+                    char c = route.charAt(cursor);
+                    if (c == '/') {
+                        break;
+                    }
+                    hash = 31 * hash + c;
+                    cursor++;
+                }
+                starts[count] = offset;
+                lengths[count] = cursor - offset;
+                hashes[count] = hash;
+                count++;
+                offset = cursor + 1;
+            }
+            top = 0;
+            push(0, 0);
+            return count;
+        }
+
+        void push(int nodeIndex, int segmentIndex) {
+            if (top + 2 > frames.length) {
+                frames = Arrays.copyOf(frames, frames.length * 2);
+            }
+            frames[top] = nodeIndex;
+            frames[top + 1] = segmentIndex;
+            top += 2;
+        }
+
+        boolean pop() {
+            if (top == 0) {
+                return false;
+            }
+            top -= 2;
+            node = frames[top];
+            segment = frames[top + 1];
+            return true;
+        }
+    }
+
     private static final class Node {
+        private final String label;
         private final Map<String, Node> children = new HashMap<>();
         private Node singleWildcard;
         private boolean multiWildcard;
         private boolean matchHere;
+        private long[] exactPolicies;
+        private long[] multiPolicies;
+        private String[] captures;
+        private boolean bound;
+        private int index;
+
+        private Node(String label) {
+            this.label = label;
+        }
 
         Node ensureChild(String segment) {
-            return children.computeIfAbsent(segment, ignored -> new Node());
+            return children.computeIfAbsent(segment, Node::new);
         }
 
         Node ensureSingleWildcard() {
             if (singleWildcard == null) {
-                singleWildcard = new Node();
+                singleWildcard = new Node("*");
             }
             return singleWildcard;
         }
@@ -0,0 +1,305 @@
+package io.fluxgate.core.policy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable set of attribute values, compiled from an {@code equals}, {@code anyOf} or
+ * {@code noneOf} list. {@link #of(Collection)} picks the structure by size: one value is a
+ * plain equality check, a handful are binary-searched in a sorted array, mid-sized lists use
+ * an open-addressing table, and large allow-lists use a minimal perfect hash, where a lookup
+ * is two array reads and a single {@link String#equals(Object)}. Lookups never allocate and
+ * reuse the hash cached in the request's attribute string.
+ */
+interface ValueSet {
+
+    int SORTED_ARRAY_MAX = 8;
+    int OPEN_ADDRESSING_MAX = 256;
+
+    boolean contains(String value);
+
+    static ValueSet of(Collection<String> values) {
+        Set<String> distinct = new LinkedHashSet<>(values);
+        if (distinct.isEmpty()) {
+            throw new IllegalArgumentException("value set requires at least one value");
+        }
+        if (distinct.size() == 1) {
+            return new Single(distinct.iterator().next());
+        }
+        if (distinct.size() <= SORTED_ARRAY_MAX) {
+            return new SortedArray(distinct);
+        }
+        if (distinct.size() > OPEN_ADDRESSING_MAX) {
+            PerfectHash perfect = PerfectHash.build(distinct);
+            if (perfect != null) {
+                return perfect;
+            }
+        }
+        return new OpenAddressing(distinct);
+    }
+
+    /**
+     * Writes {@code set}, which may be {@code null}, in its compiled layout, so {@link #read}
+     * restores it without sorting, hashing into slots or searching for perfect hash seeds.
+     */
+    static void write(ValueSet set, PolicyArtifact.Writer out) {
+        if (set == null) {
+            out.writeByte(0);
+        } else if (set instanceof Single single) {
+            out.writeByte(1);
+            out.string(single.value);
+        } else if (set instanceof SortedArray sorted) {
+            out.writeByte(2);
+            out.strings(sorted.values);
+        } else if (set instanceof OpenAddressing table) {
+            out.writeByte(3);
+            out.strings(table.slots);
+        } else if (set instanceof PerfectHash perfect) {
+            out.writeByte(4);
+            out.strings(perfect.keys);
+            out.ints(perfect.seeds);
+        } else {
+            throw new IllegalArgumentException("Unknown value set " + set.getClass());
+        }
+    }
+
+    static ValueSet read(PolicyArtifact.Reader in) {
+        byte kind = in.readByte();
+        return switch (kind) {
+            case 0 -> null;
+            case 1 -> new Single(requireValues(new String[] {in.string()})[0]);
+            case 2 -> new SortedArray(requireValues(in.strings()));
+            case 3 -> new OpenAddressing(in.strings());
+            case 4 -> new PerfectHash(requireValues(in.strings()), in.ints());
+            default -> throw new IllegalArgumentException("Unknown value set kind " + kind);
+        };
+    }
+
+    private static String[] requireValues(String[] values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("Empty value set");
+        }
+        for (String value : values) {
+            if (value == null) {
+                throw new IllegalArgumentException("Null value in value set");
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Mixes a String hash with a seed; both hash tables use it so clustered hashes of similar
+     * strings spread out.
+     */
+    private static int mix(int hash, int seed) {
+        int mixed = (hash ^ (seed * 0x85EBCA6B)) * 0x9E3779B9;
+        mixed ^= mixed >>> 16;
+        mixed *= 0x7FEB352D;
+        return mixed ^ (mixed >>> 15);
+    }
+
+    /**
+     * Maps a mixed hash onto {@code [0, range)} without a division.
+     */
+    private static int reduce(int mixed, int range) {
+        return (int) (((mixed & 0xFFFFFFFFL) * range) >>> 32);
+    }
+
+    record Single(String value) implements ValueSet {
+
+        @Override
+        public boolean contains(String candidate) {
+            return value.equals(candidate);
+        }
+    }
+
+    final class SortedArray implements ValueSet {
+
+        private final String[] values;
+
+        SortedArray(Collection<String> values) {
+            this.values = values.toArray(new String[0]);
+            Arrays.sort(this.values);
+        }
+
+        private SortedArray(String[] sorted) {
+            this.values = sorted;
+        }
+
+        @Override
+        public boolean contains(String value) {
+            return value != null && Arrays.binarySearch(values, value) >= 0;
+        }
+    }
+
+    final class OpenAddressing implements ValueSet {
+
+        private final String[] slots;
+        private final int[] hashes;
+        private final int mask;
+
+        OpenAddressing(Collection<String> values) {
+            int capacity = Integer.highestOneBit(Math.max(2, values.size() * 2 - 1)) << 1;
+            this.slots = new String[capacity];
+            this.hashes = new int[capacity];
+            this.mask = capacity - 1;
+            for (String value : values) {
+                int hash = value.hashCode();
+                int slot = mix(hash, 0) & mask;
+                while (slots[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = value;
+                hashes[slot] = hash;
+            }
+        }
+
+        private OpenAddressing(String[] slots) {
+            if (Integer.bitCount(slots.length) != 1) {
+                throw new IllegalArgumentException("Open-addressing table size must be a power of two");
+            }
+            // A probe for a missing value only stops at an empty slot.
+            if (!Arrays.asList(slots).contains(null)) {
+                throw new IllegalArgumentException("Open-addressing table has no empty slot");
+            }
+            this.slots = slots;
+            this.hashes = new int[slots.length];
+            this.mask = slots.length - 1;
+            for (int i = 0; i < slots.length; i++) {
+                hashes[i] = slots[i] != null ? slots[i].hashCode() : 0;
+            }
+        }
+
+        @Override
+        public boolean contains(String value) {
+            if (value == null) {
+                return false;
+            }
+            int hash = value.hashCode();
+            int slot = mix(hash, 0) & mask;
+            String candidate;
+            while ((candidate = slots[slot]) != null) {
+                if (hashes[slot] == hash && candidate.equals(value)) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Minimal perfect hash built by hash-and-displace: keys are grouped into buckets, and each
+     * bucket, largest first, is given the first seed that sends all its keys to free slots.
+     * Buckets of one key skip the search and store their slot directly, encoded as a
+     * negative seed. Every key ends up in its own slot of an array exactly as long as the
+     * key set, so a lookup compares against one candidate.
+     */
+    final class PerfectHash implements ValueSet {
+
+        private static final int KEYS_PER_BUCKET = 4;
+        private static final int MAX_SEED = 1 << 16;
+
+        private final String[] keys;
+        private final int[] seeds;
+
+        private PerfectHash(String[] keys, int[] seeds) {
+            if (seeds.length == 0) {
+                throw new IllegalArgumentException("Perfect hash has no seeds");
+            }
+            for (int seed : seeds) {
+                if (seed < -keys.length) {
+                    throw new IllegalArgumentException("Invalid perfect hash seed " + seed);
+                }
+            }
+            this.keys = keys;
+            this.seeds = seeds;
+        }
+
+        /**
+         * Returns {@code null} if no perfect hash exists, which happens when two values share
+         * a String hash code, or if the seed search gives up.
+         */
+        static PerfectHash build(Collection<String> values) {
+            int size = values.size();
+            int bucketCount = Math.max(1, size / KEYS_PER_BUCKET);
+            List<List<String>> buckets = new ArrayList<>(bucketCount);
+            for (int i = 0; i < bucketCount; i++) {
+                buckets.add(new ArrayList<>());
+            }
+            Set<Integer> hashCodes = new HashSet<>();
+            for (String value : values) {
+                if (!hashCodes.add(value.hashCode())) {
+                    return null;
+                }
+                buckets.get(reduce(mix(value.hashCode(), 0), bucketCount)).add(value);
+            }
+            Integer[] order = new Integer[bucketCount];
+            for (int i = 0; i < bucketCount; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(buckets.get(b).size(), buckets.get(a).size()));
+
+            String[] keys = new String[size];
+            int[] seeds = new int[bucketCount];
+            int[] placed = new int[KEYS_PER_BUCKET * 8];
+            int nextFree = 0;
+            for (int bucketIndex : order) {
+                List<String> bucket = buckets.get(bucketIndex);
+                if (bucket.isEmpty()) {
+                    continue;
+                }
+                if (bucket.size() == 1) {
+                    while (keys[nextFree] != null) {
+                        nextFree++;
+                    }
+                    keys[nextFree] = bucket.get(0);
+                    seeds[bucketIndex] = -nextFree - 1;
+                    continue;
+                }
+                if (bucket.size() > placed.length) {
+                    placed = new int[bucket.size()];
+                }
+                int seed = 1;
+                while (!place(bucket, seed, keys, placed)) {
+                    if (++seed > MAX_SEED) {
+                        return null;
+                    }
+                }
+                seeds[bucketIndex] = seed;
+            }
+            return new PerfectHash(keys, seeds);
+        }
+
+        private static boolean place(List<String> bucket, int seed, String[] keys, int[] placed) {
+            for (int i = 0; i < bucket.size(); i++) {
+                int slot = reduce(mix(bucket.get(i).hashCode(), seed), keys.length);
+                if (keys[slot] != null) {
+                    for (int j = 0; j < i; j++) {
+                        keys[placed[j]] = null;
+                    }
+                    return false;
+                }
+                keys[slot] = bucket.get(i);
+                placed[i] = slot;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean contains(String value) {
+            if (value == null) {
+                return false;
+            }
+            int hash = value.hashCode();
+            int seed = seeds[reduce(mix(hash, 0), seeds.length)];
+            int slot = seed < 0 ? -seed - 1 : reduce(mix(hash, seed), keys.length);
+            return keys[slot].equals(value);
+        }
+    }
+}
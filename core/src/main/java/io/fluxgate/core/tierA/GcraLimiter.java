@@ -2,15 +2,17 @@ package io.fluxgate.core.tierA;
 
 import java.time.Duration;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * A simple lock-free GCRA (token bucket) implementation using CAS loops.
+ * A simple lock-free GCRA (token bucket) implementation using CAS loops. The rate can be
+ * changed in place with {@link #reconfigure(double, double, long)}, which keeps the permits
+ * already consumed.
  */
 public final class GcraLimiter {
 
     private final long periodNanos;
-    private final double permitsPerSecond;
-    private final long burstTokens;
+    private final AtomicReference<Rate> rate;
     private final AtomicLong tatNanos = new AtomicLong(Long.MIN_VALUE);
 
     public GcraLimiter(double permitsPerSecond, double burstTokens) {
@@ -19,12 +21,54 @@ public final class GcraLimiter {
 
     public GcraLimiter(long periodNanos, double permitsPerSecond, double burstTokens) {
         this.periodNanos = periodNanos;
-        this.permitsPerSecond = permitsPerSecond;
-        this.burstTokens = (long) Math.max(1, Math.ceil(burstTokens));
+        this.rate = new AtomicReference<>(Rate.of(permitsPerSecond, burstTokens));
+    }
+
+    public double permitsPerSecond() {
+        return rate.get().permitsPerSecond();
+    }
+
+    public long burstTokens() {
+        return rate.get().burstTokens();
+    }
+
+    /**
+     * Switches to a new rate and burst. The permits consumed and not yet replenished carry
+     * over, so a client that exhausted its burst does not get a fresh one; the time until
+     * they replenish is rescaled to the new rate. If several threads reconfigure at once,
+     * one of them wins and the others return without changes.
+     */
+    public void reconfigure(double permitsPerSecond, double burstTokens, long nowNanos) {
+        Rate current = rate.get();
+        Rate next = Rate.of(permitsPerSecond, burstTokens);
+        if (current.equals(next) || !rate.compareAndSet(current, next)) {
+            return;
+        }
+        double scale = current.permitsPerSecond() / next.permitsPerSecond();
+        while (true) {
+            long lastTat = tatNanos.get();
+            if (lastTat == Long.MIN_VALUE || lastTat <= nowNanos) {
+                return;
+            }
+            long debt = (long) Math.min(Long.MAX_VALUE / 2d, (lastTat - nowNanos) * scale);
+            if (tatNanos.compareAndSet(lastTat, nowNanos + debt)) {
+                return;
+            }
+        }
     }
 
     public Outcome tryAcquire(long nowNanos) {
-        long period = (long) (periodNanos / permitsPerSecond);
+        return tryAcquire(nowNanos, 1d);
+    }
+
+    /**
+     * Acquires at {@code rateFactor} times the configured rate, e.g. to shed load temporarily
+     * without rebuilding cached limiters. The burst size is unchanged.
+     */
+    public Outcome tryAcquire(long nowNanos, double rateFactor) {
+        Rate current = rate.get();
+        long burstTokens = current.burstTokens();
+        long period = (long) (periodNanos / (current.permitsPerSecond() * rateFactor));
         if (period <= 0) {
             period = 1;
         }
@@ -53,4 +97,11 @@ public final class GcraLimiter {
 
     public record Outcome(boolean allowed, long retryAfterNanos) {
     }
+
+    private record Rate(double permitsPerSecond, long burstTokens) {
+
+        static Rate of(double permitsPerSecond, double burstTokens) {
+            return new Rate(permitsPerSecond, (long) Math.max(1, Math.ceil(burstTokens)));
+        }
+    }
 }
@@ -2,12 +2,22 @@ package io.fluxgate.core.tierB;
 
 import java.time.Duration;
 import java.util.Arrays;
-import java.util.Random;
 
 /**
- * Probabilistic count-min sketch with small counters.
+ * Probabilistic count-min sketch with small counters. The width must be a power of two so
+ * row indexes can be masked; see {@link RowIndexer} for the optional SIMD index path.
+ *
+ * <p>Row seeds are drawn per instance from {@link SketchSeeds#random(int)} unless supplied,
+ * so the index functions cannot be predicted from the source code.
+ *
+ * <p>Sketches built with the same seeds, depth, width and slice window can be exchanged
+ * between nodes: {@link #snapshot(long)} encodes the current slice, {@link #merge} adds a
+ * peer's counters element-wise and {@link #delta}/{@link #applyDelta} ship only the cells
+ * that changed since the previous exchange. Slice epochs are derived from each JVM's own
+ * {@link System#nanoTime()} origin and cannot be compared across nodes, so incoming cells
+ * are rebased onto the receiver's current slice rather than matched by epoch.
  */
-public final class CountMinLogSketch {
+public final class CountMinLogSketch implements CountingSketch {
 
     private final int depth;
     private final int width;
@@ -15,42 +25,79 @@ public final class CountMinLogSketch {
     private final long[] epochs;
     private final long[] seeds;
     private final Duration sliceWindow;
+    private final long sliceWindowNanos;
+    private final RowIndexer indexer;
+    private final ThreadLocal<long[]> rowIndexes;
 
     public CountMinLogSketch(int depth, int width, Duration sliceWindow) {
+        this(depth, width, sliceWindow, SketchSeeds.random(depth));
+    }
+
+    /**
+     * Creates a sketch indexed with the provided row seeds, e.g. from
+     * {@link SketchSeeds#derive(long, int)} so that peers can merge each other's snapshots.
+     */
+    public CountMinLogSketch(int depth, int width, Duration sliceWindow, long[] seeds) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("depth must be positive");
+        }
+        if (width <= 0 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("width must be a positive power of two");
+        }
         this.depth = depth;
         this.width = width;
         this.sliceWindow = sliceWindow;
         this.counters = new long[depth][width];
         this.epochs = new long[width];
-        this.seeds = new long[depth];
-        Random random = new Random(42L);
-        for (int i = 0; i < depth; i++) {
-            seeds[i] = random.nextLong();
-        }
+        this.seeds = SketchSeeds.checkSeeds(seeds, depth);
+        this.sliceWindowNanos = sliceWindow.toNanos();
+        this.indexer = RowIndexer.create(this.seeds, width);
+        this.rowIndexes = indexer.vectorized() ? ThreadLocal.withInitial(() -> new long[depth]) : null;
     }
 
+    @Override
     public void increment(long key, long nowNanos) {
-        for (int i = 0; i < depth; i++) {
-            int index = indexFor(key, i);
-            long epoch = epochs[index];
-            long window = nowNanos / sliceWindow.toNanos();
-            if (epoch != window) {
-                counters[i][index] = 0;
-                epochs[index] = window;
+        long window = nowNanos / sliceWindowNanos;
+        if (rowIndexes != null) {
+            long[] indexes = rowIndexes.get();
+            indexer.indexes(key, indexes);
+            for (int i = 0; i < depth; i++) {
+                increment(i, (int) indexes[i], window);
             }
-            counters[i][index] = Math.min(Long.MAX_VALUE, counters[i][index] + 1);
+            return;
+        }
+        for (int i = 0; i < depth; i++) {
+            increment(i, indexer.index(key, i), window);
         }
     }
 
+    private void increment(int row, int index, long window) {
+        long epoch = epochs[index];
+        if (epoch != window) {
+            counters[row][index] = 0;
+            epochs[index] = window;
+        }
+        counters[row][index] = Math.min(Long.MAX_VALUE, counters[row][index] + 1);
+    }
+
+    @Override
     public long estimate(long key) {
         long min = Long.MAX_VALUE;
-        for (int i = 0; i < depth; i++) {
-            int index = indexFor(key, i);
-            min = Math.min(min, counters[i][index]);
+        if (rowIndexes != null) {
+            long[] indexes = rowIndexes.get();
+            indexer.indexes(key, indexes);
+            for (int i = 0; i < depth; i++) {
+                min = Math.min(min, counters[i][(int) indexes[i]]);
+            }
+        } else {
+            for (int i = 0; i < depth; i++) {
+                min = Math.min(min, counters[i][indexer.index(key, i)]);
+            }
         }
         return min == Long.MAX_VALUE ? 0 : min;
     }
 
+    @Override
     public void reset() {
         for (long[] row : counters) {
             Arrays.fill(row, 0);
@@ -58,13 +105,206 @@ public final class CountMinLogSketch {
         Arrays.fill(epochs, 0);
     }
 
-    int indexFor(long key, int depthIndex) {
-        long hash = key ^ seeds[depthIndex];
-        hash ^= (hash >>> 33);
-        hash *= 0xff51afd7ed558ccdL;
-        hash ^= (hash >>> 33);
-        hash *= 0xc4ceb9fe1a85ec53L;
-        hash ^= (hash >>> 33);
-        return (Math.floorMod(hash, width));
+    /**
+     * Returns the slice epoch for the provided timestamp, i.e. the index of the slice window
+     * that increments at {@code nowNanos} are attributed to.
+     */
+    public long sliceEpoch(long nowNanos) {
+        return nowNanos / sliceWindowNanos;
+    }
+
+    public CountMinLogSketch copy() {
+        CountMinLogSketch copy = new CountMinLogSketch(depth, width, sliceWindow, seeds);
+        for (int i = 0; i < depth; i++) {
+            System.arraycopy(counters[i], 0, copy.counters[i], 0, width);
+        }
+        System.arraycopy(epochs, 0, copy.epochs, 0, width);
+        return copy;
+    }
+
+    /**
+     * Encodes the counters of the slice active at {@code nowNanos}. Cells that still hold
+     * counts from an older slice are written as zero.
+     */
+    @Override
+    public byte[] snapshot(long nowNanos) {
+        long epoch = sliceEpoch(nowNanos);
+        SketchCodec.Writer writer = writeHeader(SketchCodec.writer(SketchCodec.KIND_COUNT_MIN), epoch);
+        writeCells(writer, null, epoch, false);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Rebuilds a sketch from {@link #snapshot(long)} output, including its seeds.
+     */
+    public static CountMinLogSketch fromSnapshot(byte[] snapshot) {
+        SketchCodec.Reader reader = SketchCodec.reader(snapshot, SketchCodec.KIND_COUNT_MIN);
+        int depth = reader.readInt();
+        int width = reader.readInt();
+        reader.checkShape(depth, width);
+        Duration sliceWindow = Duration.ofNanos(reader.readLong());
+        long epoch = reader.readLong();
+        long[] seeds = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            seeds[i] = reader.readLong();
+        }
+        CountMinLogSketch sketch = new CountMinLogSketch(depth, width, sliceWindow, seeds);
+        sketch.readCells(reader, epoch, false);
+        return sketch;
+    }
+
+    /**
+     * Builds a heap sketch whose cells all belong to {@code epoch}. Used to export counters
+     * held by other {@link CountingSketch} implementations in the shared snapshot format.
+     */
+    static CountMinLogSketch ofEpoch(int depth, int width, Duration sliceWindow, long[] seeds,
+                                     long[][] counters, long epoch) {
+        CountMinLogSketch sketch = new CountMinLogSketch(depth, width, sliceWindow, seeds);
+        for (int i = 0; i < depth; i++) {
+            System.arraycopy(counters[i], 0, sketch.counters[i], 0, width);
+        }
+        Arrays.fill(sketch.epochs, epoch);
+        return sketch;
+    }
+
+    /**
+     * Adds the counters of the newest slice of a compatible sketch into the slice active
+     * here at {@code nowNanos}. Cells the peer holds from its older slices are ignored.
+     */
+    public void merge(CountMinLogSketch other, long nowNanos) {
+        requireCompatible(other);
+        long latest = Long.MIN_VALUE;
+        for (int index = 0; index < width; index++) {
+            if (other.epochs[index] > latest && other.holdsCounts(index)) {
+                latest = other.epochs[index];
+            }
+        }
+        long epoch = sliceEpoch(nowNanos);
+        for (int i = 0; i < depth; i++) {
+            long[] source = other.counters[i];
+            for (int index = 0; index < width; index++) {
+                if (source[index] != 0 && other.epochs[index] == latest) {
+                    add(i, index, epoch, source[index]);
+                }
+            }
+        }
+    }
+
+    private boolean holdsCounts(int index) {
+        for (int i = 0; i < depth; i++) {
+            if (counters[i][index] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Encodes the signed per-cell difference between this sketch and {@code baseline}, which
+     * is typically the copy taken at the previous exchange. Only changed cells are written.
+     */
+    public byte[] delta(CountMinLogSketch baseline, long nowNanos) {
+        requireCompatible(baseline);
+        long epoch = sliceEpoch(nowNanos);
+        SketchCodec.Writer writer = writeHeader(SketchCodec.writer(SketchCodec.KIND_COUNT_MIN_DELTA), epoch);
+        writeCells(writer, baseline, epoch, true);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Applies a payload produced by {@link #delta} on a compatible sketch to the slice active
+     * here at {@code nowNanos}. Counters are clamped at zero.
+     */
+    public void applyDelta(byte[] delta, long nowNanos) {
+        SketchCodec.Reader reader = SketchCodec.reader(delta, SketchCodec.KIND_COUNT_MIN_DELTA);
+        int depth = reader.readInt();
+        int width = reader.readInt();
+        long windowNanos = reader.readLong();
+        // The sender's epoch comes from its own clock origin; see the class comment.
+        reader.readLong();
+        // The shape is compared before the seeds are read, so a forged depth allocates nothing.
+        boolean compatible = depth == this.depth && width == this.width && windowNanos == sliceWindowNanos;
+        if (compatible) {
+            long[] seeds = new long[depth];
+            for (int i = 0; i < depth; i++) {
+                seeds[i] = reader.readLong();
+            }
+            compatible = Arrays.equals(seeds, this.seeds);
+        }
+        if (!compatible) {
+            throw new IllegalArgumentException("Delta was produced by an incompatible sketch");
+        }
+        readCells(reader, sliceEpoch(nowNanos), true);
+    }
+
+    private SketchCodec.Writer writeHeader(SketchCodec.Writer writer, long epoch) {
+        writer.writeInt(depth).writeInt(width).writeLong(sliceWindowNanos).writeLong(epoch);
+        for (long seed : seeds) {
+            writer.writeLong(seed);
+        }
+        return writer;
+    }
+
+    private void writeCells(SketchCodec.Writer writer, CountMinLogSketch baseline, long epoch, boolean signed) {
+        int cells = depth * width;
+        long[] values = new long[cells];
+        int nonZero = 0;
+        for (int i = 0; i < depth; i++) {
+            for (int index = 0; index < width; index++) {
+                long value = epochs[index] == epoch ? counters[i][index] : 0L;
+                if (baseline != null && baseline.epochs[index] == epoch) {
+                    value -= baseline.counters[i][index];
+                }
+                values[i * width + index] = value;
+                if (value != 0) {
+                    nonZero++;
+                }
+            }
+        }
+        writer.writeVarLong(nonZero);
+        int previous = -1;
+        for (int cell = 0; cell < cells; cell++) {
+            long value = values[cell];
+            if (value == 0) {
+                continue;
+            }
+            writer.writeVarLong(cell - previous);
+            writer.writeVarLong(signed ? SketchCodec.zigZag(value) : value);
+            previous = cell;
+        }
+    }
+
+    private void readCells(SketchCodec.Reader reader, long epoch, boolean signed) {
+        long nonZero = reader.readVarLong();
+        int cells = depth * width;
+        long cell = -1;
+        for (long n = 0; n < nonZero; n++) {
+            cell += reader.readVarLong();
+            if (cell < 0 || cell >= cells) {
+                throw new IllegalArgumentException("Sketch cell index out of range: " + cell);
+            }
+            long raw = reader.readVarLong();
+            long value = signed ? SketchCodec.unZigZag(raw) : raw;
+            add((int) (cell / width), (int) (cell % width), epoch, value);
+        }
+    }
+
+    private void add(int row, int index, long epoch, long value) {
+        long local = epochs[index];
+        if (local > epoch) {
+            return;
+        }
+        if (local < epoch) {
+            counters[row][index] = 0;
+            epochs[index] = epoch;
+        }
+        counters[row][index] = SketchCodec.saturatedAdd(counters[row][index], value);
+    }
+
+    private void requireCompatible(CountMinLogSketch other) {
+        if (other.depth != depth || other.width != width || !other.sliceWindow.equals(sliceWindow)
+                || !Arrays.equals(other.seeds, seeds)) {
+            throw new IllegalArgumentException("Sketches must share depth, width, slice window and seeds");
+        }
     }
 }
@@ -0,0 +1,20 @@
+package io.fluxgate.core.tierB;
+
+/**
+ * Approximate per-key counter used by Tier B. Implementations differ in where the counters
+ * live: {@link CountMinLogSketch} keeps them on the heap of one JVM, while
+ * {@link SharedCountMinSketch} maps them from a file shared by co-located processes.
+ */
+public interface CountingSketch {
+
+    void increment(long key, long nowNanos);
+
+    long estimate(long key);
+
+    void reset();
+
+    /**
+     * Encodes the active slice in the format read by {@link CountMinLogSketch#fromSnapshot}.
+     */
+    byte[] snapshot(long nowNanos);
+}
@@ -1,48 +1,476 @@
 package io.fluxgate.core.tierB;
 
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Simplified HeavyKeeper implementation capturing frequent keys.
+ * HeavyKeeper top-K tracker. Keys hash into one bucket per row; each bucket stores a
+ * fingerprint and a count packed into a single {@code long} so updates are lock-free CAS
+ * operations. Mismatching keys decay the resident count with probability
+ * {@code decay^count}, which lets large counts survive collisions while small ones are
+ * replaced quickly. The K heaviest keys are kept in an incrementally maintained min-heap.
+ *
+ * <p>The heap is guarded by a lock that {@link #offer(long)} only ever tries to acquire; if
+ * another thread holds it the heap refresh is skipped and picked up on the key's next
+ * arrival, so the request path never blocks.
  */
 public final class HeavyKeeper {
 
-    private final Entry[] entries;
+    private static final int DEFAULT_DEPTH = 2;
+    private static final int WIDTH_PER_SLOT = 4;
+    private static final int DECAY_TABLE_SIZE = 256;
+    private static final long COUNT_MASK = 0xffff_ffffL;
+
+    private final int depth;
+    private final int width;
+    private final AtomicLongArray buckets;
+    private final long[] seeds;
+    private final RowIndexer indexer;
+    private final double[] decayTable;
     private final double decay;
 
+    private final ReentrantLock heapLock = new ReentrantLock();
+    private final long[] heapKeys;
+    private final int[] heapCounts;
+    private final long[] indexKeys;
+    private final int[] indexSlots;
+    private final int indexMask;
+    private volatile int heapSize;
+    private volatile int heapMin;
+
     public HeavyKeeper(int capacity, double decay) {
-        this.entries = new Entry[Math.max(1, capacity)];
+        this(DEFAULT_DEPTH, defaultWidth(capacity), capacity, decay);
+    }
+
+    public HeavyKeeper(int depth, int width, int k, double decay) {
+        this(depth, width, k, decay, SketchSeeds.random(depth));
+    }
+
+    /**
+     * Creates a tracker indexed with the provided row seeds, so that peers built from the same
+     * {@link SketchSeeds} can merge each other's snapshots.
+     */
+    public HeavyKeeper(int depth, int width, int k, double decay, long[] seeds) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("depth must be positive");
+        }
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("width must be a power of two");
+        }
+        if (!(decay > 0d && decay < 1d)) {
+            throw new IllegalArgumentException("decay must be between 0 and 1 (exclusive)");
+        }
+        int capacity = Math.max(1, k);
+        this.depth = depth;
+        this.width = width;
         this.decay = decay;
+        this.buckets = new AtomicLongArray(depth * width);
+        this.seeds = SketchSeeds.checkSeeds(seeds, depth);
+        this.indexer = RowIndexer.scalar(this.seeds, width);
+        this.decayTable = new double[DECAY_TABLE_SIZE];
+        for (int i = 0; i < DECAY_TABLE_SIZE; i++) {
+            decayTable[i] = Math.pow(decay, i);
+        }
+        this.heapKeys = new long[capacity];
+        this.heapCounts = new int[capacity];
+        int indexSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.indexKeys = new long[indexSize];
+        this.indexSlots = new int[indexSize];
+        this.indexMask = indexSize - 1;
     }
 
+    /**
+     * Records one occurrence of the key. Safe for concurrent use.
+     */
     public void offer(long key) {
-        int index = (int) (Math.floorMod(Long.hashCode(key), entries.length));
-        Entry entry = entries[index];
-        if (entry == null) {
-            entries[index] = new Entry(key, 1);
+        int fingerprint = fingerprint(key);
+        int estimate = 0;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + indexFor(key, row);
+            int count = update(index, fingerprint);
+            if (count > estimate) {
+                estimate = count;
+            }
+        }
+        if (estimate == 0) {
             return;
         }
-        if (entry.key == key) {
-            entry.count++;
+        if (heapSize == heapKeys.length && estimate <= heapMin) {
             return;
         }
-        entry.count = Math.max(1, (int) (entry.count * decay));
-        if (entry.count == 1) {
-            entry.key = key;
+        if (!heapLock.tryLock()) {
+            return;
+        }
+        try {
+            updateHeap(key, estimate);
+        } finally {
+            heapLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the bucket estimate for the key, or zero when no row currently holds its
+     * fingerprint.
+     */
+    public int estimate(long key) {
+        int fingerprint = fingerprint(key);
+        int estimate = 0;
+        for (int row = 0; row < depth; row++) {
+            long bucket = buckets.get(row * width + indexFor(key, row));
+            if (fingerprintOf(bucket) == fingerprint) {
+                estimate = Math.max(estimate, countOf(bucket));
+            }
         }
+        return estimate;
     }
 
+    /**
+     * Returns a copy of the current top-K entries in heap order (smallest count first, the
+     * remainder unordered). Runs in O(K).
+     */
     public Entry[] topK() {
-        PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparingInt(e -> -e.count));
-        Arrays.stream(entries).filter(e -> e != null && e.count > 0).forEach(queue::offer);
-        return queue.toArray(new Entry[0]);
+        heapLock.lock();
+        try {
+            int size = heapSize;
+            Entry[] entries = new Entry[size];
+            for (int i = 0; i < size; i++) {
+                entries[i] = new Entry(heapKeys[i], heapCounts[i]);
+            }
+            return entries;
+        } finally {
+            heapLock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return heapKeys.length;
+    }
+
+    public double decay() {
+        return decay;
+    }
+
+    /**
+     * Encodes the buckets and the current top-K keys together with the seeds, depth, width,
+     * K and decay needed to rebuild or merge the structure on another node.
+     */
+    public byte[] snapshot() {
+        SketchCodec.Writer writer = SketchCodec.writer(SketchCodec.KIND_HEAVY_KEEPER)
+                .writeInt(depth).writeInt(width).writeInt(heapKeys.length).writeDouble(decay);
+        for (long seed : seeds) {
+            writer.writeLong(seed);
+        }
+        long[] cells = new long[buckets.length()];
+        int nonZero = 0;
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = buckets.get(i);
+            if (countOf(cells[i]) != 0) {
+                nonZero++;
+            }
+        }
+        writer.writeVarLong(nonZero);
+        int previous = -1;
+        for (int i = 0; i < cells.length; i++) {
+            if (countOf(cells[i]) == 0) {
+                continue;
+            }
+            writer.writeVarLong(i - previous).writeLong(cells[i]);
+            previous = i;
+        }
+        Entry[] top = topK();
+        writer.writeVarLong(top.length);
+        for (Entry entry : top) {
+            writer.writeLong(entry.key()).writeVarLong(entry.count());
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Rebuilds a HeavyKeeper from {@link #snapshot()} output.
+     */
+    public static HeavyKeeper fromSnapshot(byte[] snapshot) {
+        SketchCodec.Reader reader = SketchCodec.reader(snapshot, SketchCodec.KIND_HEAVY_KEEPER);
+        int depth = reader.readInt();
+        int width = reader.readInt();
+        int k = reader.readInt();
+        double decay = reader.readDouble();
+        reader.checkShape(depth, width);
+        // The heap never holds more keys than there are buckets to count them in.
+        if (k <= 0 || k > depth * width) {
+            throw new IllegalArgumentException("Invalid HeavyKeeper capacity " + k);
+        }
+        long[] seeds = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            seeds[i] = reader.readLong();
+        }
+        HeavyKeeper keeper = new HeavyKeeper(depth, width, k, decay, seeds);
+        long nonZero = reader.readVarLong();
+        long cell = -1;
+        for (long n = 0; n < nonZero; n++) {
+            cell += reader.readVarLong();
+            if (cell < 0 || cell >= keeper.buckets.length()) {
+                throw new IllegalArgumentException("HeavyKeeper bucket index out of range: " + cell);
+            }
+            keeper.buckets.set((int) cell, reader.readLong());
+        }
+        long entries = reader.readVarLong();
+        for (long n = 0; n < entries; n++) {
+            long key = reader.readLong();
+            int count = (int) Math.min(Integer.MAX_VALUE, reader.readVarLong());
+            keeper.updateHeap(key, count);
+        }
+        return keeper;
+    }
+
+    /**
+     * Folds a compatible HeavyKeeper into this one. Buckets holding the same fingerprint add
+     * their counts; conflicting buckets keep the larger fingerprint with the difference of the
+     * two counts. The heap is then rebuilt from the union of both candidate sets.
+     */
+    public void merge(HeavyKeeper other) {
+        if (other.depth != depth || other.width != width || !Arrays.equals(other.seeds, seeds)) {
+            throw new IllegalArgumentException("HeavyKeepers must share depth, width and seeds");
+        }
+        for (int i = 0; i < buckets.length(); i++) {
+            long incoming = other.buckets.get(i);
+            if (countOf(incoming) == 0) {
+                continue;
+            }
+            while (true) {
+                long bucket = buckets.get(i);
+                long merged = mergeBuckets(bucket, incoming);
+                if (buckets.compareAndSet(i, bucket, merged)) {
+                    break;
+                }
+            }
+        }
+        Entry[] candidates = other.topK();
+        heapLock.lock();
+        try {
+            long[] keys = new long[heapSize + candidates.length];
+            int size = heapSize;
+            System.arraycopy(heapKeys, 0, keys, 0, size);
+            for (Entry candidate : candidates) {
+                keys[size++] = candidate.key();
+            }
+            Arrays.fill(indexSlots, 0);
+            heapSize = 0;
+            for (int i = 0; i < size; i++) {
+                int estimate = estimate(keys[i]);
+                if (estimate > 0) {
+                    updateHeap(keys[i], estimate);
+                }
+            }
+            heapMin = heapSize == 0 ? 0 : heapCounts[0];
+        } finally {
+            heapLock.unlock();
+        }
+    }
+
+    private static long mergeBuckets(long bucket, long incoming) {
+        int count = countOf(bucket);
+        int incomingCount = countOf(incoming);
+        if (count == 0) {
+            return incoming;
+        }
+        if (fingerprintOf(bucket) == fingerprintOf(incoming)) {
+            long sum = (long) count + incomingCount;
+            return pack(fingerprintOf(bucket), (int) Math.min(Integer.MAX_VALUE, sum));
+        }
+        if (count >= incomingCount) {
+            return count == incomingCount ? 0L : pack(fingerprintOf(bucket), count - incomingCount);
+        }
+        return pack(fingerprintOf(incoming), incomingCount - count);
+    }
+
+    private int update(int index, int fingerprint) {
+        while (true) {
+            long bucket = buckets.get(index);
+            int count = countOf(bucket);
+            long updated;
+            int result;
+            if (count == 0) {
+                updated = pack(fingerprint, 1);
+                result = 1;
+            } else if (fingerprintOf(bucket) == fingerprint) {
+                if (count == Integer.MAX_VALUE) {
+                    return count;
+                }
+                updated = pack(fingerprint, count + 1);
+                result = count + 1;
+            } else {
+                if (!shouldDecay(count)) {
+                    return 0;
+                }
+                if (count == 1) {
+                    updated = pack(fingerprint, 1);
+                    result = 1;
+                } else {
+                    updated = pack(fingerprintOf(bucket), count - 1);
+                    result = 0;
+                }
+            }
+            if (buckets.compareAndSet(index, bucket, updated)) {
+                return result;
+            }
+        }
+    }
+
+    private boolean shouldDecay(int count) {
+        if (count >= DECAY_TABLE_SIZE) {
+            return false;
+        }
+        return ThreadLocalRandom.current().nextDouble() < decayTable[count];
+    }
+
+    private void updateHeap(long key, int estimate) {
+        int slot = findSlot(key);
+        if (slot >= 0) {
+            int previous = heapCounts[slot];
+            heapCounts[slot] = estimate;
+            if (estimate > previous) {
+                siftDown(slot);
+            } else {
+                siftUp(slot);
+            }
+        } else if (heapSize < heapKeys.length) {
+            int size = heapSize;
+            heapKeys[size] = key;
+            heapCounts[size] = estimate;
+            indexPut(key, size);
+            heapSize = size + 1;
+            siftUp(size);
+        } else if (estimate > heapCounts[0]) {
+            indexRemove(heapKeys[0]);
+            heapKeys[0] = key;
+            heapCounts[0] = estimate;
+            indexPut(key, 0);
+            siftDown(0);
+        }
+        heapMin = heapCounts[0];
+    }
+
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (heapCounts[parent] <= heapCounts[slot]) {
+                return;
+            }
+            swap(slot, parent);
+            slot = parent;
+        }
+    }
+
+    private void siftDown(int slot) {
+        int size = heapSize;
+        while (true) {
+            int left = slot * 2 + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && heapCounts[right] < heapCounts[left]) {
+                smallest = right;
+            }
+            if (heapCounts[slot] <= heapCounts[smallest]) {
+                return;
+            }
+            swap(slot, smallest);
+            slot = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long key = heapKeys[a];
+        int count = heapCounts[a];
+        heapKeys[a] = heapKeys[b];
+        heapCounts[a] = heapCounts[b];
+        heapKeys[b] = key;
+        heapCounts[b] = count;
+        indexPut(heapKeys[a], a);
+        indexPut(heapKeys[b], b);
+    }
+
+    private int findSlot(long key) {
+        int index = mix(key) & indexMask;
+        while (indexSlots[index] != 0) {
+            if (indexKeys[index] == key) {
+                return indexSlots[index] - 1;
+            }
+            index = (index + 1) & indexMask;
+        }
+        return -1;
+    }
+
+    private void indexPut(long key, int slot) {
+        int index = mix(key) & indexMask;
+        while (indexSlots[index] != 0 && indexKeys[index] != key) {
+            index = (index + 1) & indexMask;
+        }
+        indexKeys[index] = key;
+        indexSlots[index] = slot + 1;
+    }
+
+    private void indexRemove(long key) {
+        int index = mix(key) & indexMask;
+        while (indexSlots[index] != 0 && indexKeys[index] != key) {
+            index = (index + 1) & indexMask;
+        }
+        if (indexSlots[index] == 0) {
+            return;
+        }
+        // backward-shift deletion keeps probe sequences intact without tombstones
+        int hole = index;
+        int next = (hole + 1) & indexMask;
+        while (indexSlots[next] != 0) {
+            int home = mix(indexKeys[next]) & indexMask;
+            if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+                indexKeys[hole] = indexKeys[next];
+                indexSlots[hole] = indexSlots[next];
+                hole = next;
+            }
+            next = (next + 1) & indexMask;
+        }
+        indexSlots[hole] = 0;
+    }
+
+    int indexFor(long key, int row) {
+        return indexer.index(key, row);
+    }
+
+    private static int fingerprint(long key) {
+        long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (hash >>> 32);
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 29));
+    }
+
+    private static long pack(int fingerprint, int count) {
+        return ((long) fingerprint << 32) | (count & COUNT_MASK);
+    }
+
+    private static int fingerprintOf(long bucket) {
+        return (int) (bucket >>> 32);
+    }
+
+    private static int countOf(long bucket) {
+        return (int) bucket;
+    }
+
+    private static int defaultWidth(int capacity) {
+        int target = Math.max(1, capacity) * WIDTH_PER_SLOT;
+        return Integer.highestOneBit(target - 1) << 1;
     }
 
     public static final class Entry {
-        long key;
-        int count;
+        private final long key;
+        private final int count;
 
         public Entry(long key, int count) {
             this.key = key;
@@ -0,0 +1,52 @@
+package io.fluxgate.core.tierB;
+
+/**
+ * Maps a 64-bit key to one column per sketch row. Every row mixes the key with its own seed
+ * through the murmur3 finalizer, injecting a second seed-derived key between the rounds, and
+ * masks the result to a power-of-two width, so the scalar and SIMD implementations produce
+ * identical indexes. The seeds are secret; see {@link SketchSeeds}.
+ *
+ * <p>{@link #create(long[], int)} picks the implementation once: the {@code jdk.incubator.vector}
+ * backend is used when the module is present at runtime (for example via
+ * {@code --add-modules jdk.incubator.vector}) and {@code -Dfluxgate.sketch.vector=false} is not
+ * set; otherwise the scalar loop is used.
+ */
+public interface RowIndexer {
+
+    /**
+     * Returns the column for {@code key} in {@code row}.
+     */
+    int index(long key, int row);
+
+    /**
+     * Writes the column of every row into {@code out[0..depth)}.
+     */
+    void indexes(long key, long[] out);
+
+    int depth();
+
+    /**
+     * Returns whether {@link #indexes(long, long[])} computes all rows in one SIMD pass, in
+     * which case callers should prefer it over per-row {@link #index(long, int)} calls.
+     */
+    boolean vectorized();
+
+    static RowIndexer create(long[] seeds, int width) {
+        if (VectorSupport.AVAILABLE && seeds.length > 1) {
+            return VectorSupport.create(seeds, width);
+        }
+        return new ScalarRowIndexer(seeds, width);
+    }
+
+    static RowIndexer scalar(long[] seeds, int width) {
+        return new ScalarRowIndexer(seeds, width);
+    }
+
+    static RowIndexer vector(long[] seeds, int width) {
+        return VectorSupport.create(seeds, width);
+    }
+
+    static boolean vectorAvailable() {
+        return VectorSupport.AVAILABLE;
+    }
+}
@@ -0,0 +1,52 @@
+package io.fluxgate.core.tierB;
+
+/**
+ * Portable {@link RowIndexer} that hashes one row at a time.
+ */
+final class ScalarRowIndexer implements RowIndexer {
+
+    private final long[] seeds;
+    private final long[] tweaks;
+    private final int widthMask;
+
+    ScalarRowIndexer(long[] seeds, int width) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("width must be a power of two");
+        }
+        this.seeds = seeds.clone();
+        this.tweaks = new long[seeds.length];
+        for (int i = 0; i < seeds.length; i++) {
+            tweaks[i] = SketchSeeds.tweak(seeds[i]);
+        }
+        this.widthMask = width - 1;
+    }
+
+    @Override
+    public int index(long key, int row) {
+        long hash = key ^ seeds[row];
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= tweaks[row];
+        hash ^= (hash >>> 33);
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= (hash >>> 33);
+        return (int) hash & widthMask;
+    }
+
+    @Override
+    public void indexes(long key, long[] out) {
+        for (int row = 0; row < seeds.length; row++) {
+            out[row] = index(key, row);
+        }
+    }
+
+    @Override
+    public int depth() {
+        return seeds.length;
+    }
+
+    @Override
+    public boolean vectorized() {
+        return false;
+    }
+}
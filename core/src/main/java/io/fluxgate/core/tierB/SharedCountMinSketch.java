@@ -0,0 +1,279 @@
+package io.fluxgate.core.tierB;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-min sketch whose counters live in a memory-mapped file, typically under
+ * {@code /dev/shm}, so that every worker process on a host counts into the same cells.
+ *
+ * <p>Each cell packs the slice epoch into its upper {@value #EPOCH_BITS} bits and the count
+ * into the rest, and is updated with a compare-and-set on the mapped buffer. A cell whose
+ * epoch is stale reads as zero and restarts at one on the next increment, so no process has
+ * to reset the shared counters. Because {@link System#nanoTime()} is not comparable across
+ * processes, slice epochs are derived from a wall clock instead of the caller's timestamp.
+ *
+ * <p>The first process to open the file writes the header (shape, slice window and seeds)
+ * under a file lock; later processes validate it and adopt the stored seeds.
+ */
+public final class SharedCountMinSketch implements CountingSketch, Closeable {
+
+    static final int EPOCH_BITS = 24;
+    private static final int COUNT_BITS = Long.SIZE - EPOCH_BITS;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long EPOCH_MASK = (1L << EPOCH_BITS) - 1;
+
+    private static final int MAGIC = 0x46475348; // "FGSH"
+    private static final int VERSION = 2;
+    private static final int HEADER_FIXED_BYTES = 32;
+    private static final VarHandle CELLS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final int depth;
+    private final int width;
+    private final Duration sliceWindow;
+    private final long sliceWindowNanos;
+    private final long[] seeds;
+    private final RowIndexer indexer;
+    private final LongSupplier wallClockNanos;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int cellsOffset;
+
+    private SharedCountMinSketch(int depth, int width, Duration sliceWindow, long[] seeds,
+                                 LongSupplier wallClockNanos, FileChannel channel, MappedByteBuffer buffer,
+                                 int cellsOffset) {
+        this.depth = depth;
+        this.width = width;
+        this.sliceWindow = sliceWindow;
+        this.sliceWindowNanos = sliceWindow.toNanos();
+        this.seeds = seeds;
+        this.indexer = RowIndexer.create(seeds, width);
+        this.wallClockNanos = wallClockNanos;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.cellsOffset = cellsOffset;
+    }
+
+    /**
+     * Default location for a named shared sketch: {@code /dev/shm/fluxgate-<name>.sketch}.
+     */
+    public static Path defaultPath(String name) {
+        return Path.of("/dev/shm", "fluxgate-" + name + ".sketch");
+    }
+
+    public static SharedCountMinSketch open(Path file, int depth, int width, Duration sliceWindow) {
+        return open(file, depth, width, sliceWindow, null, () -> System.currentTimeMillis() * 1_000_000L);
+    }
+
+    /**
+     * Maps {@code file}, creating and initialising it if needed. Every process sharing the file
+     * must request the same depth, width and slice window.
+     *
+     * @param seeds row seeds written by the process that creates the file, or {@code null} to
+     *              draw them from {@link SketchSeeds#random(int)}; later processes always adopt
+     *              the seeds stored in the file
+     * @param wallClockNanos clock that is consistent across the processes sharing the file
+     */
+    public static SharedCountMinSketch open(Path file, int depth, int width, Duration sliceWindow, long[] seeds,
+                                            LongSupplier wallClockNanos) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("depth must be positive");
+        }
+        if (width <= 0 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("width must be a positive power of two");
+        }
+        if (sliceWindow.toNanos() <= 0) {
+            throw new IllegalArgumentException("sliceWindow must be positive");
+        }
+        int cellsOffset = align(HEADER_FIXED_BYTES + depth * Long.BYTES, 64);
+        long size = cellsOffset + (long) depth * width * Long.BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Shared sketch of " + depth + "x" + width + " is too large to map");
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long[] rowSeeds;
+            // Whoever locks an empty file first writes the header; the others validate it.
+            FileLock lock = channel.lock();
+            try {
+                if (channel.size() == 0) {
+                    rowSeeds = seeds == null ? SketchSeeds.random(depth) : SketchSeeds.checkSeeds(seeds, depth);
+                    writeHeader(channel, depth, width, sliceWindow.toNanos(), rowSeeds, size);
+                } else {
+                    rowSeeds = readHeader(channel, depth, width, sliceWindow.toNanos(), size);
+                }
+            } finally {
+                lock.release();
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.nativeOrder());
+            return new SharedCountMinSketch(depth, width, sliceWindow, rowSeeds, wallClockNanos, channel, buffer,
+                    cellsOffset);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new IllegalStateException("Unable to map shared sketch " + file, e);
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Counts one occurrence of the key in the current wall-clock slice. {@code nowNanos} is
+     * ignored because monotonic timestamps differ between the processes sharing the file.
+     */
+    @Override
+    public void increment(long key, long nowNanos) {
+        long epoch = currentEpoch();
+        for (int i = 0; i < depth; i++) {
+            int offset = offset(i, indexer.index(key, i));
+            long cell;
+            long next;
+            do {
+                cell = (long) CELLS.getVolatile(buffer, offset);
+                long count = epochOf(cell) == epoch ? cell & COUNT_MASK : 0L;
+                if (count == COUNT_MASK) {
+                    break;
+                }
+                next = (epoch << COUNT_BITS) | (count + 1);
+            } while (!CELLS.compareAndSet(buffer, offset, cell, next));
+        }
+    }
+
+    @Override
+    public long estimate(long key) {
+        long epoch = currentEpoch();
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, countAt(offset(i, indexer.index(key, i)), epoch));
+        }
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    /**
+     * Clears the counters for every process sharing the file. Regular aging happens through
+     * the slice epochs, so this is only needed to discard counts explicitly.
+     */
+    @Override
+    public void reset() {
+        for (int cell = 0; cell < depth * width; cell++) {
+            CELLS.setVolatile(buffer, cellsOffset + cell * Long.BYTES, 0L);
+        }
+    }
+
+    @Override
+    public byte[] snapshot(long nowNanos) {
+        long epoch = currentEpoch();
+        long[][] counters = new long[depth][width];
+        for (int i = 0; i < depth; i++) {
+            for (int index = 0; index < width; index++) {
+                counters[i][index] = countAt(offset(i, index), epoch);
+            }
+        }
+        return CountMinLogSketch.ofEpoch(depth, width, sliceWindow, seeds, counters, epoch)
+                .snapshot(epoch * sliceWindowNanos);
+    }
+
+    public Duration sliceWindow() {
+        return sliceWindow;
+    }
+
+    /**
+     * Closes the backing channel. The mapping itself is released when the sketch is garbage
+     * collected, so the sketch must not be used after closing.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long currentEpoch() {
+        return (wallClockNanos.getAsLong() / sliceWindowNanos) & EPOCH_MASK;
+    }
+
+    private long countAt(int offset, long epoch) {
+        long cell = (long) CELLS.getVolatile(buffer, offset);
+        return epochOf(cell) == epoch ? cell & COUNT_MASK : 0L;
+    }
+
+    private int offset(int row, int index) {
+        return cellsOffset + (row * width + index) * Long.BYTES;
+    }
+
+    private static long epochOf(long cell) {
+        return cell >>> COUNT_BITS;
+    }
+
+    private static void writeHeader(FileChannel channel, int depth, int width, long windowNanos, long[] seeds,
+                                    long size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_FIXED_BYTES + depth * Long.BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(depth).putInt(width).putLong(windowNanos).putLong(0L);
+        for (long seed : seeds) {
+            header.putLong(seed);
+        }
+        header.flip();
+        // Extend first so the header write never races a reader mapping a short file.
+        channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(false);
+    }
+
+    private static long[] readHeader(FileChannel channel, int depth, int width, long windowNanos, long size)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_FIXED_BYTES + depth * Long.BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IllegalStateException("Shared sketch header is truncated");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IllegalStateException("Not a FluxGate shared sketch");
+        }
+        int storedDepth = header.getInt();
+        int storedWidth = header.getInt();
+        long storedWindow = header.getLong();
+        header.getLong();
+        if (storedDepth != depth || storedWidth != width || storedWindow != windowNanos
+                || channel.size() != size) {
+            throw new IllegalStateException("Shared sketch was created as " + storedDepth + "x" + storedWidth
+                    + " with a " + Duration.ofNanos(storedWindow) + " slice window");
+        }
+        long[] seeds = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            seeds[i] = header.getLong();
+        }
+        return seeds;
+    }
+
+    private static int align(int value, int alignment) {
+        return (value + alignment - 1) & -alignment;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // best effort while reporting the original failure
+        }
+    }
+}
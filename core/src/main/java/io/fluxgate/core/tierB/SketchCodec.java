@@ -0,0 +1,189 @@
+package io.fluxgate.core.tierB;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary layout shared by the Tier B sketch snapshots. Every payload starts with a magic
+ * word, a kind byte and a version byte, followed by the sketch specific header and a sparse
+ * body of {@code (index gap, value)} varint pairs for the non-zero cells.
+ */
+final class SketchCodec {
+
+    static final int MAGIC = 0x46474253; // "FGBS"
+    // Version 2: rows are indexed with keyed mixing, so version 1 cells land elsewhere.
+    static final byte VERSION = 2;
+    static final byte KIND_COUNT_MIN = 1;
+    static final byte KIND_COUNT_MIN_DELTA = 2;
+    static final byte KIND_HEAVY_KEEPER = 3;
+    // Cells are sent sparsely, so the payload size cannot bound the shape; 2^24 cells is far
+    // above any configured sketch and keeps a hostile header from allocating gigabytes.
+    static final int MAX_CELLS = 1 << 24;
+
+    private SketchCodec() {
+        throw new IllegalStateException("Cannot instantiate " + SketchCodec.class);
+    }
+
+    static Writer writer(byte kind) {
+        return new Writer(kind);
+    }
+
+    static Reader reader(byte[] payload, byte expectedKind) {
+        return new Reader(payload, expectedKind);
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        if (((a ^ sum) & (b ^ sum)) < 0) {
+            return b > 0 ? Long.MAX_VALUE : 0L;
+        }
+        return Math.max(0L, sum);
+    }
+
+    static final class Writer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        private Writer(byte kind) {
+            writeInt(MAGIC);
+            writeByte(kind);
+            writeByte(VERSION);
+        }
+
+        Writer writeByte(int value) {
+            try {
+                out.writeByte(value);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to encode sketch", e);
+            }
+            return this;
+        }
+
+        Writer writeInt(int value) {
+            try {
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to encode sketch", e);
+            }
+            return this;
+        }
+
+        Writer writeLong(long value) {
+            try {
+                out.writeLong(value);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to encode sketch", e);
+            }
+            return this;
+        }
+
+        Writer writeDouble(double value) {
+            return writeLong(Double.doubleToRawLongBits(value));
+        }
+
+        Writer writeVarLong(long value) {
+            long remaining = value;
+            while ((remaining & ~0x7fL) != 0) {
+                writeByte((int) ((remaining & 0x7f) | 0x80));
+                remaining >>>= 7;
+            }
+            return writeByte((int) remaining);
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    static final class Reader {
+        private final DataInputStream in;
+
+        private Reader(byte[] payload, byte expectedKind) {
+            if (payload == null) {
+                throw new IllegalArgumentException("Sketch snapshot must not be null");
+            }
+            this.in = new DataInputStream(new ByteArrayInputStream(payload));
+            if (readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a FluxGate sketch snapshot");
+            }
+            byte kind = readByte();
+            if (kind != expectedKind) {
+                throw new IllegalArgumentException("Unexpected sketch kind " + kind + ", expected " + expectedKind);
+            }
+            byte version = readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported sketch snapshot version " + version);
+            }
+        }
+
+        /**
+         * Rejects a decoded {@code depth x width} shape before it is allocated. Every row
+         * carries an 8-byte seed, so the depth is bounded by the bytes left in the payload.
+         */
+        void checkShape(int depth, int width) {
+            if (depth <= 0 || width <= 0 || depth > remaining() / Long.BYTES
+                    || (long) depth * width > MAX_CELLS) {
+                throw new IllegalArgumentException("Invalid sketch shape " + depth + "x" + width);
+            }
+        }
+
+        private int remaining() {
+            try {
+                return in.available();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Unreadable sketch snapshot", e);
+            }
+        }
+
+        byte readByte() {
+            try {
+                return in.readByte();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Truncated sketch snapshot", e);
+            }
+        }
+
+        int readInt() {
+            try {
+                return in.readInt();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Truncated sketch snapshot", e);
+            }
+        }
+
+        long readLong() {
+            try {
+                return in.readLong();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Truncated sketch snapshot", e);
+            }
+        }
+
+        double readDouble() {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        long readVarLong() {
+            long result = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                result |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in sketch snapshot");
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.fluxgate.core.tierB;
+
+import java.security.SecureRandom;
+
+/**
+ * Row seeds for the Tier B sketches. Seeds are the secret that keys the row index functions:
+ * an attacker who knows them can craft keys that pile into the same cells, so every sketch
+ * draws its own from {@link SecureRandom} unless the caller supplies them.
+ *
+ * <p>Nodes that exchange snapshots must index with the same seeds. Either derive them from a
+ * shared cluster secret with {@link #derive(long, int)}, or adopt a peer's seeds by rebuilding
+ * its snapshot with {@code fromSnapshot}.
+ */
+public final class SketchSeeds {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private SketchSeeds() {
+        throw new IllegalStateException("Cannot instantiate " + SketchSeeds.class);
+    }
+
+    /**
+     * Returns {@code depth} fresh seeds from a cryptographically strong generator.
+     */
+    public static long[] random(int depth) {
+        long[] seeds = new long[requireDepth(depth)];
+        for (int i = 0; i < depth; i++) {
+            seeds[i] = RANDOM.nextLong();
+        }
+        return seeds;
+    }
+
+    /**
+     * Expands a shared secret into {@code depth} seeds with SplitMix64, so every node
+     * configured with the same secret indexes identically.
+     */
+    public static long[] derive(long secret, int depth) {
+        long[] seeds = new long[requireDepth(depth)];
+        long state = secret;
+        for (int i = 0; i < depth; i++) {
+            state += 0x9e3779b97f4a7c15L;
+            seeds[i] = mix(state);
+        }
+        return seeds;
+    }
+
+    /**
+     * Second key injected between the mixing rounds of a row, derived from the row seed.
+     * Keying both rounds keeps the index of {@code key ^ seed} from being a fixed public
+     * permutation of the input difference.
+     */
+    static long tweak(long seed) {
+        return mix(Long.rotateLeft(seed, 32) ^ 0xd6e8feb86659fd93L);
+    }
+
+    static long[] checkSeeds(long[] seeds, int depth) {
+        if (seeds == null || seeds.length != depth) {
+            throw new IllegalArgumentException("Expected " + depth + " seeds");
+        }
+        return seeds.clone();
+    }
+
+    private static int requireDepth(int depth) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("depth must be positive");
+        }
+        return depth;
+    }
+
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -8,11 +8,11 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public final class SliceRotator {
 
-    private final CountMinLogSketch sketch;
+    private final CountingSketch sketch;
     private final long rotationPeriodNanos;
     private final AtomicLong nextRotation = new AtomicLong();
 
-    public SliceRotator(CountMinLogSketch sketch, Duration rotationPeriod) {
+    public SliceRotator(CountingSketch sketch, Duration rotationPeriod) {
         this.sketch = sketch;
         this.rotationPeriodNanos = rotationPeriod.toNanos();
         this.nextRotation.set(this.rotationPeriodNanos);
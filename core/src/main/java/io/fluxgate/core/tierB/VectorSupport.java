@@ -0,0 +1,62 @@
+package io.fluxgate.core.tierB;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Detects once per JVM whether the incubating Vector API can back {@link RowIndexer}. The
+ * vector indexer is compiled in a separate source set and loaded by name, so the main sources
+ * never link against {@code jdk.incubator.vector}.
+ */
+final class VectorSupport {
+
+    static final String PROPERTY = "fluxgate.sketch.vector";
+    private static final String INDEXER = "io.fluxgate.core.tierB.VectorRowIndexer";
+    private static final MethodHandle FACTORY = detect();
+    static final boolean AVAILABLE = FACTORY != null;
+
+    private VectorSupport() {
+        throw new IllegalStateException("Cannot instantiate " + VectorSupport.class);
+    }
+
+    static RowIndexer create(long[] seeds, int width) {
+        if (FACTORY == null) {
+            throw new IllegalStateException("jdk.incubator.vector is not available; start the JVM with "
+                    + "--add-modules jdk.incubator.vector");
+        }
+        try {
+            return (RowIndexer) FACTORY.invokeExact(seeds, width);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to create vector row indexer", e);
+        }
+    }
+
+    private static MethodHandle detect() {
+        if (!Boolean.parseBoolean(System.getProperty(PROPERTY, "true"))) {
+            return null;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            Class<?> type = Class.forName(INDEXER, false, VectorSupport.class.getClassLoader());
+            MethodHandle factory = MethodHandles.lookup()
+                    .findConstructor(type, MethodType.methodType(void.class, long[].class, int.class))
+                    .asType(MethodType.methodType(RowIndexer.class, long[].class, int.class));
+            return probe((RowIndexer) factory.invokeExact(new long[] {1L, 2L}, 8)) ? factory : null;
+        } catch (Throwable e) {
+            // A missing class, an unlinkable module or a failing probe all fall back to scalar.
+            return null;
+        }
+    }
+
+    private static boolean probe(RowIndexer vector) {
+        long[] out = new long[2];
+        vector.indexes(42L, out);
+        ScalarRowIndexer reference = new ScalarRowIndexer(new long[] {1L, 2L}, 8);
+        return out[0] == reference.index(42L, 0) && out[1] == reference.index(42L, 1);
+    }
+}
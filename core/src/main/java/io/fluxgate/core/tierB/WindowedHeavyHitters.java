@@ -0,0 +1,309 @@
+package io.fluxgate.core.tierB;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tracks heavy hitters over sliding windows. Each slot of {@code slotPeriod} is counted by
+ * its own {@link HeavyKeeper}; when the slot closes, the keeper is stored in a fixed-size
+ * ring buffer as a {@link TopKeys} snapshot that reads its top-K on first use. Queries for the last N
+ * seconds merge the snapshots that overlap the window with the live slot.
+ *
+ * <p>Slots are anchored at the first timestamp offered, so any {@link System#nanoTime()}
+ * origin works, including a negative one. Rotation is claimed with a single CAS, and the
+ * caller that wins it only swaps in a keeper allocated ahead of time and publishes the
+ * retired one; copying and ranking its top-K, which takes the keeper's heap lock, is left to
+ * the first query that reads the slot, so {@link #offer(long, long)} never blocks. Queries
+ * also allocate the keeper for the next slot; only a rotation with no query since the
+ * previous one allocates its own. Every other offer keeps writing to whichever keeper it
+ * observed, so offers that race with a rotation may land in the retired keeper; the window
+ * views are approximate by design.
+ */
+public final class WindowedHeavyHitters {
+
+    private static final long UNANCHORED = Long.MIN_VALUE;
+
+    private final int k;
+    private final double decay;
+    private final long slotNanos;
+    private final AtomicReferenceArray<TopKeys> ring;
+    private final AtomicLong nextRotation = new AtomicLong(UNANCHORED);
+    private final AtomicReference<HeavyKeeper> spare = new AtomicReference<>();
+    private volatile HeavyKeeper current;
+    private volatile long currentStartNanos;
+    private long sequence;
+
+    public WindowedHeavyHitters(int k, double decay, Duration slotPeriod, int slots) {
+        if (slots <= 0) {
+            throw new IllegalArgumentException("slots must be positive");
+        }
+        this.k = Math.max(1, k);
+        this.decay = decay;
+        this.slotNanos = slotPeriod.toNanos();
+        if (slotNanos <= 0) {
+            throw new IllegalArgumentException("slotPeriod must be positive");
+        }
+        this.ring = new AtomicReferenceArray<>(slots);
+        this.current = new HeavyKeeper(this.k, decay);
+        this.spare.set(new HeavyKeeper(this.k, decay));
+    }
+
+    /**
+     * Records one occurrence of the key at the provided timestamp, closing the active slot
+     * first if its period has elapsed.
+     */
+    public void offer(long key, long nowNanos) {
+        rotateIfNeeded(nowNanos);
+        current.offer(key);
+    }
+
+    public void rotateIfNeeded(long nowNanos) {
+        long threshold = nextRotation.get();
+        if (threshold == UNANCHORED) {
+            if (nextRotation.compareAndSet(UNANCHORED, nowNanos + slotNanos)) {
+                currentStartNanos = nowNanos;
+            }
+            return;
+        }
+        if (nowNanos - threshold < 0) {
+            return;
+        }
+        if (!nextRotation.compareAndSet(threshold, nowNanos + slotNanos)) {
+            return;
+        }
+        HeavyKeeper next = spare.getAndSet(null);
+        if (next == null) {
+            next = new HeavyKeeper(k, decay);
+        }
+        HeavyKeeper retired = current;
+        long startNanos = currentStartNanos;
+        current = next;
+        currentStartNanos = nowNanos;
+        TopKeys snapshot = TopKeys.of(retired, startNanos, nowNanos);
+        synchronized (ring) {
+            ring.set((int) (sequence++ % ring.length()), snapshot);
+        }
+    }
+
+    /**
+     * Returns the ranked heavy hitters of the active, still open slot.
+     */
+    public TopKeys live(long nowNanos) {
+        prepareNextSlot();
+        return TopKeys.of(current.topK(), currentStartNanos, nowNanos);
+    }
+
+    private void prepareNextSlot() {
+        if (spare.get() == null) {
+            spare.compareAndSet(null, new HeavyKeeper(k, decay));
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} keys ranked by their combined count over the trailing
+     * {@code window}, including the live slot. Completed slots are reused as-is when the
+     * window only spans one of them.
+     */
+    public TopKeys topK(Duration window, int limit, long nowNanos) {
+        long from = nowNanos - window.toNanos();
+        TopKeys live = live(nowNanos);
+        TopKeys single = live.size() > 0 ? live : null;
+        int overlapping = single != null ? 1 : 0;
+        Map<Long, Long> merged = null;
+        for (int i = 0; i < ring.length(); i++) {
+            TopKeys snapshot = ring.get(i);
+            if (snapshot == null || snapshot.toNanos() - from <= 0) {
+                continue;
+            }
+            if (overlapping == 0) {
+                single = snapshot;
+                overlapping = 1;
+                continue;
+            }
+            if (merged == null) {
+                merged = new HashMap<>();
+                single.mergeInto(merged);
+            }
+            snapshot.mergeInto(merged);
+            overlapping++;
+        }
+        if (merged == null) {
+            return single == null ? TopKeys.empty(from, nowNanos) : single.limit(limit);
+        }
+        return TopKeys.of(merged, limit, from, nowNanos);
+    }
+
+    public Duration slotPeriod() {
+        return Duration.ofNanos(slotNanos);
+    }
+
+    public int slots() {
+        return ring.length();
+    }
+
+    /**
+     * Ranked, immutable heavy-hitter snapshot. Ranks are exposed through primitive accessors
+     * so callers can stream the result without boxing.
+     */
+    public static final class TopKeys {
+
+        private static final long[] NONE = new long[0];
+
+        private final long fromNanos;
+        private final long toNanos;
+        private int size;
+        private HeavyKeeper retired;
+        private HeavyKeeper.Entry[] unranked;
+        private long[] keys;
+        private long[] counts;
+        private volatile boolean ranked;
+
+        private TopKeys(long[] keys, long[] counts, int size, long fromNanos, long toNanos) {
+            this.keys = keys;
+            this.counts = counts;
+            this.size = size;
+            this.fromNanos = fromNanos;
+            this.toNanos = toNanos;
+            this.ranked = true;
+        }
+
+        private TopKeys(HeavyKeeper.Entry[] unranked, long fromNanos, long toNanos) {
+            this.unranked = unranked;
+            this.size = unranked.length;
+            this.fromNanos = fromNanos;
+            this.toNanos = toNanos;
+        }
+
+        private TopKeys(HeavyKeeper retired, long fromNanos, long toNanos) {
+            this.retired = retired;
+            this.fromNanos = fromNanos;
+            this.toNanos = toNanos;
+        }
+
+        static TopKeys empty(long fromNanos, long toNanos) {
+            return new TopKeys(NONE, NONE, 0, fromNanos, toNanos);
+        }
+
+        /**
+         * Wraps {@code entries} without ranking them; they are sorted on first read.
+         */
+        static TopKeys of(HeavyKeeper.Entry[] entries, long fromNanos, long toNanos) {
+            return new TopKeys(entries, fromNanos, toNanos);
+        }
+
+        /**
+         * Wraps a keeper whose slot has closed; its top-K is copied and ranked on first read.
+         */
+        static TopKeys of(HeavyKeeper retired, long fromNanos, long toNanos) {
+            return new TopKeys(retired, fromNanos, toNanos);
+        }
+
+        static TopKeys of(Map<Long, Long> totals, int limit, long fromNanos, long toNanos) {
+            List<Map.Entry<Long, Long>> entries = new ArrayList<>(totals.entrySet());
+            entries.sort(Map.Entry.<Long, Long>comparingByValue().reversed());
+            int size = Math.min(Math.max(0, limit), entries.size());
+            long[] keys = new long[size];
+            long[] counts = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = entries.get(i).getKey();
+                counts[i] = entries.get(i).getValue();
+            }
+            return new TopKeys(keys, counts, size, fromNanos, toNanos);
+        }
+
+        public int size() {
+            rank();
+            return size;
+        }
+
+        public long key(int rank) {
+            checkRank(rank);
+            rank();
+            return keys[rank];
+        }
+
+        public long count(int rank) {
+            checkRank(rank);
+            rank();
+            return counts[rank];
+        }
+
+        public long[] keys() {
+            rank();
+            return Arrays.copyOf(keys, size);
+        }
+
+        public long[] counts() {
+            rank();
+            return Arrays.copyOf(counts, size);
+        }
+
+        public long fromNanos() {
+            return fromNanos;
+        }
+
+        public long toNanos() {
+            return toNanos;
+        }
+
+        TopKeys limit(int limit) {
+            rank();
+            int bounded = Math.max(0, limit);
+            if (bounded >= size) {
+                return this;
+            }
+            return new TopKeys(keys, counts, bounded, fromNanos, toNanos);
+        }
+
+        void mergeInto(Map<Long, Long> totals) {
+            rank();
+            for (int i = 0; i < size; i++) {
+                totals.merge(keys[i], counts[i], Long::sum);
+            }
+        }
+
+        private void checkRank(int rank) {
+            rank();
+            if (rank < 0 || rank >= size) {
+                throw new IndexOutOfBoundsException("rank " + rank + " outside [0, " + size + ")");
+            }
+        }
+
+        /**
+         * Sorts the entries by descending count, once, on the first thread that reads them,
+         * copying them out of the retired keeper first if the slot has closed.
+         */
+        private void rank() {
+            if (ranked) {
+                return;
+            }
+            synchronized (this) {
+                if (ranked) {
+                    return;
+                }
+                HeavyKeeper.Entry[] entries = unranked != null ? unranked : retired.topK();
+                Arrays.sort(entries, Comparator.comparingInt(HeavyKeeper.Entry::count).reversed());
+                long[] rankedKeys = new long[entries.length];
+                long[] rankedCounts = new long[entries.length];
+                for (int i = 0; i < entries.length; i++) {
+                    rankedKeys[i] = entries[i].key();
+                    rankedCounts[i] = entries[i].count();
+                }
+                keys = rankedKeys;
+                counts = rankedCounts;
+                size = entries.length;
+                unranked = null;
+                retired = null;
+                ranked = true;
+            }
+        }
+    }
+}
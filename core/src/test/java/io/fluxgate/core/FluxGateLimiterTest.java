@@ -1,13 +1,16 @@
 package io.fluxgate.core;
 
 import io.fluxgate.core.adaptive.EwmaTrafficEstimator;
+import io.fluxgate.core.adaptive.HoltWintersTrafficEstimator;
 import io.fluxgate.core.adaptive.LimitScaler;
 import io.fluxgate.core.observability.FluxGateMetrics;
 import io.fluxgate.core.observability.FluxGateStats;
 import io.fluxgate.core.policy.LimitPolicy;
+import io.fluxgate.core.policy.PolicySetDiff;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -108,6 +111,202 @@ class FluxGateLimiterTest {
         assertThat(limiter.policies()).contains(policy);
     }
 
+    @Test
+    void updatePoliciesKeepsStateOfUnchangedPoliciesAndReportsTheDiff() {
+        // Arrange
+        LimitPolicy first = new LimitPolicy("a", 2d, 2d, 60);
+        FluxGateLimiter limiter = FluxGateLimiter.builder()
+                .withPolicies(List.of(first, new LimitPolicy("b", 5d, 5d, 60)))
+                .build();
+        limiter.check(1L, ignored -> first, 0L);
+        limiter.check(1L, ignored -> first, 0L);
+        LimitPolicy reloaded = new LimitPolicy("a", 2d, 2d, 60);
+        LimitPolicy added = new LimitPolicy("c", 1d, 1d, 60);
+
+        // Act
+        PolicySetDiff diff = limiter.updatePolicies(List.of(reloaded, added));
+        FluxGateLimiter.RateLimitOutcome outcome = limiter.check(1L, ignored -> reloaded, 0L);
+
+        // Assert
+        assertThat(diff.added()).containsExactly("c");
+        assertThat(diff.removed()).containsExactly("b");
+        assertThat(diff.changed()).isEmpty();
+        assertThat(diff.unchanged()).containsExactly("a");
+        assertThat(outcome.allowed()).isFalse();
+        assertThat(limiter.policies()).containsExactlyInAnyOrder(reloaded, added);
+        assertThat(limiter.policyOrdinal("a")).isEqualTo(0);
+        assertThat(limiter.policyOrdinal("c")).isEqualTo(1);
+        assertThat(limiter.policyOrdinal("b")).isEqualTo(2);
+    }
+
+    @Test
+    void reloadedLimiterNumbersPoliciesLikeAFreshlyStartedOne() {
+        // Arrange
+        LimitPolicy a = new LimitPolicy("a", 5d, 5d, 60);
+        LimitPolicy b = new LimitPolicy("b", 5d, 5d, 60);
+        LimitPolicy c = new LimitPolicy("c", 5d, 5d, 60);
+        FluxGateLimiter reloaded = FluxGateLimiter.builder()
+                .withPolicies(List.of(a, b))
+                .build();
+        FluxGateLimiter fresh = FluxGateLimiter.builder()
+                .withPolicies(List.of(c, b))
+                .build();
+        long now = Duration.ofSeconds(1).toNanos();
+        for (int i = 0; i < 5; i++) {
+            reloaded.ingestClusterQps("b", 10_000d, now);
+        }
+        double clusterQpsOfB = reloaded.adaptiveState("b", now).clusterQps();
+
+        // Act
+        reloaded.updatePolicies(List.of(c, b));
+
+        // Assert
+        assertThat(reloaded.policyOrdinal("c")).isEqualTo(fresh.policyOrdinal("c")).isEqualTo(0);
+        assertThat(reloaded.policyOrdinal("b")).isEqualTo(fresh.policyOrdinal("b")).isEqualTo(1);
+        assertThat(reloaded.policyEstimators().size()).isEqualTo(3);
+        assertThat(reloaded.adaptiveState("b", now).clusterQps()).isEqualTo(clusterQpsOfB);
+        assertThat(reloaded.policyEstimators().hasClusterInput(0)).isFalse();
+    }
+
+    @Test
+    void updatePoliciesMigratesChangedLimitsWithoutGrantingANewBurst() {
+        // Arrange
+        LimitPolicy before = new LimitPolicy("a", 2d, 2d, 60);
+        FluxGateLimiter limiter = FluxGateLimiter.builder()
+                .withPolicies(List.of(before))
+                .build();
+        limiter.check(1L, ignored -> before, 0L);
+        limiter.check(1L, ignored -> before, 0L);
+        LimitPolicy after = new LimitPolicy("a", 4d, 4d, 60);
+
+        // Act
+        PolicySetDiff diff = limiter.updatePolicies(List.of(after));
+        boolean third = limiter.check(1L, ignored -> after, 0L).allowed();
+        boolean fourth = limiter.check(1L, ignored -> after, 0L).allowed();
+        boolean fifth = limiter.check(1L, ignored -> after, 0L).allowed();
+
+        // Assert
+        assertThat(diff.changed()).containsExactly("a");
+        assertThat(third).isTrue();
+        assertThat(fourth).isTrue();
+        assertThat(fifth).isFalse();
+    }
+
+    @Test
+    void clusterSurgeOnOnePolicyDoesNotShrinkAnotherPolicyShare() {
+        // Arrange
+        LimitPolicy search = new LimitPolicy("search", 100d, 100d, 60);
+        LimitPolicy login = new LimitPolicy("login", 100d, 100d, 60);
+        FluxGateLimiter limiter = FluxGateLimiter.builder()
+                .withPolicies(List.of(search, login))
+                .build();
+        long now = Duration.ofSeconds(1).toNanos();
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            limiter.ingestClusterQps("search", 10_000d, now);
+        }
+
+        // Assert
+        assertThat(limiter.policyOrdinal("search")).isEqualTo(0);
+        assertThat(limiter.policyOrdinal("login")).isEqualTo(1);
+        assertThat(limiter.adaptiveState("search", now).share()).isLessThan(0.01d);
+        assertThat(limiter.adaptiveState("login", now).share()).isEqualTo(1d);
+        assertThat(limiter.adaptiveState(now).share()).isEqualTo(1d);
+    }
+
+    @Test
+    void instanceClusterEstimateScalesPoliciesWithoutPerPolicyRates() {
+        // Arrange
+        LimitPolicy search = new LimitPolicy("search", 100d, 100d, 60);
+        LimitPolicy login = new LimitPolicy("login", 100d, 100d, 60);
+        FluxGateLimiter limiter = FluxGateLimiter.builder()
+                .withPolicies(List.of(search, login))
+                .build();
+        long now = Duration.ofSeconds(1).toNanos();
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            limiter.ingestClusterQps(10_000d, now);
+        }
+        limiter.ingestClusterQps("search", 50d, now);
+
+        // Assert
+        assertThat(limiter.adaptiveState("login", now)).isEqualTo(limiter.adaptiveState(now));
+        assertThat(limiter.adaptiveState("login", now).share()).isLessThan(0.01d);
+        assertThat(limiter.adaptiveState("search", now).clusterQps())
+                .isLessThan(limiter.adaptiveState(now).clusterQps());
+    }
+
+    @Test
+    void unknownPolicyIdsReceiveTheNextOrdinal() {
+        // Arrange
+        FluxGateLimiter limiter = FluxGateLimiter.builder()
+                .withPolicies(List.of(new LimitPolicy("a", 5d, 5d, 60)))
+                .build();
+        LimitPolicy adHoc = new LimitPolicy("ad-hoc", 5d, 5d, 60);
+
+        // Act
+        FluxGateLimiter.RateLimitOutcome outcome = limiter.check(7L, ignored -> adHoc, 0L);
+
+        // Assert
+        assertThat(outcome.allowed()).isTrue();
+        assertThat(limiter.policyOrdinal("ad-hoc")).isEqualTo(1);
+        assertThat(limiter.policyEstimators().size()).isEqualTo(2);
+    }
+
+    @Test
+    void backgroundSamplingPublishesOnlyFromTheSampler() {
+        // Arrange
+        TestMetrics metrics = new TestMetrics();
+        LimitPolicy policy = new LimitPolicy("ip", 1_000d, 1_000d, 60);
+        long now = Duration.ofSeconds(1).toNanos();
+        try (FluxGateLimiter limiter = FluxGateLimiter.builder()
+                .withMetrics(metrics)
+                .withPolicies(List.of(policy))
+                .withBackgroundSampling(Duration.ofHours(1))
+                .build()) {
+
+            // Act
+            for (int i = 0; i < 100; i++) {
+                limiter.check(i, ignored -> policy, now);
+            }
+            EwmaTrafficEstimator.AdaptiveState beforeSample = limiter.adaptiveState(now);
+            EwmaTrafficEstimator.AdaptiveState sampled = limiter.sampleAdaptiveState(now);
+
+            // Assert
+            assertThat(beforeSample.localQps()).isEqualTo(1d);
+            assertThat(sampled.localQps()).isGreaterThan(1d);
+            assertThat(metrics.lastAdaptiveState.get()).isSameAs(sampled);
+            assertThat(limiter.adaptiveState("ip", now).localQps()).isGreaterThan(1d);
+        }
+    }
+
+    @Test
+    void pressureShedsLowPriorityPoliciesAndIsPublished() {
+        // Arrange
+        TestMetrics metrics = new TestMetrics();
+        LimitPolicy batch = new LimitPolicy("batch", 10d, 1d, 60);
+        LimitPolicy checkout = new LimitPolicy("checkout", 10d, 1d, 60);
+        FluxGateLimiter limiter = FluxGateLimiter.builder()
+                .withMetrics(metrics)
+                .withPolicies(List.of(batch, checkout))
+                .withLimitScaler(new LimitScaler(() -> 0.5d, List.of("batch")))
+                .build();
+        long step = Duration.ofMillis(150).toNanos();
+
+        // Act: 150ms apart is within 10/s, but not within the shed 5/s.
+        limiter.check(1L, ignored -> batch, 0L);
+        FluxGateLimiter.RateLimitOutcome shed = limiter.check(1L, ignored -> batch, step);
+        limiter.check(2L, ignored -> checkout, 0L);
+        FluxGateLimiter.RateLimitOutcome kept = limiter.check(2L, ignored -> checkout, step);
+
+        // Assert
+        assertThat(shed.allowed()).isFalse();
+        assertThat(kept.allowed()).isTrue();
+        assertThat(metrics.lastAdaptiveState.get().pressureFactor()).isEqualTo(0.5d);
+    }
+
     @Test
     void checkReturnsAllowedWhenPolicySupplierReturnsNull() {
         // Arrange
@@ -120,6 +319,66 @@ class FluxGateLimiterTest {
         assertThat(outcome.allowed()).isTrue();
     }
 
+    @Test
+    void publishesAdaptiveStatePerPolicy() {
+        // Arrange
+        FluxGateStats stats = new FluxGateStats();
+        LimitPolicy search = new LimitPolicy("search", 100d, 100d, 60);
+        LimitPolicy login = new LimitPolicy("login", 100d, 100d, 60);
+        FluxGateLimiter limiter = FluxGateLimiter.builder()
+                .withStats(stats)
+                .withPolicies(List.of(search, login))
+                .build();
+        long second = Duration.ofSeconds(1).toNanos();
+
+        // Act
+        limiter.check(1L, ignored -> search, second);
+        limiter.check(2L, ignored -> login, second);
+        limiter.ingestClusterQps("search", 5_000d, 2 * second);
+
+        // Assert
+        assertThat(stats.policyAdaptiveStates()).containsKeys("search", "login");
+        assertThat(stats.policyAdaptiveState("search").clusterQps()).isGreaterThan(100d);
+        assertThat(stats.policyAdaptiveState("login").clusterQps()).isLessThan(100d);
+    }
+
+    @Test
+    void seasonalEstimatorFactoryScalesPolicyLimitsAheadOfRecurringPeak() {
+        // Arrange
+        FluxGateLimiter ewma = FluxGateLimiter.builder().build();
+        FluxGateLimiter seasonal = FluxGateLimiter.builder()
+                .withEstimatorFactory(() -> HoltWintersTrafficEstimator.builder()
+                        .withInterval(Duration.ofSeconds(1))
+                        .withSeasonPeriod(Duration.ofSeconds(10))
+                        .withSmoothing(0.2d, 0.05d, 0.5d)
+                        .withHorizon(2)
+                        .build())
+                .build();
+        LimitPolicy policy = new LimitPolicy("search", 1_000_000d, 1_000_000d, 60);
+        long second = Duration.ofSeconds(1).toNanos();
+
+        // Act: the 5th second of every 10-second season carries ten times the traffic.
+        long now = second;
+        for (int t = 0; t < 64; t++) {
+            int requests = t % 10 == 4 ? 100 : 10;
+            for (int r = 0; r < requests; r++) {
+                ewma.check(r, ignored -> policy, now + r + 1);
+                seasonal.check(r, ignored -> policy, now + r + 1);
+            }
+            now += second;
+        }
+        ewma.ingestClusterQps("search", 1_000d, now);
+        seasonal.ingestClusterQps("search", 1_000d, now);
+        LimitScaler scaler = new LimitScaler();
+        double ewmaLimit = scaler.scale(1_000d, ewma.adaptiveState("search", now));
+        double seasonalLimit = scaler.scale(1_000d, seasonal.adaptiveState("search", now));
+
+        // Assert
+        assertThat(seasonal.policyEstimators().estimator(0)).isInstanceOf(HoltWintersTrafficEstimator.class);
+        assertThat(seasonal.adaptiveState("search", now).localQps()).isGreaterThan(50d);
+        assertThat(seasonalLimit).isGreaterThan(ewmaLimit * 2d);
+    }
+
     private static final class TestMetrics implements FluxGateMetrics {
 
         private final AtomicInteger allowed = new AtomicInteger();
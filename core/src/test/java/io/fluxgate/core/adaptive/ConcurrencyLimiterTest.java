@@ -0,0 +1,151 @@
+package io.fluxgate.core.adaptive;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimiterTest {
+
+    private static final long BASE_RTT = Duration.ofMillis(10).toNanos();
+
+    @Test
+    void acquireStopsAtLimitUntilReleased() {
+        // Arrange
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+                .withInitialLimit(2)
+                .withLimitRange(2, 2)
+                .build();
+
+        // Act
+        boolean first = limiter.acquire();
+        boolean second = limiter.acquire();
+        boolean third = limiter.acquire();
+        limiter.release(BASE_RTT);
+        boolean afterRelease = limiter.acquire();
+
+        // Assert
+        assertThat(first).isTrue();
+        assertThat(second).isTrue();
+        assertThat(third).isFalse();
+        assertThat(afterRelease).isTrue();
+        assertThat(limiter.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentCallersNeverExceedLimit() throws Exception {
+        // Arrange
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+                .withInitialLimit(8)
+                .withLimitRange(8, 8)
+                .build();
+        int threads = 8;
+        AtomicInteger maxObserved = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // Act
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 20_000; i++) {
+                    if (limiter.acquire()) {
+                        maxObserved.accumulateAndGet(limiter.inFlight(), Math::max);
+                        limiter.release(BASE_RTT);
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        // Assert
+        assertThat(maxObserved.get()).isLessThanOrEqualTo(8);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    void gradientConvergesNearCapacityForQueueingBackends() {
+        for (int capacity : new int[] {20, 100, 400}) {
+            // Arrange
+            ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+                    .withAlgorithm(LimitAlgorithm.gradient(1.5d, 0.2d, 30))
+                    .withLimitRange(1, 5_000)
+                    .build();
+            ConcurrencyLimiterSimulation simulation = new ConcurrencyLimiterSimulation(limiter, 10_000);
+
+            // Act
+            double limit = simulation.run(2_000, ConcurrencyLimiterSimulation.queueing(capacity, BASE_RTT));
+
+            // Assert
+            assertThat(limit).isBetween((double) capacity, 2d * capacity);
+        }
+    }
+
+    @Test
+    void aimdConvergesBelowLatencyThreshold() {
+        for (int capacity : new int[] {20, 100, 400}) {
+            // Arrange
+            ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+                    .withAlgorithm(LimitAlgorithm.aimd(Duration.ofNanos(2 * BASE_RTT), 0.9d))
+                    .withLimitRange(1, 5_000)
+                    .build();
+            ConcurrencyLimiterSimulation simulation = new ConcurrencyLimiterSimulation(limiter, 10_000);
+
+            // Act
+            double limit = simulation.run(2_000, ConcurrencyLimiterSimulation.queueing(capacity, BASE_RTT));
+
+            // Assert
+            assertThat(limit).isBetween((double) capacity, 2d * capacity);
+        }
+    }
+
+    @Test
+    void gradientFollowsCapacityDrop() {
+        // Arrange
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+                .withAlgorithm(LimitAlgorithm.gradient(1.5d, 0.2d, 30))
+                .withLimitRange(1, 5_000)
+                .build();
+        ConcurrencyLimiterSimulation simulation = new ConcurrencyLimiterSimulation(limiter, 10_000);
+        double before = simulation.run(2_000, ConcurrencyLimiterSimulation.queueing(200, BASE_RTT));
+
+        // Act
+        double after = simulation.run(2_000, ConcurrencyLimiterSimulation.queueing(40, BASE_RTT));
+
+        // Assert
+        assertThat(before).isGreaterThan(200d);
+        assertThat(after).isBetween(40d, 80d);
+    }
+
+    @Test
+    void builderRejectsInvalidRanges() {
+        assertThatThrownBy(() -> ConcurrencyLimiter.builder().withLimitRange(5, 2).build())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LimitAlgorithm.aimd(Duration.ofMillis(5), 1.5d))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LimitAlgorithm.gradient(0.5d, 0.2d, 30))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void simulationRejectsInvalidArguments() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().build();
+
+        assertThatThrownBy(() -> new ConcurrencyLimiterSimulation(limiter, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ConcurrencyLimiterSimulation.queueing(0, BASE_RTT))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ConcurrencyLimiterSimulation(limiter, 10).run(2, inFlight -> BASE_RTT))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
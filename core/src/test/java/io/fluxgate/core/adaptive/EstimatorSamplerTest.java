@@ -0,0 +1,59 @@
+package io.fluxgate.core.adaptive;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EstimatorSamplerTest {
+
+    @Test
+    void sampleFoldsGlobalAndPolicyEstimatorsAndPublishes() {
+        // Arrange
+        EwmaTrafficEstimator estimator = EwmaTrafficEstimator.backgroundSampled();
+        PolicyEstimators policies = new PolicyEstimators(2, true);
+        AtomicReference<EwmaTrafficEstimator.AdaptiveState> published = new AtomicReference<>();
+        EstimatorSampler sampler = new EstimatorSampler(estimator, policies, Duration.ofSeconds(1), published::set);
+        long now = Duration.ofSeconds(1).toNanos();
+        estimator.recordLocalPermits(100, now);
+        policies.recordLocalPermits(1, 50, now);
+
+        // Act
+        EwmaTrafficEstimator.AdaptiveState state = sampler.sample(now);
+
+        // Assert
+        assertThat(state.localQps()).isGreaterThan(1d);
+        assertThat(published.get()).isSameAs(state);
+        assertThat(policies.observe(0, now).localQps()).isEqualTo(1d);
+        assertThat(policies.observe(1, now).localQps()).isGreaterThan(1d);
+    }
+
+    @Test
+    void startSamplesOnBackgroundThread() throws InterruptedException {
+        // Arrange
+        EwmaTrafficEstimator estimator = EwmaTrafficEstimator.backgroundSampled();
+        CountDownLatch published = new CountDownLatch(2);
+        EstimatorSampler sampler = new EstimatorSampler(estimator, null, Duration.ofMillis(5),
+                ignored -> published.countDown());
+
+        // Act
+        sampler.start();
+        boolean sampled = published.await(5, TimeUnit.SECONDS);
+        sampler.close();
+
+        // Assert
+        assertThat(sampled).isTrue();
+        assertThatThrownBy(sampler::start).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void rejectsNonPositiveInterval() {
+        assertThatThrownBy(() -> new EstimatorSampler(new EwmaTrafficEstimator(), null, Duration.ZERO, state -> { }))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -43,4 +43,18 @@ class EwmaTrafficEstimatorTest {
         assertThat(state.localQps()).isGreaterThanOrEqualTo(1d);
         assertThat(state.debugView()).containsKeys("localQps", "clusterQps", "share");
     }
+
+    @Test
+    void backgroundSampledEstimatorOnlyFoldsOnSample() {
+        EwmaTrafficEstimator estimator = EwmaTrafficEstimator.backgroundSampled();
+
+        EwmaTrafficEstimator.AdaptiveState recorded = estimator.recordLocalPermits(100,
+                Duration.ofSeconds(1).toNanos());
+        EwmaTrafficEstimator.AdaptiveState observed = estimator.observe(Duration.ofSeconds(5).toNanos());
+        EwmaTrafficEstimator.AdaptiveState sampled = estimator.sample(Duration.ofSeconds(1).toNanos());
+
+        assertThat(recorded.localQps()).isEqualTo(1d);
+        assertThat(observed).isSameAs(recorded);
+        assertThat(sampled.localQps()).isCloseTo(20.8d, within(0.0001d));
+    }
 }
@@ -0,0 +1,123 @@
+package io.fluxgate.core.adaptive;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HoltWintersTrafficEstimatorTest {
+
+    private static final Duration INTERVAL = Duration.ofMinutes(1);
+
+    @Test
+    void replayMissesLessTrafficThanEwmaOnSeasonalSeries() {
+        // Arrange
+        int seasonLength = 60;
+        double[] series = TrafficReplay.seasonalSeries(10, seasonLength, 1_000d, 7L);
+        TrafficReplay replay = new TrafficReplay(INTERVAL.toNanos());
+        HoltWintersTrafficEstimator forecasting = HoltWintersTrafficEstimator.builder()
+                .withInterval(INTERVAL)
+                .withSeasonPeriod(Duration.ofHours(1))
+                .withHorizon(2)
+                .build();
+
+        // Act
+        double ewmaShortfall = replay.shortfall(new EwmaTrafficEstimator(), series, 5 * seasonLength);
+        double forecastShortfall = replay.shortfall(forecasting, series, 5 * seasonLength);
+
+        // Assert
+        assertThat(forecastShortfall).isLessThan(0.05d);
+        assertThat(forecastShortfall).isLessThan(ewmaShortfall / 3d);
+    }
+
+    @Test
+    void forecastAnticipatesRecurringPeak() {
+        // Arrange
+        HoltWintersTrafficEstimator estimator = HoltWintersTrafficEstimator.builder()
+                .withInterval(INTERVAL)
+                .withSeasonPeriod(Duration.ofMinutes(10))
+                .withSmoothing(0.2d, 0.05d, 0.5d)
+                .build();
+        long interval = INTERVAL.toNanos();
+        long now = interval;
+        estimator.observe(now);
+
+        // Act: the 5th interval of every 10-interval season carries ten times the traffic.
+        for (int t = 0; t < 60; t++) {
+            long qps = t % 10 == 4 ? 1_000L : 100L;
+            estimator.recordLocalPermits(qps * 60, now + 1);
+            now += interval;
+            estimator.observe(now);
+        }
+        for (int t = 0; t < 4; t++) {
+            estimator.recordLocalPermits(100L * 60, now + 1);
+            now += interval;
+        }
+        EwmaTrafficEstimator.AdaptiveState beforePeak = estimator.observe(now);
+
+        // Assert
+        assertThat(estimator.seasonLength()).isEqualTo(10);
+        assertThat(beforePeak.localQps()).isCloseTo(1_000d, within(100d));
+        assertThat(estimator.forecast(2)).isCloseTo(100d, within(50d));
+    }
+
+    @Test
+    void forecastsFromANegativeClockOrigin() {
+        // Arrange
+        HoltWintersTrafficEstimator estimator = HoltWintersTrafficEstimator.builder()
+                .withInterval(INTERVAL)
+                .withSeasonPeriod(Duration.ofMinutes(10))
+                .build();
+        long interval = INTERVAL.toNanos();
+        long now = -1_000L * interval;
+        estimator.observe(now);
+
+        // Act
+        for (int t = 0; t < 3; t++) {
+            estimator.recordLocalPermits(100L * 60, now + 1);
+            now += interval;
+        }
+        EwmaTrafficEstimator.AdaptiveState state = estimator.observe(now);
+
+        // Assert
+        assertThat(state.updatedAtNanos()).isEqualTo(now);
+        assertThat(state.localQps()).isGreaterThan(50d);
+    }
+
+    @Test
+    void clusterEstimateScalesShare() {
+        // Arrange
+        HoltWintersTrafficEstimator estimator = HoltWintersTrafficEstimator.builder()
+                .withInterval(INTERVAL)
+                .withSeasonPeriod(Duration.ofMinutes(10))
+                .build();
+        long interval = INTERVAL.toNanos();
+        estimator.observe(interval);
+        estimator.recordLocalPermits(100L * 60, interval + 1);
+        estimator.observe(2 * interval);
+
+        // Act
+        EwmaTrafficEstimator.AdaptiveState state = estimator.ingestClusterEstimate(10_000d, 2 * interval);
+
+        // Assert
+        assertThat(state.localQps()).isCloseTo(100d, within(0.0001d));
+        assertThat(state.clusterQps()).isGreaterThan(state.localQps());
+        assertThat(state.share()).isLessThan(1d);
+    }
+
+    @Test
+    void builderRejectsInvalidConfiguration() {
+        assertThatThrownBy(() -> HoltWintersTrafficEstimator.builder()
+                .withInterval(Duration.ofMinutes(1))
+                .withSeasonPeriod(Duration.ofMinutes(1))
+                .build())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HoltWintersTrafficEstimator.builder().withSmoothing(0d, 0.1d, 0.1d).build())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HoltWintersTrafficEstimator.builder().withHorizon(0).build())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,97 @@
+package io.fluxgate.core.adaptive;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class JvmPressureMonitorTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    @Test
+    void gcStormDropsFactorImmediatelyAndRecoversGradually() {
+        // Arrange
+        AtomicReference<JvmPressureMonitor.Reading> reading =
+                new AtomicReference<>(new JvmPressureMonitor.Reading(0L, 0.1d, 0L));
+        JvmPressureMonitor monitor = JvmPressureMonitor.builder()
+                .withProbe(reading::get)
+                .withShedding(0.2d, 0.1d)
+                .build();
+        monitor.poll(0L);
+
+        // Act: 40% of the next second is spent in GC, then the JVM is healthy again.
+        reading.set(new JvmPressureMonitor.Reading(SECOND * 4 / 10, 0.1d, 0L));
+        double storm = monitor.poll(SECOND);
+        double firstRecovery = monitor.poll(2 * SECOND);
+        double secondRecovery = monitor.poll(3 * SECOND);
+
+        // Assert
+        assertThat(storm).isCloseTo(0.2d, within(1e-9));
+        assertThat(monitor.pressure()).isZero();
+        assertThat(firstRecovery).isCloseTo(0.3d, within(1e-9));
+        assertThat(secondRecovery).isCloseTo(0.4d, within(1e-9));
+    }
+
+    @Test
+    void pressureRampsLinearlyBetweenThresholdsAndWorstInputWins() {
+        // Arrange
+        AtomicReference<JvmPressureMonitor.Reading> reading =
+                new AtomicReference<>(new JvmPressureMonitor.Reading(0L, 0d, 0L));
+        JvmPressureMonitor monitor = JvmPressureMonitor.builder()
+                .withProbe(reading::get)
+                .withCpuThresholds(0.8d, 1d)
+                .withAllocationThresholds(1_000d, 2_000d)
+                .withShedding(0.5d, 1d)
+                .build();
+        monitor.poll(0L);
+
+        // Act: CPU sits halfway up its ramp, allocation a quarter of the way.
+        reading.set(new JvmPressureMonitor.Reading(0L, 0.9d, 1_250L));
+        double factor = monitor.poll(SECOND);
+
+        // Assert
+        assertThat(monitor.pressure()).isCloseTo(0.5d, within(1e-9));
+        assertThat(factor).isCloseTo(0.75d, within(1e-9));
+    }
+
+    @Test
+    void firstPollOnlyRecordsBaseline() {
+        // Arrange
+        JvmPressureMonitor monitor = JvmPressureMonitor.builder()
+                .withProbe(() -> new JvmPressureMonitor.Reading(Long.MAX_VALUE / 2, 1d, 0L))
+                .build();
+
+        // Act
+        double factor = monitor.poll(SECOND);
+
+        // Assert
+        assertThat(factor).isEqualTo(1d);
+        assertThat(monitor.getAsDouble()).isEqualTo(1d);
+    }
+
+    @Test
+    void platformProbeReadsCumulativeCounters() {
+        // Arrange
+        JvmPressureMonitor.Probe probe = JvmPressureMonitor.platformProbe();
+
+        // Act
+        JvmPressureMonitor.Reading reading = probe.read();
+
+        // Assert
+        assertThat(reading.gcPauseNanos()).isGreaterThanOrEqualTo(0L);
+        assertThat(reading.allocatedBytes()).isGreaterThanOrEqualTo(0L);
+    }
+
+    @Test
+    void builderRejectsInvalidThresholds() {
+        assertThatThrownBy(() -> JvmPressureMonitor.builder().withGcThresholds(0.5d, 0.1d).build())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> JvmPressureMonitor.builder().withShedding(0d, 0.1d).build())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -1,7 +1,10 @@
 package io.fluxgate.core.adaptive;
 
+import io.fluxgate.core.policy.LimitPolicy;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 class LimitScalerTest {
@@ -24,4 +27,25 @@ class LimitScalerTest {
 
         assertThat(limit).isEqualTo(100d);
     }
+
+    @Test
+    void pressureFactorAppliesOnlyToSheddablePolicies() {
+        LimitScaler scaler = new LimitScaler(() -> 0.4d, List.of("batch"));
+
+        double batch = scaler.pressureFactor(new LimitPolicy("batch", 10d, 10d, 60));
+        double checkout = scaler.pressureFactor(new LimitPolicy("checkout", 10d, 10d, 60));
+
+        assertThat(batch).isEqualTo(0.4d);
+        assertThat(checkout).isEqualTo(1d);
+        assertThat(scaler.pressureFactor()).isEqualTo(0.4d);
+    }
+
+    @Test
+    void pressureFactorIgnoresInvalidSupplierValues() {
+        LimitScaler scaler = new LimitScaler(() -> Double.NaN);
+
+        double factor = scaler.pressureFactor(new LimitPolicy("any", 10d, 10d, 60));
+
+        assertThat(factor).isEqualTo(1d);
+    }
 }
@@ -0,0 +1,66 @@
+package io.fluxgate.core.adaptive;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PolicyEstimatorsTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    @Test
+    void policiesTrackIndependentState() {
+        // Arrange
+        PolicyEstimators estimators = new PolicyEstimators(2);
+
+        // Act
+        for (int second = 1; second <= 5; second++) {
+            estimators.recordLocalPermits(0, 1_000L, second * SECOND);
+        }
+        estimators.ingestClusterEstimate(0, 50_000d, 5 * SECOND);
+
+        // Assert
+        assertThat(estimators.observe(0, 5 * SECOND).localQps()).isGreaterThan(100d);
+        assertThat(estimators.observe(0, 5 * SECOND).share()).isLessThan(1d);
+        assertThat(estimators.observe(1, 5 * SECOND).localQps()).isEqualTo(1d);
+        assertThat(estimators.observe(1, 5 * SECOND).share()).isEqualTo(1d);
+    }
+
+    @Test
+    void ensureCapacityKeepsExistingState() {
+        // Arrange
+        PolicyEstimators estimators = new PolicyEstimators(1);
+        TrafficEstimator first = estimators.estimator(0);
+
+        // Act
+        estimators.ensureCapacity(3);
+        estimators.ensureCapacity(2);
+
+        // Assert
+        assertThat(estimators.size()).isEqualTo(3);
+        assertThat(estimators.estimator(0)).isSameAs(first);
+        assertThat(estimators.estimator(2)).isNotNull();
+    }
+
+    @Test
+    void reorderMovesEstimatorsWithTheirClusterInput() {
+        // Arrange
+        PolicyEstimators estimators = new PolicyEstimators(2);
+        TrafficEstimator first = estimators.estimator(0);
+        TrafficEstimator second = estimators.estimator(1);
+        estimators.ingestClusterEstimate(1, 500d, SECOND);
+
+        // Act
+        estimators.reorder(new int[] {1, -1, 0});
+
+        // Assert
+        assertThat(estimators.size()).isEqualTo(3);
+        assertThat(estimators.estimator(0)).isSameAs(second);
+        assertThat(estimators.hasClusterInput(0)).isTrue();
+        assertThat(estimators.estimator(1)).isNotSameAs(first).isNotSameAs(second);
+        assertThat(estimators.hasClusterInput(1)).isFalse();
+        assertThat(estimators.estimator(2)).isSameAs(first);
+    }
+}
@@ -0,0 +1,52 @@
+package io.fluxgate.core.adaptive;
+
+import java.util.Random;
+
+/**
+ * Replays a per-interval QPS series into a {@link TrafficEstimator} and measures how much
+ * traffic a limit provisioned from the estimate at the start of each interval would miss.
+ */
+final class TrafficReplay {
+
+    private final long intervalNanos;
+
+    TrafficReplay(long intervalNanos) {
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * Returns the under-provisioned fraction of the traffic in {@code [from, series.length)}:
+     * the sum of {@code max(0, actual - estimated)} divided by the sum of {@code actual}.
+     */
+    double shortfall(TrafficEstimator estimator, double[] series, int from) {
+        double intervalSeconds = intervalNanos / 1_000_000_000d;
+        double missed = 0d;
+        double total = 0d;
+        for (int t = 0; t < series.length; t++) {
+            long start = (t + 1) * intervalNanos;
+            double provisioned = estimator.observe(start).localQps();
+            if (t >= from) {
+                missed += Math.max(0d, series[t] - provisioned);
+                total += series[t];
+            }
+            estimator.recordLocalPermits(Math.round(series[t] * intervalSeconds), start + 1);
+        }
+        return total == 0d ? 0d : missed / total;
+    }
+
+    /**
+     * Synthetic recording: a sinusoidal daily curve with a short flash peak at a fixed phase
+     * of every season and multiplicative noise.
+     */
+    static double[] seasonalSeries(int seasons, int seasonLength, double base, long seed) {
+        Random random = new Random(seed);
+        double[] series = new double[seasons * seasonLength];
+        for (int t = 0; t < series.length; t++) {
+            int phase = t % seasonLength;
+            double daily = base + 0.6d * base * Math.sin(2 * Math.PI * phase / seasonLength);
+            double peak = phase >= seasonLength / 8 && phase < seasonLength / 8 + 3 ? 2d * base : 0d;
+            series[t] = (daily + peak) * (1d + 0.05d * random.nextGaussian());
+        }
+        return series;
+    }
+}
@@ -0,0 +1,266 @@
+package io.fluxgate.core.gossip;
+
+import io.fluxgate.core.adaptive.EwmaTrafficEstimator;
+import io.fluxgate.core.adaptive.PolicyEstimators;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class GossipNodeTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+    private static final int MAX_NODES = 8;
+
+    @Test
+    void simulatedClusterConvergesOnSumOfLocalRates() {
+        // Arrange
+        int nodes = 5;
+        LoopbackGossipTransport.Network network = LoopbackGossipTransport.Network.forGossip(nodes, MAX_NODES);
+        EwmaTrafficEstimator[] estimators = new EwmaTrafficEstimator[nodes];
+        GossipNode[] cluster = new GossipNode[nodes];
+        for (int i = 0; i < nodes; i++) {
+            estimators[i] = warmedEstimator(100L * (i + 1));
+            cluster[i] = node(i, network.transport(i), estimators[i]);
+        }
+        long now = 10 * SECOND;
+        double expected = 0d;
+        for (EwmaTrafficEstimator estimator : estimators) {
+            expected += estimator.observe(now).localQps();
+        }
+
+        // Act
+        for (int round = 0; round < 12; round++) {
+            for (GossipNode node : cluster) {
+                node.tick(now);
+            }
+        }
+
+        // Assert
+        for (int i = 0; i < nodes; i++) {
+            assertThat(cluster[i].liveNodes(now)).isEqualTo(nodes);
+            assertThat(cluster[i].clusterQps()).isCloseTo(expected, within(1e-6));
+            assertThat(estimators[i].observe(now).clusterQps()).isGreaterThan(estimators[i].observe(now).localQps());
+        }
+    }
+
+    @Test
+    void isolatedNodeExpiresFromClusterRate() {
+        // Arrange
+        LoopbackGossipTransport.Network network = LoopbackGossipTransport.Network.forGossip(3, MAX_NODES);
+        EwmaTrafficEstimator[] estimators = new EwmaTrafficEstimator[3];
+        GossipNode[] cluster = new GossipNode[3];
+        for (int i = 0; i < 3; i++) {
+            estimators[i] = warmedEstimator(200L);
+            cluster[i] = node(i, network.transport(i), estimators[i]);
+        }
+        long now = 10 * SECOND;
+        for (int round = 0; round < 8; round++) {
+            for (GossipNode node : cluster) {
+                node.tick(now);
+            }
+        }
+        int before = cluster[0].liveNodes(now);
+
+        // Act
+        network.isolate(2, true);
+        long later = now;
+        for (int round = 0; round < 8; round++) {
+            later += round < 6 ? SECOND / 2 : 0L;
+            for (GossipNode node : cluster) {
+                node.tick(later);
+            }
+        }
+
+        // Assert
+        assertThat(before).isEqualTo(3);
+        assertThat(cluster[0].liveNodes(later)).isEqualTo(2);
+        double survivors = estimators[0].observe(later).localQps() + estimators[1].observe(later).localQps();
+        assertThat(cluster[0].clusterQps()).isCloseTo(survivors, within(1e-6));
+        assertThat(cluster[2].liveNodes(later)).isEqualTo(1);
+    }
+
+    @Test
+    void perPolicyRatesAreSummedIntoPolicyEstimators() {
+        // Arrange
+        int nodes = 3;
+        int policies = 2;
+        LoopbackGossipTransport.Network network =
+                LoopbackGossipTransport.Network.forGossip(nodes, MAX_NODES, policies);
+        PolicyEstimators[] perPolicy = new PolicyEstimators[nodes];
+        GossipNode[] cluster = new GossipNode[nodes];
+        for (int i = 0; i < nodes; i++) {
+            perPolicy[i] = new PolicyEstimators(policies);
+            for (int second = 1; second <= 10; second++) {
+                perPolicy[i].recordLocalPermits(0, 500L, second * SECOND);
+                perPolicy[i].recordLocalPermits(1, 10L, second * SECOND);
+            }
+            cluster[i] = GossipNode.builder()
+                    .withNodeId(1_000L + i)
+                    .withTransport(network.transport(i))
+                    .withEstimator(new EwmaTrafficEstimator())
+                    .withPolicyEstimators(perPolicy[i], policies)
+                    .withMaxNodes(MAX_NODES)
+                    .build();
+        }
+        long now = 10 * SECOND;
+        double search = 0d;
+        double login = 0d;
+        for (PolicyEstimators estimators : perPolicy) {
+            search += (float) estimators.observe(0, now).localQps();
+            login += (float) estimators.observe(1, now).localQps();
+        }
+
+        // Act
+        for (int round = 0; round < 10; round++) {
+            for (GossipNode node : cluster) {
+                node.tick(now);
+            }
+        }
+
+        // Assert
+        for (int i = 0; i < nodes; i++) {
+            assertThat(cluster[i].clusterQps(0)).isCloseTo(search, within(1e-3));
+            assertThat(cluster[i].clusterQps(1)).isCloseTo(login, within(1e-3));
+            assertThat(perPolicy[i].observe(0, now).share()).isLessThan(0.5d);
+        }
+    }
+
+    @Test
+    void exchangesPolicyVectorsOfSeveralHundredPolicies() {
+        // Arrange
+        int nodes = 3;
+        int policies = 800;
+        int maxNodes = 20;
+        LoopbackGossipTransport.Network network = LoopbackGossipTransport.Network.forGossip(nodes, maxNodes, policies);
+        PolicyEstimators[] perPolicy = new PolicyEstimators[nodes];
+        GossipNode[] cluster = new GossipNode[nodes];
+        for (int i = 0; i < nodes; i++) {
+            perPolicy[i] = new PolicyEstimators(policies);
+            for (int second = 1; second <= 10; second++) {
+                perPolicy[i].recordLocalPermits(policies - 1, 300L, second * SECOND);
+            }
+            cluster[i] = GossipNode.builder()
+                    .withNodeId(1_000L + i)
+                    .withTransport(network.transport(i))
+                    .withEstimator(new EwmaTrafficEstimator())
+                    .withPolicyEstimators(perPolicy[i], policies)
+                    .withMaxNodes(maxNodes)
+                    .build();
+        }
+        long now = 10 * SECOND;
+        double last = 0d;
+        for (PolicyEstimators estimators : perPolicy) {
+            last += (float) estimators.observe(policies - 1, now).localQps();
+        }
+
+        // Act
+        for (int round = 0; round < 10; round++) {
+            for (GossipNode node : cluster) {
+                node.tick(now);
+            }
+        }
+
+        // Assert
+        for (GossipNode node : cluster) {
+            assertThat(node.clusterQps(policies - 1)).isCloseTo(last, within(1e-3));
+            assertThat(node.clusterQps(0)).isCloseTo(nodes * 1d, within(1e-3));
+        }
+    }
+
+    @Test
+    void rejectsPolicyVectorsThatOverflowOneDatagram() {
+        // Arrange
+        GossipNode.Builder builder = GossipNode.builder()
+                .withTransport(LoopbackGossipTransport.Network.forGossip(2, 32).transport(0))
+                .withEstimator(new EwmaTrafficEstimator())
+                .withPolicyEstimators(new PolicyEstimators(800), 800)
+                .withMaxNodes(32);
+
+        // Act / Assert
+        assertThatThrownBy(builder::build)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("UDP limit");
+    }
+
+    @Test
+    void restartedNodeIsAcceptedWithoutWaitingForItsOldVersion() {
+        // Arrange
+        LoopbackGossipTransport.Network network = LoopbackGossipTransport.Network.forGossip(2, MAX_NODES);
+        EwmaTrafficEstimator survivor = warmedEstimator(100L);
+        GossipNode peer = node(0, network.transport(0), survivor);
+        GossipNode original = incarnation(network, warmedEstimator(100L), 1L);
+        long now = 10 * SECOND;
+        for (int round = 0; round < 50; round++) {
+            original.tick(now);
+            peer.tick(now);
+        }
+
+        // Act
+        EwmaTrafficEstimator restartedEstimator = warmedEstimator(400L);
+        GossipNode restarted = incarnation(network, restartedEstimator, 2L);
+        for (int round = 0; round < 3; round++) {
+            now += SECOND / 10;
+            restarted.tick(now);
+            peer.tick(now);
+        }
+
+        // Assert
+        double expected = survivor.observe(now).localQps() + restartedEstimator.observe(now).localQps();
+        assertThat(peer.clusterQps()).isCloseTo(expected, within(1e-6));
+        assertThat(peer.liveNodes(now)).isEqualTo(2);
+    }
+
+    @Test
+    void malformedDatagramsAreRejected() {
+        // Arrange
+        LoopbackGossipTransport.Network network = LoopbackGossipTransport.Network.forGossip(2, MAX_NODES);
+        GossipNode node = node(0, network.transport(0), new EwmaTrafficEstimator());
+        LoopbackGossipTransport intruder = network.transport(1);
+        ByteBuffer garbage = ByteBuffer.allocate(GossipCodec.datagramSize(MAX_NODES, 0));
+        garbage.putInt(0, 0xdeadbeef);
+
+        // Act
+        intruder.send(0, garbage);
+        node.tick(SECOND);
+
+        // Assert
+        assertThat(node.rejectedMessages()).isEqualTo(1L);
+        assertThat(node.liveNodes(SECOND)).isEqualTo(1);
+    }
+
+    private static GossipNode node(int id, GossipTransport transport, EwmaTrafficEstimator estimator) {
+        return GossipNode.builder()
+                .withNodeId(1_000L + id)
+                .withTransport(transport)
+                .withEstimator(estimator)
+                .withMaxNodes(MAX_NODES)
+                .withFanout(2)
+                .withExpiry(Duration.ofSeconds(2))
+                .build();
+    }
+
+    private static GossipNode incarnation(LoopbackGossipTransport.Network network, EwmaTrafficEstimator estimator,
+                                          long incarnation) {
+        return GossipNode.builder()
+                .withNodeId(1_001L)
+                .withIncarnation(incarnation)
+                .withTransport(network.transport(1))
+                .withEstimator(estimator)
+                .withMaxNodes(MAX_NODES)
+                .withExpiry(Duration.ofSeconds(2))
+                .build();
+    }
+
+    private static EwmaTrafficEstimator warmedEstimator(long permitsPerSecond) {
+        EwmaTrafficEstimator estimator = new EwmaTrafficEstimator();
+        for (int second = 1; second <= 10; second++) {
+            estimator.recordLocalPermits(permitsPerSecond, second * SECOND);
+        }
+        return estimator;
+    }
+}
@@ -0,0 +1,43 @@
+package io.fluxgate.core.gossip;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UdpGossipTransportTest {
+
+    @Test
+    void deliversDatagramsBetweenLoopbackSockets() throws Exception {
+        // Arrange
+        InetSocketAddress any = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        try (UdpGossipTransport sender = new UdpGossipTransport(any, List.of());
+             UdpGossipTransport receiver = new UdpGossipTransport(any, List.of())) {
+            sender.peers(List.of(receiver.localAddress()));
+            ByteBuffer out = ByteBuffer.allocateDirect(16);
+            out.putLong(0, 42L).putLong(8, 7L);
+            ByteBuffer in = ByteBuffer.allocateDirect(16);
+
+            // Act
+            sender.send(0, out);
+            boolean received = false;
+            for (int attempt = 0; attempt < 200 && !received; attempt++) {
+                received = receiver.receive(in);
+                if (!received) {
+                    Thread.sleep(5L);
+                }
+            }
+
+            // Assert
+            assertThat(sender.peerCount()).isEqualTo(1);
+            assertThat(received).isTrue();
+            assertThat(in.getLong(0)).isEqualTo(42L);
+            assertThat(in.getLong(8)).isEqualTo(7L);
+            assertThat(receiver.receive(in.clear())).isFalse();
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package io.fluxgate.core.observability;
 
 import io.fluxgate.core.tierB.HeavyKeeper;
+import io.fluxgate.core.tierB.WindowedHeavyHitters;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 class HeatmapReporterTest {
@@ -25,4 +28,21 @@ class HeatmapReporterTest {
                 .contains("2b:")
                 .endsWith("\n");
     }
+
+    @Test
+    void writeTopKeysStreamsRankedWindow() throws Exception {
+        // Arrange
+        WindowedHeavyHitters hitters = new WindowedHeavyHitters(4, 0.5d, Duration.ofSeconds(10), 6);
+        hitters.offer(0x2bL, 0L);
+        hitters.offer(0x1aL, 0L);
+        hitters.offer(0x1aL, 0L);
+        HeatmapReporter reporter = new HeatmapReporter(hitters);
+        StringBuilder out = new StringBuilder();
+
+        // Act
+        reporter.writeTopKeys(Duration.ofSeconds(10), 10, 1L, out);
+
+        // Assert
+        assertThat(out.toString()).isEqualTo("1a:2\n2b:1\n");
+    }
 }
@@ -0,0 +1,178 @@
+package io.fluxgate.core.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompiledPolicySetTest {
+
+    private static final String[] ROUTES = {"/api/users", "/api/users/42", "/api/orders/7/items", "/admin",
+        "/static/css/site.css", "/", "/api"};
+    private static final String[] IPS = {"10.1.2.3", "10.200.0.1", "192.168.1.10", "172.16.5.4", "::1", ""};
+    private static final String[] TIERS = {"gold", "silver", "bronze"};
+
+    @Test
+    void indexedLookupAgreesWithLinearScan() {
+        assertAgreesWithLinearScan(MatcherBackend.CLOSURES);
+    }
+
+    @Test
+    void hiddenClassBackendAgreesWithLinearScan() {
+        assertAgreesWithLinearScan(MatcherBackend.HIDDEN_CLASSES);
+    }
+
+    private static void assertAgreesWithLinearScan(MatcherBackend backend) {
+        // Arrange
+        List<LimitPolicy> policies = new ArrayList<>();
+        policies.add(policy("users", Map.of("route", "/api/users/*", "attributes", Map.of("tier", "gold"))));
+        policies.add(policy("internal", Map.of("ip", List.of("10.0.0.0/8", "172.16.0.0/12"), "route", "/api/**")));
+        policies.add(policy("orders", Map.of("route", "/api/*/*/items",
+                "attribute", Map.of("name", "tier", "anyOf", List.of("gold", "silver")))));
+        policies.add(policy("not-bronze", Map.of("attribute", Map.of("name", "tier", "noneOf", List.of("bronze")))));
+        policies.add(policy("admin-any", Map.of("any", List.of(Map.of("route", "/admin"),
+                Map.of("ip", "192.168.1.0/24")))));
+        policies.add(policy("host", Map.of("ip", "192.168.1.10", "not", Map.of("route", "/static/**"))));
+        policies.add(new LimitPolicy("opaque", 1d, 1d, 60, context -> context.route().endsWith(".css")));
+        policies.add(policy("root", Map.of("route", List.of("/", "/api"))));
+        policies.add(new LimitPolicy("fallback", 1d, 1d, 60));
+        CompiledPolicySet set = new CompiledPolicySet(policies, backend);
+        MatchResult result = new MatchResult();
+        long[] bitset = new long[set.bitsetWords()];
+        Random random = new Random(7L);
+
+        for (int i = 0; i < 500; i++) {
+            Map<String, String> attributes = random.nextBoolean()
+                    ? Map.of("tier", TIERS[random.nextInt(TIERS.length)])
+                    : Map.of();
+            PolicyContext context = new PolicyContext(IPS[random.nextInt(IPS.length)],
+                    ROUTES[random.nextInt(ROUTES.length)], attributes);
+
+            // Act
+            Optional<LimitPolicy> first = set.firstMatch(context);
+            List<PolicyDecision> decisions = set.evaluate(context);
+            int count = set.evaluate(context, bitset);
+            set.evaluate(context, result);
+
+            // Assert
+            Optional<LimitPolicy> expected = policies.stream().filter(p -> p.matcher().matches(context)).findFirst();
+            assertThat(first).isEqualTo(expected);
+            int matches = 0;
+            for (int p = 0; p < policies.size(); p++) {
+                boolean matched = policies.get(p).matcher().matches(context);
+                matches += matched ? 1 : 0;
+                assertThat(decisions.get(p).matched()).isEqualTo(matched);
+                assertThat((bitset[0] & (1L << p)) != 0).isEqualTo(matched);
+                assertThat(result.matched(p)).isEqualTo(matched);
+            }
+            assertThat(count).isEqualTo(matches);
+            assertThat(result.count()).isEqualTo(matches);
+            assertThat(result.nextMatch(0)).isEqualTo(expected.map(policies::indexOf).orElse(-1));
+        }
+    }
+
+    @Test
+    void firstMatchFollowsDeclarationOrderAcrossManyPolicies() {
+        // Arrange
+        List<LimitPolicy> policies = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            policies.add(policy("svc-" + i, Map.of("route", "/svc" + i + "/**")));
+        }
+        policies.add(policy("catch-all", Map.of("route", "/**")));
+        CompiledPolicySet set = CompiledPolicySet.of(policies);
+
+        // Act
+        Optional<LimitPolicy> service = set.firstMatch(new PolicyContext("10.0.0.1", "/svc150/orders", Map.of()));
+        Optional<LimitPolicy> unknown = set.firstMatch(new PolicyContext("10.0.0.1", "/other", Map.of()));
+
+        // Assert
+        assertThat(service.orElseThrow().id()).isEqualTo("svc-150");
+        assertThat(unknown.orElseThrow().id()).isEqualTo("catch-all");
+    }
+
+    @Test
+    void matchResultIsReusedAcrossSetsOfDifferentSizes() {
+        // Arrange
+        List<LimitPolicy> policies = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            policies.add(policy("svc-" + i, Map.of("route", i % 64 == 0 ? "/shared/**" : "/svc" + i + "/**")));
+        }
+        CompiledPolicySet large = CompiledPolicySet.of(policies);
+        CompiledPolicySet small = CompiledPolicySet.of(policies.subList(0, 3));
+        MatchResult result = new MatchResult();
+
+        // Act
+        large.evaluate(new PolicyContext("10.0.0.1", "/shared/a", Map.of()), result);
+        List<Integer> largeMatches = new ArrayList<>();
+        for (int i = result.nextMatch(0); i >= 0; i = result.nextMatch(i + 1)) {
+            largeMatches.add(i);
+        }
+        small.evaluate(new PolicyContext("10.0.0.1", "/svc2/a", Map.of()), result);
+
+        // Assert
+        assertThat(largeMatches).containsExactly(0, 64, 128);
+        assertThat(result.size()).isEqualTo(3);
+        assertThat(result.count()).isEqualTo(1);
+        assertThat(result.nextMatch(0)).isEqualTo(2);
+        assertThat(result.policy(2).id()).isEqualTo("svc-2");
+        assertThat(result.nextMatch(3)).isEqualTo(-1);
+        assertThat(result.toString()).isEqualTo("MatchResult[svc-2]");
+    }
+
+    @Test
+    void rejectsBitsetTooSmallForSet() {
+        // Arrange
+        List<LimitPolicy> policies = new ArrayList<>();
+        for (int i = 0; i < 65; i++) {
+            policies.add(new LimitPolicy("p" + i, 1d, 1d, 60));
+        }
+        CompiledPolicySet set = CompiledPolicySet.of(policies);
+
+        // Act / Assert
+        assertThat(set.bitsetWords()).isEqualTo(2);
+        assertThatThrownBy(() -> set.evaluate(new PolicyContext("10.0.0.1", "/", Map.of()), new long[1]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void emptySetMatchesNothing() {
+        // Arrange
+        CompiledPolicySet set = new CompiledPolicySet(List.of());
+
+        // Act
+        Optional<LimitPolicy> first = set.firstMatch(new PolicyContext("10.0.0.1", "/", Map.of()));
+
+        // Assert
+        assertThat(first).isEmpty();
+        assertThat(set.evaluate(new PolicyContext("10.0.0.1", "/", Map.of()))).isEmpty();
+        assertThat(set.evaluate(new PolicyContext("10.0.0.1", "/", Map.of()), new long[0])).isZero();
+    }
+
+    @Test
+    void reportsReferencedAttributesAndCustomMatchers() {
+        // Arrange
+        List<LimitPolicy> compiled = List.of(
+                policy("a", Map.of("attributes", Map.of("tier", "gold"))),
+                policy("b", Map.of("not", Map.of("attribute", Map.of("name", "region", "noneOf", List.of("eu"))))));
+
+        // Act
+        CompiledPolicySet set = new CompiledPolicySet(compiled);
+        CompiledPolicySet custom = new CompiledPolicySet(List.of(new LimitPolicy("c", 1d, 1d, 60, context -> true)));
+
+        // Assert
+        assertThat(set.referencedAttributes()).containsExactly("region", "tier");
+        assertThat(set.hasCustomMatchers()).isFalse();
+        assertThat(custom.hasCustomMatchers()).isTrue();
+        assertThat(custom.version()).isNotEqualTo(set.version());
+    }
+
+    private static LimitPolicy policy(String id, Map<String, Object> match) {
+        return new LimitPolicy(id, 1d, 1d, 60, PolicyCompiler.parseMatcher(match));
+    }
+}
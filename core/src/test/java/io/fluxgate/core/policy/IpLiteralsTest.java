@@ -0,0 +1,100 @@
+package io.fluxgate.core.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IpLiteralsTest {
+
+    @Test
+    void parsesDottedQuads() {
+        // Act / Assert
+        assertThat(IpLiterals.parseIpv4("0.0.0.0")).isZero();
+        assertThat(IpLiterals.parseIpv4("10.1.2.3")).isEqualTo(0x0A010203L);
+        assertThat(IpLiterals.parseIpv4("255.255.255.255")).isEqualTo(0xFFFFFFFFL);
+        assertThat(IpLiterals.parseIpv4("010.001.000.009")).isEqualTo(0x0A010009L);
+    }
+
+    @Test
+    void parsesARangeOfALargerSequence() {
+        // Arrange
+        StringBuilder text = new StringBuilder("ip=192.168.1.10/24");
+
+        // Act
+        long address = IpLiterals.parseIpv4(text, 3, 15);
+
+        // Assert
+        assertThat(address).isEqualTo(0xC0A8010AL);
+    }
+
+    @Test
+    void rejectsAnythingButAFullLiteral() {
+        // Arrange
+        List<String> invalid = List.of("", "1.2.3", "1.2.3.4.", "1.2.3.4.5", "256.0.0.1", "1.2.3.1000", "1..2.3",
+                ".1.2.3", "1.2.3.-4", " 1.2.3.4", "16909060", "localhost", "example.com", "::1");
+
+        // Act
+        List<String> accepted = invalid.stream()
+                .filter(text -> IpLiterals.parseIpv4(text) != IpLiterals.INVALID)
+                .toList();
+
+        // Assert
+        assertThat(accepted).isEmpty();
+        assertThat(IpLiterals.parseIpv4(null)).isEqualTo(IpLiterals.INVALID);
+    }
+
+    @Test
+    void parsesIpv6WithCompressionAndEmbeddedIpv4() {
+        // Arrange
+        long[] address = new long[2];
+
+        // Act / Assert
+        assertThat(IpLiterals.parse("2001:db8:0:0:1:0:0:1", address)).isTrue();
+        assertThat(address).containsExactly(0x20010DB800000000L, 0x0001000000000001L);
+        assertThat(IpLiterals.parse("2001:DB8::1:0:0:1", address)).isTrue();
+        assertThat(address).containsExactly(0x20010DB800000000L, 0x0001000000000001L);
+        assertThat(IpLiterals.parse("::", address)).isTrue();
+        assertThat(address).containsExactly(0L, 0L);
+        assertThat(IpLiterals.parse("::1", address)).isTrue();
+        assertThat(address).containsExactly(0L, 1L);
+        assertThat(IpLiterals.parse("fe80::", address)).isTrue();
+        assertThat(address).containsExactly(0xFE80000000000000L, 0L);
+        assertThat(IpLiterals.parse("1:2:3:4:5:6:7::", address)).isTrue();
+        assertThat(address).containsExactly(0x0001000200030004L, 0x0005000600070000L);
+        assertThat(IpLiterals.parse("::ffff:192.0.2.1", address)).isTrue();
+        assertThat(address).containsExactly(0L, 0x0000FFFFC0000201L);
+        assertThat(IpLiterals.parse("64:ff9b::192.0.2.1", address)).isTrue();
+        assertThat(address).containsExactly(0x0064FF9B00000000L, 0x00000000C0000201L);
+    }
+
+    @Test
+    void mapsIpv4IntoTheIpv6Space() {
+        // Arrange
+        long[] address = new long[2];
+
+        // Act
+        boolean parsed = IpLiterals.parse("192.0.2.1", address);
+
+        // Assert
+        assertThat(parsed).isTrue();
+        assertThat(address).containsExactly(0L, 0x0000FFFFC0000201L);
+    }
+
+    @Test
+    void rejectsMalformedIpv6() {
+        // Arrange
+        List<String> invalid = List.of(":", ":::", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7", "1::2::3", "12345::",
+                "1:2:3:4:5:6:7:8::", "::1:2:3:4:5:6:7:8", "1:", ":1::", "g::1", "fe80::1%eth0", "[::1]",
+                "::ffff:1.2.3", "1.2.3.4::", "::1.2.3.4:5", "1:2:3:4:5:6:7:1.2.3.4", "\u0661::1");
+
+        // Act
+        List<String> accepted = invalid.stream()
+                .filter(text -> IpLiterals.parse(text, new long[2]))
+                .toList();
+
+        // Assert
+        assertThat(accepted).isEmpty();
+    }
+}
@@ -2,6 +2,8 @@ package io.fluxgate.core.policy;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Map;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 class KeyBuilderTest {
@@ -32,4 +34,20 @@ class KeyBuilderTest {
         // Assert
         assertThat(hash).isNotZero();
     }
+
+    @Test
+    void parametersHashLikeEquivalentAttributes() {
+        // Arrange
+        LimitPolicy policy = new LimitPolicy("tenant", 1d, 1d, 60,
+                PolicyCompiler.parseMatcher(Map.of("route", "/t/{tenantId}/orders/**")));
+        RouteParameters parameters = new RouteParameters();
+        parameters.capture(policy, "/t/acme/orders/42");
+
+        // Act
+        long fromParameters = KeyBuilder.of().parameters(parameters).buildHash("secret");
+        long fromAttribute = KeyBuilder.of().attribute("param:tenantId", "acme").buildHash("secret");
+
+        // Assert
+        assertThat(fromParameters).isEqualTo(fromAttribute);
+    }
 }
@@ -0,0 +1,131 @@
+package io.fluxgate.core.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyPlanTest {
+
+    @Test
+    void hashMatchesKeyBuilderOverSameFields() {
+        // Arrange
+        KeyPlan plan = KeyPlan.of(List.of("ip", "route", "header:x-api-key", "attribute:tier"));
+        LimitPolicy policy = new LimitPolicy("api", 1d, 1d, 60, null, plan);
+        PolicyContext context = new PolicyContext("10.0.0.1", "/orders",
+                Map.of("x-api-key", "k-1", "tier", "gold", "unused", "x"));
+
+        // Act
+        long hash = plan.hash(policy, context, "secret");
+
+        // Assert
+        long expected = KeyBuilder.of()
+                .attribute("policy", "api")
+                .ip("10.0.0.1")
+                .route("/orders")
+                .header("x-api-key", "k-1")
+                .attribute("tier", "gold")
+                .buildHash("secret");
+        assertThat(hash).isEqualTo(expected);
+    }
+
+    @Test
+    void hashesOnlyListedFields() {
+        // Arrange
+        KeyPlan plan = KeyPlan.of(List.of("header:x-api-key"));
+        LimitPolicy policy = new LimitPolicy("api", 1d, 1d, 60, null, plan);
+
+        // Act
+        long first = plan.hash(policy, new PolicyContext("10.0.0.1", "/a", Map.of("x-api-key", "k")), "s");
+        long second = plan.hash(policy, new PolicyContext("10.0.0.2", "/b", Map.of("x-api-key", "k")), "s");
+        long other = plan.hash(policy, new PolicyContext("10.0.0.1", "/a", Map.of("x-api-key", "j")), "s");
+        long missing = plan.hash(policy, new PolicyContext("10.0.0.1", "/a", Map.of()), "s");
+
+        // Assert
+        assertThat(first).isEqualTo(second);
+        assertThat(other).isNotEqualTo(first);
+        assertThat(missing).isEqualTo(KeyBuilder.of().attribute("policy", "api").buildHash("s"));
+    }
+
+    @Test
+    void headerFieldsAreCaseInsensitiveAndReadTheLowerCasedAttribute() {
+        // Arrange
+        KeyPlan upper = KeyPlan.of(List.of("header:X-Api-Key"));
+        KeyPlan lower = KeyPlan.of(List.of("header:x-api-key"));
+        LimitPolicy policy = new LimitPolicy("api", 1d, 1d, 60,
+                PolicyCompiler.parseMatcher(Map.of("attributes", Map.of("x-api-key", "k"))), upper);
+        PolicyContext context = new PolicyContext("10.0.0.1", "/a", Map.of("x-api-key", "k"));
+
+        // Act
+        long upperHash = upper.hash(policy, context, "s");
+        long lowerHash = lower.hash(policy, context, "s");
+
+        // Assert
+        assertThat(policy.matcher().matches(context)).isTrue();
+        assertThat(upper).isEqualTo(lower);
+        assertThat(upper.fields()).containsExactly("header:x-api-key");
+        assertThat(upperHash).isEqualTo(lowerHash);
+        assertThat(upperHash).isEqualTo(KeyBuilder.of()
+                .attribute("policy", "api")
+                .header("X-Api-Key", "k")
+                .buildHash("s"));
+        assertThatThrownBy(() -> KeyPlan.of(List.of("header:X-Api-Key", "header:x-api-key")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Duplicate");
+    }
+
+    @Test
+    void hashesRouteParametersInPlace() {
+        // Arrange
+        KeyPlan plan = KeyPlan.of(List.of("param:tenantId"));
+        LimitPolicy policy = new LimitPolicy("tenant", 1d, 1d, 60,
+                PolicyCompiler.parseMatcher(Map.of("route", "/t/{tenantId}/orders/{orderId}")), plan);
+
+        // Act
+        long hash = plan.hash(policy, new PolicyContext("10.0.0.1", "/t/acme/orders/7", Map.of()), "s");
+
+        // Assert
+        assertThat(hash).isEqualTo(KeyBuilder.of().attribute("policy", "tenant")
+                .attribute("param:tenantId", "acme").buildHash("s"));
+    }
+
+    @Test
+    void encodesNonAsciiValuesLikeStringBytes() {
+        // Arrange
+        KeyPlan plan = KeyPlan.of(List.of("route"));
+        LimitPolicy policy = new LimitPolicy("intl", 1d, 1d, 60, null, plan);
+        String route = "/café/東京/😀/\uD800x";
+
+        // Act
+        long hash = plan.hash(policy, new PolicyContext("10.0.0.1", route, Map.of()), "sécret");
+
+        // Assert
+        assertThat(hash).isEqualTo(KeyBuilder.of().attribute("policy", "intl").route(route).buildHash("sécret"));
+    }
+
+    @Test
+    void templatePoliciesDefaultToTheirParameters() {
+        // Arrange
+        PolicyMatcher matcher = PolicyCompiler.parseMatcher(Map.of("route", "/t/{tenantId}/u/{userId}"));
+
+        // Act
+        LimitPolicy template = new LimitPolicy("t", 1d, 1d, 60, matcher);
+        LimitPolicy plain = new LimitPolicy("p", 1d, 1d, 60);
+
+        // Assert
+        assertThat(template.keyBy().fields()).containsExactly("param:tenantId", "param:userId");
+        assertThat(plain.keyBy()).isNull();
+    }
+
+    @Test
+    void rejectsInvalidFields() {
+        // Act / Assert
+        assertThatThrownBy(() -> KeyPlan.of(List.of("cookie:session"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeyPlan.of(List.of("ip", "ip"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeyPlan.of(List.of("ip:v4"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeyPlan.of(List.of("header:"))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
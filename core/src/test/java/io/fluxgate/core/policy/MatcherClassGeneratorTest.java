@@ -0,0 +1,136 @@
+package io.fluxgate.core.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MatcherClassGeneratorTest {
+
+    private static final String[] ROUTES = {"/api/users", "/api/users/42", "/api/orders/7/items", "/admin", "/"};
+    private static final String[] IPS = {"10.1.2.3", "192.168.1.10", "172.16.5.4", "2001:db8::1", "bogus"};
+    private static final String[] TIERS = {"gold", "silver", "bronze", "tin"};
+
+    @Test
+    void generatedClassesAgreeWithClosuresOnRandomTrees() {
+        // Arrange
+        Random random = new Random(11L);
+        List<PolicyMatcher> matchers = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            matchers.add(PolicyCompiler.parseMatcher(randomNode(random, 4)));
+        }
+
+        // Act
+        MatcherTable table = MatcherClassGenerator.generate(matchers);
+
+        // Assert
+        for (int i = 0; i < 300; i++) {
+            PolicyContext context = randomContext(random);
+            for (int p = 0; p < matchers.size(); p++) {
+                assertThat(table.matches(p, context)).isEqualTo(matchers.get(p).matches(context));
+            }
+        }
+    }
+
+    @Test
+    void callsUnknownMatchersThroughTheirInterface() {
+        // Arrange
+        PolicyMatcher opaque = context -> context.route().endsWith(".css");
+        PolicyMatcher matcher = new Matchers.All(List.of(
+                PolicyCompiler.parseMatcher(Map.of("route", "/static/**")),
+                new Matchers.Not(opaque)));
+
+        // Act
+        MatcherTable table = MatcherClassGenerator.generate(List.of(matcher, opaque));
+
+        // Assert
+        assertThat(table.matches(0, new PolicyContext("", "/static/app.js", Map.of()))).isTrue();
+        assertThat(table.matches(0, new PolicyContext("", "/static/site.css", Map.of()))).isFalse();
+        assertThat(table.matches(1, new PolicyContext("", "/static/site.css", Map.of()))).isTrue();
+    }
+
+    @Test
+    void splitsLargePolicySetsAcrossClasses() {
+        // Arrange
+        int size = MatcherClassGenerator.POLICIES_PER_CLASS * 2 + 3;
+        List<PolicyMatcher> matchers = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            matchers.add(PolicyCompiler.parseMatcher(Map.of("attributes", Map.of("tenant", "t" + i))));
+        }
+
+        // Act
+        MatcherTable table = MatcherClassGenerator.generate(matchers);
+
+        // Assert
+        for (int i = 0; i < size; i += 7) {
+            PolicyContext context = new PolicyContext("", "/", Map.of("tenant", "t" + i));
+            assertThat(table.matches(i, context)).isTrue();
+            assertThat(table.matches((i + 1) % size, context)).isFalse();
+        }
+    }
+
+    @Test
+    void keepsHugeMatchersOutOfLineButCorrect() {
+        // Arrange
+        List<Object> alternatives = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            alternatives.add(Map.of("attribute", Map.of("name", "tenant", "equals", "t" + i)));
+        }
+        PolicyMatcher huge = PolicyCompiler.parseMatcher(Map.of("any", alternatives));
+
+        // Act
+        MatcherTable table = MatcherClassGenerator.generate(List.of(huge));
+
+        // Assert
+        assertThat(table.matches(0, new PolicyContext("", "/", Map.of("tenant", "t1999")))).isTrue();
+        assertThat(table.matches(0, new PolicyContext("", "/", Map.of("tenant", "t2000")))).isFalse();
+    }
+
+    @Test
+    void unknownPolicyOrdinalsNeverMatch() {
+        // Arrange
+        MatcherTable table = MatcherClassGenerator.generate(List.of(PolicyMatcher.always()));
+
+        // Act
+        boolean matched = table.matches(5, new PolicyContext("", "/", Map.of()));
+
+        // Assert
+        assertThat(matched).isFalse();
+    }
+
+    private static Object randomNode(Random random, int depth) {
+        int kind = random.nextInt(depth == 0 ? 4 : 8);
+        return switch (kind) {
+            case 0 -> Map.of("route", random.nextBoolean() ? "/api/**" : List.of("/admin", "/api/*/42"));
+            case 1 -> Map.of("ip", random.nextBoolean() ? "10.0.0.0/8" : List.of("192.168.0.0/16", "2001:db8::/32"));
+            case 2 -> Map.of("attributes", Map.of("tier", random.nextBoolean()
+                    ? TIERS[random.nextInt(TIERS.length)]
+                    : Map.of("anyOf", List.of("gold", "silver"), "noneOf", List.of("silver"))));
+            case 3 -> Map.of("attribute", Map.of("name", "tier", "noneOf", List.of(TIERS[random.nextInt(TIERS.length)])));
+            case 4 -> Map.of("all", children(random, depth));
+            case 5 -> Map.of("any", children(random, depth));
+            case 6 -> Map.of("not", randomNode(random, depth - 1));
+            default -> Map.of("route", "/**", "any", children(random, depth));
+        };
+    }
+
+    private static List<Object> children(Random random, int depth) {
+        List<Object> children = new ArrayList<>();
+        int count = 1 + random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            children.add(randomNode(random, depth - 1));
+        }
+        return children;
+    }
+
+    private static PolicyContext randomContext(Random random) {
+        Map<String, String> attributes = random.nextInt(4) == 0
+                ? Map.of()
+                : Map.of("tier", TIERS[random.nextInt(TIERS.length)]);
+        return new PolicyContext(IPS[random.nextInt(IPS.length)], ROUTES[random.nextInt(ROUTES.length)], attributes);
+    }
+}
@@ -43,4 +43,80 @@ class PatriciaTrieTest {
         assertThat(trie.matches("10.127.255.255")).isTrue();
         assertThat(trie.matches("11.0.0.0")).isFalse();
     }
+
+    @Test
+    void collectReturnsPoliciesOfEveryContainingPrefix() {
+        PatriciaTrie trie = new PatriciaTrie();
+        trie.insert("0.0.0.0/0", 0, 1);
+        trie.insert("10.0.0.0/8", 1, 1);
+        trie.insert("10.1.2.0/24", 2, 1);
+        trie.insert("10.1.2.0/24", 3, 1);
+        trie.insert("192.168.1.10", 4, 1);
+        trie.freeze();
+
+        long[] nested = new long[1];
+        trie.collect("10.1.2.9", nested, 0);
+        long[] host = new long[1];
+        trie.collect("192.168.1.10", host, 0);
+        long[] invalid = new long[1];
+        trie.collect("10.1.2", invalid, 0);
+
+        assertThat(nested[0]).isEqualTo(0b01111L);
+        assertThat(host[0]).isEqualTo(0b10001L);
+        assertThat(invalid[0]).isZero();
+    }
+
+    @Test
+    void rejectsHostNamesInsteadOfResolvingThem() {
+        PatriciaTrie trie = new PatriciaTrie();
+        trie.insert("0.0.0.0/0");
+        trie.freeze();
+
+        assertThat(trie.matches("localhost")).isFalse();
+        assertThat(trie.matches("10.1")).isFalse();
+        assertThatThrownBy(() -> new PatriciaTrie().insert("localhost/8"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Invalid IP address");
+    }
+
+    @Test
+    void matchesIpv6AndIpv4MappedAddresses() {
+        PatriciaTrie trie = new PatriciaTrie();
+        trie.insert("2001:db8::/32");
+        trie.insert("2001:db8:aaaa::/48");
+        trie.insert("fe80::1");
+        trie.insert("10.0.0.0/8");
+        trie.freeze();
+
+        assertThat(trie.matches("2001:db8:ffff::1")).isTrue();
+        assertThat(trie.matches("2001:DB8:AAAA:1:2:3:4:5")).isTrue();
+        assertThat(trie.matches("2001:db9::1")).isFalse();
+        assertThat(trie.matches("fe80::1")).isTrue();
+        assertThat(trie.matches("fe80::2")).isFalse();
+        assertThat(trie.matches("::ffff:10.1.2.3")).isTrue();
+        assertThat(trie.matches("::ffff:0a01:0203")).isTrue();
+        assertThat(trie.matches("::10.1.2.3")).isFalse();
+        assertThat(trie.matches("10.1.2.3")).isTrue();
+    }
+
+    @Test
+    void keepsAddressFamiliesApart() {
+        PatriciaTrie trie = new PatriciaTrie();
+        trie.insert("0.0.0.0/0", 0, 1);
+        trie.insert("::/0", 1, 1);
+        trie.insert("2001:db8::/32", 2, 1);
+        trie.freeze();
+
+        long[] ipv4 = new long[1];
+        trie.collect("192.0.2.1", ipv4, 0);
+        long[] ipv6 = new long[1];
+        trie.collect("2001:db8::1", ipv6, 0);
+
+        assertThat(ipv4[0]).isEqualTo(0b011L);
+        assertThat(ipv6[0]).isEqualTo(0b110L);
+        assertThatThrownBy(() -> new PatriciaTrie().insert("10.0.0.0/33"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new PatriciaTrie().insert("2001:db8::/129"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
 }
@@ -0,0 +1,261 @@
+package io.fluxgate.core.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PolicyArtifactTest {
+
+    private static final String[] ROUTES = {"/api/users", "/api/users/42", "/api/orders/7/items", "/admin",
+        "/static/css/site.css", "/", "/svc3/v1/items", "/svc17/v1/a/b"};
+    private static final String[] IPS = {"10.1.2.3", "10.200.0.1", "192.168.1.10", "2001:db8::7", "::1", "bogus"};
+
+    @Test
+    void loadedSetAgreesWithCompiledSet() {
+        assertRoundTripAgrees(MatcherBackend.CLOSURES);
+    }
+
+    @Test
+    void loadedSetAgreesWithCompiledSetOnHiddenClasses() {
+        assertRoundTripAgrees(MatcherBackend.HIDDEN_CLASSES);
+    }
+
+    private static void assertRoundTripAgrees(MatcherBackend backend) {
+        // Arrange
+        CompiledPolicySet compiled = PolicyCompiler.fromYaml(stream(yaml()));
+
+        // Act
+        CompiledPolicySet loaded = PolicyArtifact.read(ByteBuffer.wrap(PolicyArtifact.toByteArray(compiled)),
+                backend);
+
+        // Assert
+        assertThat(loaded.policies()).hasSize(compiled.policies().size());
+        for (int p = 0; p < compiled.policies().size(); p++) {
+            LimitPolicy expected = compiled.policies().get(p);
+            LimitPolicy actual = loaded.policies().get(p);
+            assertThat(actual.id()).isEqualTo(expected.id());
+            assertThat(actual.limitPerSecond()).isEqualTo(expected.limitPerSecond());
+            assertThat(actual.burstTokens()).isEqualTo(expected.burstTokens());
+            assertThat(actual.windowSeconds()).isEqualTo(expected.windowSeconds());
+            assertThat(actual.keyBy()).isEqualTo(expected.keyBy());
+        }
+        assertThat(loaded.referencedAttributes()).isEqualTo(compiled.referencedAttributes());
+        Random random = new Random(11L);
+        for (int i = 0; i < 2_000; i++) {
+            PolicyContext context = new PolicyContext(IPS[random.nextInt(IPS.length)],
+                    ROUTES[random.nextInt(ROUTES.length)],
+                    Map.of("tier", "t" + random.nextInt(600), "region", random.nextBoolean() ? "eu" : "us"));
+            assertThat(loaded.firstMatch(context).map(LimitPolicy::id))
+                    .isEqualTo(compiled.firstMatch(context).map(LimitPolicy::id));
+            assertThat(loaded.evaluate(context)).isEqualTo(compiled.evaluate(context));
+        }
+    }
+
+    @Test
+    void writesAndMapsArtifactFile() throws Exception {
+        // Arrange
+        Path yaml = Files.createTempFile("fluxgate-policies", ".yml");
+        Path artifact = Files.createTempFile("fluxgate-policies", ".fgp");
+        Files.writeString(yaml, yaml());
+
+        // Act
+        PolicyArtifact.main(new String[] {yaml.toString(), artifact.toString()});
+        CompiledPolicySet loaded = PolicyArtifact.load(artifact);
+
+        // Assert
+        PolicyContext context = new PolicyContext("10.1.2.3", "/svc3/v1/items", Map.of());
+        assertThat(loaded.firstMatch(context).orElseThrow().id()).isEqualTo("svc-3");
+        Files.deleteIfExists(yaml);
+        Files.deleteIfExists(artifact);
+    }
+
+    @Test
+    void keepsRouteTemplateParameters() {
+        // Arrange
+        CompiledPolicySet compiled = PolicyCompiler.fromYaml(stream(
+                "policies:\n  - id: tenant\n    match:\n      route: /t/{tenantId}/orders/**\n"));
+        RouteParameters parameters = new RouteParameters();
+
+        // Act
+        CompiledPolicySet loaded = PolicyArtifact.read(ByteBuffer.wrap(PolicyArtifact.toByteArray(compiled)),
+                MatcherBackend.CLOSURES);
+        boolean matched = parameters.capture(loaded.policies().get(0), "/t/acme/orders/1");
+
+        // Assert
+        assertThat(matched).isTrue();
+        assertThat(parameters.value("tenantId")).isEqualTo("acme");
+    }
+
+    @Test
+    void sameYamlProducesIdenticalArtifacts() {
+        // Arrange
+        CompiledPolicySet first = PolicyCompiler.fromYaml(stream(yaml()));
+        CompiledPolicySet second = PolicyCompiler.fromYaml(stream(yaml()));
+
+        // Act
+        byte[] firstBytes = PolicyArtifact.toByteArray(first);
+        byte[] secondBytes = PolicyArtifact.toByteArray(second);
+
+        // Assert
+        assertThat(firstBytes).isEqualTo(secondBytes);
+    }
+
+    @Test
+    void rejectsCustomMatchers() {
+        // Arrange
+        CompiledPolicySet set = new CompiledPolicySet(List.of(new LimitPolicy("custom", 1d, 1d, 60, context -> true)));
+
+        // Act / Assert
+        assertThatThrownBy(() -> PolicyArtifact.toByteArray(set))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("custom");
+    }
+
+    @Test
+    void rejectsCorruptTruncatedAndForeignFiles() {
+        // Arrange
+        byte[] bytes = PolicyArtifact.toByteArray(PolicyCompiler.fromYaml(stream(yaml())));
+        byte[] corrupt = bytes.clone();
+        corrupt[corrupt.length / 2] ^= 0x10;
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 9);
+        byte[] outdated = bytes.clone();
+        outdated[7] = (byte) (PolicyArtifact.VERSION + 1);
+        byte[] foreign = yaml().getBytes(StandardCharsets.UTF_8);
+
+        // Act / Assert
+        for (byte[] invalid : List.of(corrupt, truncated, outdated, foreign)) {
+            assertThatThrownBy(() -> PolicyArtifact.read(ByteBuffer.wrap(invalid), MatcherBackend.CLOSURES))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    void rejectsOutOfRangeIndicesAndMalformedHashTables() {
+        // Arrange
+        Map<String, Consumer<PolicyArtifact.Writer>> matchers = Map.of(
+                "Invalid route trie child 7",
+                out -> writeRouteTrie(out, new int[] {7, -1}, new int[] {0, 0}, new int[] {1, -1}),
+                "Invalid route trie child 1",
+                out -> writeRouteTrie(out, new int[] {-1, -1}, new int[] {1, 0}, new int[] {1, -1}),
+                "Invalid IP trie child 3",
+                out -> {
+                    out.writeByte(PolicyArtifact.IP);
+                    out.longs(new long[4]);
+                    out.bytes(new byte[] {0});
+                    out.ints(new int[] {3, -1});
+                    out.bytes(new byte[] {0});
+                    out.bitsets(new long[][] {null});
+                },
+                "Perfect hash has no seeds",
+                out -> writePerfectHash(out, new String[] {"a", "b"}, new int[0]),
+                "Null value in value set",
+                out -> writePerfectHash(out, new String[] {"a", null}, new int[] {-1, -2}));
+
+        // Act / Assert
+        matchers.forEach((problem, matcher) -> {
+            byte[] artifact = artifactWithMatcher(matcher);
+            assertThatThrownBy(() -> PolicyArtifact.read(ByteBuffer.wrap(artifact), MatcherBackend.CLOSURES))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("Corrupt policy artifact")
+                    .rootCause()
+                    .hasMessageContaining(problem);
+        });
+    }
+
+    private static byte[] artifactWithMatcher(Consumer<PolicyArtifact.Writer> matcher) {
+        PolicyArtifact.Writer body = new PolicyArtifact.Writer();
+        body.writeInt(1);
+        body.string("corrupt");
+        body.writeDouble(10);
+        body.writeDouble(10);
+        body.writeLong(1);
+        matcher.accept(body);
+        return PolicyArtifact.frame(body);
+    }
+
+    private static void writeRouteTrie(PolicyArtifact.Writer out, int[] singleWildcards, int[] tableParents,
+                                       int[] tableChildren) {
+        out.writeByte(PolicyArtifact.ROUTE);
+        out.strings(new String[] {null, "a"});
+        out.ints(singleWildcards);
+        out.booleans(new boolean[] {false, true});
+        out.booleans(new boolean[2]);
+        out.bitsets(new long[2][]);
+        out.bitsets(new long[2][]);
+        out.writeBoolean(false);
+        out.writeBoolean(false);
+        out.ints(tableParents);
+        out.ints(new int[] {"a".hashCode(), 0});
+        out.ints(tableChildren);
+    }
+
+    private static void writePerfectHash(PolicyArtifact.Writer out, String[] keys, int[] seeds) {
+        out.writeByte(PolicyArtifact.ATTRIBUTE);
+        out.string("tier");
+        out.writeByte(0);
+        out.writeByte(4);
+        out.strings(keys);
+        out.ints(seeds);
+        out.writeByte(0);
+    }
+
+    /**
+     * Covers every matcher node and value set layout: wildcard routes, IPv4 and IPv6 CIDRs,
+     * nested combinators, a {@code keyBy} list, and attribute lists sized for each {@link ValueSet} implementation.
+     */
+    private static String yaml() {
+        StringBuilder yaml = new StringBuilder("policies:\n");
+        yaml.append("""
+                  - id: users
+                    limitPerSecond: 50
+                    burst: 75
+                    windowSeconds: 30
+                    keyBy: [ip, header:x-api-key]
+                    match:
+                      route: /api/users/*
+                      attributes:
+                        tier: t1
+                  - id: internal
+                    match:
+                      ip: [10.0.0.0/8, "2001:db8::/32"]
+                      route: /api/**
+                  - id: nested
+                    match:
+                      any:
+                        - all: [{route: /admin}, {not: {ip: 192.168.0.0/16}}]
+                        - attribute: {name: region, noneOf: [eu]}
+                  - id: small
+                    match:
+                      attribute: {name: tier, anyOf: [t2, t3, t4, t5]}
+                """);
+        for (int size : new int[] {40, 500}) {
+            yaml.append("  - id: tier-").append(size).append("\n    match:\n      attributes:\n        tier: [");
+            for (int v = 0; v < size; v++) {
+                yaml.append(v == 0 ? "" : ", ").append('t').append(v + 100);
+            }
+            yaml.append("]\n");
+        }
+        for (int i = 0; i < 70; i++) {
+            yaml.append("  - id: svc-").append(i).append("\n    match:\n      route: /svc").append(i)
+                    .append("/v1/**\n");
+        }
+        yaml.append("  - id: fallback\n");
+        return yaml.toString();
+    }
+
+    private static ByteArrayInputStream stream(String yaml) {
+        return new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -28,6 +28,22 @@ class PolicyCompilerMatchersTest {
         assertThat(not.matches(new PolicyContext("192.168.0.1", "/", Map.of()))).isFalse();
     }
 
+    @Test
+    void ipMatcherCompilesDualStackRules() {
+        PolicyMatcher ip = PolicyCompiler.ipMatcher(List.of("10.0.0.0/8", "2001:db8::/32"));
+        assertThat(ip.matches(new PolicyContext("2001:db8::42", "/", Map.of()))).isTrue();
+        assertThat(ip.matches(new PolicyContext("::ffff:10.9.9.9", "/", Map.of()))).isTrue();
+        assertThat(ip.matches(new PolicyContext("2001:db9::42", "/", Map.of()))).isFalse();
+
+        CompiledPolicySet set = new CompiledPolicySet(List.of(
+                new LimitPolicy("v4", 10d, 10d, 60, PolicyCompiler.parseMatcher(Map.of("ip", "10.0.0.0/8"))),
+                new LimitPolicy("v6", 10d, 10d, 60, PolicyCompiler.parseMatcher(Map.of("ip", "2001:db8::/32")))));
+        assertThat(set.firstMatch(new PolicyContext("2001:db8:1::1", "/", Map.of())).orElseThrow().id())
+                .isEqualTo("v6");
+        assertThat(set.firstMatch(new PolicyContext("::ffff:10.1.1.1", "/", Map.of())).orElseThrow().id())
+                .isEqualTo("v4");
+    }
+
     @Test
     void ipRouteAndAttributesMatchers() {
         // ip matcher list
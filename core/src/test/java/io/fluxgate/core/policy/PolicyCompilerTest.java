@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class PolicyCompilerTest {
 
@@ -69,4 +70,37 @@ class PolicyCompilerTest {
         assertThat(policies.policies()).hasSize(1);
         assertThat(policies.policies().get(0).id()).isEqualTo("default");
     }
+
+    @Test
+    void fromYamlParsesKeyBy() {
+        // Arrange
+        String yaml = "policies:\n" +
+                "  - id: tenant\n" +
+                "    keyBy: [param:tenantId, header:x-api-key]\n" +
+                "    match:\n" +
+                "      route: /t/{tenantId}/**\n";
+
+        // Act
+        CompiledPolicySet policies = PolicyCompiler
+                .fromYaml(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)));
+
+        // Assert
+        assertThat(policies.policies().get(0).keyBy().fields()).containsExactly("param:tenantId", "header:x-api-key");
+    }
+
+    @Test
+    void fromYamlRejectsKeyByParametersTheRouteDoesNotCapture() {
+        // Arrange
+        String yaml = "policies:\n" +
+                "  - id: tenant\n" +
+                "    keyBy: [param:userId]\n" +
+                "    match:\n" +
+                "      route: /t/{tenantId}/**\n";
+
+        // Act / Assert
+        ByteArrayInputStream in = new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8));
+        assertThatThrownBy(() -> PolicyCompiler.fromYaml(in))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("param:userId");
+    }
 }
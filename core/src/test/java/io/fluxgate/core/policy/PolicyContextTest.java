@@ -0,0 +1,96 @@
+package io.fluxgate.core.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PolicyContextTest {
+
+    @Test
+    void reusableContextFetchesEachAttributeOncePerRequest() {
+        // Arrange
+        AtomicInteger lookups = new AtomicInteger();
+        CompiledPolicySet set = new CompiledPolicySet(List.of(
+                policy("gold", Map.of("attributes", Map.of("tier", "gold"))),
+                policy("not-bronze", Map.of("attribute", Map.of("name", "tier", "noneOf", List.of("bronze")))),
+                policy("silver", Map.of("any", List.of(Map.of("attributes", Map.of("tier", "silver")))))));
+        PolicyContext context = PolicyContext.reusable();
+
+        // Act
+        context.reset("10.0.0.1", "/", name -> {
+            lookups.incrementAndGet();
+            return "tier".equals(name) ? "silver" : null;
+        });
+        List<PolicyDecision> silver = set.evaluate(context);
+        int silverLookups = lookups.getAndSet(0);
+        context.reset("10.0.0.1", "/", name -> {
+            lookups.incrementAndGet();
+            return "tier".equals(name) ? "gold" : null;
+        });
+        List<PolicyDecision> gold = set.evaluate(context);
+
+        // Assert
+        assertThat(silver.stream().map(PolicyDecision::matched).toList()).containsExactly(false, true, true);
+        assertThat(gold.stream().map(PolicyDecision::matched).toList()).containsExactly(true, true, false);
+        assertThat(silverLookups).isEqualTo(1);
+        assertThat(lookups.get()).isEqualTo(1);
+    }
+
+    @Test
+    void generatedMatchersReadTheSameSlots() {
+        // Arrange
+        CompiledPolicySet set = new CompiledPolicySet(List.of(
+                policy("eu-gold", Map.of("attributes", Map.of("tier", "gold", "region", "eu"))),
+                policy("other", Map.of("not", Map.of("attributes", Map.of("region", "eu"))))),
+                MatcherBackend.HIDDEN_CLASSES);
+        PolicyContext context = PolicyContext.reusable();
+
+        // Act
+        String euGold = set.firstMatch(context.reset("", "/", AttributeSource.of(Map.of("tier", "gold",
+                "region", "eu")))).orElseThrow().id();
+        String us = set.firstMatch(context.reset("", "/", AttributeSource.of(Map.of("region", "us"))))
+                .orElseThrow().id();
+        boolean euSilver = set.firstMatch(context.reset("", "/", AttributeSource.of(Map.of("tier", "silver",
+                "region", "eu")))).isPresent();
+
+        // Assert
+        assertThat(euGold).isEqualTo("eu-gold");
+        assertThat(us).isEqualTo("other");
+        assertThat(euSilver).isFalse();
+    }
+
+    @Test
+    void onlyReusableContextsCanBeReset() {
+        // Arrange
+        PolicyContext context = new PolicyContext("10.0.0.1", "/", Map.of());
+
+        // Act / Assert
+        assertThatThrownBy(() -> context.reset("10.0.0.2", "/", AttributeSource.EMPTY))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void contextsWithTheSameFieldsAreEqual() {
+        // Arrange
+        PolicyContext built = new PolicyContext("10.0.0.1", "/a", Map.of("tier", "gold"));
+        PolicyContext reset = PolicyContext.reusable()
+                .reset("10.0.0.1", "/a", AttributeSource.of(Map.of("tier", "gold")));
+
+        // Act
+        boolean equal = built.equals(reset);
+
+        // Assert
+        assertThat(equal).isTrue();
+        assertThat(built.hashCode()).isEqualTo(reset.hashCode());
+        assertThat(reset.attribute("tier")).isEqualTo("gold");
+    }
+
+    private static LimitPolicy policy(String id, Map<String, Object> match) {
+        return new LimitPolicy(id, 1d, 1d, 60, PolicyCompiler.parseMatcher(match));
+    }
+}
@@ -0,0 +1,119 @@
+package io.fluxgate.core.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PolicyDecisionCacheTest {
+
+    private static final String[] TIERS = {"gold", "silver", "bronze"};
+
+    @Test
+    void repeatedRequestsHitRegardlessOfUnreferencedAttributes() {
+        // Arrange
+        CompiledPolicySet set = set();
+        PolicyDecisionCache cache = new PolicyDecisionCache(64);
+        PolicyContext first = new PolicyContext("10.0.0.1", "/api/users", Map.of("tier", "gold", "trace", "a"));
+        PolicyContext repeat = new PolicyContext("10.0.0.1", "/api/users", Map.of("tier", "gold", "trace", "b"));
+        PolicyContext otherTier = new PolicyContext("10.0.0.1", "/api/users", Map.of("tier", "bronze"));
+
+        // Act
+        LimitPolicy missed = cache.firstMatch(set, first);
+        LimitPolicy hit = cache.firstMatch(set, repeat);
+        LimitPolicy other = cache.firstMatch(set, otherTier);
+
+        // Assert
+        assertThat(missed.id()).isEqualTo("gold-api");
+        assertThat(hit).isSameAs(missed);
+        assertThat(other.id()).isEqualTo("api");
+        assertThat(cache.stats().hits()).isEqualTo(1L);
+        assertThat(cache.stats().misses()).isEqualTo(2L);
+        assertThat(cache.stats().hitRate()).isEqualTo(1d / 3d);
+    }
+
+    @Test
+    void reloadedSetsNeverReuseEntries() {
+        // Arrange
+        PolicyDecisionCache cache = new PolicyDecisionCache(64);
+        PolicyContext context = new PolicyContext("10.0.0.1", "/api/users", Map.of("tier", "gold"));
+        cache.firstMatch(set(), context);
+        CompiledPolicySet reloaded = new CompiledPolicySet(List.of(new LimitPolicy("fallback", 1d, 1d, 60)));
+
+        // Act
+        LimitPolicy policy = cache.firstMatch(reloaded, context);
+
+        // Assert
+        assertThat(policy.id()).isEqualTo("fallback");
+        assertThat(cache.stats().hits()).isZero();
+    }
+
+    @Test
+    void cachesMissesAsWell() {
+        // Arrange
+        CompiledPolicySet set = set();
+        PolicyDecisionCache cache = new PolicyDecisionCache(64);
+        PolicyContext context = new PolicyContext("10.0.0.1", "/static/app.js", Map.of());
+
+        // Act
+        LimitPolicy first = cache.firstMatch(set, context);
+        LimitPolicy second = cache.firstMatch(set, context);
+
+        // Assert
+        assertThat(first).isNull();
+        assertThat(second).isNull();
+        assertThat(cache.stats().hits()).isEqualTo(1L);
+    }
+
+    @Test
+    void setsWithCustomMatchersBypassTheCache() {
+        // Arrange
+        CompiledPolicySet set = new CompiledPolicySet(List.of(
+                new LimitPolicy("custom", 1d, 1d, 60, context -> context.attributes().containsKey("debug"))));
+        PolicyDecisionCache cache = new PolicyDecisionCache(64);
+        PolicyContext plain = new PolicyContext("10.0.0.1", "/", Map.of());
+        PolicyContext debug = new PolicyContext("10.0.0.1", "/", Map.of("debug", "1"));
+
+        // Act
+        LimitPolicy first = cache.firstMatch(set, plain);
+        LimitPolicy second = cache.firstMatch(set, debug);
+
+        // Assert
+        assertThat(set.hasCustomMatchers()).isTrue();
+        assertThat(first).isNull();
+        assertThat(second.id()).isEqualTo("custom");
+        assertThat(cache.stats().hits() + cache.stats().misses()).isZero();
+    }
+
+    @Test
+    void agreesWithTheSetUnderSlotCollisions() {
+        // Arrange
+        CompiledPolicySet set = set();
+        PolicyDecisionCache cache = new PolicyDecisionCache(4);
+        Random random = new Random(3L);
+
+        for (int i = 0; i < 2000; i++) {
+            PolicyContext context = new PolicyContext("10.0.0." + random.nextInt(4),
+                    random.nextBoolean() ? "/api/users" : "/static/app.js",
+                    Map.of("tier", TIERS[random.nextInt(TIERS.length)]));
+
+            // Act
+            LimitPolicy cached = cache.firstMatch(set, context);
+
+            // Assert
+            assertThat(cached).isEqualTo(set.firstMatch(context).orElse(null));
+        }
+        assertThat(cache.stats().hits()).isPositive();
+        assertThat(cache.stats().savedNanos()).isGreaterThanOrEqualTo(0L);
+    }
+
+    private static CompiledPolicySet set() {
+        return new CompiledPolicySet(List.of(
+                new LimitPolicy("gold-api", 100d, 100d, 60, PolicyCompiler.parseMatcher(
+                        Map.of("route", "/api/**", "attributes", Map.of("tier", "gold")))),
+                new LimitPolicy("api", 10d, 10d, 60, PolicyCompiler.parseMatcher(Map.of("route", "/api/**")))));
+    }
+}
@@ -0,0 +1,120 @@
+package io.fluxgate.core.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PolicyFileWatcherTest {
+
+    private static final String FIRST = "policies:\n  - id: first\n    limitPerSecond: 5\n";
+    private static final String SECOND = "policies:\n  - id: second\n    limitPerSecond: 7\n";
+
+    @Test
+    void reloadCompilesChangedContentOnly() throws Exception {
+        // Arrange
+        Path file = Files.createTempFile("fluxgate-policies", ".yml");
+        Files.writeString(file, FIRST);
+        List<CompiledPolicySet> reloads = new CopyOnWriteArrayList<>();
+        List<Exception> errors = new CopyOnWriteArrayList<>();
+        PolicyFileWatcher watcher = new PolicyFileWatcher(file, MatcherBackend.CLOSURES, reloads::add, errors::add);
+
+        // Act
+        boolean initial = watcher.reload();
+        boolean unchanged = watcher.reload();
+        Files.writeString(file, SECOND);
+        boolean changed = watcher.reload();
+
+        // Assert
+        assertThat(initial).isTrue();
+        assertThat(unchanged).isFalse();
+        assertThat(changed).isTrue();
+        assertThat(reloads).hasSize(2);
+        assertThat(reloads.get(1).policies().get(0).id()).isEqualTo("second");
+        assertThat(errors).isEmpty();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void brokenFilesAreReportedAndNotPublished() throws Exception {
+        // Arrange
+        Path file = Files.createTempFile("fluxgate-policies", ".yml");
+        Files.writeString(file, "policies:\n  - id: broken\n    match:\n      colour: blue\n");
+        List<CompiledPolicySet> reloads = new CopyOnWriteArrayList<>();
+        List<Exception> errors = new CopyOnWriteArrayList<>();
+        PolicyFileWatcher watcher = new PolicyFileWatcher(file, MatcherBackend.CLOSURES, reloads::add, errors::add);
+
+        // Act
+        boolean published = watcher.reload();
+
+        // Assert
+        assertThat(published).isFalse();
+        assertThat(reloads).isEmpty();
+        assertThat(errors).hasSize(1);
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void watchThreadPublishesEditsToTheFile() throws Exception {
+        // Arrange
+        Path file = Files.createTempFile("fluxgate-policies", ".yml");
+        Files.writeString(file, FIRST);
+        List<CompiledPolicySet> reloads = new CopyOnWriteArrayList<>();
+        List<Exception> errors = new CopyOnWriteArrayList<>();
+
+        try (PolicyFileWatcher watcher = new PolicyFileWatcher(file, MatcherBackend.CLOSURES, reloads::add,
+                errors::add)) {
+            watcher.start();
+
+            // Act
+            Files.writeString(file, SECOND);
+            long deadline = System.nanoTime() + 30_000_000_000L;
+            while (reloads.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+        }
+
+        // Assert
+        assertThat(reloads).hasSize(1);
+        assertThat(reloads.get(0).policies().get(0).id()).isEqualTo("second");
+        assertThat(errors).isEmpty();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void watchThreadPublishesSwapsOfAParentSymlink() throws Exception {
+        // Arrange
+        Path dir = Files.createTempDirectory("fluxgate-configmap");
+        Path first = Files.createDirectory(dir.resolve("..2024_01_01"));
+        Path second = Files.createDirectory(dir.resolve("..2024_01_02"));
+        Files.writeString(first.resolve("policies.yml"), FIRST);
+        Files.writeString(second.resolve("policies.yml"), SECOND);
+        Path data = Files.createSymbolicLink(dir.resolve("..data"), first.getFileName());
+        Path file = Files.createSymbolicLink(dir.resolve("policies.yml"), Path.of("..data", "policies.yml"));
+        List<CompiledPolicySet> reloads = new CopyOnWriteArrayList<>();
+        List<Exception> errors = new CopyOnWriteArrayList<>();
+
+        try (PolicyFileWatcher watcher = new PolicyFileWatcher(file, MatcherBackend.CLOSURES, reloads::add,
+                errors::add)) {
+            watcher.start();
+
+            // Act
+            Path staged = Files.createSymbolicLink(dir.resolve("..data_tmp"), second.getFileName());
+            Files.move(staged, data, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            long deadline = System.nanoTime() + 30_000_000_000L;
+            while (reloads.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+        }
+
+        // Assert
+        assertThat(reloads).hasSize(1);
+        assertThat(reloads.get(0).policies().get(0).id()).isEqualTo("second");
+        assertThat(errors).isEmpty();
+    }
+}
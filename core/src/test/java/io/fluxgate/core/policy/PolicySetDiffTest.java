@@ -0,0 +1,47 @@
+package io.fluxgate.core.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PolicySetDiffTest {
+
+    @Test
+    void classifiesPoliciesByIdAndLimits() {
+        // Arrange
+        List<LimitPolicy> previous = List.of(
+                new LimitPolicy("kept", 10d, 10d, 60),
+                new LimitPolicy("retuned", 10d, 10d, 60),
+                new LimitPolicy("dropped", 1d, 1d, 60));
+        List<LimitPolicy> next = List.of(
+                new LimitPolicy("kept", 10d, 10d, 60, PolicyCompiler.parseMatcher(Map.of("route", "/new/**"))),
+                new LimitPolicy("retuned", 10d, 20d, 60),
+                new LimitPolicy("fresh", 5d, 5d, 60));
+
+        // Act
+        PolicySetDiff diff = PolicySetDiff.between(previous, next);
+
+        // Assert
+        assertThat(diff.added()).containsExactly("fresh");
+        assertThat(diff.removed()).containsExactly("dropped");
+        assertThat(diff.changed()).containsExactly("retuned");
+        assertThat(diff.unchanged()).containsExactly("kept");
+        assertThat(diff.isEmpty()).isFalse();
+    }
+
+    @Test
+    void identicalSetsProduceAnEmptyDiff() {
+        // Arrange
+        List<LimitPolicy> policies = List.of(new LimitPolicy("a", 1d, 1d, 60), new LimitPolicy("b", 2d, 2d, 60));
+
+        // Act
+        PolicySetDiff diff = PolicySetDiff.between(policies, List.copyOf(policies));
+
+        // Assert
+        assertThat(diff.isEmpty()).isTrue();
+        assertThat(diff.unchanged()).containsExactly("a", "b");
+    }
+}
@@ -0,0 +1,74 @@
+package io.fluxgate.core.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RouteParametersTest {
+
+    @Test
+    void capturesFromTopLevelRouteTemplate() {
+        // Arrange
+        LimitPolicy policy = policy(Map.of("route", List.of("/t/{tenantId}/orders/**", "/t/{tenantId}/carts/{cartId}"),
+                "attributes", Map.of("tier", "gold")));
+        RouteParameters parameters = new RouteParameters();
+
+        // Act
+        boolean matched = parameters.capture(policy, "/t/acme/carts/c-9");
+
+        // Assert
+        assertThat(matched).isTrue();
+        assertThat(parameters.size()).isEqualTo(2);
+        assertThat(parameters.name(0)).isEqualTo("tenantId");
+        assertThat(parameters.name(1)).isEqualTo("cartId");
+        assertThat(parameters.indexOf("cartId")).isEqualTo(1);
+        assertThat(parameters.value("cartId")).isEqualTo("c-9");
+        assertThat(parameters.value("orderId")).isNull();
+        assertThat(parameters.route()).isEqualTo("/t/acme/carts/c-9");
+        assertThat(parameters.toString()).isEqualTo("RouteParameters[tenantId=acme, cartId=c-9]");
+    }
+
+    @Test
+    void policiesWithoutRouteTemplateCaptureNothing() {
+        // Arrange
+        LimitPolicy policy = policy(Map.of("ip", "10.0.0.0/8"));
+        RouteParameters parameters = new RouteParameters();
+        parameters.capture(policy(Map.of("route", "/t/{tenantId}")), "/t/acme");
+
+        // Act
+        boolean matched = parameters.capture(policy, "/t/acme");
+
+        // Assert
+        assertThat(matched).isFalse();
+        assertThat(parameters.size()).isZero();
+        assertThatThrownBy(() -> parameters.name(0)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void growsForLongTemplates() {
+        // Arrange
+        StringBuilder template = new StringBuilder();
+        StringBuilder route = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            template.append("/{p").append(i).append('}');
+            route.append("/v").append(i);
+        }
+        RouteParameters parameters = new RouteParameters();
+
+        // Act
+        boolean matched = parameters.capture(policy(Map.of("route", template.toString())), route.toString());
+
+        // Assert
+        assertThat(matched).isTrue();
+        assertThat(parameters.size()).isEqualTo(12);
+        assertThat(parameters.value("p11")).isEqualTo("v11");
+    }
+
+    private static LimitPolicy policy(Map<String, Object> match) {
+        return new LimitPolicy("p", 1d, 1d, 60, PolicyCompiler.parseMatcher(match));
+    }
+}
@@ -3,6 +3,7 @@ package io.fluxgate.core.policy;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class RouteTrieTest {
 
@@ -14,6 +15,7 @@ class RouteTrieTest {
         trie.insert("/x/**");
         trie.insert("/**");
         trie.insert("/single/*");
+        trie.freeze();
 
         // exact
         assertThat(trie.matches("/a/b")).isTrue();
@@ -35,4 +37,150 @@ class RouteTrieTest {
         assertThat(trie.matches("/a/b/")).isTrue();
         assertThat(trie.matches("a/b")).isTrue();
     }
+
+    @Test
+    void collectReturnsEveryMatchingPolicy() {
+        RouteTrie trie = new RouteTrie();
+        trie.insert("/a/b", 0, 1);
+        trie.insert("/a/*", 1, 1);
+        trie.insert("/a/**", 2, 1);
+        trie.insert("/c", 3, 1);
+        trie.freeze();
+
+        long[] exact = new long[1];
+        trie.collect("/a/b", exact);
+        long[] prefixOnly = new long[1];
+        trie.collect("/a", prefixOnly);
+        long[] none = new long[1];
+        trie.collect("/d", none);
+
+        assertThat(exact[0]).isEqualTo(0b111L);
+        assertThat(prefixOnly[0]).isEqualTo(0b100L);
+        assertThat(none[0]).isZero();
+    }
+
+    @Test
+    void backtracksThroughWildcardsOnDeepRoutes() {
+        // Arrange
+        RouteTrie trie = new RouteTrie();
+        trie.insert("/api/v1/tenants/*/projects/*/builds/*/logs");
+        trie.insert("/api/v1/tenants/acme/projects/web/builds/latest");
+        trie.insert("/api/*/tenants/acme/**");
+        trie.freeze();
+
+        // Act / Assert
+        assertThat(trie.matches("/api/v1/tenants/acme/projects/web/builds/42/logs")).isTrue();
+        assertThat(trie.matches("/api/v1/tenants/acme/projects/web/builds/latest")).isTrue();
+        assertThat(trie.matches("/api/v2/tenants/acme/anything/else")).isTrue();
+        assertThat(trie.matches("/api/v1/tenants/globex/projects/web/builds/42")).isFalse();
+        assertThat(trie.matches("/api/v1/tenants/globex/projects/web/builds/42/logs/tail")).isFalse();
+    }
+
+    @Test
+    void keepsSplitSemanticsForSlashes() {
+        // Arrange
+        RouteTrie trie = new RouteTrie();
+        trie.insert("/a//b");
+        trie.insert("/root");
+        trie.insert("/");
+        trie.freeze();
+
+        // Act / Assert
+        assertThat(trie.matches("/a//b")).isTrue();
+        assertThat(trie.matches("/a/b")).isFalse();
+        assertThat(trie.matches("/root///")).isTrue();
+        assertThat(trie.matches("root")).isTrue();
+        assertThat(trie.matches("//")).isTrue();
+        assertThat(trie.matches("")).isTrue();
+        assertThat(trie.matches("/roots")).isFalse();
+    }
+
+    @Test
+    void requiresFreezeBeforeLookupsAndRejectsLateInserts() {
+        // Arrange
+        RouteTrie trie = new RouteTrie();
+        trie.insert("/a");
+
+        // Act / Assert
+        assertThatThrownBy(() -> trie.matches("/a")).isInstanceOf(IllegalStateException.class);
+        trie.freeze();
+        assertThatThrownBy(() -> trie.insert("/b")).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void captureReportsOffsetsOfNamedSegments() {
+        // Arrange
+        RouteTrie trie = new RouteTrie();
+        trie.insert("/t/{tenantId}/orders/{orderId}");
+        trie.insert("/t/{tenantId}/files/**");
+        trie.insert("/t/admin/orders/*");
+        trie.freeze();
+        RouteParameters parameters = new RouteParameters();
+
+        // Act
+        boolean orders = trie.capture("/t/acme/orders/42", parameters);
+        int tenantStart = parameters.start(0);
+        int orderEnd = parameters.end(1);
+        String order = parameters.value("orderId");
+        boolean files = trie.capture("/t/beta/files/a/b", parameters);
+        String tenant = parameters.value("tenantId");
+        boolean literal = trie.capture("/t/admin/orders/7", parameters);
+        int literalSize = parameters.size();
+        boolean missing = trie.capture("/u/acme", parameters);
+
+        // Assert
+        assertThat(orders).isTrue();
+        assertThat(tenantStart).isEqualTo(3);
+        assertThat(orderEnd).isEqualTo(17);
+        assertThat(order).isEqualTo("42");
+        assertThat(files).isTrue();
+        assertThat(tenant).isEqualTo("beta");
+        assertThat(literal).isTrue();
+        assertThat(literalSize).isZero();
+        assertThat(missing).isFalse();
+        assertThat(parameters.size()).isZero();
+    }
+
+    @Test
+    void parametersMatchLikeSingleWildcards() {
+        // Arrange
+        RouteTrie trie = new RouteTrie();
+        trie.insert("/t/{tenantId}/orders");
+        trie.freeze();
+
+        // Act / Assert
+        assertThat(trie.matches("/t/acme/orders")).isTrue();
+        assertThat(trie.matches("/t/acme/orders/1")).isFalse();
+        assertThat(trie.matches("/t/orders")).isFalse();
+    }
+
+    @Test
+    void rejectsMalformedAndConflictingParameters() {
+        // Arrange
+        RouteTrie trie = new RouteTrie();
+        trie.insert("/a/{id}");
+
+        // Act / Assert
+        assertThatThrownBy(() -> trie.insert("/files/{id}.json")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> trie.insert("/b/{}")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> trie.insert("/b/{a b}")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> trie.insert("/c/{id}/{id}")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> trie.insert("/a/{key}")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void mergedTriesIgnoreParameterNames() {
+        // Arrange
+        RouteTrie trie = new RouteTrie();
+        trie.insert("/t/{tenantId}", 0, 1);
+        trie.insert("/t/{org}", 1, 1);
+        trie.freeze();
+        long[] matched = new long[1];
+
+        // Act
+        trie.collect("/t/acme", matched);
+
+        // Assert
+        assertThat(matched[0]).isEqualTo(0b11L);
+    }
 }
@@ -0,0 +1,75 @@
+package io.fluxgate.core.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ValueSetTest {
+
+    @Test
+    void picksTheStructureBySize() {
+        // Act / Assert
+        assertThat(ValueSet.of(values(1))).isInstanceOf(ValueSet.Single.class);
+        assertThat(ValueSet.of(values(ValueSet.SORTED_ARRAY_MAX))).isInstanceOf(ValueSet.SortedArray.class);
+        assertThat(ValueSet.of(values(ValueSet.OPEN_ADDRESSING_MAX))).isInstanceOf(ValueSet.OpenAddressing.class);
+        assertThat(ValueSet.of(values(ValueSet.OPEN_ADDRESSING_MAX + 1))).isInstanceOf(ValueSet.PerfectHash.class);
+    }
+
+    @Test
+    void containsExactlyTheCompiledValuesAtEverySize() {
+        for (int size : new int[] {1, 2, 8, 9, 100, 256, 257, 1_000, 20_000}) {
+            // Arrange
+            List<String> members = values(size);
+            ValueSet set = ValueSet.of(members);
+
+            // Act
+            long found = members.stream().filter(set::contains).count();
+            long falsePositives = values(size * 2).subList(size, size * 2).stream()
+                    .map(value -> value + "-other")
+                    .filter(set::contains)
+                    .count();
+
+            // Assert
+            assertThat(found).isEqualTo(size);
+            assertThat(falsePositives).isZero();
+            assertThat(set.contains(null)).isFalse();
+            assertThat(set.contains("")).isFalse();
+        }
+    }
+
+    @Test
+    void fallsBackToOpenAddressingWhenHashCodesCollide() {
+        // Arrange
+        List<String> members = values(ValueSet.OPEN_ADDRESSING_MAX + 10);
+        members.add("Aa");
+        members.add("BB");
+
+        // Act
+        ValueSet set = ValueSet.of(members);
+
+        // Assert
+        assertThat(set).isInstanceOf(ValueSet.OpenAddressing.class);
+        assertThat(set.contains("Aa")).isTrue();
+        assertThat(set.contains("BB")).isTrue();
+        assertThat(set.contains("C#")).isFalse();
+    }
+
+    @Test
+    void ignoresDuplicatesAndRejectsEmptyLists() {
+        // Act / Assert
+        assertThat(ValueSet.of(List.of("gold", "gold"))).isInstanceOf(ValueSet.Single.class);
+        assertThatThrownBy(() -> ValueSet.of(List.of())).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<String> values(int count) {
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add("tenant-" + i);
+        }
+        return values;
+    }
+}
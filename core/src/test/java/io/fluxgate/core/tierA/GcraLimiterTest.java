@@ -45,4 +45,43 @@ class GcraLimiterTest {
         assertThat(blocked.allowed()).isFalse();
         assertThat(afterWait.allowed()).isTrue();
     }
+
+    @Test
+    void reconfigureKeepsConsumedPermits() {
+        // Arrange
+        GcraLimiter limiter = new GcraLimiter(1_000_000_000L, 2, 2);
+        limiter.tryAcquire(0L);
+        limiter.tryAcquire(0L);
+
+        // Act
+        limiter.reconfigure(4, 4, 0L);
+        boolean third = limiter.tryAcquire(0L).allowed();
+        boolean fourth = limiter.tryAcquire(0L).allowed();
+        GcraLimiter.Outcome fifth = limiter.tryAcquire(0L);
+
+        // Assert
+        assertThat(limiter.permitsPerSecond()).isEqualTo(4d);
+        assertThat(limiter.burstTokens()).isEqualTo(4L);
+        assertThat(third).isTrue();
+        assertThat(fourth).isTrue();
+        assertThat(fifth.allowed()).isFalse();
+        assertThat(fifth.retryAfterNanos()).isEqualTo(250_000_000L);
+    }
+
+    @Test
+    void reconfigureRescalesTheWaitToTheNewRate() {
+        // Arrange
+        GcraLimiter limiter = new GcraLimiter(1_000_000_000L, 1, 1);
+        limiter.tryAcquire(0L);
+
+        // Act
+        limiter.reconfigure(10, 1, 0L);
+        GcraLimiter.Outcome blocked = limiter.tryAcquire(0L);
+        GcraLimiter.Outcome afterWait = limiter.tryAcquire(100_000_000L);
+
+        // Assert
+        assertThat(blocked.allowed()).isFalse();
+        assertThat(blocked.retryAfterNanos()).isEqualTo(100_000_000L);
+        assertThat(afterWait.allowed()).isTrue();
+    }
 }
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import java.time.Duration;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class CountMinLogSketchTest {
 
@@ -53,4 +54,137 @@ class CountMinLogSketchTest {
         // Assert
         assertThat(estimate).isEqualTo(1L);
     }
+
+    @Test
+    void snapshotRoundTripsCountersAndSeeds() {
+        // Arrange
+        CountMinLogSketch sketch = new CountMinLogSketch(4, 128, Duration.ofSeconds(10));
+        for (int i = 0; i < 5; i++) {
+            sketch.increment(3L, 0L);
+        }
+        sketch.increment(9L, 0L);
+
+        // Act
+        CountMinLogSketch restored = CountMinLogSketch.fromSnapshot(sketch.snapshot(0L));
+
+        // Assert
+        assertThat(restored.estimate(3L)).isEqualTo(5L);
+        assertThat(restored.estimate(9L)).isEqualTo(1L);
+        assertThat(restored.snapshot(0L)).isEqualTo(sketch.snapshot(0L));
+    }
+
+    @Test
+    void mergeAddsPeerCountersElementWise() {
+        // Arrange
+        long[] seeds = SketchSeeds.derive(42L, 4);
+        CountMinLogSketch local = new CountMinLogSketch(4, 128, Duration.ofSeconds(10), seeds);
+        CountMinLogSketch peer = new CountMinLogSketch(4, 128, Duration.ofSeconds(10), seeds);
+        for (int i = 0; i < 3; i++) {
+            local.increment(21L, 0L);
+            peer.increment(21L, 0L);
+        }
+        peer.increment(21L, 0L);
+
+        // Act
+        CountMinLogSketch cluster = local.copy();
+        cluster.merge(CountMinLogSketch.fromSnapshot(peer.snapshot(0L)), 0L);
+
+        // Assert
+        assertThat(cluster.estimate(21L)).isEqualTo(7L);
+        assertThat(local.estimate(21L)).isEqualTo(3L);
+    }
+
+    @Test
+    void deltaCarriesOnlyChangesSinceBaseline() {
+        // Arrange
+        long[] seeds = SketchSeeds.derive(42L, 4);
+        CountMinLogSketch sender = new CountMinLogSketch(4, 128, Duration.ofSeconds(10), seeds);
+        CountMinLogSketch receiver = new CountMinLogSketch(4, 128, Duration.ofSeconds(10), seeds);
+        for (long key = 100L; key < 150L; key++) {
+            sender.increment(key, 0L);
+        }
+        sender.increment(5L, 0L);
+        receiver.merge(CountMinLogSketch.fromSnapshot(sender.snapshot(0L)), 0L);
+        CountMinLogSketch baseline = sender.copy();
+        sender.increment(5L, 0L);
+        sender.increment(6L, 0L);
+
+        // Act
+        byte[] delta = sender.delta(baseline, 0L);
+        receiver.applyDelta(delta, 0L);
+
+        // Assert
+        assertThat(receiver.estimate(5L)).isEqualTo(2L);
+        assertThat(receiver.estimate(6L)).isEqualTo(1L);
+        assertThat(delta.length).isLessThan(sender.snapshot(0L).length);
+    }
+
+    @Test
+    void mergeRebasesPeerSliceOntoLocalClock() {
+        // Arrange
+        long[] seeds = SketchSeeds.derive(42L, 4);
+        long localNow = 100_000_000_000L;
+        long earlierPeerNow = 20_000_000_000L;
+        long laterPeerNow = 500_000_000_000L;
+        CountMinLogSketch local = new CountMinLogSketch(4, 128, Duration.ofSeconds(10), seeds);
+        CountMinLogSketch earlierPeer = new CountMinLogSketch(4, 128, Duration.ofSeconds(10), seeds);
+        CountMinLogSketch laterPeer = new CountMinLogSketch(4, 128, Duration.ofSeconds(10), seeds);
+        for (int i = 0; i < 50; i++) {
+            local.increment(21L, localNow);
+            earlierPeer.increment(21L, earlierPeerNow);
+        }
+        for (int i = 0; i < 3; i++) {
+            laterPeer.increment(21L, laterPeerNow);
+        }
+
+        // Act
+        CountMinLogSketch withEarlier = local.copy();
+        withEarlier.merge(CountMinLogSketch.fromSnapshot(earlierPeer.snapshot(earlierPeerNow)), localNow);
+        CountMinLogSketch withLater = local.copy();
+        withLater.merge(CountMinLogSketch.fromSnapshot(laterPeer.snapshot(laterPeerNow)), localNow);
+
+        // Assert
+        assertThat(withEarlier.estimate(21L)).isEqualTo(100L);
+        assertThat(withLater.estimate(21L)).isEqualTo(53L);
+    }
+
+    @Test
+    void applyDeltaRebasesSenderSliceOntoLocalClock() {
+        // Arrange
+        long[] seeds = SketchSeeds.derive(42L, 4);
+        long senderNow = -7_000_000_000L;
+        long receiverNow = 300_000_000_000L;
+        CountMinLogSketch sender = new CountMinLogSketch(4, 128, Duration.ofSeconds(10), seeds);
+        CountMinLogSketch receiver = new CountMinLogSketch(4, 128, Duration.ofSeconds(10), seeds);
+        receiver.increment(5L, receiverNow);
+        CountMinLogSketch baseline = sender.copy();
+        sender.increment(5L, senderNow);
+        sender.increment(5L, senderNow);
+
+        // Act
+        receiver.applyDelta(sender.delta(baseline, senderNow), receiverNow);
+
+        // Assert
+        assertThat(receiver.estimate(5L)).isEqualTo(3L);
+    }
+
+    @Test
+    void mergeRejectsIncompatibleSketches() {
+        CountMinLogSketch sketch = new CountMinLogSketch(4, 128, Duration.ofSeconds(10));
+        CountMinLogSketch other = new CountMinLogSketch(2, 128, Duration.ofSeconds(10));
+
+        assertThatThrownBy(() -> sketch.merge(other, 0L)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void independentlyCreatedSketchesDoNotShareSeeds() {
+        CountMinLogSketch sketch = new CountMinLogSketch(4, 128, Duration.ofSeconds(10));
+        CountMinLogSketch other = new CountMinLogSketch(4, 128, Duration.ofSeconds(10));
+
+        assertThatThrownBy(() -> sketch.merge(other, 0L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("seeds");
+        assertThatThrownBy(() -> CountMinLogSketch.fromSnapshot(new byte[] {1, 2, 3}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
 }
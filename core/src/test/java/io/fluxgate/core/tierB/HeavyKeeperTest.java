@@ -2,9 +2,11 @@ package io.fluxgate.core.tierB;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class HeavyKeeperTest {
 
@@ -43,4 +45,156 @@ class HeavyKeeperTest {
         assertThat(entries).hasSizeGreaterThanOrEqualTo(1);
         assertThat(entries[0].count()).isPositive();
     }
+
+    @Test
+    void topKRetainsHeaviestKeysWithinCapacity() {
+        // Arrange
+        HeavyKeeper heavyKeeper = new HeavyKeeper(2, 16, 4, 0.9d, SketchSeeds.derive(42L, 2));
+
+        // Act
+        for (long key = 1; key <= 64; key++) {
+            int repetitions = key <= 4 ? 200 : 3;
+            for (int i = 0; i < repetitions; i++) {
+                heavyKeeper.offer(key);
+            }
+        }
+        HeavyKeeper.Entry[] entries = heavyKeeper.topK();
+
+        // Assert
+        assertThat(entries).hasSize(4);
+        assertThat(Arrays.stream(entries).map(HeavyKeeper.Entry::key)).containsExactlyInAnyOrder(1L, 2L, 3L, 4L);
+        assertThat(heavyKeeper.estimate(1L)).isGreaterThanOrEqualTo(150);
+    }
+
+    @Test
+    void heavyKeySurvivesCollisionsInSingleColumnSketch() {
+        // Arrange
+        HeavyKeeper heavyKeeper = new HeavyKeeper(1, 1, 1, 0.5d);
+        long hotKey = 7L;
+        for (int i = 0; i < 100; i++) {
+            heavyKeeper.offer(hotKey);
+        }
+
+        // Act
+        for (long noise = 1_000L; noise < 1_050L; noise++) {
+            heavyKeeper.offer(noise);
+        }
+
+        // Assert
+        assertThat(heavyKeeper.estimate(hotKey)).isGreaterThanOrEqualTo(90);
+        assertThat(heavyKeeper.topK()[0].key()).isEqualTo(hotKey);
+    }
+
+    @Test
+    void concurrentOffersKeepCountsConsistent() throws InterruptedException {
+        // Arrange
+        HeavyKeeper heavyKeeper = new HeavyKeeper(16, 0.9d);
+        long hotKey = 42L;
+        int threads = 4;
+        int perThread = 10_000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    heavyKeeper.offer(hotKey);
+                }
+            });
+        }
+
+        // Act
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Assert
+        assertThat(heavyKeeper.estimate(hotKey)).isEqualTo(threads * perThread);
+        assertThat(heavyKeeper.topK()).hasSize(1);
+    }
+
+    @Test
+    void constructorRejectsInvalidShape() {
+        assertThatThrownBy(() -> new HeavyKeeper(2, 3, 4, 0.9d))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("power of two");
+        assertThatThrownBy(() -> new HeavyKeeper(4, 1.5d))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("decay");
+    }
+
+    @Test
+    void snapshotRestoresBucketsAndTopK() {
+        // Arrange
+        HeavyKeeper heavyKeeper = new HeavyKeeper(4, 0.9d);
+        for (int i = 0; i < 12; i++) {
+            heavyKeeper.offer(8L);
+        }
+        heavyKeeper.offer(9L);
+
+        // Act
+        HeavyKeeper restored = HeavyKeeper.fromSnapshot(heavyKeeper.snapshot());
+
+        // Assert
+        assertThat(restored.estimate(8L)).isEqualTo(12);
+        assertThat(Arrays.stream(restored.topK()).map(HeavyKeeper.Entry::key)).containsExactlyInAnyOrder(8L, 9L);
+    }
+
+    @Test
+    void fromSnapshotRejectsForgedShapesBeforeAllocating() {
+        // Arrange
+        byte[] snapshot = new HeavyKeeper(2, 8, 2, 0.9d).snapshot();
+        // The header follows the 4-byte magic, the kind and the version: depth, width, then K.
+        byte[] hugeDepth = withHeaderInt(snapshot, 6, Integer.MAX_VALUE);
+        byte[] hugeWidth = withHeaderInt(snapshot, 10, 1 << 30);
+        byte[] hugeK = withHeaderInt(snapshot, 14, Integer.MAX_VALUE);
+
+        // Act / Assert
+        assertThatThrownBy(() -> HeavyKeeper.fromSnapshot(hugeDepth))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("shape");
+        assertThatThrownBy(() -> HeavyKeeper.fromSnapshot(hugeWidth))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("shape");
+        assertThatThrownBy(() -> HeavyKeeper.fromSnapshot(hugeK))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("capacity");
+    }
+
+    @Test
+    void mergeRejectsPeerWithDifferentSeeds() {
+        HeavyKeeper local = new HeavyKeeper(2, 8, 2, 0.9d, SketchSeeds.derive(1L, 2));
+        HeavyKeeper peer = new HeavyKeeper(2, 8, 2, 0.9d, SketchSeeds.derive(2L, 2));
+
+        assertThatThrownBy(() -> local.merge(peer)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void mergeCombinesPeerHeavyHitters() {
+        // Arrange
+        long[] seeds = SketchSeeds.derive(42L, 2);
+        HeavyKeeper local = new HeavyKeeper(2, 8, 2, 0.9d, seeds);
+        HeavyKeeper peer = new HeavyKeeper(2, 8, 2, 0.9d, seeds);
+        for (int i = 0; i < 5; i++) {
+            local.offer(1L);
+            peer.offer(2L);
+            peer.offer(2L);
+        }
+        peer.offer(1L);
+
+        // Act
+        local.merge(HeavyKeeper.fromSnapshot(peer.snapshot()));
+
+        // Assert
+        assertThat(local.estimate(1L)).isEqualTo(6);
+        assertThat(local.estimate(2L)).isEqualTo(10);
+        assertThat(Arrays.stream(local.topK()).map(HeavyKeeper.Entry::key)).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    private static byte[] withHeaderInt(byte[] snapshot, int offset, int value) {
+        byte[] copy = snapshot.clone();
+        ByteBuffer.wrap(copy).putInt(offset, value);
+        return copy;
+    }
 }
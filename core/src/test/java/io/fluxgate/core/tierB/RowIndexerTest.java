@@ -0,0 +1,54 @@
+package io.fluxgate.core.tierB;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RowIndexerTest {
+
+    @Test
+    void selectedIndexerMatchesScalarAcrossDepths() {
+        Random random = new Random(7L);
+        for (int depth = 2; depth <= 8; depth++) {
+            // Arrange
+            long[] seeds = new long[depth];
+            for (int i = 0; i < depth; i++) {
+                seeds[i] = random.nextLong();
+            }
+            RowIndexer selected = RowIndexer.create(seeds, 1 << 12);
+            RowIndexer scalar = RowIndexer.scalar(seeds, 1 << 12);
+            long[] actual = new long[depth];
+
+            for (int n = 0; n < 1_000; n++) {
+                long key = random.nextLong();
+
+                // Act
+                selected.indexes(key, actual);
+
+                // Assert
+                for (int row = 0; row < depth; row++) {
+                    assertThat(actual[row]).isEqualTo((long) scalar.index(key, row));
+                    assertThat(actual[row]).isBetween(0L, (long) (1 << 12) - 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    void vectorIndexerIsUsedWhenModuleIsPresent() {
+        RowIndexer indexer = RowIndexer.create(new long[] {1L, 2L, 3L, 4L}, 64);
+
+        assertThat(indexer.vectorized()).isEqualTo(RowIndexer.vectorAvailable());
+        assertThat(indexer.depth()).isEqualTo(4);
+    }
+
+    @Test
+    void rejectsWidthsThatAreNotPowersOfTwo() {
+        assertThatThrownBy(() -> RowIndexer.create(new long[] {1L, 2L}, 100))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("power of two");
+    }
+}
@@ -0,0 +1,139 @@
+package io.fluxgate.core.tierB;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SharedCountMinSketchTest {
+
+    private static final Duration WINDOW = Duration.ofSeconds(1);
+
+    @Test
+    void sketchesMappingTheSameFileCountTogether() throws Exception {
+        // Arrange
+        Path file = newFile();
+        AtomicLong clock = new AtomicLong();
+        try (SharedCountMinSketch first = SharedCountMinSketch.open(file, 4, 256, WINDOW, null, clock::get);
+             SharedCountMinSketch second = SharedCountMinSketch.open(file, 4, 256, WINDOW, null, clock::get)) {
+
+            // Act
+            first.increment(42L, 0L);
+            second.increment(42L, 0L);
+            second.increment(42L, 0L);
+
+            // Assert
+            assertThat(first.estimate(42L)).isEqualTo(3L);
+            assertThat(second.estimate(42L)).isEqualTo(3L);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void countsFromAnOlderSliceReadAsZero() throws Exception {
+        // Arrange
+        Path file = newFile();
+        AtomicLong clock = new AtomicLong();
+        try (SharedCountMinSketch sketch = SharedCountMinSketch.open(file, 4, 256, WINDOW, null, clock::get)) {
+            sketch.increment(7L, 0L);
+            sketch.increment(7L, 0L);
+
+            // Act
+            clock.set(WINDOW.toNanos() * 2);
+            long stale = sketch.estimate(7L);
+            sketch.increment(7L, 0L);
+
+            // Assert
+            assertThat(stale).isZero();
+            assertThat(sketch.estimate(7L)).isEqualTo(1L);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void concurrentIncrementsAreNotLost() throws Exception {
+        // Arrange
+        Path file = newFile();
+        AtomicLong clock = new AtomicLong();
+        int threads = 4;
+        int perThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (SharedCountMinSketch first = SharedCountMinSketch.open(file, 2, 64, WINDOW, null, clock::get);
+             SharedCountMinSketch second = SharedCountMinSketch.open(file, 2, 64, WINDOW, null, clock::get)) {
+            CountDownLatch start = new CountDownLatch(1);
+
+            // Act
+            for (int t = 0; t < threads; t++) {
+                SharedCountMinSketch target = t % 2 == 0 ? first : second;
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        target.increment(99L, 0L);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+            // Assert
+            assertThat(first.estimate(99L)).isEqualTo((long) threads * perThread);
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void snapshotIsReadableAsHeapSketch() throws Exception {
+        // Arrange
+        Path file = newFile();
+        AtomicLong clock = new AtomicLong(WINDOW.toNanos() * 5);
+        try (SharedCountMinSketch sketch = SharedCountMinSketch.open(file, 4, 256, WINDOW, null, clock::get)) {
+            sketch.increment(11L, 0L);
+            sketch.increment(11L, 0L);
+
+            // Act
+            CountMinLogSketch restored = CountMinLogSketch.fromSnapshot(sketch.snapshot(0L));
+
+            // Assert
+            assertThat(restored.estimate(11L)).isEqualTo(2L);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void openRejectsMismatchedShape() throws Exception {
+        // Arrange
+        Path file = newFile();
+        try (SharedCountMinSketch ignored = SharedCountMinSketch.open(file, 4, 256, WINDOW)) {
+
+            // Act / Assert
+            assertThatThrownBy(() -> SharedCountMinSketch.open(file, 4, 512, WINDOW))
+                    .isInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> SharedCountMinSketch.open(file, 4, 100, WINDOW))
+                    .isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static Path newFile() throws Exception {
+        Path file = Files.createTempFile("fluxgate-shared", ".sketch");
+        Files.delete(file);
+        return file;
+    }
+}
@@ -0,0 +1,56 @@
+package io.fluxgate.core.tierB;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SketchSeedsTest {
+
+    @Test
+    void deriveIsDeterministicPerSecret() {
+        // Act
+        long[] first = SketchSeeds.derive(7L, 4);
+        long[] second = SketchSeeds.derive(7L, 4);
+        long[] other = SketchSeeds.derive(8L, 4);
+
+        // Assert
+        assertThat(first).isEqualTo(second);
+        assertThat(first).isNotEqualTo(other);
+    }
+
+    @Test
+    void randomSeedsDifferBetweenCalls() {
+        // Act
+        long[] first = SketchSeeds.random(4);
+        long[] second = SketchSeeds.random(4);
+
+        // Assert
+        assertThat(first).hasSize(4);
+        assertThat(first).isNotEqualTo(second);
+    }
+
+    @Test
+    void seedsChangeRowIndexes() {
+        // Arrange
+        RowIndexer first = RowIndexer.scalar(SketchSeeds.derive(1L, 1), 1 << 16);
+        RowIndexer second = RowIndexer.scalar(SketchSeeds.derive(2L, 1), 1 << 16);
+        int differing = 0;
+
+        // Act
+        for (long key = 0; key < 1_000; key++) {
+            if (first.index(key, 0) != second.index(key, 0)) {
+                differing++;
+            }
+        }
+
+        // Assert
+        assertThat(differing).isGreaterThan(990);
+    }
+
+    @Test
+    void rejectsNonPositiveDepth() {
+        assertThatThrownBy(() -> SketchSeeds.random(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SketchSeeds.derive(1L, -1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
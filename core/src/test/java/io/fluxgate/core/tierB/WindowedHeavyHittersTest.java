@@ -0,0 +1,111 @@
+package io.fluxgate.core.tierB;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WindowedHeavyHittersTest {
+
+    private static final long SLOT = Duration.ofSeconds(10).toNanos();
+
+    @Test
+    void liveSlotRanksKeysByCount() {
+        // Arrange
+        WindowedHeavyHitters hitters = new WindowedHeavyHitters(8, 0.9d, Duration.ofSeconds(10), 6);
+
+        // Act
+        offer(hitters, 1L, 5, 0L);
+        offer(hitters, 2L, 20, 0L);
+        offer(hitters, 3L, 10, 0L);
+        WindowedHeavyHitters.TopKeys live = hitters.live(1L);
+
+        // Assert
+        assertThat(live.keys()).containsExactly(2L, 3L, 1L);
+        assertThat(live.counts()).containsExactly(20L, 10L, 5L);
+    }
+
+    @Test
+    void topKMergesSnapshotsInsideWindow() {
+        // Arrange
+        WindowedHeavyHitters hitters = new WindowedHeavyHitters(8, 0.9d, Duration.ofSeconds(10), 6);
+        offer(hitters, 1L, 30, 0L);
+        offer(hitters, 2L, 10, SLOT);
+        offer(hitters, 1L, 5, SLOT * 2);
+        offer(hitters, 3L, 12, SLOT * 2);
+
+        // Act
+        WindowedHeavyHitters.TopKeys lastSlot = hitters.topK(Duration.ofSeconds(10), 10, SLOT * 2 + 1);
+        WindowedHeavyHitters.TopKeys lastMinute = hitters.topK(Duration.ofMinutes(1), 2, SLOT * 2 + 1);
+
+        // Assert
+        assertThat(lastSlot.keys()).containsExactly(3L, 2L, 1L);
+        assertThat(lastMinute.size()).isEqualTo(2);
+        assertThat(lastMinute.key(0)).isEqualTo(1L);
+        assertThat(lastMinute.count(0)).isEqualTo(35L);
+        assertThat(lastMinute.key(1)).isEqualTo(3L);
+    }
+
+    @Test
+    void ringBufferForgetsSlotsBeyondCapacity() {
+        // Arrange
+        WindowedHeavyHitters hitters = new WindowedHeavyHitters(4, 0.9d, Duration.ofSeconds(10), 2);
+        offer(hitters, 1L, 50, 0L);
+        offer(hitters, 2L, 1, SLOT);
+        offer(hitters, 3L, 1, SLOT * 2);
+        offer(hitters, 4L, 1, SLOT * 3);
+
+        // Act
+        WindowedHeavyHitters.TopKeys all = hitters.topK(Duration.ofHours(1), 10, SLOT * 3 + 1);
+
+        // Assert
+        assertThat(all.keys()).containsExactlyInAnyOrder(2L, 3L, 4L);
+    }
+
+    @Test
+    void slotsAreAnchoredAtFirstOfferedTimestamp() {
+        // Arrange
+        long[] origins = {1_000_000L * SLOT + 7L, -5L * SLOT - 3L};
+
+        for (long origin : origins) {
+            WindowedHeavyHitters hitters = new WindowedHeavyHitters(4, 0.9d, Duration.ofSeconds(10), 6);
+
+            // Act
+            offer(hitters, 1L, 3, origin);
+            offer(hitters, 2L, 2, origin + SLOT - 1);
+            WindowedHeavyHitters.TopKeys firstSlot = hitters.live(origin + SLOT - 1);
+            offer(hitters, 3L, 1, origin + SLOT);
+            WindowedHeavyHitters.TopKeys window = hitters.topK(Duration.ofSeconds(15), 10, origin + SLOT + 1);
+
+            // Assert
+            assertThat(firstSlot.fromNanos()).isEqualTo(origin);
+            assertThat(firstSlot.keys()).containsExactly(1L, 2L);
+            assertThat(hitters.live(origin + SLOT + 1).keys()).containsExactly(3L);
+            assertThat(window.keys()).containsExactly(1L, 2L, 3L);
+        }
+    }
+
+    @Test
+    void closedSlotsAreRankedWhenFirstReadEvenWithoutQueriesBetweenRotations() {
+        // Arrange
+        WindowedHeavyHitters hitters = new WindowedHeavyHitters(4, 0.9d, Duration.ofSeconds(10), 4);
+        offer(hitters, 1L, 4, 0L);
+        offer(hitters, 2L, 3, SLOT);
+        offer(hitters, 3L, 2, SLOT * 2);
+        offer(hitters, 4L, 1, SLOT * 3);
+
+        // Act
+        WindowedHeavyHitters.TopKeys all = hitters.topK(Duration.ofHours(1), 10, SLOT * 3 + 1);
+
+        // Assert
+        assertThat(all.keys()).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(all.counts()).containsExactly(4L, 3L, 2L, 1L);
+    }
+
+    private static void offer(WindowedHeavyHitters hitters, long key, int times, long nowNanos) {
+        for (int i = 0; i < times; i++) {
+            hitters.offer(key, nowNanos);
+        }
+    }
+}
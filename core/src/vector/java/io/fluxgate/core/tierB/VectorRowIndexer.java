@@ -0,0 +1,68 @@
+package io.fluxgate.core.tierB;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link RowIndexer} that mixes every row seed with the key in SIMD lanes. With the preferred
+ * species covering 4 or 8 longs, sketches of depth 2-8 need a single pass.
+ *
+ * <p>This class lives in the {@code vector} source set, the only one compiled against the
+ * incubating module, and is loaded reflectively by {@link VectorSupport}.
+ */
+final class VectorRowIndexer implements RowIndexer {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private final long[] seeds;
+    private final long[] tweaks;
+    private final int depth;
+    private final long widthMask;
+    private final ScalarRowIndexer scalar;
+
+    VectorRowIndexer(long[] seeds, int width) {
+        this.scalar = new ScalarRowIndexer(seeds, width);
+        this.depth = seeds.length;
+        this.widthMask = width - 1L;
+        int lanes = SPECIES.length();
+        int padded = ((depth + lanes - 1) / lanes) * lanes;
+        this.seeds = new long[padded];
+        System.arraycopy(seeds, 0, this.seeds, 0, depth);
+        this.tweaks = new long[padded];
+        for (int i = 0; i < depth; i++) {
+            tweaks[i] = SketchSeeds.tweak(seeds[i]);
+        }
+    }
+
+    @Override
+    public int index(long key, int row) {
+        return scalar.index(key, row);
+    }
+
+    @Override
+    public void indexes(long key, long[] out) {
+        for (int base = 0; base < depth; base += SPECIES.length()) {
+            VectorMask<Long> inRange = SPECIES.indexInRange(base, depth);
+            LongVector hash = LongVector.fromArray(SPECIES, seeds, base).lanewise(VectorOperators.XOR, key);
+            hash = hash.lanewise(VectorOperators.XOR, hash.lanewise(VectorOperators.LSHR, 33));
+            hash = hash.mul(0xff51afd7ed558ccdL);
+            hash = hash.lanewise(VectorOperators.XOR, LongVector.fromArray(SPECIES, tweaks, base));
+            hash = hash.lanewise(VectorOperators.XOR, hash.lanewise(VectorOperators.LSHR, 33));
+            hash = hash.mul(0xc4ceb9fe1a85ec53L);
+            hash = hash.lanewise(VectorOperators.XOR, hash.lanewise(VectorOperators.LSHR, 33));
+            hash.and(widthMask).intoArray(out, base, inRange);
+        }
+    }
+
+    @Override
+    public int depth() {
+        return depth;
+    }
+
+    @Override
+    public boolean vectorized() {
+        return true;
+    }
+}